@@ -152,6 +152,10 @@ public class Settings {
 
     public static final String KEY_PREF_DOWNLOAD_TYPES = "pref_download_conn_types";
 
+    // Download the library artwork after syncing
+    public static final String KEY_PREF_PREWARM_ARTWORK = "pref_prewarm_artwork";
+    public static final boolean DEFAULT_PREF_PREWARM_ARTWORK = false;
+
     public static final String KEY_PREF_SINGLE_COLUMN = "pref_single_multi_column";
     public static final boolean DEFAULT_PREF_SINGLE_COLUMN = false;
 
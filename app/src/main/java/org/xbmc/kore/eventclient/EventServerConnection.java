@@ -31,7 +31,10 @@ import org.xbmc.kore.utils.Utils;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 
 /**
  * Class that establishes and maintains a connection to Kodi's EventServer
@@ -49,24 +52,28 @@ public class EventServerConnection {
      * Host to connect too
      */
     private final HostInfo hostInfo;
-    private InetAddress hostInetAddress = null;
+    private volatile InetAddress hostInetAddress = null;
 
     // Handler on which packets will be posted, to send them asynchronously
     private Handler commHandler = null;
     private HandlerThread handlerThread = null;
 
+    private static final int MSG_SEND_PACKET = 1;
+
+    /**
+     * Channel connected to the EventServer and buffer in which packets are encoded. They're
+     * reused for all the packets, and only accessed on the handler thread, except when the
+     * channel is closed by {@link #quit()} before API 18
+     */
+    private volatile DatagramChannel channel = null;
+    private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(Packet.MAX_PACKET_SIZE);
+
     private PacketPING packetPING = new PacketPING();
     private Runnable pingRunnable = new Runnable() {
         @Override
         public void run() {
             LogUtils.LOGD(TAG, "Pinging EventServer");
-            if (hostInetAddress != null) {
-                try {
-                    packetPING.send(hostInetAddress, hostInfo.getEventServerPort());
-                } catch (IOException exc) {
-                    LogUtils.LOGD(TAG, "Got an IOException when sending a PING Packet to Kodi's EventServer");
-                }
-            }
+            send(packetPING);
             commHandler.postDelayed(this, PING_INTERVAL);
         }
     };
@@ -90,18 +97,34 @@ public class EventServerConnection {
         handlerThread = new HandlerThread("EventServerConnection", Process.THREAD_PRIORITY_DEFAULT);
         handlerThread.start();
 
-        // Get the HandlerThread's Looper and use it for our Handler
-        commHandler = new Handler(handlerThread.getLooper());
+        // Get the HandlerThread's Looper and use it for our Handler. Packets are sent through
+        // messages, which are pooled, instead of posting a runnable for each one
+        commHandler = new Handler(handlerThread.getLooper(), new Handler.Callback() {
+            @Override
+            public boolean handleMessage(Message msg) {
+                if (msg.what == MSG_SEND_PACKET) {
+                    send((Packet) msg.obj);
+                    return true;
+                }
+                return false;
+            }
+        });
 
-        // Now, get the host InetAddress in the background
+        // Now, get the host InetAddress and connect the channel in the background
         commHandler.post(new Runnable() {
             @Override
             public void run() {
                 try {
-                    hostInetAddress = NetUtils.getInet4AddressByName(hostInfo.getAddress());
+                    InetAddress inetAddress = NetUtils.getInet4AddressByName(hostInfo.getAddress());
+                    channel = DatagramChannel.open();
+                    channel.connect(new InetSocketAddress(inetAddress, hostInfo.getEventServerPort()));
+                    hostInetAddress = inetAddress;
                 } catch (UnknownHostException exc) {
                     LogUtils.LOGD(TAG, "Got an UnknownHostException, disabling EventServer");
-                    hostInetAddress = null;
+                    closeChannel();
+                } catch (IOException exc) {
+                    LogUtils.LOGD(TAG, "Couldn't open the EventServer channel, disabling EventServer");
+                    closeChannel();
                 }
                 callback.OnConnectResult(hostInetAddress != null);
             }
@@ -117,7 +140,21 @@ public class EventServerConnection {
      */
     public void quit() {
         LogUtils.LOGD(TAG, "Quiting EventServer handler thread");
-        quitHandlerThread(handlerThread);
+        commHandler.removeCallbacks(pingRunnable);
+        if (Utils.isJellybeanMR2OrLater()) {
+            // Close the channel after the packets already posted are sent
+            commHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    closeChannel();
+                }
+            });
+            quitHandlerThread(handlerThread);
+        } else {
+            // quit() drops the pending messages, so the channel can only be closed here
+            handlerThread.quit();
+            closeChannel();
+        }
     }
 
     /**
@@ -131,17 +168,33 @@ public class EventServerConnection {
         }
 
         LogUtils.LOGD(TAG, "Sending Packet");
+        commHandler.obtainMessage(MSG_SEND_PACKET, p).sendToTarget();
+    }
 
-        commHandler.post(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    p.send(hostInetAddress, hostInfo.getEventServerPort());
-                } catch (IOException exc) {
-                    LogUtils.LOGD(TAG, "Got an IOException when sending a packet to Kodi's EventServer");
-                }
+    /**
+     * Sends a packet through the channel. Should only be called on the handler thread
+     */
+    private void send(Packet p) {
+        DatagramChannel channel = this.channel;
+        if (channel == null)
+            return;
+        try {
+            p.send(channel, sendBuffer);
+        } catch (IOException exc) {
+            LogUtils.LOGD(TAG, "Got an IOException when sending a packet to Kodi's EventServer");
+        }
+    }
+
+    private void closeChannel() {
+        hostInetAddress = null;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException exc) {
+                // Ignore
             }
-        });
+            channel = null;
+        }
     }
 
     /**
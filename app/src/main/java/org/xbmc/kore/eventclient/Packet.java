@@ -22,6 +22,8 @@ import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 
 /**
  * XBMC Event Client Class
@@ -75,17 +77,20 @@ import java.net.InetAddress;
  */
 public abstract class Packet {
 	
-	private byte[] sig;
-	private byte[] payload = new byte[0];
-	private byte minver;
-	private byte majver;
+	private static final byte[] SIGNATURE = new byte[] {'X', 'B', 'M', 'C' };
+	private static final byte MAJOR_VERSION = 2;
+	private static final byte MINOR_VERSION = 0;
+
+	private byte[] payload = new byte[32];
+	private int payloadSize = 0;
 	
 	private short packettype; 
 	
 	
-	private final static short MAX_PACKET_SIZE  = 1024;
+	final static short MAX_PACKET_SIZE  = 1024;
 	private final static short HEADER_SIZE      = 32;
 	private final static short MAX_PAYLOAD_SIZE = MAX_PACKET_SIZE - HEADER_SIZE;
+	private final static int RESERVED_SIZE     = 10;
 
 	protected final static byte PT_HELO          = 0x01;
 	protected final static byte PT_BYE           = 0x02;
@@ -116,24 +121,32 @@ public abstract class Packet {
 	 */
 	protected Packet(short packettype)
 	{
-		sig = new byte[] {'X', 'B', 'M', 'C' };
-        minver = 0;
-        majver = 2;
         this.packettype = packettype;
 	}
 
+	/**
+	 * Makes sure the payload array can take more bytes, growing it geometrically so that
+	 * appends don't copy the payload each time
+	 * @param size Number of bytes to append
+	 */
+	private void ensurePayloadCapacity(int size)
+	{
+		int required = payloadSize + size;
+		if (required <= payload.length)
+			return;
+		byte[] newPayload = new byte[Math.max(required, payload.length * 2)];
+		System.arraycopy(payload, 0, newPayload, 0, payloadSize);
+		payload = newPayload;
+	}
+
 	/**
 	 * Appends a String to the payload (terminated with 0x00) 
 	 * @param payload Payload as String
 	 */
 	protected void appendPayload(String payload)
 	{
-		byte[] payloadarr = payload.getBytes();
-		int oldpayloadsize = this.payload.length;
-		byte[] oldpayload = this.payload;
-		this.payload = new byte[oldpayloadsize+payloadarr.length+1]; // Create new Array with more place (+1 for string terminator)
-		System.arraycopy(oldpayload, 0, this.payload, 0, oldpayloadsize);
-		System.arraycopy(payloadarr, 0, this.payload, oldpayloadsize, payloadarr.length);
+		appendPayload(payload.getBytes());
+		appendPayload((byte)0);
 	}
 
 	/**
@@ -142,7 +155,8 @@ public abstract class Packet {
 	 */
 	protected void appendPayload(byte payload)
 	{
-		appendPayload(new byte[] { payload });
+		ensurePayloadCapacity(1);
+		this.payload[payloadSize++] = payload;
 	}
 
 	/**
@@ -151,11 +165,9 @@ public abstract class Packet {
 	 */
 	protected void appendPayload(byte[] payloadarr)
 	{
-		int oldpayloadsize = this.payload.length;
-		byte[] oldpayload = this.payload;
-		this.payload = new byte[oldpayloadsize+payloadarr.length];
-		System.arraycopy(oldpayload, 0, this.payload, 0, oldpayloadsize);
-		System.arraycopy(payloadarr, 0, this.payload, oldpayloadsize, payloadarr.length);
+		ensurePayloadCapacity(payloadarr.length);
+		System.arraycopy(payloadarr, 0, this.payload, payloadSize, payloadarr.length);
+		payloadSize += payloadarr.length;
 	}
 
 	/**
@@ -163,7 +175,11 @@ public abstract class Packet {
 	 * @param i Payload
 	 */
 	protected void appendPayload(int i) {
-		appendPayload(intToByteArray(i));
+		ensurePayloadCapacity(4);
+		payload[payloadSize++] = (byte)(i >>> 24);
+		payload[payloadSize++] = (byte)(i >>> 16);
+		payload[payloadSize++] = (byte)(i >>> 8);
+		payload[payloadSize++] = (byte)i;
 	}
 
 	/**
@@ -171,7 +187,9 @@ public abstract class Packet {
 	 * @param s Payload
 	 */
 	protected void appendPayload(short s) {
-		appendPayload(shortToByteArray(s));
+		ensurePayloadCapacity(2);
+		payload[payloadSize++] = (byte)(s >>> 8);
+		payload[payloadSize++] = (byte)s;
 	}
 	
 	/**
@@ -181,109 +199,84 @@ public abstract class Packet {
 	public int getNumPackets()
 	{
 //		return (payload.length + (MAX_PAYLOAD_SIZE - 1)) / MAX_PAYLOAD_SIZE;
-		return 1 + Math.max(payload.length - 1, 0) / MAX_PAYLOAD_SIZE;
-	}
-	
-	/**
-	 * Get Header for a specific Packet in this sequence...
-	 * @param seq Current sequence number
-	 * @param maxseq Maximal sequence number
-	 * @param actpayloadsize Payloadsize of this packet
-	 * @return Byte-Array with Header information (currently 32-Byte long, see HEADER_SIZE)
-	 */
-	private byte[] getHeader(int seq, int maxseq, short actpayloadsize)
-	{
-		byte[] header = new byte[HEADER_SIZE];
-		System.arraycopy(sig, 0, header, 0, 4);
-		header[4] = majver;
-		header[5] = minver;
-		byte[] packettypearr = shortToByteArray(this.packettype);
-		System.arraycopy(packettypearr, 0, header, 6, 2);
-		byte[] seqarr = intToByteArray(seq);
-		System.arraycopy(seqarr, 0, header, 8, 4);
-		byte[] maxseqarr = intToByteArray(maxseq);
-		System.arraycopy(maxseqarr, 0, header, 12, 4);
-		byte[] payloadsize = shortToByteArray(actpayloadsize);
-		System.arraycopy(payloadsize, 0, header, 16, 2);
-		byte[] uid = intToByteArray(Packet.uid);
-		System.arraycopy(uid, 0, header, 18, 4);
-		byte[] reserved = new byte[10];
-		System.arraycopy(reserved, 0, header, 22, 10);
-		
-		return header;
+		return 1 + Math.max(payloadSize - 1, 0) / MAX_PAYLOAD_SIZE;
 	}
 	
 	/**
-	 * Generates the whole UDP-Message with Header and Payload of a specific Packet in sequence
+	 * Writes the whole UDP-Message with Header and Payload of a specific Packet in sequence
+	 * into a buffer, without any intermediate allocation. The buffer is left ready to be sent.
+	 * Header fields are in network byte order, which is the buffer's default.
 	 * @param seq Current sequence number
-	 * @return Byte-Array with UDP-Message
+	 * @param buffer Buffer to write into, with at least {@link #MAX_PACKET_SIZE} bytes
 	 */
-	private byte[] getUDPMessage(int seq)
+	void writeUDPMessage(int seq, ByteBuffer buffer)
 	{
 		int maxseq = getNumPackets();
-		if(seq > maxseq)
-			return null;
 		
 		short actpayloadsize;
 		
 		if(seq == maxseq)
-			actpayloadsize = (short)((payload.length - 1) % MAX_PAYLOAD_SIZE + 1);
+			actpayloadsize = (short)((payloadSize - 1) % MAX_PAYLOAD_SIZE + 1);
 		else
 			actpayloadsize = (short)MAX_PAYLOAD_SIZE;
 
-		byte[] pack = new byte[HEADER_SIZE+actpayloadsize];
-		
-		System.arraycopy(getHeader(seq, maxseq, actpayloadsize), 0, pack, 0, HEADER_SIZE);
-		System.arraycopy(payload, (seq-1)*MAX_PAYLOAD_SIZE, pack, HEADER_SIZE, actpayloadsize);
-		
-		return pack;
+		buffer.clear();
+		buffer.put(SIGNATURE);
+		buffer.put(MAJOR_VERSION);
+		buffer.put(MINOR_VERSION);
+		buffer.putShort(packettype);
+		buffer.putInt(seq);
+		buffer.putInt(maxseq);
+		buffer.putShort(actpayloadsize);
+		buffer.putInt(Packet.uid);
+		for (int i = 0; i < RESERVED_SIZE; i++)
+			buffer.put((byte)0);
+		buffer.put(payload, (seq-1)*MAX_PAYLOAD_SIZE, actpayloadsize);
+		buffer.flip();
 	}
 	
 	/**
-	 * Sends this packet to the EventServer
-	 * @param adr Address of the EventServer
-	 * @param port Port of the EventServer
+	 * Sends this packet to the EventServer through a connected channel, encoding it in the
+	 * given buffer. Nothing is allocated, so use this for frequent packets.
+	 * @param channel Channel connected to the EventServer
+	 * @param buffer Buffer to encode the packet in, with at least {@link #MAX_PACKET_SIZE} bytes
 	 * @throws IOException
 	 */
-	public void send(InetAddress adr, int port) throws IOException
+	public void send(DatagramChannel channel, ByteBuffer buffer) throws IOException
 	{
 		int maxseq = getNumPackets();
-		DatagramSocket s = new DatagramSocket();
 		// For each Packet in Sequence...
 		for(int seq=1;seq<=maxseq;seq++)
 		{
-			// Get Message and send them...
-			byte[] pack = getUDPMessage(seq);
-			DatagramPacket p = new DatagramPacket(pack, pack.length);
-			p.setAddress(adr);
-			p.setPort(port);
-			s.send(p);
+			writeUDPMessage(seq, buffer);
+			channel.write(buffer);
 		}
 	}
-	
-	/**
-	 * Helper Method to convert an integer to a Byte array
-	 * @param value
-	 * @return Byte-Array
-	 */
-	private static final byte[] intToByteArray(int value) {
-	          return new byte[] {
-	                  (byte)(value >>> 24),
-	                  (byte)(value >>> 16),
-	                  (byte)(value >>> 8),
-	                  (byte)value};
-	}
 
 	/**
-	 * Helper Method to convert an short to a Byte array
-	 * @param value
-	 * @return Byte-Array
+	 * Sends this packet to the EventServer
+	 * @param adr Address of the EventServer
+	 * @param port Port of the EventServer
+	 * @throws IOException
 	 */
-	private static final byte[] shortToByteArray(short value) {
-        return new byte[] {
-                (byte)(value >>> 8),
-                (byte)value};
+	public void send(InetAddress adr, int port) throws IOException
+	{
+		int maxseq = getNumPackets();
+		ByteBuffer buffer = ByteBuffer.allocate(MAX_PACKET_SIZE);
+		DatagramSocket s = new DatagramSocket();
+		try {
+			// For each Packet in Sequence...
+			for(int seq=1;seq<=maxseq;seq++)
+			{
+				// Get Message and send them...
+				writeUDPMessage(seq, buffer);
+				DatagramPacket p = new DatagramPacket(buffer.array(), buffer.limit());
+				p.setAddress(adr);
+				p.setPort(port);
+				s.send(p);
+			}
+		} finally {
+			s.close();
+		}
 	}
-
-	
 }
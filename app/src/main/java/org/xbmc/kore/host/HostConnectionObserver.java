@@ -16,7 +16,9 @@
 package org.xbmc.kore.host;
 
 import android.os.Handler;
+import android.support.annotation.VisibleForTesting;
 
+import org.xbmc.kore.jsonrpc.ApiBatch;
 import org.xbmc.kore.jsonrpc.ApiCallback;
 import org.xbmc.kore.jsonrpc.HostConnection;
 import org.xbmc.kore.jsonrpc.method.JSONRPC;
@@ -42,6 +44,11 @@ import java.util.List;
  * or, if through HTTP, starts a periodic polling of XBMC, and tries to discern when a change in
  * the player has occurred, notifying the listeners
  *
+ * Through TCP, the notifications are applied to the last known player state, and only the
+ * properties that a notification doesn't carry are asked for. Through HTTP, the polling interval
+ * adapts to the player state: it's short while something is playing and on screen, and long
+ * when nothing is playing or only background observers (like the notification) are listening.
+ *
  * NOTE: An object of this class should always be called from the same thread.
  */
 public class HostConnectionObserver
@@ -129,6 +136,80 @@ public class HostConnectionObserver
         public void observerOnStopObserving();
     }
 
+    /**
+     * Properties asked for in Player.GetProperties when checking what's playing
+     */
+    private static final String[] PLAYER_PROPERTIES_TO_GET = new String[] {
+            // Check is something more is needed
+            PlayerType.PropertyName.SPEED,
+            PlayerType.PropertyName.PERCENTAGE,
+            PlayerType.PropertyName.POSITION,
+            PlayerType.PropertyName.TIME,
+            PlayerType.PropertyName.TOTALTIME,
+            PlayerType.PropertyName.REPEAT,
+            PlayerType.PropertyName.SHUFFLED,
+            PlayerType.PropertyName.CURRENTAUDIOSTREAM,
+            PlayerType.PropertyName.CURRENTSUBTITLE,
+            PlayerType.PropertyName.AUDIOSTREAMS,
+            PlayerType.PropertyName.SUBTITLES,
+            PlayerType.PropertyName.PLAYLISTID,
+    };
+
+    /**
+     * Properties asked for in Player.GetProperties when only the playback position changed
+     */
+    private static final String[] PLAYER_TIMING_PROPERTIES_TO_GET = new String[] {
+            PlayerType.PropertyName.SPEED,
+            PlayerType.PropertyName.PERCENTAGE,
+            PlayerType.PropertyName.TIME,
+    };
+
+//    COMMENT, LYRICS, MUSICBRAINZTRACKID, MUSICBRAINZARTISTID, MUSICBRAINZALBUMID,
+//    MUSICBRAINZALBUMARTISTID, TRAILER, ORIGINALTITLE, LASTPLAYED, MPAA, COUNTRY,
+//    PRODUCTIONCODE, SET, SHOWLINK, FILE,
+//    ARTISTID, ALBUMID, TVSHOW_ID, SETID, WATCHEDEPISODES, DISC, TAG, GENREID,
+//    ALBUMARTISTID, DESCRIPTION, THEME, MOOD, STYLE, ALBUMLABEL, SORTTITLE, UNIQUEID,
+//    DATEADDED, CHANNEL, CHANNELTYPE, HIDDEN, LOCKED, CHANNELNUMBER, STARTTIME, ENDTIME,
+//    EPISODEGUIDE, ORIGINALTITLE, PLAYCOUNT, PLOTOUTLINE, SET,
+    /**
+     * Properties asked for in Player.GetItem when checking what's playing
+     */
+    private static final String[] ITEM_PROPERTIES_TO_GET = new String[] {
+            ListType.FieldsAll.ART,
+            ListType.FieldsAll.ARTIST,
+            ListType.FieldsAll.ALBUMARTIST,
+            ListType.FieldsAll.ALBUM,
+            ListType.FieldsAll.CAST,
+            ListType.FieldsAll.DIRECTOR,
+            ListType.FieldsAll.DISPLAYARTIST,
+            ListType.FieldsAll.DURATION,
+            ListType.FieldsAll.EPISODE,
+            ListType.FieldsAll.FANART,
+            ListType.FieldsAll.FILE,
+            ListType.FieldsAll.FIRSTAIRED,
+            ListType.FieldsAll.GENRE,
+            ListType.FieldsAll.IMDBNUMBER,
+            ListType.FieldsAll.PLOT,
+            ListType.FieldsAll.PREMIERED,
+            ListType.FieldsAll.RATING,
+            ListType.FieldsAll.RESUME,
+            ListType.FieldsAll.RUNTIME,
+            ListType.FieldsAll.SEASON,
+            ListType.FieldsAll.SHOWTITLE,
+            ListType.FieldsAll.STREAMDETAILS,
+            ListType.FieldsAll.STUDIO,
+            ListType.FieldsAll.TAGLINE,
+            ListType.FieldsAll.THUMBNAIL,
+            ListType.FieldsAll.TITLE,
+            ListType.FieldsAll.TOP250,
+            ListType.FieldsAll.TRACK,
+            ListType.FieldsAll.VOTES,
+            ListType.FieldsAll.WRITER,
+            ListType.FieldsAll.YEAR,
+            ListType.FieldsAll.DESCRIPTION,
+    };
+//    ITEM_PROPERTIES_TO_GET = ListType.FieldsAll.allValues;
+
     /**
      * The connection on which to listen
      */
@@ -140,6 +221,25 @@ public class HostConnectionObserver
     private List<PlayerEventsObserver> playerEventsObservers = new ArrayList<PlayerEventsObserver>();
     private List<ApplicationEventsObserver> applicationEventsObservers = new ArrayList<>();
 
+    /**
+     * Player observers that aren't showing anything on screen. Subset of playerEventsObservers
+     */
+    private List<PlayerEventsObserver> backgroundPlayerObservers = new ArrayList<>();
+
+    /**
+     * Intervals at which the host is checked through HTTP
+     */
+    private static final int HTTP_CHECK_INTERVAL_PLAYING = 3000,
+            HTTP_CHECK_INTERVAL_IDLE = 5000,
+            HTTP_CHECK_INTERVAL_BACKGROUND_PLAYING = 10000,
+            HTTP_CHECK_INTERVAL_BACKGROUND_IDLE = 30000;
+
+    /**
+     * Interval at which the volume is checked through HTTP while nothing is playing. It rarely
+     * changes outside of the app then
+     */
+    private static final int HTTP_VOLUME_CHECK_INTERVAL_IDLE = 10000;
+
 //    /**
 //     * Handlers for which observer, on which to notify them
 //     */
@@ -149,29 +249,28 @@ public class HostConnectionObserver
     private Runnable httpPlayerCheckerRunnable = new Runnable() {
         @Override
         public void run() {
-            final int HTTP_NOTIFICATION_CHECK_INTERVAL = 3000;
             // If no one is listening to this, just exit
             if (playerEventsObservers.isEmpty()) return;
 
             // Check whats playing
             checkWhatsPlaying();
 
-            // Keep checking
-            checkerHandler.postDelayed(this, HTTP_NOTIFICATION_CHECK_INTERVAL);
+            // Keep checking, at an interval that depends on the last state we know of
+            checkerHandler.postDelayed(this, getHttpPlayerCheckInterval());
         }
     };
 
     private Runnable httpApplicationCheckerRunnable = new Runnable() {
         @Override
         public void run() {
-            final int HTTP_NOTIFICATION_CHECK_INTERVAL = 3000;
             // If no one is listening to this, just exit
             if (applicationEventsObservers.isEmpty()) return;
 
             getApplicationProperties();
 
             // Keep checking
-            checkerHandler.postDelayed(this, HTTP_NOTIFICATION_CHECK_INTERVAL);
+            checkerHandler.postDelayed(this, isPlayerActive() ?
+                                             HTTP_CHECK_INTERVAL_PLAYING : HTTP_VOLUME_CHECK_INTERVAL_IDLE);
         }
     };
 
@@ -234,11 +333,17 @@ public class HostConnectionObserver
 
     public HostState hostState;
 
+    /**
+     * Playback position of the active player, shared by everything that shows it
+     */
+    private PlaybackClock playbackClock;
+
     private HostConnectionObserver() {}
 
     public HostConnectionObserver(HostConnection connection) {
         this.hostState = new HostState();
         this.connection = connection;
+        this.playbackClock = new PlaybackClock(checkerHandler);
     }
 
     /**
@@ -249,10 +354,19 @@ public class HostConnectionObserver
         if (this.connection == null)
             return;
 
+        boolean firstOnScreen = !backgroundPlayerObservers.contains(observer) &&
+                                (playerEventsObservers.size() == backgroundPlayerObservers.size());
         playerEventsObservers.add(observer);
 
         if (replyImmediately) replyWithLastResult(observer);
 
+        if ((playerEventsObservers.size() > 1) && firstOnScreen &&
+            (connection.getProtocol() != HostConnection.PROTOCOL_TCP)) {
+            // We were checking at the background pace, now something is on screen, so check now
+            checkerHandler.removeCallbacks(httpPlayerCheckerRunnable);
+            checkerHandler.post(httpPlayerCheckerRunnable);
+        }
+
         if (playerEventsObservers.size() == 1) {
             // If this is the first observer, start checking through HTTP or register us
             // as a connection observer, which we will pass to the "real" observer
@@ -268,12 +382,28 @@ public class HostConnectionObserver
         }
     }
 
+    /**
+     * Registers a new observer that will be notified about player events, but isn't showing
+     * them on screen (eg. a notification). Through HTTP, the host is checked less often while
+     * only these observers are registered. Unregister it with
+     * {@link #unregisterPlayerObserver(PlayerEventsObserver)}
+     * @param observer Observer
+     */
+    public void registerBackgroundPlayerObserver(PlayerEventsObserver observer, boolean replyImmediately) {
+        if (this.connection == null)
+            return;
+
+        backgroundPlayerObservers.add(observer);
+        registerPlayerObserver(observer, replyImmediately);
+    }
+
     /**
      * Unregisters a previously registered observer
      * @param observer Observer to unregister
      */
     public void unregisterPlayerObserver(PlayerEventsObserver observer) {
         playerEventsObservers.remove(observer);
+        backgroundPlayerObservers.remove(observer);
 //        observerHandlerMap.remove(observer);
 
         LogUtils.LOGD(TAG, "Unregistering player observer " + observer.getClass().getSimpleName() +
@@ -356,6 +486,7 @@ public class HostConnectionObserver
             observer.observerOnStopObserving();
 
         playerEventsObservers.clear();
+        backgroundPlayerObservers.clear();
 
         if (connection.getProtocol() == HostConnection.PROTOCOL_TCP) {
             connection.unregisterPlayerNotificationsObserver(this);
@@ -370,6 +501,16 @@ public class HostConnectionObserver
 
     @Override
     public void onPropertyChanged(org.xbmc.kore.jsonrpc.notification.Player.OnPropertyChanged notification) {
+        // Keep the last result up to date, so that it can be replied to new observers
+        NotificationsData data = notification.data;
+        if ((data.property != null) && isPlayerActive() && isActivePlayer(data.player)) {
+            PlayerType.PropertyValue properties = hostState.lastGetPropertiesResult;
+            hostState.lastGetPropertiesResult = new PlayerType.PropertyValue(
+                    properties, properties.speed, null, properties.percentage,
+                    data.property.repeatMode,
+                    (data.property.shuffled != null) ? data.property.shuffled : properties.shuffled);
+        }
+
         List<PlayerEventsObserver> allObservers = new ArrayList<>(playerEventsObservers);
         for (final PlayerEventsObserver observer : allObservers) {
             observer.playerOnPropertyChanged(notification.data);
@@ -380,25 +521,52 @@ public class HostConnectionObserver
      * The {@link HostConnection.PlayerNotificationsObserver} interface methods
      */
     public void onPlay(org.xbmc.kore.jsonrpc.notification.Player.OnPlay notification) {
-        // Just start our chain calls
-        chainCallGetActivePlayers();
+        // Resuming the same item only changes the timing, anything else needs everything
+        if (isActiveItem(notification.data)) {
+            refreshPlayerTiming();
+        } else {
+            checkWhatsPlaying();
+        }
     }
 
     public void onPause(org.xbmc.kore.jsonrpc.notification.Player.OnPause
                                 notification) {
-        // Just start our chain calls
-        chainCallGetActivePlayers();
+        if (isActiveItem(notification.data)) {
+            refreshPlayerTiming();
+        } else {
+            checkWhatsPlaying();
+        }
     }
 
     public void onSpeedChanged(org.xbmc.kore.jsonrpc.notification.Player
                                        .OnSpeedChanged notification) {
-        // Just start our chain calls
-        chainCallGetActivePlayers();
+        if (isActiveItem(notification.data)) {
+            refreshPlayerTiming();
+        } else {
+            checkWhatsPlaying();
+        }
     }
 
     public void onSeek(org.xbmc.kore.jsonrpc.notification.Player.OnSeek notification) {
-        // Just start our chain calls
-        chainCallGetActivePlayers();
+        if (!isPlayerActive()) {
+            checkWhatsPlaying();
+            return;
+        }
+
+        // The notification has the new time, so there's no need to ask for anything
+        PlayerType.PropertyValue properties = hostState.lastGetPropertiesResult;
+        double percentage = properties.percentage;
+        if ((properties.totaltime != null) && (properties.totaltime.ToSeconds() > 0)) {
+            percentage = 100.0 * notification.time.ToSeconds() / properties.totaltime.ToSeconds();
+        }
+        playbackClock.anchor(notification.time, properties.totaltime,
+                             getClockSpeed(properties, hostState.lastGetItemResult));
+        forceReply = true;
+        notifySomethingIsPlaying(hostState.lastGetActivePlayerResult,
+                                 new PlayerType.PropertyValue(properties, properties.speed,
+                                                              notification.time, percentage,
+                                                              null, properties.shuffled),
+                                 hostState.lastGetItemResult, playerEventsObservers);
     }
 
     public void onStop(org.xbmc.kore.jsonrpc.notification.Player.OnStop notification) {
@@ -480,8 +648,184 @@ public class HostConnectionObserver
     private void checkWhatsPlaying() {
         LogUtils.LOGD(TAG, "Checking whats playing");
 
-        // Start the calls: Player.GetActivePlayers -> Player.GetProperties -> Player.GetItem
-        chainCallGetActivePlayers();
+        if ((hostState.lastGetActivePlayerResult == null) ||
+            ((hostState.lastCallResult != PlayerEventsObserver.PLAYER_IS_PLAYING) &&
+             (hostState.lastCallResult != PlayerEventsObserver.PLAYER_IS_PAUSED))) {
+            // Start the calls: Player.GetActivePlayers -> Player.GetProperties -> Player.GetItem
+            chainCallGetActivePlayers();
+        } else {
+            // Something was playing, most likely it still is on the same player, so ask for
+            // everything in one round trip
+            batchCallGetWhatsPlaying(hostState.lastGetActivePlayerResult.playerid);
+        }
+    }
+
+    /**
+     * Checks whether something is playing or paused, according to the last result
+     */
+    private boolean isPlayerActive() {
+        return ((hostState.lastCallResult == PlayerEventsObserver.PLAYER_IS_PLAYING) ||
+                (hostState.lastCallResult == PlayerEventsObserver.PLAYER_IS_PAUSED)) &&
+               (hostState.lastGetActivePlayerResult != null);
+    }
+
+    /**
+     * Checks whether a notification refers to the player we know is active.
+     * Notifications without player info are assumed to refer to it
+     */
+    private boolean isActivePlayer(org.xbmc.kore.jsonrpc.notification.Player.NotificationsPlayer player) {
+        return (player == null) || (player.playerId == hostState.lastGetActivePlayerResult.playerid);
+    }
+
+    /**
+     * Checks whether a notification refers to the item we know is playing, on the same player
+     */
+    private boolean isActiveItem(NotificationsData data) {
+        if (!isPlayerActive() || !isActivePlayer(data.player) || (data.item == null))
+            return false;
+
+        ListType.ItemsAll item = hostState.lastGetItemResult;
+        return (data.item.id > 0) && (data.item.id == item.id) && data.item.type.equals(item.type);
+    }
+
+    /**
+     * Asks only for the speed and playback time of the active player, and notifies observers
+     * with the last known properties updated. Used when the item didn't change
+     */
+    private void refreshPlayerTiming() {
+        final PlayerType.GetActivePlayersReturnType activePlayer = hostState.lastGetActivePlayerResult;
+        Player.GetProperties getProperties = new Player.GetProperties(activePlayer.playerid,
+                                                                      PLAYER_TIMING_PROPERTIES_TO_GET);
+        getProperties.execute(connection, new ApiCallback<PlayerType.PropertyValue>() {
+            @Override
+            public void onSuccess(PlayerType.PropertyValue result) {
+                // Ignore it if the state changed in the meantime
+                if (!isPlayerActive() || (hostState.lastGetActivePlayerResult != activePlayer))
+                    return;
+
+                PlayerType.PropertyValue properties = hostState.lastGetPropertiesResult;
+                playbackClock.anchor(result.time, properties.totaltime,
+                                     getClockSpeed(result, hostState.lastGetItemResult));
+                forceReply = true;
+                notifySomethingIsPlaying(activePlayer,
+                                         new PlayerType.PropertyValue(properties, result.speed, result.time,
+                                                                      result.percentage, null,
+                                                                      properties.shuffled),
+                                         hostState.lastGetItemResult, playerEventsObservers);
+            }
+
+            @Override
+            public void onError(int errorCode, String description) {
+                // Probably the player isn't active anymore, check everything
+                chainCallGetActivePlayers();
+            }
+        }, checkerHandler);
+    }
+
+    /**
+     * Returns the interval at which to check what's playing through HTTP, based on the
+     * last result and on whether any observer is on screen
+     */
+    @VisibleForTesting
+    int getHttpPlayerCheckInterval() {
+        boolean onScreen = playerEventsObservers.size() > backgroundPlayerObservers.size();
+        boolean playing = (hostState.lastCallResult == PlayerEventsObserver.PLAYER_IS_PLAYING);
+        if (onScreen) {
+            return playing ? HTTP_CHECK_INTERVAL_PLAYING : HTTP_CHECK_INTERVAL_IDLE;
+        } else {
+            return playing ? HTTP_CHECK_INTERVAL_BACKGROUND_PLAYING : HTTP_CHECK_INTERVAL_BACKGROUND_IDLE;
+        }
+    }
+
+    /**
+     * Calls Player.GetActivePlayers, Player.GetProperties and Player.GetItem in one batch,
+     * assuming that the active player is the one specified.
+     * If it isn't, chains execution to chainCallGetPlayerProperties with the right player
+     * @param playerId Id of the player assumed to be active
+     */
+    private void batchCallGetWhatsPlaying(final int playerId) {
+        final WhatsPlayingBatchResult batchResult = new WhatsPlayingBatchResult(playerId);
+
+        new ApiBatch()
+                .add(new Player.GetActivePlayers(), new ApiCallback<ArrayList<PlayerType.GetActivePlayersReturnType>>() {
+                    @Override
+                    public void onSuccess(ArrayList<PlayerType.GetActivePlayersReturnType> result) {
+                        batchResult.getActivePlayersResult = result;
+                        batchResult.onResponse();
+                    }
+
+                    @Override
+                    public void onError(int errorCode, String description) {
+                        batchResult.errorCode = errorCode;
+                        batchResult.errorDescription = description;
+                        batchResult.onResponse();
+                    }
+                })
+                .add(new Player.GetProperties(playerId, PLAYER_PROPERTIES_TO_GET), new ApiCallback<PlayerType.PropertyValue>() {
+                    @Override
+                    public void onSuccess(PlayerType.PropertyValue result) {
+                        batchResult.getPropertiesResult = result;
+                        batchResult.onResponse();
+                    }
+
+                    @Override
+                    public void onError(int errorCode, String description) {
+                        // Probably the player isn't active anymore
+                        batchResult.onResponse();
+                    }
+                })
+                .add(new Player.GetItem(playerId, ITEM_PROPERTIES_TO_GET), new ApiCallback<ListType.ItemsAll>() {
+                    @Override
+                    public void onSuccess(ListType.ItemsAll result) {
+                        batchResult.getItemResult = result;
+                        batchResult.onResponse();
+                    }
+
+                    @Override
+                    public void onError(int errorCode, String description) {
+                        batchResult.onResponse();
+                    }
+                })
+                .execute(connection, checkerHandler);
+    }
+
+    /**
+     * Gathers the results of {@link #batchCallGetWhatsPlaying(int)}, and notifies the observers
+     * once all of them arrived
+     */
+    private class WhatsPlayingBatchResult {
+        private final int playerId;
+        private int pendingResponses = 3;
+
+        private ArrayList<PlayerType.GetActivePlayersReturnType> getActivePlayersResult;
+        private PlayerType.PropertyValue getPropertiesResult;
+        private ListType.ItemsAll getItemResult;
+        private int errorCode;
+        private String errorDescription;
+
+        WhatsPlayingBatchResult(int playerId) {
+            this.playerId = playerId;
+        }
+
+        void onResponse() {
+            if (--pendingResponses > 0)
+                return;
+
+            if (getActivePlayersResult == null) {
+                LogUtils.LOGD(TAG, "Notifying error");
+                notifyConnectionError(errorCode, errorDescription, playerEventsObservers);
+            } else if (getActivePlayersResult.isEmpty()) {
+                LogUtils.LOGD(TAG, "Nothing is playing");
+                notifyNothingIsPlaying(playerEventsObservers);
+            } else if ((getActivePlayersResult.get(0).playerid != playerId) ||
+                       (getPropertiesResult == null) || (getItemResult == null)) {
+                // Player changed in the meantime, get the right properties
+                chainCallGetPlayerProperties(getActivePlayersResult.get(0));
+            } else {
+                notifySomethingIsPlaying(getActivePlayersResult.get(0), getPropertiesResult,
+                                         getItemResult, playerEventsObservers);
+            }
+        }
     }
 
     /**
@@ -514,23 +858,7 @@ public class HostConnectionObserver
      * On success chains execution to chainCallGetItem
      */
     private void chainCallGetPlayerProperties(final PlayerType.GetActivePlayersReturnType getActivePlayersResult) {
-        String propertiesToGet[] = new String[] {
-                // Check is something more is needed
-                PlayerType.PropertyName.SPEED,
-                PlayerType.PropertyName.PERCENTAGE,
-                PlayerType.PropertyName.POSITION,
-                PlayerType.PropertyName.TIME,
-                PlayerType.PropertyName.TOTALTIME,
-                PlayerType.PropertyName.REPEAT,
-                PlayerType.PropertyName.SHUFFLED,
-                PlayerType.PropertyName.CURRENTAUDIOSTREAM,
-                PlayerType.PropertyName.CURRENTSUBTITLE,
-                PlayerType.PropertyName.AUDIOSTREAMS,
-                PlayerType.PropertyName.SUBTITLES,
-                PlayerType.PropertyName.PLAYLISTID,
-        };
-
-        Player.GetProperties getProperties = new Player.GetProperties(getActivePlayersResult.playerid, propertiesToGet);
+        Player.GetProperties getProperties = new Player.GetProperties(getActivePlayersResult.playerid, PLAYER_PROPERTIES_TO_GET);
         getProperties.execute(connection, new ApiCallback<PlayerType.PropertyValue>() {
             @Override
             public void onSuccess(PlayerType.PropertyValue result) {
@@ -550,49 +878,7 @@ public class HostConnectionObserver
      */
     private void chainCallGetItem(final PlayerType.GetActivePlayersReturnType getActivePlayersResult,
                                   final PlayerType.PropertyValue getPropertiesResult) {
-//        COMMENT, LYRICS, MUSICBRAINZTRACKID, MUSICBRAINZARTISTID, MUSICBRAINZALBUMID,
-//        MUSICBRAINZALBUMARTISTID, TRAILER, ORIGINALTITLE, LASTPLAYED, MPAA, COUNTRY,
-//        PRODUCTIONCODE, SET, SHOWLINK, FILE,
-//        ARTISTID, ALBUMID, TVSHOW_ID, SETID, WATCHEDEPISODES, DISC, TAG, GENREID,
-//        ALBUMARTISTID, DESCRIPTION, THEME, MOOD, STYLE, ALBUMLABEL, SORTTITLE, UNIQUEID,
-//        DATEADDED, CHANNEL, CHANNELTYPE, HIDDEN, LOCKED, CHANNELNUMBER, STARTTIME, ENDTIME,
-//        EPISODEGUIDE, ORIGINALTITLE, PLAYCOUNT, PLOTOUTLINE, SET,
-        String[] propertiesToGet = new String[] {
-                ListType.FieldsAll.ART,
-                ListType.FieldsAll.ARTIST,
-                ListType.FieldsAll.ALBUMARTIST,
-                ListType.FieldsAll.ALBUM,
-                ListType.FieldsAll.CAST,
-                ListType.FieldsAll.DIRECTOR,
-                ListType.FieldsAll.DISPLAYARTIST,
-                ListType.FieldsAll.DURATION,
-                ListType.FieldsAll.EPISODE,
-                ListType.FieldsAll.FANART,
-                ListType.FieldsAll.FILE,
-                ListType.FieldsAll.FIRSTAIRED,
-                ListType.FieldsAll.GENRE,
-                ListType.FieldsAll.IMDBNUMBER,
-                ListType.FieldsAll.PLOT,
-                ListType.FieldsAll.PREMIERED,
-                ListType.FieldsAll.RATING,
-                ListType.FieldsAll.RESUME,
-                ListType.FieldsAll.RUNTIME,
-                ListType.FieldsAll.SEASON,
-                ListType.FieldsAll.SHOWTITLE,
-                ListType.FieldsAll.STREAMDETAILS,
-                ListType.FieldsAll.STUDIO,
-                ListType.FieldsAll.TAGLINE,
-                ListType.FieldsAll.THUMBNAIL,
-                ListType.FieldsAll.TITLE,
-                ListType.FieldsAll.TOP250,
-                ListType.FieldsAll.TRACK,
-                ListType.FieldsAll.VOTES,
-                ListType.FieldsAll.WRITER,
-                ListType.FieldsAll.YEAR,
-                ListType.FieldsAll.DESCRIPTION,
-        };
-//        propertiesToGet = ListType.FieldsAll.allValues;
-        Player.GetItem getItem = new Player.GetItem(getActivePlayersResult.playerid, propertiesToGet);
+        Player.GetItem getItem = new Player.GetItem(getActivePlayersResult.playerid, ITEM_PROPERTIES_TO_GET);
         getItem.execute(connection, new ApiCallback<ListType.ItemsAll>() {
             @Override
             public void onSuccess(ListType.ItemsAll result) {
@@ -618,6 +904,7 @@ public class HostConnectionObserver
      * @param observers List of observers
      */
     private void notifyConnectionError(final int errorCode, final String description, List<PlayerEventsObserver> observers) {
+        playbackClock.stop();
         // Reply if different from last result
         if (forceReply ||
             (hostState.lastCallResult != PlayerEventsObserver.PLAYER_CONNECTION_ERROR) ||
@@ -659,6 +946,7 @@ public class HostConnectionObserver
      * @param observers List of observers
      */
     private void notifyNothingIsPlaying(List<PlayerEventsObserver> observers) {
+        playbackClock.stop();
         // Reply if forced or different from last result
         if (forceReply ||
             (hostState.lastCallResult != PlayerEventsObserver.PLAYER_IS_STOPPED)) {
@@ -693,6 +981,10 @@ public class HostConnectionObserver
                                           final PlayerType.PropertyValue getPropertiesResult,
                                           final ListType.ItemsAll getItemResult,
                                           List<PlayerEventsObserver> observers) {
+        // Polls are less precise than notifications, so only correct the clock if it drifted
+        playbackClock.update(getPropertiesResult.time, getPropertiesResult.totaltime,
+                             getClockSpeed(getPropertiesResult, getItemResult));
+
         int currentCallResult = (getPropertiesResult.speed == 0) ?
                 PlayerEventsObserver.PLAYER_IS_PAUSED : PlayerEventsObserver.PLAYER_IS_PLAYING;
         if (forceReply ||
@@ -726,8 +1018,12 @@ public class HostConnectionObserver
             checkerHandler.postDelayed(new Runnable() {
                 @Override
                 public void run() {
-                    forceReply = true;
-                    checkWhatsPlaying();
+                    if (isPlayerActive() && (hostState.lastGetActivePlayerResult == getActivePlayersResult)) {
+                        refreshPlayerTiming();
+                    } else {
+                        forceReply = true;
+                        checkWhatsPlaying();
+                    }
                 }
             }, RECHECK_INTERVAL);
         }
@@ -789,4 +1085,22 @@ public class HostConnectionObserver
     public HostState getHostState() {
         return hostState;
     }
+
+    /**
+     * Returns the clock with the playback position of the active player
+     * @return Playback clock
+     */
+    public PlaybackClock getPlaybackClock() {
+        return playbackClock;
+    }
+
+    /**
+     * Returns the speed at which the playback clock should run. Kodi reports a speed of 0 for
+     * live TV, but the time still moves
+     */
+    private static int getClockSpeed(PlayerType.PropertyValue properties, ListType.ItemsAll item) {
+        if ((item != null) && ListType.ItemsAll.TYPE_CHANNEL.equals(item.type))
+            return 1;
+        return properties.speed;
+    }
 }
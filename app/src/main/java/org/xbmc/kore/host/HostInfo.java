@@ -15,6 +15,8 @@
  */
 package org.xbmc.kore.host;
 
+import android.text.TextUtils;
+
 import org.xbmc.kore.jsonrpc.HostConnection;
 import org.xbmc.kore.jsonrpc.method.System;
 import org.xbmc.kore.utils.LogUtils;
@@ -300,6 +302,22 @@ public class HostInfo {
 		return scheme + address + ":" + httpPort;
 	}
 
+    /**
+     * Checks whether another host info would connect to the same host in the same way, ie, only
+     * differs on details like the name or Kodi version
+     * @param other Host info to compare to
+     * @return Whether the address, protocol, ports and credentials are the same
+     */
+    public boolean hasSameConnectionDetails(HostInfo other) {
+        return TextUtils.equals(address, other.address) &&
+               (protocol == other.protocol) &&
+               (httpPort == other.httpPort) &&
+               (tcpPort == other.tcpPort) &&
+               TextUtils.equals(username, other.username) &&
+               TextUtils.equals(password, other.password) &&
+               (isHttps == other.isHttps);
+    }
+
 	/**
 	 * Returns the JSON RPC endpoint URL of the host
 	 * @return HTTP URL eg. http://192.168.1.1:8080/jsonrpc
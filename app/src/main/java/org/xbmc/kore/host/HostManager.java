@@ -25,6 +25,7 @@ import android.preference.PreferenceManager;
 import android.text.TextUtils;
 import android.text.format.DateUtils;
 import android.util.Base64;
+import android.util.SparseArray;
 
 import com.squareup.okhttp.Interceptor;
 import com.squareup.okhttp.OkHttpClient;
@@ -41,6 +42,8 @@ import org.xbmc.kore.jsonrpc.method.Application;
 import org.xbmc.kore.jsonrpc.method.System;
 import org.xbmc.kore.jsonrpc.type.ApplicationType;
 import org.xbmc.kore.provider.MediaContract;
+import org.xbmc.kore.service.library.LibraryNotificationsObserver;
+import org.xbmc.kore.utils.ArtworkRequestHandler;
 import org.xbmc.kore.utils.BasicAuthUrlConnectionDownloader;
 import org.xbmc.kore.utils.LogUtils;
 import org.xbmc.kore.utils.NetUtils;
@@ -87,6 +90,23 @@ public class HostManager {
      */
     private HostConnectionObserver currentHostConnectionObserver = null;
 
+    /**
+     * Applies the library notifications of the current connection to the database
+     */
+    private LibraryNotificationsObserver currentLibraryNotificationsObserver = null;
+
+    /**
+     * Connections to the hosts used, keyed by host id, kept open when switching hosts so that
+     * switching back doesn't have to reconnect. See {@link #getConnection(HostInfo)}
+     */
+    private final SparseArray<HostConnection> hostConnections = new SparseArray<>();
+
+    /**
+     * HTTP connections to the hosts used, keyed by host id, for the calls that must go
+     * through HTTP. See {@link #getHttpConnection(HostInfo)}
+     */
+    private final SparseArray<HostConnection> httpHostConnections = new SparseArray<>();
+
     /**
      * Singleton constructor
      * @param context Context (can pass Activity context, will get App Context)
@@ -210,12 +230,81 @@ public class HostManager {
             currentHostInfo = getHostInfo();
 
             if (currentHostInfo != null) {
-                currentHostConnection = new HostConnection(currentHostInfo);
+                currentHostConnection = getConnection(currentHostInfo);
+                currentLibraryNotificationsObserver =
+                        new LibraryNotificationsObserver(context, currentHostInfo, currentHostConnection);
+                currentLibraryNotificationsObserver.startObserving();
             }
         }
 		return currentHostConnection;
 	}
 
+    /**
+     * Cancels the calls on the current connection whose callbacks would be posted to a handler,
+     * if there's a connection. See {@link HostConnection#cancel(Handler)}
+     * @param handler {@link Handler} the calls were executed with
+     */
+    public void cancelRequests(Handler handler) {
+        if (currentHostConnection != null) {
+            currentHostConnection.cancel(handler);
+        }
+    }
+
+    /**
+     * Returns a connection to a host, which is kept open and shared with everyone else that
+     * asks for it.
+     * The first time a host is asked for the connection is opened in the background, and from
+     * then on it reconnects by itself if the connection is lost. Don't call
+     * {@link HostConnection#disconnect()} or {@link HostConnection#setProtocol(int)} on it.
+     * Hosts that aren't saved yet get a new connection each time, which the caller owns
+     * @param hostInfo Host
+     * @return Connection to the host, using its configured protocol
+     */
+    public synchronized HostConnection getConnection(HostInfo hostInfo) {
+        if (hostInfo.getId() < 0)
+            return new HostConnection(hostInfo);
+
+        HostConnection hostConnection = hostConnections.get(hostInfo.getId());
+        if (hostConnection == null) {
+            hostConnection = new HostConnection(hostInfo);
+            hostConnection.setAutoReconnect(true);
+            hostConnection.connect();
+            hostConnections.put(hostInfo.getId(), hostConnection);
+        }
+        return hostConnection;
+    }
+
+    /**
+     * Same as {@link #getConnection(HostInfo)}, but for calls that must go through HTTP,
+     * whatever the protocol configured for the host
+     * @param hostInfo Host
+     * @return HTTP connection to the host
+     */
+    public synchronized HostConnection getHttpConnection(HostInfo hostInfo) {
+        HostConnection hostConnection = (hostInfo.getId() < 0) ? null : httpHostConnections.get(hostInfo.getId());
+        if (hostConnection == null) {
+            hostConnection = new HostConnection(hostInfo);
+            hostConnection.setProtocol(HostConnection.PROTOCOL_HTTP);
+            if (hostInfo.getId() >= 0)
+                httpHostConnections.put(hostInfo.getId(), hostConnection);
+        }
+        return hostConnection;
+    }
+
+    /**
+     * Closes and forgets the connections to a host, so that they are reopened with the
+     * current host details the next time they're needed
+     * @param hostId Host id
+     */
+    private synchronized void releaseConnections(int hostId) {
+        HostConnection hostConnection = hostConnections.get(hostId);
+        if (hostConnection != null) {
+            hostConnection.disconnect();
+            hostConnections.remove(hostId);
+        }
+        httpHostConnections.remove(hostId);
+    }
+
     /**
      * Returns the current host {@link Picasso} image downloader
      * @return {@link Picasso} instance suitable to download images from the current xbmc
@@ -230,7 +319,8 @@ public class HostManager {
 //                        .indicatorsEnabled(BuildConfig.DEBUG)
 //                        .build();
 
-                // Http client should already handle authentication
+                // Http client should already handle authentication, and shares the connection
+                // pool, so images are loaded through the same keep-alive connections
                 OkHttpClient picassoClient = getConnection().getOkHttpClient().clone();
 
 //                OkHttpClient picassoClient = new OkHttpClient();
@@ -255,8 +345,12 @@ public class HostManager {
                 long cacheSize = NetUtils.calculateDiskCacheSize(cacheDir);
                 picassoClient.setCache(new com.squareup.okhttp.Cache(cacheDir,cacheSize));
 
+                // Kodi artwork goes through its own disk cache, which stores it already
+                // downsampled, so use a client without the http cache to not store the originals
                 currentPicasso = new Picasso.Builder(context)
                         .downloader(new OkHttpDownloader(picassoClient))
+                        .addRequestHandler(new ArtworkRequestHandler(
+                                context, getConnection().getOkHttpClient()))
 //                        .indicatorsEnabled(BuildConfig.DEBUG)
                         .build();
             }
@@ -413,6 +507,14 @@ public class HostManager {
         context.getContentResolver()
                .update(MediaContract.Hosts.buildHostUri(hostId), values, null, null);
 
+        // Open connections use the old details, drop them if they changed
+        for (HostInfo host : hosts) {
+            if ((host.getId() == hostId) && !host.hasSameConnectionDetails(newHostInfo)) {
+                releaseConnections(hostId);
+                break;
+            }
+        }
+
         // Refresh the list and return the created host
         hosts = getHosts(true);
         HostInfo newHost = null;
@@ -457,10 +559,12 @@ public class HostManager {
             if (!hosts.isEmpty())
                 switchHost(hosts.get(0));
         }
+        releaseConnections(hostId);
 	}
 
     /**
-     * Releases all state related to the current connection
+     * Releases all state related to the current connection.
+     * The connection itself is kept open, see {@link #getConnection(HostInfo)}
      */
     private void releaseCurrentHost() {
         if (currentHostConnectionObserver != null) {
@@ -468,8 +572,14 @@ public class HostManager {
             currentHostConnectionObserver = null;
         }
 
+        if (currentLibraryNotificationsObserver != null) {
+            currentLibraryNotificationsObserver.stopObserving();
+            currentLibraryNotificationsObserver = null;
+        }
+
         if (currentHostConnection != null) {
-            currentHostConnection.disconnect();
+            LogUtils.LOGD(TAG, "Releasing current connection. Stats: " + currentHostConnection.getStats() +
+                               ". HTTP pool connections: " + HostConnection.getHttpConnectionPool().getConnectionCount());
             currentHostConnection = null;
         }
 
@@ -497,7 +607,7 @@ public class HostManager {
 
         if (hostInfo.getUpdated() + KODI_VERSION_CHECK_INTERVAL_MILLIS < java.lang.System.currentTimeMillis()) {
             LogUtils.LOGD(TAG, "Checking Kodi version...");
-            final HostConnection hostConnection = new HostConnection(hostInfo);
+            final HostConnection hostConnection = getConnection(hostInfo);
             final Application.GetProperties getProperties = new Application.GetProperties(Application.GetProperties.VERSION);
             getProperties.execute(hostConnection, new ApiCallback<ApplicationType.PropertyValue>() {
                 @Override
@@ -509,15 +619,12 @@ public class HostManager {
                     hostInfo.setKodiVersionTag(result.version.tag);
 
                     editHost(hostInfo.getId(), hostInfo);
-
-                    hostConnection.disconnect();
                 }
 
                 @Override
                 public void onError(int errorCode, String description) {
                     // Couldn't get Kodi version... Ignore
                     LogUtils.LOGD(TAG, "Couldn't get Kodi version. Error: " + description);
-                    hostConnection.disconnect();
                 }
             }, new Handler());
         }
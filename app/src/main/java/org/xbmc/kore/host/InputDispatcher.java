@@ -0,0 +1,233 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbmc.kore.host;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import org.xbmc.kore.jsonrpc.ApiBatch;
+import org.xbmc.kore.jsonrpc.ApiCallback;
+import org.xbmc.kore.jsonrpc.method.Input;
+import org.xbmc.kore.utils.LogUtils;
+
+/**
+ * Sends navigation presses to the host through JSON-RPC, keeping up with key repeats.
+ *
+ * Each press is sent as a new {@link Input.ExecuteAction}, so repeats never share an id, and
+ * at most {@link #MAX_IN_FLIGHT} requests are waiting for the host. Presses made while the
+ * limit is reached are queued and sent together, in one batch, when a request is acknowledged.
+ * The queue is short and presses that waited too long are dropped, so that a slow host doesn't
+ * keep moving after the key is released, and pressing a different action drops the queued ones.
+ *
+ * NOTE: An object of this class should always be called from the same thread, the one of the
+ * handler passed to the constructor.
+ */
+public class InputDispatcher {
+    private static final String TAG = LogUtils.makeLogTag(InputDispatcher.class);
+
+    /**
+     * Maximum number of requests sent and not yet acknowledged
+     */
+    private static final int MAX_IN_FLIGHT = 2;
+
+    /**
+     * Maximum number of queued presses. Further presses are dropped
+     */
+    private static final int MAX_PENDING = 3;
+
+    /**
+     * Time after which queued presses are considered stale and dropped, in ms
+     */
+    private static final int STALE_TIMEOUT = 1000;
+
+    /**
+     * Weight of each new latency measure on the average
+     */
+    private static final double LATENCY_SMOOTHING_FACTOR = 0.125;
+
+    private final HostManager hostManager;
+    private final Handler callbackHandler;
+
+    private int inFlight = 0;
+    private String pendingAction = null;
+    private int pendingCount = 0;
+    private long pendingSince = 0;
+
+    private long lastLatency = -1;
+    private long averageLatency = -1;
+    private int droppedCount = 0;
+
+    /**
+     * Constructor
+     * @param hostManager Host manager, to get the current connection
+     * @param callbackHandler Handler on which to process the responses
+     */
+    public InputDispatcher(HostManager hostManager, Handler callbackHandler) {
+        this.hostManager = hostManager;
+        this.callbackHandler = callbackHandler;
+    }
+
+    /**
+     * Sends a press of an action, or queues it if there are too many requests in flight
+     * @param action Action to execute, one of the constants in {@link Input.ExecuteAction}
+     */
+    public void press(String action) {
+        long now = SystemClock.elapsedRealtime();
+        if (!action.equals(pendingAction) && (pendingCount > 0)) {
+            // Changed direction, the queued presses are no longer wanted
+            dropPending();
+        }
+
+        if (inFlight < MAX_IN_FLIGHT) {
+            send(action, 1, now);
+            return;
+        }
+
+        if (pendingCount == 0) {
+            pendingAction = action;
+            pendingSince = now;
+        }
+        if (pendingCount < MAX_PENDING) {
+            pendingCount++;
+        } else {
+            droppedCount++;
+        }
+    }
+
+    /**
+     * Drops the queued presses. Call when the key is released
+     */
+    public void cancelPending() {
+        if (pendingCount > 0) {
+            dropPending();
+        }
+    }
+
+    /**
+     * Returns the time between the last press and its acknowledgement
+     * @return Latency in ms, -1 if there's no measure yet
+     */
+    public long getLastLatency() {
+        return lastLatency;
+    }
+
+    /**
+     * Returns the smoothed average time between presses and their acknowledgement
+     * @return Latency in ms, -1 if there's no measure yet
+     */
+    public long getAverageLatency() {
+        return averageLatency;
+    }
+
+    /**
+     * Returns the number of presses that were dropped, because the queue was full or stale
+     * @return Number of dropped presses
+     */
+    public int getDroppedCount() {
+        return droppedCount;
+    }
+
+    private void dropPending() {
+        droppedCount += pendingCount;
+        pendingCount = 0;
+        pendingAction = null;
+    }
+
+    private void sendPending() {
+        if ((pendingCount == 0) || (inFlight >= MAX_IN_FLIGHT))
+            return;
+
+        if (SystemClock.elapsedRealtime() - pendingSince > STALE_TIMEOUT) {
+            LogUtils.LOGD(TAG, "Dropping " + pendingCount + " stale presses");
+            dropPending();
+            return;
+        }
+
+        String action = pendingAction;
+        int count = pendingCount;
+        long pressTime = pendingSince;
+        pendingAction = null;
+        pendingCount = 0;
+        send(action, count, pressTime);
+    }
+
+    /**
+     * Sends presses of an action, in a single request
+     * @param action Action
+     * @param count Number of presses
+     * @param pressTime Time of the first press, to measure latency
+     */
+    private void send(String action, int count, long pressTime) {
+        inFlight++;
+        Acknowledgement acknowledgement = new Acknowledgement(count, pressTime);
+        if (count == 1) {
+            new Input.ExecuteAction(action)
+                    .execute(hostManager.getConnection(), acknowledgement, callbackHandler);
+        } else {
+            ApiBatch batch = new ApiBatch();
+            for (int i = 0; i < count; i++) {
+                batch.add(new Input.ExecuteAction(action), acknowledgement);
+            }
+            batch.execute(hostManager.getConnection(), callbackHandler);
+        }
+    }
+
+    private void onAcknowledged(long pressTime) {
+        inFlight--;
+        lastLatency = SystemClock.elapsedRealtime() - pressTime;
+        averageLatency = (averageLatency == -1) ?
+                lastLatency :
+                Math.round(averageLatency + LATENCY_SMOOTHING_FACTOR * (lastLatency - averageLatency));
+        sendPending();
+    }
+
+    /**
+     * Callback for the presses sent in one request, that frees the slot once all of them
+     * are answered
+     */
+    private class Acknowledgement implements ApiCallback<String> {
+        private int remaining;
+        private final long pressTime;
+        private boolean failed = false;
+
+        Acknowledgement(int count, long pressTime) {
+            this.remaining = count;
+            this.pressTime = pressTime;
+        }
+
+        @Override
+        public void onSuccess(String result) {
+            if (--remaining == 0) {
+                if (failed) {
+                    inFlight--;
+                    sendPending();
+                } else {
+                    onAcknowledged(pressTime);
+                }
+            }
+        }
+
+        @Override
+        public void onError(int errorCode, String description) {
+            LogUtils.LOGD(TAG, "Got an error sending input: " + description);
+            failed = true;
+            if (--remaining == 0) {
+                inFlight--;
+                sendPending();
+            }
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbmc.kore.host;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import org.xbmc.kore.jsonrpc.type.GlobalType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Playback position of the active player on a host, interpolated between updates.
+ *
+ * The clock is anchored to the last time reported by the host and the monotonic clock at which
+ * it was received, so the position is computed as anchor + elapsed time * speed, and doesn't
+ * drift no matter how often it is read. It's owned by {@link HostConnectionObserver}, which
+ * re-anchors it on seeks and speed changes, and listeners are notified each time the position
+ * crosses a whole second.
+ *
+ * NOTE: An object of this class should always be called from the same thread.
+ */
+public class PlaybackClock {
+
+    /**
+     * Interface to be notified about position changes
+     */
+    public interface OnTickListener {
+        /**
+         * Called when the position changes to a new second, or the clock is re-anchored
+         * @param time Current position, in seconds
+         * @param totalTime Duration of the item playing, in seconds
+         */
+        void onPlaybackTick(int time, int totalTime);
+    }
+
+    /**
+     * Difference between the reported and interpolated position, in ms, above which the clock
+     * is re-anchored on {@link #update}
+     */
+    private static final int DRIFT_TOLERANCE = 1500;
+
+    private final Handler handler;
+    private final List<OnTickListener> listeners = new ArrayList<>();
+
+    private long anchorTime = 0;
+    private long anchorRealtime = 0;
+    private long totalTime = 0;
+    private int speed = 0;
+
+    private Runnable tickRunnable = new Runnable() {
+        @Override
+        public void run() {
+            notifyListeners();
+            scheduleTick();
+        }
+    };
+
+    public PlaybackClock(Handler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Anchors the clock to a position reported by the host
+     * @param time Position
+     * @param totalTime Duration of the item playing
+     * @param speed Playback speed, 0 if paused
+     */
+    public void anchor(GlobalType.Time time, GlobalType.Time totalTime, int speed) {
+        this.anchorTime = toMillis(time);
+        this.anchorRealtime = SystemClock.elapsedRealtime();
+        this.totalTime = toMillis(totalTime);
+        this.speed = speed;
+
+        handler.removeCallbacks(tickRunnable);
+        notifyListeners();
+        scheduleTick();
+    }
+
+    /**
+     * Anchors the clock only if the position reported differs from the interpolated one, or the
+     * speed or duration changed. Use this for periodic checks, which are less precise than
+     * notifications
+     * @param time Position
+     * @param totalTime Duration of the item playing
+     * @param speed Playback speed, 0 if paused
+     */
+    public void update(GlobalType.Time time, GlobalType.Time totalTime, int speed) {
+        if ((speed != this.speed) ||
+            (toMillis(totalTime) != this.totalTime) ||
+            (Math.abs(toMillis(time) - getTimeMillis()) > DRIFT_TOLERANCE)) {
+            anchor(time, totalTime, speed);
+        }
+    }
+
+    /**
+     * Moves the clock to a new position, keeping the speed. Used when seeking, before the host
+     * confirms it
+     * @param time New position, in seconds
+     */
+    public void seekTo(int time) {
+        anchorTime = Math.min(time * 1000L, totalTime);
+        anchorRealtime = SystemClock.elapsedRealtime();
+
+        handler.removeCallbacks(tickRunnable);
+        notifyListeners();
+        scheduleTick();
+    }
+
+    /**
+     * Stops the clock, when nothing is playing
+     */
+    public void stop() {
+        if (speed != 0) {
+            anchorTime = getTimeMillis();
+            anchorRealtime = SystemClock.elapsedRealtime();
+            speed = 0;
+        }
+        handler.removeCallbacks(tickRunnable);
+    }
+
+    /**
+     * Returns the current position
+     * @return Position in ms
+     */
+    public long getTimeMillis() {
+        long time = anchorTime + (SystemClock.elapsedRealtime() - anchorRealtime) * speed;
+        if (time < 0) return 0;
+        if ((totalTime > 0) && (time > totalTime)) return totalTime;
+        return time;
+    }
+
+    /**
+     * Returns the current position
+     * @return Position in seconds
+     */
+    public int getTime() {
+        return (int)(getTimeMillis() / 1000);
+    }
+
+    /**
+     * Returns the duration of the item playing
+     * @return Duration in seconds
+     */
+    public int getTotalTime() {
+        return (int)(totalTime / 1000);
+    }
+
+    /**
+     * Returns the speed the clock is running at
+     * @return Playback speed, 0 if paused or stopped
+     */
+    public int getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Adds a listener, which is immediately called with the current position
+     * @param listener Listener
+     */
+    public void addListener(OnTickListener listener) {
+        if (listeners.contains(listener))
+            return;
+
+        listeners.add(listener);
+        listener.onPlaybackTick(getTime(), getTotalTime());
+        if (listeners.size() == 1) {
+            scheduleTick();
+        }
+    }
+
+    /**
+     * Removes a listener. The clock stops ticking when there are no listeners
+     * @param listener Listener
+     */
+    public void removeListener(OnTickListener listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty()) {
+            handler.removeCallbacks(tickRunnable);
+        }
+    }
+
+    private void notifyListeners() {
+        int time = getTime(), total = getTotalTime();
+        // Copy list to prevent ConcurrentModificationExceptions
+        List<OnTickListener> allListeners = new ArrayList<>(listeners);
+        for (OnTickListener listener : allListeners) {
+            listener.onPlaybackTick(time, total);
+        }
+    }
+
+    /**
+     * Schedules the next tick to when the position crosses to the next second
+     */
+    private void scheduleTick() {
+        handler.removeCallbacks(tickRunnable);
+        if (listeners.isEmpty() || (speed == 0))
+            return;
+
+        long time = getTimeMillis();
+        if (((speed > 0) && (totalTime > 0) && (time >= totalTime)) ||
+            ((speed < 0) && (time <= 0)))
+            return;
+
+        long untilNextSecond = (speed > 0) ? 1000 - (time % 1000) : (time % 1000) + 1;
+        handler.postDelayed(tickRunnable, Math.max(untilNextSecond / Math.abs(speed), 1));
+    }
+
+    private static long toMillis(GlobalType.Time time) {
+        if (time == null) return 0;
+        return time.ToSeconds() * 1000L + time.milliseconds;
+    }
+}
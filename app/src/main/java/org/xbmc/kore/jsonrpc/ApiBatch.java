@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbmc.kore.jsonrpc;
+
+import android.os.Handler;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A JSON RPC batch request.
+ *
+ * Bundles several {@link ApiMethod}s so that they are sent to the host in a single request
+ * (one HTTP POST or one TCP write). Each response is matched by id and posted to the
+ * {@link ApiCallback} that was added with its method, so a batch behaves like executing each
+ * method on its own, only with one round trip.
+ *
+ * Note: The methods in a batch are independent, the host doesn't guarantee the order in which
+ * they're executed, and the result of one can't be used as a parameter of another.
+ * Methods created without an id don't get a response, so their callbacks won't be called.
+ */
+public class ApiBatch {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Aggregates a method and the callback to post its result to
+     * @param <T> Method return type
+     */
+    static class Entry<T> {
+        final ApiMethod<T> method;
+        final ApiCallback<T> callback;
+
+        Entry(ApiMethod<T> method, ApiCallback<T> callback) {
+            this.method = method;
+            this.callback = callback;
+        }
+    }
+
+    private final List<Entry<?>> entries = new ArrayList<>();
+
+    /**
+     * Adds a method to this batch
+     * @param method Method to call
+     * @param callback Callback to post the method's response to
+     * @param <T> Method return type
+     * @return This batch, to allow chaining calls
+     */
+    public <T> ApiBatch add(ApiMethod<T> method, ApiCallback<T> callback) {
+        entries.add(new Entry<>(method, callback));
+        return this;
+    }
+
+    /**
+     * Returns the number of methods in this batch
+     * @return Number of methods
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    List<Entry<?>> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Returns the string json representation of this batch, a json array with every method
+     * @return Json string representation of the batch
+     */
+    public String toJsonString() {
+        ArrayNode jsonRequest = objectMapper.createArrayNode();
+        for (Entry<?> entry : entries) {
+            jsonRequest.add(entry.method.toJsonObject());
+        }
+        return jsonRequest.toString();
+    }
+
+    /**
+     * Calls the methods in this batch on the server.
+     * This call is always asynchronous. The results will be posted, through each method's
+     * callback, on the specified handler.
+     *
+     * @param hostConnection Host connection on which to call the methods
+     * @param handler Handler to invoke callbacks on
+     */
+    public void execute(HostConnection hostConnection, Handler handler) {
+        if (hostConnection != null) {
+            hostConnection.execute(this, handler);
+        } else {
+            for (Entry<?> entry : entries) {
+                if (entry.callback != null)
+                    entry.callback.onError(ApiException.API_NO_CONNECTION, "No connection specified.");
+            }
+        }
+    }
+}
@@ -75,6 +75,11 @@ public class ApiException extends Exception {
      */
     public static int API_METHOD_WITH_SAME_ID_ALREADY_EXECUTING = 102;
 
+    /**
+     * Attempted to execute a method while too many others are waiting to be sent
+     */
+    public static int API_TOO_MANY_PENDING_REQUESTS = 103;
+
     private int code;
 
 	/**
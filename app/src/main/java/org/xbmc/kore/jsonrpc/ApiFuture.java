@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbmc.kore.jsonrpc;
+
+import android.os.Handler;
+
+import com.squareup.okhttp.Call;
+
+/**
+ * Handle to a call of an {@link ApiMethod}, returned by
+ * {@link ApiMethod#execute(HostConnection, ApiCallback, Handler)}, that allows cancelling it.
+ *
+ * Once cancelled, the callback isn't called anymore: a HTTP request still waiting to be sent is
+ * skipped and one in flight is aborted, and a TCP response is dropped without being parsed.
+ * All methods are thread safe.
+ */
+public class ApiFuture<T> {
+
+    private final HostConnection hostConnection;
+    private final ApiMethod<T> method;
+    private final Handler handler;
+
+    private volatile boolean cancelled = false;
+    private volatile boolean done = false;
+
+    /**
+     * HTTP call in flight, if any. Guarded by this
+     */
+    private Call httpCall = null;
+
+    ApiFuture(HostConnection hostConnection, ApiMethod<T> method, Handler handler) {
+        this.hostConnection = hostConnection;
+        this.method = method;
+        this.handler = handler;
+    }
+
+    /**
+     * Cancels the call. If it's already finished but its callback wasn't run yet, the callback
+     * is skipped
+     */
+    public void cancel() {
+        Call call;
+        synchronized (this) {
+            if (cancelled)
+                return;
+            cancelled = true;
+            call = httpCall;
+        }
+        if (call != null) {
+            call.cancel();
+        }
+        if (hostConnection != null) {
+            hostConnection.onCancelled(this);
+        }
+    }
+
+    /**
+     * Returns whether the call was cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Returns whether the call is finished, meaning its result or error was posted to the
+     * callback handler, or it was cancelled
+     */
+    public boolean isDone() {
+        return done || cancelled;
+    }
+
+    ApiMethod<T> getMethod() {
+        return method;
+    }
+
+    Handler getHandler() {
+        return handler;
+    }
+
+    /**
+     * Sets the HTTP call that is sending the request, to abort it if cancelled.
+     * If the call was already cancelled, the HTTP call is cancelled right away
+     */
+    void setHttpCall(Call call) {
+        synchronized (this) {
+            if (!cancelled) {
+                httpCall = call;
+                return;
+            }
+        }
+        call.cancel();
+    }
+
+    void setDone() {
+        done = true;
+    }
+}
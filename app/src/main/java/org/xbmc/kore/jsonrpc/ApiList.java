@@ -16,11 +16,19 @@
 
 package org.xbmc.kore.jsonrpc;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+
 import org.xbmc.kore.jsonrpc.type.ListType;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 public class ApiList<T> {
+    public static final String LIMITS_NODE = "limits";
+
     public final List<T> items;
     public final ListType.LimitsReturned limits;
 
@@ -28,4 +36,51 @@ public class ApiList<T> {
         this.items = items;
         this.limits = limits;
     }
+
+    /**
+     * Creates a list item from its json node
+     * @param <T> Item type
+     */
+    public interface ItemFactory<T> {
+        T fromJson(JsonNode node);
+    }
+
+    /**
+     * Reads a list result straight from a parser, creating each item as soon as it is read, so
+     * that only one item's json tree is in memory at any time.
+     * @param parser Parser positioned on the start of the result object. After returning it is
+     *               positioned on its end
+     * @param listNode Name of the node that holds the items
+     * @param itemFactory Factory that creates an item from its json node
+     * @return List with the items and the returned limits
+     * @throws IOException
+     */
+    public static <T> ApiList<T> fromJsonParser(JsonParser parser, String listNode,
+                                                ItemFactory<T> itemFactory) throws IOException {
+        ArrayList<T> items = new ArrayList<>();
+        JsonNode limitsNode = null;
+
+        if (parser.getCurrentToken() == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+
+                if (listNode.equals(fieldName) && (token == JsonToken.START_ARRAY)) {
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        JsonNode item = parser.readValueAsTree();
+                        items.add(itemFactory.fromJson(item));
+                    }
+                } else if (LIMITS_NODE.equals(fieldName)) {
+                    limitsNode = parser.readValueAsTree();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } else {
+            parser.skipChildren();
+        }
+
+        items.trimToSize();
+        return new ApiList<>(items, new ListType.LimitsReturned(limitsNode));
+    }
 }
@@ -18,6 +18,7 @@ package org.xbmc.kore.jsonrpc;
 
 import android.os.Handler;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -231,10 +232,33 @@ public abstract class ApiMethod<T> {
 	 * @param hostConnection Host connection on which to call the method
 	 * @param callback Callbacks to post the response to
 	 * @param handler Handler to invoke callbacks on
+	 * @return {@link ApiFuture} to cancel the call
 	 */
-	public void execute(HostConnection hostConnection, ApiCallback<T> callback, Handler handler) {
+	public ApiFuture<T> execute(HostConnection hostConnection, ApiCallback<T> callback, Handler handler) {
         if (hostConnection != null) {
-            hostConnection.execute(this, callback, handler);
+            return hostConnection.execute(this, callback, handler);
+        } else {
+            callback.onError(ApiException.API_NO_CONNECTION, "No connection specified.");
+            ApiFuture<T> future = new ApiFuture<>(null, this, handler);
+            future.setDone();
+            return future;
+        }
+	}
+
+	/**
+	 * Calls the method represented by this object on the server, as the value of a continuous
+	 * control, replacing the previous call of the control that wasn't sent yet.
+	 * See {@link HostConnection#executeLatest(String, ApiMethod, ApiCallback, Handler)}
+	 *
+	 * @param hostConnection Host connection on which to call the method
+	 * @param control Control the method sets, such as {@link HostConnection#CONTROL_VOLUME}
+	 * @param callback Callbacks to post the response to
+	 * @param handler Handler to invoke callbacks on
+	 */
+	public void executeLatest(HostConnection hostConnection, String control,
+							  ApiCallback<T> callback, Handler handler) {
+        if (hostConnection != null) {
+            hostConnection.executeLatest(control, this, callback, handler);
         } else {
             callback.onError(ApiException.API_NO_CONNECTION, "No connection specified.");
         }
@@ -274,6 +298,26 @@ public abstract class ApiMethod<T> {
 	 */
 	public abstract T resultFromJson(ObjectNode jsonObject) throws ApiException;
 
+	/**
+	 * Constructs an object of this method's return type straight from the response stream.
+	 * The parser is positioned on the first token of the result node value, and on return it
+	 * must be positioned on the last token of that value.
+	 *
+	 * By default the result node is read into a tree and passed to
+	 * {@link #resultFromJson(ObjectNode)}. Methods that return large lists should override this
+	 * to create each item as it is read (see {@link ApiList#fromJsonParser}), so that the
+	 * whole response is never in memory at once.
+	 *
+	 * @param parser Json parser on the result node
+	 * @return Result object of the appropriate type for this api method
+	 */
+	public T resultFromJsonParser(JsonParser parser) throws ApiException, IOException {
+		JsonNode resultNode = objectMapper.readTree(parser);
+		ObjectNode jsonObject = objectMapper.createObjectNode();
+		jsonObject.set(RESULT_NODE, resultNode);
+		return resultFromJson(jsonObject);
+	}
+
     /**
      * Default callback for methods which the result doesnt matter
      */
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbmc.kore.jsonrpc;
+
+/**
+ * Health counters of a {@link HostConnection}: request latency, errors and how often the TCP
+ * connection was lost and reopened.
+ *
+ * Latencies are in ms, measured from the moment a request is handed to the connection until its
+ * response is read, and -1 if there's no measure yet.
+ * All methods are thread safe.
+ */
+public class ConnectionStats {
+
+    private long responseCount = 0;
+    private long errorCount = 0;
+    private long connectCount = 0;
+    private long connectionLostCount = 0;
+    private long compressedResponseCount = 0;
+    private long coalescedCount = 0;
+    private long cacheHitCount = 0;
+    private long supersededCount = 0;
+
+    private long lastLatency = -1;
+    private long averageLatency = -1;
+    private long lastConnectTime = -1;
+
+    /**
+     * Time requests waited in the {@link RequestScheduler} before running, per priority class
+     */
+    private final long[] queueWaitCount = new long[RequestScheduler.PRIORITY_COUNT];
+    private final long[] averageQueueWait = {-1, -1, -1};
+    private final long[] maxQueueWait = {-1, -1, -1};
+
+    /**
+     * Weight of each new latency measure on the average, as in TCP's smoothed round trip time
+     */
+    private static final double LATENCY_SMOOTHING_FACTOR = 0.125;
+
+    synchronized void onResponse(long latency) {
+        responseCount++;
+        lastLatency = latency;
+        averageLatency = (averageLatency == -1) ?
+                latency :
+                Math.round(averageLatency + LATENCY_SMOOTHING_FACTOR * (latency - averageLatency));
+    }
+
+    synchronized void onQueueWait(int priority, long wait) {
+        queueWaitCount[priority]++;
+        averageQueueWait[priority] = (averageQueueWait[priority] == -1) ?
+                wait :
+                Math.round(averageQueueWait[priority] +
+                           LATENCY_SMOOTHING_FACTOR * (wait - averageQueueWait[priority]));
+        maxQueueWait[priority] = Math.max(maxQueueWait[priority], wait);
+    }
+
+    synchronized void onError() {
+        errorCount++;
+    }
+
+    synchronized void onCompressedResponse() {
+        compressedResponseCount++;
+    }
+
+    synchronized void onCoalesced() {
+        coalescedCount++;
+    }
+
+    synchronized void onCacheHit() {
+        cacheHitCount++;
+    }
+
+    synchronized void onSuperseded() {
+        supersededCount++;
+    }
+
+    synchronized void onConnected(long connectTime) {
+        connectCount++;
+        lastConnectTime = connectTime;
+    }
+
+    synchronized void onConnectionLost() {
+        connectionLostCount++;
+    }
+
+    /**
+     * Returns the number of successful responses
+     */
+    public synchronized long getResponseCount() {
+        return responseCount;
+    }
+
+    /**
+     * Returns the number of requests that failed, either with an error from the host or while
+     * communicating with it
+     */
+    public synchronized long getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * Returns the number of HTTP responses that the host sent gzipped
+     */
+    public synchronized long getCompressedResponseCount() {
+        return compressedResponseCount;
+    }
+
+    /**
+     * Returns the number of calls that got the response of an identical call in flight, instead
+     * of being sent to the host
+     */
+    public synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * Returns the number of calls answered with a recently kept result
+     */
+    public synchronized long getCacheHitCount() {
+        return cacheHitCount;
+    }
+
+    /**
+     * Returns the number of continuous control calls that were replaced by a newer one before
+     * being sent
+     */
+    public synchronized long getSupersededCount() {
+        return supersededCount;
+    }
+
+    /**
+     * Returns the number of times the TCP connection was opened
+     */
+    public synchronized long getConnectCount() {
+        return connectCount;
+    }
+
+    /**
+     * Returns the number of times the TCP connection was lost
+     */
+    public synchronized long getConnectionLostCount() {
+        return connectionLostCount;
+    }
+
+    /**
+     * Returns the latency of the last successful response
+     */
+    public synchronized long getLastLatency() {
+        return lastLatency;
+    }
+
+    /**
+     * Returns the smoothed average latency of successful responses
+     */
+    public synchronized long getAverageLatency() {
+        return averageLatency;
+    }
+
+    /**
+     * Returns the time it took to open the TCP connection the last time
+     */
+    public synchronized long getLastConnectTime() {
+        return lastConnectTime;
+    }
+
+    /**
+     * Returns the number of requests of a priority class that went through the
+     * {@link RequestScheduler} (HTTP only)
+     * @param priority One of the {@link RequestScheduler} priority classes
+     */
+    public synchronized long getQueueWaitCount(int priority) {
+        return queueWaitCount[priority];
+    }
+
+    /**
+     * Returns the smoothed average time requests of a priority class waited to be sent
+     * @param priority One of the {@link RequestScheduler} priority classes
+     */
+    public synchronized long getAverageQueueWait(int priority) {
+        return averageQueueWait[priority];
+    }
+
+    /**
+     * Returns the longest time a request of a priority class waited to be sent
+     * @param priority One of the {@link RequestScheduler} priority classes
+     */
+    public synchronized long getMaxQueueWait(int priority) {
+        return maxQueueWait[priority];
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "responses: " + responseCount + " (" + compressedResponseCount + " gzipped)" +
+               ", coalesced: " + coalescedCount + ", cache hits: " + cacheHitCount +
+               ", superseded: " + supersededCount +
+               ", errors: " + errorCount +
+               ", latency: " + lastLatency + "ms (avg " + averageLatency + "ms)" +
+               ", connects: " + connectCount + " (last " + lastConnectTime + "ms)" +
+               ", connections lost: " + connectionLostCount +
+               ", queue wait: interactive " + averageQueueWait[RequestScheduler.PRIORITY_INTERACTIVE] +
+               "ms (max " + maxQueueWait[RequestScheduler.PRIORITY_INTERACTIVE] + "ms)" +
+               ", normal " + averageQueueWait[RequestScheduler.PRIORITY_NORMAL] +
+               "ms (max " + maxQueueWait[RequestScheduler.PRIORITY_NORMAL] + "ms)" +
+               ", background " + averageQueueWait[RequestScheduler.PRIORITY_BACKGROUND] +
+               "ms (max " + maxQueueWait[RequestScheduler.PRIORITY_BACKGROUND] + "ms)";
+    }
+}
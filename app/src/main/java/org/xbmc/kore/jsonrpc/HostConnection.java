@@ -17,37 +17,60 @@ package org.xbmc.kore.jsonrpc;
 
 import android.os.Handler;
 import android.os.Process;
+import android.os.SystemClock;
 import android.text.TextUtils;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.squareup.okhttp.Authenticator;
+import com.squareup.okhttp.Call;
+import com.squareup.okhttp.ConnectionPool;
 import com.squareup.okhttp.Credentials;
 import com.squareup.okhttp.MediaType;
 import com.squareup.okhttp.OkHttpClient;
 import com.squareup.okhttp.Request;
 import com.squareup.okhttp.RequestBody;
 import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
 
 import org.xbmc.kore.host.HostInfo;
+import org.xbmc.kore.jsonrpc.method.JSONRPC;
 import org.xbmc.kore.jsonrpc.notification.Application;
+import org.xbmc.kore.jsonrpc.notification.AudioLibrary;
 import org.xbmc.kore.jsonrpc.notification.Input;
 import org.xbmc.kore.jsonrpc.notification.Player;
 import org.xbmc.kore.jsonrpc.notification.System;
+import org.xbmc.kore.jsonrpc.notification.VideoLibrary;
 import org.xbmc.kore.utils.LogUtils;
 
 import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.InetSocketAddress;
 import java.net.ProtocolException;
 import java.net.Proxy;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.concurrent.ExecutorService;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -65,6 +88,12 @@ public class HostConnection {
 	 */
 	public static final int PROTOCOL_HTTP = 1;
 
+    /**
+     * Continuous controls, whose calls are sent with {@link #executeLatest}
+     */
+    public static final String CONTROL_VOLUME = "volume";
+    public static final String CONTROL_SEEK = "seek";
+
     /**
      * Interface that an observer must implement to be notified of player notifications
      */
@@ -97,6 +126,26 @@ public class HostConnection {
         public void onVolumeChanged(Application.OnVolumeChanged notification);
     }
 
+    /**
+     * Interface that an observer must implement to be notified of VideoLibrary notifications
+     */
+    public interface VideoLibraryNotificationsObserver {
+        public void onUpdate(VideoLibrary.OnUpdate notification);
+        public void onRemove(VideoLibrary.OnRemove notification);
+        public void onScanFinished(VideoLibrary.OnScanFinished notification);
+        public void onCleanFinished(VideoLibrary.OnCleanFinished notification);
+    }
+
+    /**
+     * Interface that an observer must implement to be notified of AudioLibrary notifications
+     */
+    public interface AudioLibraryNotificationsObserver {
+        public void onUpdate(AudioLibrary.OnUpdate notification);
+        public void onRemove(AudioLibrary.OnRemove notification);
+        public void onScanFinished(AudioLibrary.OnScanFinished notification);
+        public void onCleanFinished(AudioLibrary.OnCleanFinished notification);
+    }
+
     /**
 	 * Host to connect too
 	 */
@@ -119,12 +168,29 @@ public class HostConnection {
 	 * Listener {@link Thread} that will be listening on the TCP socket
 	 */
 	private Thread listenerThread = null;
+    /**
+     * Writer {@link Thread} that drains {@link #tcpSendQueue} into the TCP socket
+     */
+    private Thread writerThread = null;
+    /**
+     * Whether a TCP connection is currently being opened. Guarded by {@link #tcpConnectionLock}
+     */
+    private boolean tcpConnecting = false;
+    private final Object tcpConnectionLock = new Object();
+
+    /**
+     * Requests waiting to be written to the TCP socket. Bounded, so that a burst of calls on a
+     * stalled connection fails fast instead of piling up (TCP only)
+     */
+    private final BlockingQueue<String> tcpSendQueue =
+            new ArrayBlockingQueue<>(TCP_MAX_PENDING_REQUESTS);
 
 	/**
-	 * {@link java.util.HashMap} that will hold the {@link MethodCallInfo} with the information
-	 * necessary to respond to clients (TCP only)
+	 * Map that will hold the {@link MethodCallInfo} with the information necessary to respond
+	 * to clients, keyed by method id (TCP only).
+	 * Several requests can be in flight at the same time, responses are matched by id
 	 */
-	private final HashMap<String, MethodCallInfo<?>> clientCallbacks = new HashMap<String, MethodCallInfo<?>>();
+	private final ConcurrentHashMap<String, MethodCallInfo<?>> clientCallbacks = new ConcurrentHashMap<>();
 
     /**
      * The observers that will be notified of player notifications
@@ -150,7 +216,19 @@ public class HostConnection {
     private final HashMap<ApplicationNotificationsObserver, Handler> applicationNotificationsObservers =
             new HashMap<>();
 
-    private ExecutorService executorService;
+    /**
+     * The observers that will be notified of video library notifications
+     */
+    private final HashMap<VideoLibraryNotificationsObserver, Handler> videoLibraryNotificationsObservers =
+            new HashMap<>();
+
+    /**
+     * The observers that will be notified of audio library notifications
+     */
+    private final HashMap<AudioLibraryNotificationsObserver, Handler> audioLibraryNotificationsObservers =
+            new HashMap<>();
+
+    private ScheduledExecutorService executorService;
 
     private final int connectTimeout;
 
@@ -158,12 +236,79 @@ public class HostConnection {
 
     private static final int TCP_READ_TIMEOUT = 30000; // ms
 
+    /**
+     * Maximum number of requests waiting to be written to the TCP socket
+     */
+    private static final int TCP_MAX_PENDING_REQUESTS = 64;
+
+    /**
+     * Whether to reopen the TCP connection in the background when it's lost.
+     * See {@link #setAutoReconnect(boolean)}
+     */
+    private volatile boolean autoReconnect = false;
+    /**
+     * Reconnection attempts since the TCP connection was lost, and the next one scheduled.
+     * Guarded by {@link #tcpConnectionLock}
+     */
+    private int reconnectAttempts = 0;
+    private ScheduledFuture<?> reconnectFuture = null;
+
+    private static final int RECONNECT_BASE_DELAY = 1000; // ms
+    private static final int RECONNECT_MAX_DELAY = 60000; // ms
+    private static final int RECONNECT_MAX_ATTEMPTS = 8;
+    private static final Random reconnectJitter = new Random();
+
+    private final ConnectionStats stats = new ConnectionStats();
+
+    /**
+     * Runs the HTTP requests, interactive ones ahead of bulk reads (HTTP only)
+     */
+    private final RequestScheduler requestScheduler = new RequestScheduler(stats);
+
+    /**
+     * HTTP calls queued or in flight, to cancel them by handler (HTTP only)
+     */
+    private final Set<ApiFuture<?>> httpCalls =
+            Collections.newSetFromMap(new ConcurrentHashMap<ApiFuture<?>, Boolean>());
+
+    /**
+     * Joins identical reads of the player, playlist and volume, and keeps their results briefly
+     */
+    private final ReadCoalescer readCoalescer = new ReadCoalescer(this, stats);
+
+    /**
+     * Senders of the continuous controls, by control
+     */
+    private final ConcurrentHashMap<String, LatestValueSender> latestValueSenders =
+            new ConcurrentHashMap<>();
+
     /**
      * OkHttpClient. Make sure it is initialized, by calling {@link #getOkHttpClient()}
      */
     private OkHttpClient httpClient = null;
     private static final MediaType MEDIA_TYPE_JSON = MediaType.parse("application/json; charset=utf-8");
 
+    /**
+     * HTTP connections pool, shared by all the connections (and the image loaders that clone
+     * their {@link OkHttpClient}), so that keep-alive connections to a host are reused no
+     * matter who opened them
+     */
+    private static final int HTTP_MAX_IDLE_CONNECTIONS = 5;
+    private static final long HTTP_KEEP_ALIVE_DURATION = 5 * 60 * 1000; // ms
+    private static final ConnectionPool httpConnectionPool =
+            new ConnectionPool(HTTP_MAX_IDLE_CONNECTIONS, HTTP_KEEP_ALIVE_DURATION);
+
+    /**
+     * HTTP URLs of the hosts that returned a bogus status line on a reused connection.
+     * JSON RPC requests to these are sent with "Connection: close", through a client whose pool
+     * never hands out a connection again, so that they don't pick up one left on the shared pool
+     * See http://forum.kodi.tv/showthread.php?tid=224288
+     */
+    private static final Set<String> noKeepAliveHosts =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private static final ConnectionPool noKeepAliveConnectionPool = new ConnectionPool(0, 0);
+    private OkHttpClient noKeepAliveHttpClient = null;
+
     /**
      * Creates a new host connection
      * @param hostInfo Host info object
@@ -181,8 +326,8 @@ public class HostConnection {
         this.hostInfo = hostInfo;
         // Start with the default host protocol
         this.protocol = hostInfo.getProtocol();
-        // Create a single threaded executor
-        this.executorService = Executors.newSingleThreadExecutor();
+        // Create a single threaded executor, for opening the TCP connection and reconnecting
+        this.executorService = Executors.newSingleThreadScheduledExecutor();
         // Set timeout
         this.connectTimeout = connectTimeout;
     }
@@ -210,6 +355,38 @@ public class HostConnection {
         return ((protocol == PROTOCOL_TCP) || (protocol == PROTOCOL_HTTP));
     }
 
+    /**
+     * Sets whether to reopen the TCP connection in the background, with a jittered exponential
+     * backoff, when it's lost. Use this on long lived connections, so that they are already
+     * open when needed and keep on receiving notifications
+     * @param autoReconnect Whether to reconnect automatically
+     */
+    public void setAutoReconnect(boolean autoReconnect) {
+        this.autoReconnect = autoReconnect;
+    }
+
+    /**
+     * Returns the health counters of this connection
+     * @return Connection stats
+     */
+    public ConnectionStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Opens the connection to the host in the background, so that the first request doesn't
+     * have to wait for it.
+     * On TCP this opens the socket, on HTTP it sends a {@link JSONRPC.Ping}, which leaves a
+     * connection open in the OkHttp pool
+     */
+    public void connect() {
+        if (protocol == PROTOCOL_TCP) {
+            openTcpConnectionIfNeeded();
+        } else {
+            execute(new JSONRPC.Ping(), null, null);
+        }
+    }
+
     /**
      * Registers an observer for player notifications
      * @param observer The {@link PlayerNotificationsObserver}
@@ -278,6 +455,40 @@ public class HostConnection {
         applicationNotificationsObservers.remove(observer);
     }
 
+    /**
+     * Registers an observer for video library notifications
+     * @param observer The {@link VideoLibraryNotificationsObserver}
+     */
+    public void registerVideoLibraryNotificationsObserver(VideoLibraryNotificationsObserver observer,
+                                                          Handler handler) {
+        videoLibraryNotificationsObservers.put(observer, handler);
+    }
+
+    /**
+     * Unregisters and observer from the video library notifications
+     * @param observer The {@link VideoLibraryNotificationsObserver}
+     */
+    public void unregisterVideoLibraryNotificationsObserver(VideoLibraryNotificationsObserver observer) {
+        videoLibraryNotificationsObservers.remove(observer);
+    }
+
+    /**
+     * Registers an observer for audio library notifications
+     * @param observer The {@link AudioLibraryNotificationsObserver}
+     */
+    public void registerAudioLibraryNotificationsObserver(AudioLibraryNotificationsObserver observer,
+                                                          Handler handler) {
+        audioLibraryNotificationsObservers.put(observer, handler);
+    }
+
+    /**
+     * Unregisters and observer from the audio library notifications
+     * @param observer The {@link AudioLibraryNotificationsObserver}
+     */
+    public void unregisterAudioLibraryNotificationsObserver(AudioLibraryNotificationsObserver observer) {
+        audioLibraryNotificationsObservers.remove(observer);
+    }
+
     /**
 	 * Calls the a method on the server
 	 * This call is always asynchronous. The results will be posted, through the
@@ -287,67 +498,259 @@ public class HostConnection {
 	 * @param callback {@link ApiCallback} to post the response to
 	 * @param handler {@link Handler} to invoke callbacks on
 	 * @param <T> Method return type
+	 * @return {@link ApiFuture} to cancel the call
 	 */
-	public <T> void execute(final ApiMethod<T> method, final ApiCallback<T> callback,
-							final Handler handler) {
+	public <T> ApiFuture<T> execute(final ApiMethod<T> method, final ApiCallback<T> callback,
+							        final Handler handler) {
 		LogUtils.LOGD(TAG, "Starting method execute. Method: " + method.getMethodName() +
 			" on host: " + hostInfo.getJsonRpcHttpEndpoint());
 
+        if (ReadCoalescer.isCoalesced(method))
+            return readCoalescer.execute(method, callback, handler);
+        if (!isReadOnly(method)) {
+            // Whatever was read before may have changed
+            readCoalescer.invalidate(null);
+        }
+        return executeUncoalesced(method, callback, handler);
+    }
+
+    /**
+     * Calls a method that sets the value of a continuous control, such as the volume or the
+     * playing position, on the server.
+     * Only the last value set matters, so while a call of the same control is in flight, this
+     * call replaces the one waiting to be sent, whose callback won't be called.
+     * See {@link LatestValueSender}
+     *
+     * @param control Control the method sets, such as {@link #CONTROL_VOLUME}
+     * @param method Method object that represents the method to call
+     * @param callback {@link ApiCallback} to post the response to
+     * @param handler {@link Handler} to invoke callbacks on
+     * @param <T> Method return type
+     */
+    public <T> void executeLatest(String control, ApiMethod<T> method, ApiCallback<T> callback,
+                                  Handler handler) {
+        LatestValueSender sender = latestValueSenders.get(control);
+        if (sender == null) {
+            LatestValueSender newSender = new LatestValueSender(this, stats);
+            sender = latestValueSenders.putIfAbsent(control, newSender);
+            if (sender == null)
+                sender = newSender;
+        }
+        sender.execute(method, callback, handler);
+    }
+
+    /**
+     * Calls a method on the server, without going through {@link ReadCoalescer}
+     */
+    <T> ApiFuture<T> executeUncoalesced(final ApiMethod<T> method, final ApiCallback<T> callback,
+                                        final Handler handler) {
+        final ApiFuture<T> future = new ApiFuture<>(this, method, handler);
+        if (protocol == PROTOCOL_TCP) {
+            // TCP requests are pipelined: queueing doesn't block, so there's no need to go
+            // through the executor, and a slow response doesn't hold back the following requests
+            executeThroughTcp(future, callback, handler);
+            return future;
+        }
+
 		// Launch background thread
+        final int priority = RequestScheduler.getPriority(method.getMethodName());
         Runnable command = new Runnable() {
             @Override
             public void run() {
-                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-                if (protocol == PROTOCOL_HTTP) {
+                try {
+                    if (future.isCancelled())
+                        return;
+                    setRequestThreadPriority(priority);
 //                    executeThroughHttp(method, callback, handler);
-                    executeThroughOkHttp(method, callback, handler);
-                } else {
-                    executeThroughTcp(method, callback, handler);
+                    executeThroughOkHttp(future, callback, handler);
+                } finally {
+                    httpCalls.remove(future);
+                    future.setDone();
                 }
             }
         };
 
-        executorService.execute(command);
+        httpCalls.add(future);
+        requestScheduler.execute(priority, command);
+        return future;
 	}
 
+    /**
+     * Cancels the calls that read from the host and whose callbacks would be posted to a handler.
+     * Meant to be called when the component that owns the handler goes away, so that no more
+     * time or bandwidth is spent on responses that nobody is going to look at.
+     * Calls that change something on the host are left alone, as the user asked for them
+     * @param handler {@link Handler} the calls were executed with
+     */
+    public void cancel(Handler handler) {
+        for (ApiFuture<?> future : httpCalls) {
+            if ((future.getHandler() == handler) && isReadOnly(future.getMethod()))
+                future.cancel();
+        }
+        for (MethodCallInfo<?> methodCallInfo : clientCallbacks.values()) {
+            if ((methodCallInfo.future != null) && (methodCallInfo.handler == handler) &&
+                isReadOnly(methodCallInfo.method))
+                methodCallInfo.future.cancel();
+        }
+        readCoalescer.cancel(handler);
+    }
+
+    /**
+     * Returns whether a method only reads from the host. These are all named Namespace.Get*
+     */
+    private static boolean isReadOnly(ApiMethod<?> method) {
+        String methodName = method.getMethodName();
+        return (methodName != null) && methodName.contains(".Get");
+    }
+
+    /**
+     * Called when a call is cancelled. If it is waiting for a TCP response, forgets about it, so
+     * that the response is dropped without being parsed
+     */
+    void onCancelled(ApiFuture<?> future) {
+        String methodId = String.valueOf(future.getMethod().getId());
+        MethodCallInfo<?> methodCallInfo = clientCallbacks.get(methodId);
+        if ((methodCallInfo != null) && (methodCallInfo.future == future)) {
+            clientCallbacks.remove(methodId, methodCallInfo);
+        }
+    }
+
+    /**
+     * Calls all the methods in a batch on the server, in a single request.
+     * This call is always asynchronous. The result of each method will be posted, through the
+     * {@link ApiCallback callback} it was added with, on the specified {@link android.os.Handler}.
+     *
+     * @param batch Batch of methods to call
+     * @param handler {@link Handler} to invoke callbacks on
+     */
+    public void execute(final ApiBatch batch, final Handler handler) {
+        LogUtils.LOGD(TAG, "Starting batch execute. Methods: " + batch.size() +
+                           " on host: " + hostInfo.getJsonRpcHttpEndpoint());
+        if (batch.size() == 0)
+            return;
+        for (ApiBatch.Entry<?> entry : batch.getEntries()) {
+            if (!isReadOnly(entry.method)) {
+                readCoalescer.invalidate(null);
+                break;
+            }
+        }
+
+        if (protocol == PROTOCOL_TCP) {
+            executeThroughTcp(batch, handler);
+            return;
+        }
+
+        final int priority = RequestScheduler.getPriority(batch);
+        requestScheduler.execute(priority, new Runnable() {
+            @Override
+            public void run() {
+                setRequestThreadPriority(priority);
+                executeThroughOkHttp(batch, handler);
+            }
+        });
+    }
+
+    /**
+     * Sets the priority of the thread running a request. Threads are reused across priority
+     * classes, so it has to be set on each request
+     */
+    private static void setRequestThreadPriority(int priority) {
+        Process.setThreadPriority((priority == RequestScheduler.PRIORITY_INTERACTIVE) ?
+                                  Process.THREAD_PRIORITY_DEFAULT :
+                                  Process.THREAD_PRIORITY_BACKGROUND);
+    }
+
     /**
      * Sends the JSON RPC request through HTTP (using OkHttp library)
      */
-    private <T> void executeThroughOkHttp(final ApiMethod<T> method, final ApiCallback<T> callback,
+    private <T> void executeThroughOkHttp(final ApiFuture<T> future, final ApiCallback<T> callback,
                                           final Handler handler) {
-        OkHttpClient client = getOkHttpClient();
+        OkHttpClient client = getJsonRpcHttpClient();
+        ApiMethod<T> method = future.getMethod();
         String jsonRequest = method.toJsonString();
+        long startTime = SystemClock.elapsedRealtime();
 
         try {
-            Request request = new Request.Builder()
-                    .url(hostInfo.getJsonRpcHttpEndpoint())
-                    .post(RequestBody.create(MEDIA_TYPE_JSON, jsonRequest))
-                    .build();
+            Request request = newJsonRpcRequest(jsonRequest);
             LogUtils.LOGD(TAG, "Sending request via OkHttp: " + jsonRequest);
-            Response response = sendOkHttpRequest(client, request);
-            final T result = method.resultFromJson(parseJsonResponse(handleOkHttpResponse(response)));
+            Response response = sendOkHttpRequest(client, request, future);
+            if (future.isCancelled()) {
+                // Nobody is waiting for it, don't bother parsing
+                closeQuietly(response.body());
+                return;
+            }
+            final T result = parseJsonResponse(method, handleOkHttpResponse(response));
+            stats.onResponse(SystemClock.elapsedRealtime() - startTime);
 
             if ((handler != null) && (callback != null)) {
                 handler.post(new Runnable() {
                     @Override
                     public void run() {
-                        callback.onSuccess(result);
+                        if (!future.isCancelled())
+                            callback.onSuccess(result);
                     }
                 });
             }
         } catch (final ApiException e) {
+            // Aborting the request on cancel ends up here, that's not an error
+            if (future.isCancelled())
+                return;
             // Got an error, call error handler
+            stats.onError();
             if ((handler != null) && (callback != null)) {
                 handler.post(new Runnable() {
                     @Override
                     public void run() {
-                        callback.onError(e.getCode(), e.getMessage());
+                        if (!future.isCancelled())
+                            callback.onError(e.getCode(), e.getMessage());
                     }
                 });
             }
         }
     }
 
+    /**
+     * Sends a JSON RPC batch request through HTTP (using OkHttp library), and dispatches each
+     * response in the returned array to the callback of the method with the same id
+     */
+    private void executeThroughOkHttp(final ApiBatch batch, final Handler handler) {
+        OkHttpClient client = getJsonRpcHttpClient();
+        String jsonRequest = batch.toJsonString();
+        long startTime = SystemClock.elapsedRealtime();
+
+        Map<String, MethodCallInfo<?>> pendingCalls = new LinkedHashMap<>();
+        for (ApiBatch.Entry<?> entry : batch.getEntries()) {
+            pendingCalls.put(String.valueOf(entry.method.getId()), newMethodCallInfo(entry, handler));
+        }
+
+        try {
+            Request request = newJsonRpcRequest(jsonRequest);
+            LogUtils.LOGD(TAG, "Sending batch request via OkHttp: " + jsonRequest);
+            Response response = sendOkHttpRequest(client, request, null);
+            ArrayNode jsonResponses = parseJsonBatchResponse(handleOkHttpResponse(response));
+            stats.onResponse(SystemClock.elapsedRealtime() - startTime);
+
+            for (JsonNode jsonResponse : jsonResponses) {
+                if (!jsonResponse.isObject() || !jsonResponse.has(ApiMethod.ID_NODE))
+                    continue;
+                handleMethodResponse(pendingCalls.remove(jsonResponse.get(ApiMethod.ID_NODE).asText()),
+                                     (ObjectNode)jsonResponse);
+            }
+
+            // Methods with an id should always get a response
+            for (MethodCallInfo<?> methodCallInfo : pendingCalls.values()) {
+                if (methodCallInfo.method.getId() != -1) {
+                    callErrorCallback(methodCallInfo, new ApiException(ApiException.INVALID_JSON_RESPONSE_FROM_HOST,
+                                                                       "Batch response doesn't contain this method."));
+                }
+            }
+        } catch (ApiException e) {
+            for (MethodCallInfo<?> methodCallInfo : pendingCalls.values()) {
+                callErrorCallback(methodCallInfo, e);
+            }
+        }
+    }
+
     /**
      * Initializes this class OkHttpClient
      */
@@ -355,6 +758,7 @@ public class HostConnection {
         if (httpClient == null) {
             httpClient = new OkHttpClient();
             httpClient.setConnectTimeout(connectTimeout, TimeUnit.MILLISECONDS);
+            httpClient.setConnectionPool(httpConnectionPool);
 
             httpClient.setAuthenticator(new Authenticator() {
                 @Override
@@ -375,28 +779,74 @@ public class HostConnection {
         return httpClient;
     }
 
-    // Hack to circumvent a Protocol Exception that occurs when the server returns bogus Status Line
-    // http://forum.kodi.tv/showthread.php?tid=224288
-    private OkHttpClient getNewOkHttpClientNoKeepAlive() {
-        java.lang.System.setProperty("http.keepAlive", "false");
-        httpClient = null;
-        return getOkHttpClient();
+    /**
+     * Returns the client to send JSON RPC requests with, which doesn't reuse connections if
+     * this host doesn't handle them
+     */
+    private OkHttpClient getJsonRpcHttpClient() {
+        if (!noKeepAliveHosts.contains(hostInfo.getHttpURL())) {
+            return getOkHttpClient();
+        }
+        synchronized (this) {
+            if (noKeepAliveHttpClient == null) {
+                noKeepAliveHttpClient = getOkHttpClient().clone();
+                noKeepAliveHttpClient.setConnectionPool(noKeepAliveConnectionPool);
+            }
+            return noKeepAliveHttpClient;
+        }
+    }
+
+    /**
+     * Returns the HTTP connection pool shared by all the connections, to check its stats
+     * @return Connection pool
+     */
+    public static ConnectionPool getHttpConnectionPool() {
+        return httpConnectionPool;
+    }
+
+    /**
+     * Builds a JSON RPC request to this host.
+     * Accept-Encoding isn't set, so that OkHttp asks for gzip itself and decompresses the
+     * response as it's read
+     * @param jsonRequest Request body
+     * @return Request
+     */
+    private Request newJsonRpcRequest(String jsonRequest) {
+        Request.Builder builder = new Request.Builder()
+                .url(hostInfo.getJsonRpcHttpEndpoint())
+                .post(RequestBody.create(MEDIA_TYPE_JSON, jsonRequest));
+        if (noKeepAliveHosts.contains(hostInfo.getHttpURL())) {
+            builder.header("Connection", "close");
+        }
+        return builder.build();
     }
 
     /**
      * Send an OkHttp POST request
      * @param request Request to send
+     * @param future Future of the call, to abort the request if it's cancelled. Can be null
      * @throws ApiException
      */
-    private Response sendOkHttpRequest(final OkHttpClient client, final Request request) throws ApiException {
+    private Response sendOkHttpRequest(final OkHttpClient client, final Request request,
+                                       final ApiFuture<?> future) throws ApiException {
         try {
-            return client.newCall(request).execute();
+            Call call = client.newCall(request);
+            if (future != null) {
+                future.setHttpCall(call);
+            }
+            Response response = call.execute();
+            Response networkResponse = response.networkResponse();
+            if ((networkResponse != null) && "gzip".equalsIgnoreCase(networkResponse.header("Content-Encoding"))) {
+                stats.onCompressedResponse();
+            }
+            return response;
         } catch (ProtocolException e) {
             LogUtils.LOGW(TAG, "Got a Protocol Exception when trying to send OkHttp request. " +
-                            "Trying again without connection pooling to try to circunvent this", e);
+                            "Next requests to this host won't reuse connections to try to circunvent this", e);
             // Hack to circumvent a Protocol Exception that occurs when the server returns bogus Status Line
+            // on a reused connection. Only JSON RPC requests to this host are affected
             // http://forum.kodi.tv/showthread.php?tid=224288
-            httpClient = getNewOkHttpClientNoKeepAlive();
+            noKeepAliveHosts.add(hostInfo.getHttpURL());
             throw new ApiException(ApiException.IO_EXCEPTION_WHILE_SENDING_REQUEST, e);
         } catch (IOException e) {
             LogUtils.LOGW(TAG, "Failed to send OkHttp request.", e);
@@ -409,115 +859,300 @@ public class HostConnection {
     }
 
     /**
-     * Reads the response from the server
+     * Checks the response from the server
      * @param response Response from OkHttp
-     * @return Response body string
+     * @return Response body, ready to be read. The caller must close it
      * @throws ApiException
      */
-    private String handleOkHttpResponse(Response response) throws ApiException {
-        try {
-//			LogUtils.LOGD(TAG, "Reading HTTP response.");
-            int responseCode = response.code();
-
-            switch (responseCode) {
-                case 200:
-                    // All ok, read response
-                    String res = response.body().string();
-                    response.body().close();
-					LogUtils.LOGD(TAG, "OkHTTP response: " + res);
-                    return res;
-                case 401:
-                    LogUtils.LOGD(TAG, "OkHTTP response read error. Got a 401: " + response);
-                    throw new ApiException(ApiException.HTTP_RESPONSE_CODE_UNAUTHORIZED,
-                            "Server returned response code: " + response);
-                case 404:
-                    LogUtils.LOGD(TAG, "OkHTTP response read error. Got a 404: " + response);
-                    throw new ApiException(ApiException.HTTP_RESPONSE_CODE_NOT_FOUND,
-                            "Server returned response code: " + response);
-                default:
-                    LogUtils.LOGD(TAG, "OkHTTP response read error. Got: " + response);
-                    throw new ApiException(ApiException.HTTP_RESPONSE_CODE_UNKNOWN,
-                            "Server returned response code: " + response);
-            }
-        } catch (IOException e) {
-            LogUtils.LOGW(TAG, "Failed to read OkHTTP response.", e);
-            throw new ApiException(ApiException.IO_EXCEPTION_WHILE_READING_RESPONSE, e);
+    private ResponseBody handleOkHttpResponse(Response response) throws ApiException {
+//		LogUtils.LOGD(TAG, "Reading HTTP response.");
+        int responseCode = response.code();
+
+        switch (responseCode) {
+            case 200:
+                // All ok, response can be read
+                return response.body();
+            case 401:
+                LogUtils.LOGD(TAG, "OkHTTP response read error. Got a 401: " + response);
+                throw new ApiException(ApiException.HTTP_RESPONSE_CODE_UNAUTHORIZED,
+                        "Server returned response code: " + response);
+            case 404:
+                LogUtils.LOGD(TAG, "OkHTTP response read error. Got a 404: " + response);
+                throw new ApiException(ApiException.HTTP_RESPONSE_CODE_NOT_FOUND,
+                        "Server returned response code: " + response);
+            default:
+                LogUtils.LOGD(TAG, "OkHTTP response read error. Got: " + response);
+                throw new ApiException(ApiException.HTTP_RESPONSE_CODE_UNKNOWN,
+                        "Server returned response code: " + response);
         }
     }
 
     /**
-	 * Parses the JSON response from the server.
-	 * If it is a valid result returns the JSON {@link com.fasterxml.jackson.databind.node.ObjectNode} that represents it.
+	 * Parses the JSON response from the server, straight from the response stream.
+	 * If it is a valid result returns the result object built by the method, through
+	 * {@link ApiMethod#resultFromJsonParser(JsonParser)}.
 	 * If it is an error (contains the error tag), returns an {@link ApiException} with the info.
-	 * @param response JSON response
-	 * @return {@link com.fasterxml.jackson.databind.node.ObjectNode} constructed
+	 * @param method Method that the response is for
+	 * @param body Response body, closed on return
+	 * @return Result object of the method
 	 * @throws ApiException
 	 */
-	private ObjectNode parseJsonResponse(String response) throws ApiException {
+	private <T> T parseJsonResponse(ApiMethod<T> method, ResponseBody body) throws ApiException {
 //		LogUtils.LOGD(TAG, "Parsing JSON response");
+		JsonParser jsonParser = null;
 		try {
-			ObjectNode jsonResponse = (ObjectNode) objectMapper.readTree(response);
+			jsonParser = objectMapper.getFactory().createParser(body.byteStream());
+			if (jsonParser.nextToken() != JsonToken.START_OBJECT) {
+				throw new ApiException(ApiException.INVALID_JSON_RESPONSE_FROM_HOST,
+					"Response isn't a json object.");
+			}
 
-			if (jsonResponse.has(ApiMethod.ERROR_NODE)) {
-				throw new ApiException(ApiException.API_ERROR, jsonResponse);
+			T result = null;
+			boolean hasResult = false;
+			while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+				String fieldName = jsonParser.getCurrentName();
+				jsonParser.nextToken();
+
+				if (ApiMethod.RESULT_NODE.equals(fieldName)) {
+					result = method.resultFromJsonParser(jsonParser);
+					hasResult = true;
+				} else if (ApiMethod.ERROR_NODE.equals(fieldName)) {
+					JsonNode errorNode = objectMapper.readTree(jsonParser);
+					ObjectNode jsonResponse = objectMapper.createObjectNode();
+					jsonResponse.set(ApiMethod.ERROR_NODE, errorNode);
+					throw new ApiException(ApiException.API_ERROR, jsonResponse);
+				} else {
+					jsonParser.skipChildren();
+				}
 			}
 
-			if (!jsonResponse.has(ApiMethod.RESULT_NODE)) {
+			if (!hasResult) {
 				// Something strange is going on
 				throw new ApiException(ApiException.INVALID_JSON_RESPONSE_FROM_HOST,
 					"Result doesn't contain a result node.");
 			}
 
-			return jsonResponse;
+			return result;
 		} catch (JsonProcessingException e) {
 			LogUtils.LOGW(TAG, "Got an exception while parsing JSON response.", e);
 			throw new ApiException(ApiException.INVALID_JSON_RESPONSE_FROM_HOST, e);
 		} catch (IOException e) {
 			LogUtils.LOGW(TAG, "Got an exception while parsing JSON response.", e);
-			throw new ApiException(ApiException.INVALID_JSON_RESPONSE_FROM_HOST, e);
+			throw new ApiException(ApiException.IO_EXCEPTION_WHILE_READING_RESPONSE, e);
+		} finally {
+			closeQuietly(jsonParser);
+			closeQuietly(body);
 		}
 	}
 
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null)
+            return;
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Ignore, nothing else to do with it
+        }
+    }
+
+    /**
+     * Parses the JSON response from the server to a batch request.
+     * If it is a valid result returns the JSON {@link ArrayNode} with each method's response.
+     * If the whole batch was refused (the host returned a single error object), returns an
+     * {@link ApiException} with the info.
+     * @param body Response body, closed on return
+     * @return {@link ArrayNode} constructed
+     * @throws ApiException
+     */
+    private ArrayNode parseJsonBatchResponse(ResponseBody body) throws ApiException {
+        try {
+            JsonNode jsonResponse = objectMapper.readTree(body.byteStream());
+
+            if ((jsonResponse != null) && jsonResponse.isObject() && jsonResponse.has(ApiMethod.ERROR_NODE)) {
+                throw new ApiException(ApiException.API_ERROR, (ObjectNode)jsonResponse);
+            }
+
+            if ((jsonResponse == null) || !jsonResponse.isArray()) {
+                throw new ApiException(ApiException.INVALID_JSON_RESPONSE_FROM_HOST,
+                                       "Batch result isn't an array.");
+            }
+
+            return (ArrayNode)jsonResponse;
+        } catch (JsonProcessingException e) {
+            LogUtils.LOGW(TAG, "Got an exception while parsing JSON batch response.", e);
+            throw new ApiException(ApiException.INVALID_JSON_RESPONSE_FROM_HOST, e);
+        } catch (IOException e) {
+            LogUtils.LOGW(TAG, "Got an exception while reading JSON batch response.", e);
+            throw new ApiException(ApiException.IO_EXCEPTION_WHILE_READING_RESPONSE, e);
+        } finally {
+            closeQuietly(body);
+        }
+    }
+
 	/**
 	 * Sends the JSON RPC request through TCP
-	 * Keeps a background thread running, listening on a socket
+	 * Keeps a background thread running, listening on a socket, and another one writing queued
+	 * requests to it. Requests are pipelined, responses are matched to their callbacks by id
 	 */
-	private <T> void executeThroughTcp(final ApiMethod<T> method, final ApiCallback<T> callback,
+	private <T> void executeThroughTcp(final ApiFuture<T> future, final ApiCallback<T> callback,
 									   final Handler handler) {
+        ApiMethod<T> method = future.getMethod();
         String methodId = String.valueOf(method.getId());
-		try {
-			// Save this method/callback for later response
-            // Check if a method with this id is already running and raise an error if so
-            synchronized (clientCallbacks) {
-                if (clientCallbacks.containsKey(methodId)) {
-                    if ((handler != null) && (callback != null)) {
-                        handler.post(new Runnable() {
-                            @Override
-                            public void run() {
-                                callback.onError(ApiException.API_METHOD_WITH_SAME_ID_ALREADY_EXECUTING,
-                                        "A method with the same Id is already executing");
-                            }
-                        });
+        // Save this method/callback for later response
+        // Check if a method with this id is already running and raise an error if so
+        if (clientCallbacks.putIfAbsent(methodId, new MethodCallInfo<T>(method, callback, handler, future)) != null) {
+            future.setDone();
+            if ((handler != null) && (callback != null)) {
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onError(ApiException.API_METHOD_WITH_SAME_ID_ALREADY_EXECUTING,
+                                "A method with the same Id is already executing");
+                    }
+                });
+            }
+            return;
+        }
+
+        String request = method.toJsonString();
+        if (!tcpSendQueue.offer(request)) {
+            LogUtils.LOGW(TAG, "Too many pending TCP requests, dropping " + method.getMethodName());
+            callErrorCallback(methodId, new ApiException(ApiException.API_TOO_MANY_PENDING_REQUESTS,
+                                                         "Too many requests waiting to be sent"));
+            return;
+        }
+        openTcpConnectionIfNeeded();
+	}
+
+    /**
+     * Sends a JSON RPC batch request through TCP.
+     * Each method is registered like a single call, so the responses, which the host sends back
+     * in an array, are dispatched by id like any other
+     */
+    private void executeThroughTcp(final ApiBatch batch, final Handler handler) {
+        ArrayNode jsonRequest = objectMapper.createArrayNode();
+        ArrayList<String> methodIds = new ArrayList<>();
+        for (ApiBatch.Entry<?> entry : batch.getEntries()) {
+            if (entry.method.getId() == -1) {
+                // No response will come for this one
+                jsonRequest.add(entry.method.toJsonObject());
+                continue;
+            }
+            final MethodCallInfo<?> methodCallInfo = newMethodCallInfo(entry, handler);
+            String methodId = String.valueOf(entry.method.getId());
+            if (clientCallbacks.putIfAbsent(methodId, methodCallInfo) != null) {
+                callErrorCallback(methodCallInfo,
+                                  new ApiException(ApiException.API_METHOD_WITH_SAME_ID_ALREADY_EXECUTING,
+                                                   "A method with the same Id is already executing"));
+                continue;
+            }
+            methodIds.add(methodId);
+            jsonRequest.add(entry.method.toJsonObject());
+        }
+        if (jsonRequest.size() == 0)
+            return;
+
+        if (!tcpSendQueue.offer(jsonRequest.toString())) {
+            LogUtils.LOGW(TAG, "Too many pending TCP requests, dropping batch");
+            ApiException error = new ApiException(ApiException.API_TOO_MANY_PENDING_REQUESTS,
+                                                  "Too many requests waiting to be sent");
+            for (String methodId : methodIds) {
+                callErrorCallback(methodId, error);
+            }
+            return;
+        }
+        openTcpConnectionIfNeeded();
+    }
+
+    /**
+     * Opens the TCP connection in the background, and starts the listener and writer threads,
+     * if that isn't already done or in progress
+     */
+    private void openTcpConnectionIfNeeded() {
+        synchronized (tcpConnectionLock) {
+            if ((socket != null) || tcpConnecting)
+                return;
+            tcpConnecting = true;
+        }
+
+        executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                try {
+                    // Open connection to the server and setup reader and writer threads
+                    long startTime = SystemClock.elapsedRealtime();
+                    Socket newSocket = openTcpConnection(hostInfo);
+                    Writer writer = openTcpWriter(newSocket);
+                    stats.onConnected(SystemClock.elapsedRealtime() - startTime);
+                    synchronized (tcpConnectionLock) {
+                        socket = newSocket;
+                        tcpConnecting = false;
+                        reconnectAttempts = 0;
+                        listenerThread = newListenerThread(newSocket);
+                        writerThread = newWriterThread(newSocket, writer);
                     }
-                    return;
+                    listenerThread.start();
+                    writerThread.start();
+                } catch (ApiException e) {
+                    synchronized (tcpConnectionLock) {
+                        tcpConnecting = false;
+                    }
+                    tcpSendQueue.clear();
+                    callErrorCallback(null, e);
+                    scheduleReconnect();
                 }
-                clientCallbacks.put(methodId, new MethodCallInfo<T>(method, callback, handler));
             }
+        });
+    }
 
-            // TODO: Validate if this shouldn't be enclosed by a synchronized.
-			if (socket == null) {
-				// Open connection to the server and setup reader thread
-				socket = openTcpConnection(hostInfo);
-				listenerThread = newListenerThread(socket);
-				listenerThread.start();
-			}
+    /**
+     * Closes the TCP connection after an error on the socket, drops the requests not yet sent,
+     * fails all the pending requests and, if enabled, schedules a reconnection.
+     * Nothing is done if the socket was already replaced or closed through {@link #disconnect()}
+     * @param socket Socket that got the error
+     * @param error Error to send to the pending requests
+     */
+    private void onTcpConnectionLost(Socket socket, ApiException error) {
+        if (!isCurrentSocket(socket))
+            return;
+
+        stats.onConnectionLost();
+        closeTcpConnection();
+        tcpSendQueue.clear();
+        callErrorCallback(null, error);
+        scheduleReconnect();
+    }
 
-			// Write request
-			sendTcpRequest(socket, method.toJsonString());
-		} catch (final ApiException e) {
-			callErrorCallback(methodId, e);
-		}
-	}
+    /**
+     * Schedules an attempt to reopen the TCP connection, if auto reconnect is enabled and there
+     * isn't one already scheduled.
+     * The delay doubles with each attempt, up to {@link #RECONNECT_MAX_DELAY}, and is randomized
+     * between half and the full value, so that several connections lost at the same time (like
+     * when the host restarts) don't all retry in lockstep
+     */
+    private void scheduleReconnect() {
+        synchronized (tcpConnectionLock) {
+            if (!autoReconnect || (reconnectFuture != null) || (reconnectAttempts >= RECONNECT_MAX_ATTEMPTS))
+                return;
+
+            long delay = Math.min((long)RECONNECT_BASE_DELAY << reconnectAttempts, RECONNECT_MAX_DELAY);
+            delay = delay / 2 + (long)(reconnectJitter.nextDouble() * delay / 2);
+            reconnectAttempts++;
+            LogUtils.LOGD(TAG, "Reconnecting to " + hostInfo.getAddress() + " in " + delay +
+                               "ms (attempt " + reconnectAttempts + ")");
+
+            reconnectFuture = executorService.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (tcpConnectionLock) {
+                        reconnectFuture = null;
+                    }
+                    openTcpConnectionIfNeeded();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+    }
 
 	/**
 	 * Auxiliary method to open the TCP {@link Socket}.
@@ -544,24 +1179,59 @@ public class HostConnection {
 	}
 
 
-	/**
-	 * Send a TCP request
-	 * @param socket Socket to write to
-	 * @param request Request to send
-	 * @throws ApiException
-	 */
-	private void sendTcpRequest(Socket socket, String request) throws ApiException {
-		try {
-			LogUtils.LOGD(TAG, "Sending request via TCP: " + request);
-			BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()));
-			writer.write(request);
-			writer.flush();
-		} catch (Exception e) {
-			LogUtils.LOGW(TAG, "Failed to send TCP request.", e);
-            disconnect();
-			throw new ApiException(ApiException.IO_EXCEPTION_WHILE_SENDING_REQUEST, e);
-		}
-	}
+    /**
+     * Creates the writer that will be used for all the requests sent through a socket
+     * @param socket Socket to write to
+     * @return Buffered writer on the socket output stream
+     * @throws ApiException
+     */
+    private Writer openTcpWriter(Socket socket) throws ApiException {
+        try {
+            return new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()));
+        } catch (IOException e) {
+            LogUtils.LOGW(TAG, "Failed to open TCP output stream.", e);
+            closeSocket(socket);
+            throw new ApiException(ApiException.IO_EXCEPTION_WHILE_CONNECTING, e);
+        }
+    }
+
+    private Thread newWriterThread(final Socket socket, final Writer writer) {
+        // Launch a new thread to write the queued requests to the socket
+        return new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                try {
+                    while (true) {
+                        // Block for the next request, then write everything else that is already
+                        // queued before flushing, so that bursts go out in as few packets as possible
+                        String request = tcpSendQueue.take();
+                        int count = 0;
+                        do {
+                            LogUtils.LOGD(TAG, "Sending request via TCP: " + request);
+                            writer.write(request);
+                            count++;
+                        } while ((request = tcpSendQueue.poll()) != null);
+                        writer.flush();
+                        if (count > 1) {
+                            LogUtils.LOGD(TAG, "Flushed " + count + " pipelined TCP requests");
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    LogUtils.LOGD(TAG, "Socket writer thread stopped.");
+                } catch (IOException e) {
+                    LogUtils.LOGW(TAG, "Failed to send TCP request.", e);
+                    onTcpConnectionLost(socket, new ApiException(ApiException.IO_EXCEPTION_WHILE_SENDING_REQUEST, e));
+                }
+            }
+        });
+    }
+
+    private boolean isCurrentSocket(Socket socket) {
+        synchronized (tcpConnectionLock) {
+            return this.socket == socket;
+        }
+    }
 
 	private Thread newListenerThread(final Socket socket) {
 		// Launch a new thread to read from the socket
@@ -576,19 +1246,42 @@ public class HostConnection {
 					// Note: Mind the objects used here: we use createParser because it doesn't
 					// close the socket after ObjectMapper.readTree.
 					JsonParser jsonParser = objectMapper.getFactory().createParser(socket.getInputStream());
-					ObjectNode jsonResponse;
-					while ((jsonResponse = objectMapper.readTree(jsonParser)) != null) {
+					JsonNode jsonResponse;
+					while (true) {
+                        try {
+                            jsonResponse = objectMapper.readTree(jsonParser);
+                        } catch (SocketTimeoutException e) {
+                            // Nothing to read for a while. If no request is waiting for a
+                            // response the connection is just idle, so keep it open
+                            if (clientCallbacks.isEmpty() && isCurrentSocket(socket))
+                                continue;
+                            throw e;
+                        }
+                        if (jsonResponse == null)
+                            break;
+
                         LogUtils.LOGD(TAG, "Read from socket: " + jsonResponse.toString());
 //                        LogUtils.LOGD_FULL(TAG, "Read from socket: " + jsonResponse.toString());
-						handleTcpResponse(jsonResponse);
+                        if (jsonResponse.isArray()) {
+                            // Response to a batch request
+                            for (JsonNode batchResponse : jsonResponse) {
+                                if (batchResponse.isObject())
+                                    handleTcpResponse((ObjectNode)batchResponse);
+                            }
+                        } else if (jsonResponse.isObject()) {
+                            handleTcpResponse((ObjectNode)jsonResponse);
+                        }
 					}
+                    // End of stream, the host closed the connection
+                    onTcpConnectionLost(socket, new ApiException(ApiException.IO_EXCEPTION_WHILE_READING_RESPONSE,
+                                                                 "Connection closed by host"));
 				} catch (JsonProcessingException e) {
 					LogUtils.LOGW(TAG, "Got an exception while parsing JSON response.", e);
-					callErrorCallback(null, new ApiException(ApiException.INVALID_JSON_RESPONSE_FROM_HOST, e));
+                    // The parser can't recover from this, so drop the connection
+                    onTcpConnectionLost(socket, new ApiException(ApiException.INVALID_JSON_RESPONSE_FROM_HOST, e));
 				} catch (IOException e) {
 					LogUtils.LOGW(TAG, "Error reading from socket.", e);
-                    disconnect();
-					callErrorCallback(null, new ApiException(ApiException.IO_EXCEPTION_WHILE_READING_RESPONSE, e));
+                    onTcpConnectionLost(socket, new ApiException(ApiException.IO_EXCEPTION_WHILE_READING_RESPONSE, e));
 				}
 			}
 		});
@@ -600,6 +1293,7 @@ public class HostConnection {
             // It's a notification, notify observers
             String notificationName = jsonResponse.get(ApiNotification.METHOD_NODE).asText();
             ObjectNode params = (ObjectNode)jsonResponse.get(ApiNotification.PARAMS_NODE);
+            readCoalescer.onNotification(notificationName);
 
             if (notificationName.equals(Player.OnPause.NOTIFICATION_NAME)) {
                 final Player.OnPause apiNotification = new Player.OnPause(params);
@@ -734,110 +1428,239 @@ public class HostConnection {
                         }
                     });
                 }
+            } else if (notificationName.equals(VideoLibrary.OnUpdate.NOTIFICATION_NAME)) {
+                final VideoLibrary.OnUpdate apiNotification = new VideoLibrary.OnUpdate(params);
+                for (final VideoLibraryNotificationsObserver observer :
+                        videoLibraryNotificationsObservers.keySet()) {
+                    Handler handler = videoLibraryNotificationsObservers.get(observer);
+                    handler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            observer.onUpdate(apiNotification);
+                        }
+                    });
+                }
+            } else if (notificationName.equals(VideoLibrary.OnRemove.NOTIFICATION_NAME)) {
+                final VideoLibrary.OnRemove apiNotification = new VideoLibrary.OnRemove(params);
+                for (final VideoLibraryNotificationsObserver observer :
+                        videoLibraryNotificationsObservers.keySet()) {
+                    Handler handler = videoLibraryNotificationsObservers.get(observer);
+                    handler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            observer.onRemove(apiNotification);
+                        }
+                    });
+                }
+            } else if (notificationName.equals(VideoLibrary.OnScanFinished.NOTIFICATION_NAME)) {
+                final VideoLibrary.OnScanFinished apiNotification = new VideoLibrary.OnScanFinished(params);
+                for (final VideoLibraryNotificationsObserver observer :
+                        videoLibraryNotificationsObservers.keySet()) {
+                    Handler handler = videoLibraryNotificationsObservers.get(observer);
+                    handler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            observer.onScanFinished(apiNotification);
+                        }
+                    });
+                }
+            } else if (notificationName.equals(VideoLibrary.OnCleanFinished.NOTIFICATION_NAME)) {
+                final VideoLibrary.OnCleanFinished apiNotification = new VideoLibrary.OnCleanFinished(params);
+                for (final VideoLibraryNotificationsObserver observer :
+                        videoLibraryNotificationsObservers.keySet()) {
+                    Handler handler = videoLibraryNotificationsObservers.get(observer);
+                    handler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            observer.onCleanFinished(apiNotification);
+                        }
+                    });
+                }
+            } else if (notificationName.equals(AudioLibrary.OnUpdate.NOTIFICATION_NAME)) {
+                final AudioLibrary.OnUpdate apiNotification = new AudioLibrary.OnUpdate(params);
+                for (final AudioLibraryNotificationsObserver observer :
+                        audioLibraryNotificationsObservers.keySet()) {
+                    Handler handler = audioLibraryNotificationsObservers.get(observer);
+                    handler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            observer.onUpdate(apiNotification);
+                        }
+                    });
+                }
+            } else if (notificationName.equals(AudioLibrary.OnRemove.NOTIFICATION_NAME)) {
+                final AudioLibrary.OnRemove apiNotification = new AudioLibrary.OnRemove(params);
+                for (final AudioLibraryNotificationsObserver observer :
+                        audioLibraryNotificationsObservers.keySet()) {
+                    Handler handler = audioLibraryNotificationsObservers.get(observer);
+                    handler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            observer.onRemove(apiNotification);
+                        }
+                    });
+                }
+            } else if (notificationName.equals(AudioLibrary.OnScanFinished.NOTIFICATION_NAME)) {
+                final AudioLibrary.OnScanFinished apiNotification = new AudioLibrary.OnScanFinished(params);
+                for (final AudioLibraryNotificationsObserver observer :
+                        audioLibraryNotificationsObservers.keySet()) {
+                    Handler handler = audioLibraryNotificationsObservers.get(observer);
+                    handler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            observer.onScanFinished(apiNotification);
+                        }
+                    });
+                }
+            } else if (notificationName.equals(AudioLibrary.OnCleanFinished.NOTIFICATION_NAME)) {
+                final AudioLibrary.OnCleanFinished apiNotification = new AudioLibrary.OnCleanFinished(params);
+                for (final AudioLibraryNotificationsObserver observer :
+                        audioLibraryNotificationsObservers.keySet()) {
+                    Handler handler = audioLibraryNotificationsObservers.get(observer);
+                    handler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            observer.onCleanFinished(apiNotification);
+                        }
+                    });
+                }
             }
 
 			LogUtils.LOGD(TAG, "Got a notification: " + jsonResponse.get("method").textValue());
 		} else {
 			String methodId = jsonResponse.get(ApiMethod.ID_NODE).asText();
-
-			if (jsonResponse.has(ApiMethod.ERROR_NODE)) {
-				// Error response
-				callErrorCallback(methodId, new ApiException(ApiException.API_ERROR, jsonResponse));
-			} else {
-				// Sucess response
-				final MethodCallInfo<?> methodCallInfo = clientCallbacks.get(methodId);
-//				LogUtils.LOGD(TAG, "Sending response to method: " + methodCallInfo.method.getMethodName());
-
-                if (methodCallInfo != null) {
-                    try {
-                        @SuppressWarnings("unchecked")
-                        final T result = (T) methodCallInfo.method.resultFromJson(jsonResponse);
-                        @SuppressWarnings("unchecked")
-                        final ApiCallback<T> callback = (ApiCallback<T>) methodCallInfo.callback;
-
-                        if ((methodCallInfo.handler != null) && (callback != null)) {
-                            methodCallInfo.handler.post(new Runnable() {
-                                @Override
-                                public void run() {
-                                    callback.onSuccess(result);
-                                }
-                            });
-                        }
-
-                        // We've replied, remove the client from the list
-                        synchronized (clientCallbacks) {
-                            clientCallbacks.remove(methodId);
-                        }
-                    } catch (ApiException e) {
-                        callErrorCallback(methodId, e);
-                    }
-                }
-			}
+			// We're replying, remove the client from the list
+            MethodCallInfo<?> methodCallInfo = clientCallbacks.remove(methodId);
+            if ((methodCallInfo != null) && !jsonResponse.has(ApiMethod.ERROR_NODE)) {
+                stats.onResponse(SystemClock.elapsedRealtime() - methodCallInfo.startTime);
+            }
+			handleMethodResponse(methodCallInfo, jsonResponse);
 		}
 	}
 
-    private <T> void callErrorCallback(String methodId, final ApiException error) {
-        synchronized (clientCallbacks) {
-            if (methodId != null) {
-                // Send error back to client
-                final MethodCallInfo<?> methodCallInfo = clientCallbacks.get(methodId);
-                if (methodCallInfo != null) {
-                    @SuppressWarnings("unchecked")
-                    final ApiCallback<T> callback = (ApiCallback<T>) methodCallInfo.callback;
-
-                    if ((methodCallInfo.handler != null) && (callback != null)) {
-                        methodCallInfo.handler.post(new Runnable() {
-                            @Override
-                            public void run() {
-                                callback.onError(error.getCode(), error.getMessage());
-                            }
-                        });
-                    }
-                }
-                clientCallbacks.remove(methodId);
-            } else {
-                // Notify all pending clients, it might be an error for them
-                for (String id : clientCallbacks.keySet()) {
-                    final MethodCallInfo<?> methodCallInfo = clientCallbacks.get(id);
-                    @SuppressWarnings("unchecked")
-                    final ApiCallback<T> callback = (ApiCallback<T>)methodCallInfo.callback;
-
-                    if ((methodCallInfo.handler != null) && (callback != null)) {
-                        methodCallInfo.handler.post(new Runnable() {
-                            @Override
-                            public void run() {
-                                callback.onError(error.getCode(), error.getMessage());
-                            }
-                        });
+    /**
+     * Sends the response to a method to its callback, or the error if the response is one
+     * @param methodCallInfo Method that got the response. Nothing is done if null
+     * @param jsonResponse Response to the method
+     */
+    private <T> void handleMethodResponse(final MethodCallInfo<?> methodCallInfo, ObjectNode jsonResponse) {
+        if ((methodCallInfo == null) || methodCallInfo.isCancelled())
+            return;
+//        LogUtils.LOGD(TAG, "Sending response to method: " + methodCallInfo.method.getMethodName());
+
+        if (jsonResponse.has(ApiMethod.ERROR_NODE)) {
+            // Error response
+            callErrorCallback(methodCallInfo, new ApiException(ApiException.API_ERROR, jsonResponse));
+            return;
+        }
+
+        // Sucess response
+        try {
+            @SuppressWarnings("unchecked")
+            final T result = (T) methodCallInfo.method.resultFromJson(jsonResponse);
+            @SuppressWarnings("unchecked")
+            final ApiCallback<T> callback = (ApiCallback<T>) methodCallInfo.callback;
+
+            methodCallInfo.setDone();
+            if ((methodCallInfo.handler != null) && (callback != null)) {
+                methodCallInfo.handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!methodCallInfo.isCancelled())
+                            callback.onSuccess(result);
                     }
-                }
-                clientCallbacks.clear();
+                });
+            }
+        } catch (ApiException e) {
+            callErrorCallback(methodCallInfo, e);
+        }
+    }
+
+    private void callErrorCallback(String methodId, final ApiException error) {
+        if (methodId != null) {
+            // Send error back to client
+            callErrorCallback(clientCallbacks.remove(methodId), error);
+        } else {
+            // Notify all pending clients, it might be an error for them
+            for (String id : clientCallbacks.keySet()) {
+                callErrorCallback(clientCallbacks.remove(id), error);
             }
         }
     }
 
+    private <T> void callErrorCallback(final MethodCallInfo<?> methodCallInfo, final ApiException error) {
+        if ((methodCallInfo == null) || methodCallInfo.isCancelled())
+            return;
+
+        stats.onError();
+        methodCallInfo.setDone();
+        @SuppressWarnings("unchecked")
+        final ApiCallback<T> callback = (ApiCallback<T>) methodCallInfo.callback;
+
+        if ((methodCallInfo.handler != null) && (callback != null)) {
+            methodCallInfo.handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (!methodCallInfo.isCancelled())
+                        callback.onError(error.getCode(), error.getMessage());
+                }
+            });
+        }
+    }
+
 	/**
 	 * Cleans up used resources.
 	 * This method should always be called if the protocol used is TCP, so we can shutdown gracefully
+	 * Requests not yet sent are dropped, and those waiting to be sent or for a response get an
+	 * {@link ApiException#API_NO_CONNECTION} error
 	 */
     public void disconnect() {
 		if (protocol == PROTOCOL_HTTP)
 			return;
 
-		try {
-			if (socket != null) {
-				// Remove pending calls
-				if (!socket.isClosed()) {
-					socket.close();
-				}
-			}
-		} catch (IOException e) {
-			LogUtils.LOGE(TAG, "Error while closing socket", e);
-		} finally {
-			socket = null;
-		}
+        synchronized (tcpConnectionLock) {
+            // Closed on purpose, don't try to reopen it
+            if (reconnectFuture != null) {
+                reconnectFuture.cancel(false);
+                reconnectFuture = null;
+            }
+            reconnectAttempts = 0;
+        }
+        closeTcpConnection();
+        tcpSendQueue.clear();
+        callErrorCallback(null, new ApiException(ApiException.API_NO_CONNECTION,
+                                                 "Connection closed"));
 	}
 
+    private void closeTcpConnection() {
+        Socket oldSocket;
+        Thread oldWriterThread;
+        synchronized (tcpConnectionLock) {
+            oldSocket = socket;
+            oldWriterThread = writerThread;
+            socket = null;
+            writerThread = null;
+        }
+        if (oldWriterThread != null) {
+            oldWriterThread.interrupt();
+        }
+        closeSocket(oldSocket);
+    }
+
+    private void closeSocket(Socket socket) {
+        try {
+            if ((socket != null) && !socket.isClosed()) {
+                socket.close();
+            }
+        } catch (IOException e) {
+            LogUtils.LOGE(TAG, "Error while closing socket", e);
+        }
+    }
+
+    private static <T> MethodCallInfo<T> newMethodCallInfo(ApiBatch.Entry<T> entry, Handler handler) {
+        return new MethodCallInfo<T>(entry.method, entry.callback, handler);
+    }
+
 	/**
 	 * Helper class to aggregate a method, callback and handler
 	 * @param <T>
@@ -846,11 +1669,32 @@ public class HostConnection {
 		public final ApiMethod<T> method;
 		public final ApiCallback<T> callback;
 		public final Handler handler;
+        public final long startTime;
+        /**
+         * Future of the call, to check if it was cancelled. Null for methods in a batch
+         */
+        public final ApiFuture<T> future;
 
 		public MethodCallInfo(ApiMethod<T> method, ApiCallback<T> callback, Handler handler) {
+			this(method, callback, handler, null);
+		}
+
+		public MethodCallInfo(ApiMethod<T> method, ApiCallback<T> callback, Handler handler,
+		                      ApiFuture<T> future) {
 			this.method = method;
 			this.callback = callback;
 			this.handler = handler;
+			this.future = future;
+            this.startTime = SystemClock.elapsedRealtime();
+		}
+
+		public boolean isCancelled() {
+			return (future != null) && future.isCancelled();
+		}
+
+		public void setDone() {
+			if (future != null)
+				future.setDone();
 		}
 	}
 }
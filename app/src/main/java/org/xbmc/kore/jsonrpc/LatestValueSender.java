@@ -0,0 +1,158 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbmc.kore.jsonrpc;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * Sends the calls of a continuous control, such as a volume slider or a seek bar, where only
+ * the last value set matters.
+ *
+ * Only one call is in flight at a time. While it is, each new call replaces the one waiting to be
+ * sent, whose callback is never called. Calls are also sent no more often than the smoothed
+ * response time of the connection, so that dragging a slider on a slow link sends the value it
+ * ends on right away, instead of every value it went through.
+ */
+class LatestValueSender {
+
+    /**
+     * Upper bound of the wait between calls, in case the measured latency is way off
+     */
+    private static final long MAX_SEND_INTERVAL = 500; // ms
+
+    private final HostConnection hostConnection;
+    private final ConnectionStats stats;
+
+    /**
+     * Handler on which responses are received and delayed sends are run
+     */
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Call waiting to be sent, whether one is in flight, and when the last one was sent.
+     * Guarded by this
+     */
+    private PendingCall<?> pendingCall = null;
+    private boolean inFlight = false;
+    private boolean sendScheduled = false;
+    private long lastSendTime = -1;
+
+    private final Runnable sendRunnable = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (LatestValueSender.this) {
+                sendScheduled = false;
+            }
+            sendPending();
+        }
+    };
+
+    LatestValueSender(HostConnection hostConnection, ConnectionStats stats) {
+        this.hostConnection = hostConnection;
+        this.stats = stats;
+    }
+
+    /**
+     * Sends a call as soon as allowed, replacing the one waiting to be sent, if any
+     */
+    <T> void execute(ApiMethod<T> method, ApiCallback<T> callback, Handler callbackHandler) {
+        synchronized (this) {
+            if (pendingCall != null)
+                stats.onSuperseded();
+            pendingCall = new PendingCall<>(method, callback, callbackHandler);
+        }
+        sendPending();
+    }
+
+    private void sendPending() {
+        PendingCall<?> call;
+        synchronized (this) {
+            if (inFlight || sendScheduled || (pendingCall == null))
+                return;
+            long now = SystemClock.elapsedRealtime();
+            long wait = (lastSendTime == -1) ? 0 : lastSendTime + getSendInterval() - now;
+            if (wait > 0) {
+                sendScheduled = true;
+                handler.postDelayed(sendRunnable, wait);
+                return;
+            }
+            call = pendingCall;
+            pendingCall = null;
+            inFlight = true;
+            lastSendTime = now;
+        }
+        send(call);
+    }
+
+    private <T> void send(final PendingCall<T> call) {
+        hostConnection.execute(call.method, new ApiCallback<T>() {
+            @Override
+            public void onSuccess(final T result) {
+                onFinished();
+                if ((call.callback != null) && (call.handler != null)) {
+                    call.handler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            call.callback.onSuccess(result);
+                        }
+                    });
+                }
+            }
+
+            @Override
+            public void onError(final int errorCode, final String description) {
+                onFinished();
+                if ((call.callback != null) && (call.handler != null)) {
+                    call.handler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            call.callback.onError(errorCode, description);
+                        }
+                    });
+                }
+            }
+        }, handler);
+    }
+
+    private void onFinished() {
+        synchronized (this) {
+            inFlight = false;
+        }
+        sendPending();
+    }
+
+    /**
+     * Returns the minimum time between two sends, which is the smoothed latency of the connection
+     */
+    private long getSendInterval() {
+        long latency = stats.getAverageLatency();
+        return (latency == -1) ? 0 : Math.min(latency, MAX_SEND_INTERVAL);
+    }
+
+    private static class PendingCall<T> {
+        final ApiMethod<T> method;
+        final ApiCallback<T> callback;
+        final Handler handler;
+
+        PendingCall(ApiMethod<T> method, ApiCallback<T> callback, Handler handler) {
+            this.method = method;
+            this.callback = callback;
+            this.handler = handler;
+        }
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbmc.kore.jsonrpc;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-through layer in front of a {@link HostConnection} for the small reads that several
+ * screens issue at the same time (the player state, the playlist, the volume).
+ *
+ * Calls are keyed by method name and parameters. A call identical to one in flight doesn't go
+ * to the host, it gets the response of the one in flight. Some results are also kept for a
+ * short while, and served from there.
+ * Everything kept is forgotten when a notification of the same namespace comes in, or when a
+ * method that changes something on the host is called, so that reads that follow a change
+ * always go to the host.
+ * The same result object is handed to every caller, so it must not be changed by them.
+ */
+class ReadCoalescer {
+
+    /**
+     * Methods whose identical calls are joined, and how long their results are kept, in ms.
+     * Player.GetProperties isn't kept, the playing time changes all the time
+     */
+    private static final Map<String, Long> COALESCED_METHODS;
+    static {
+        Map<String, Long> methods = new HashMap<>();
+        methods.put("Application.GetProperties", 1000L);
+        methods.put("Player.GetActivePlayers", 1000L);
+        methods.put("Player.GetItem", 1000L);
+        methods.put("Player.GetProperties", 0L);
+        methods.put("Playlist.GetItems", 1000L);
+        methods.put("Playlist.GetPlaylists", 5000L);
+        COALESCED_METHODS = Collections.unmodifiableMap(methods);
+    }
+
+    private final HostConnection hostConnection;
+    private final ConnectionStats stats;
+
+    /**
+     * Handler on which the responses of the calls in flight are received, to hand them to every
+     * caller on its own handler
+     */
+    private final Handler responseHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Calls in flight and kept results, by key. Guarded by this
+     */
+    private final Map<String, InFlightCall> inFlightCalls = new HashMap<>();
+    private final Map<String, CachedResult> cachedResults = new HashMap<>();
+
+    ReadCoalescer(HostConnection hostConnection, ConnectionStats stats) {
+        this.hostConnection = hostConnection;
+        this.stats = stats;
+    }
+
+    /**
+     * Returns whether a method goes through here
+     */
+    static boolean isCoalesced(ApiMethod<?> method) {
+        return COALESCED_METHODS.containsKey(method.getMethodName());
+    }
+
+    /**
+     * Calls a method, which must be one that {@link #isCoalesced(ApiMethod)}.
+     * The callback is posted on the handler with a kept result, the response of an identical
+     * call in flight, or the response of a new call
+     */
+    <T> ApiFuture<T> execute(ApiMethod<T> method, ApiCallback<T> callback, Handler handler) {
+        final String key = getKey(method);
+        ApiFuture<T> future = new ApiFuture<>(hostConnection, method, handler);
+        Waiter<T> waiter = new Waiter<>(callback, handler, future);
+
+        final InFlightCall inFlightCall;
+        synchronized (this) {
+            CachedResult cachedResult = cachedResults.get(key);
+            if (cachedResult != null) {
+                if (cachedResult.expiryTime > SystemClock.elapsedRealtime()) {
+                    stats.onCacheHit();
+                    @SuppressWarnings("unchecked")
+                    T result = (T) cachedResult.result;
+                    waiter.postSuccess(result);
+                    return future;
+                }
+                cachedResults.remove(key);
+            }
+
+            InFlightCall joined = inFlightCalls.get(key);
+            if (joined != null) {
+                stats.onCoalesced();
+                joined.waiters.add(waiter);
+                return future;
+            }
+
+            inFlightCall = new InFlightCall(COALESCED_METHODS.get(method.getMethodName()));
+            inFlightCall.waiters.add(waiter);
+            inFlightCalls.put(key, inFlightCall);
+        }
+
+        ApiFuture<T> wireFuture = hostConnection.executeUncoalesced(method, new ApiCallback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                for (Waiter<?> waiter : finish(key, inFlightCall, result)) {
+                    @SuppressWarnings("unchecked")
+                    Waiter<T> typedWaiter = (Waiter<T>) waiter;
+                    typedWaiter.postSuccess(result);
+                }
+            }
+
+            @Override
+            public void onError(int errorCode, String description) {
+                for (Waiter<?> waiter : finish(key, inFlightCall, null)) {
+                    waiter.postError(errorCode, description);
+                }
+            }
+        }, responseHandler);
+        synchronized (this) {
+            inFlightCall.wireFuture = wireFuture;
+        }
+        return future;
+    }
+
+    /**
+     * Cancels the calls that are waiting for a response to be posted to a handler.
+     * A call in flight is cancelled when nobody is waiting for it anymore
+     */
+    void cancel(Handler handler) {
+        List<ApiFuture<?>> toCancel = new ArrayList<>();
+        synchronized (this) {
+            for (InFlightCall inFlightCall : inFlightCalls.values()) {
+                boolean allCancelled = true;
+                for (Waiter<?> waiter : inFlightCall.waiters) {
+                    if (waiter.handler == handler)
+                        toCancel.add(waiter.future);
+                    else if (!waiter.future.isCancelled())
+                        allCancelled = false;
+                }
+                if (allCancelled && (inFlightCall.wireFuture != null))
+                    toCancel.add(inFlightCall.wireFuture);
+            }
+        }
+        for (ApiFuture<?> future : toCancel) {
+            future.cancel();
+        }
+    }
+
+    /**
+     * Forgets the kept results and calls in flight of a namespace. Calls in flight still get
+     * their responses, but new identical calls go to the host
+     * @param namespace Namespace, such as "Player", or null to forget everything
+     */
+    synchronized void invalidate(String namespace) {
+        if (namespace == null) {
+            cachedResults.clear();
+            inFlightCalls.clear();
+            return;
+        }
+        String prefix = namespace + ".";
+        for (Iterator<String> it = cachedResults.keySet().iterator(); it.hasNext(); ) {
+            if (it.next().startsWith(prefix))
+                it.remove();
+        }
+        for (Iterator<String> it = inFlightCalls.keySet().iterator(); it.hasNext(); ) {
+            if (it.next().startsWith(prefix))
+                it.remove();
+        }
+    }
+
+    /**
+     * Forgets what a notification may have changed. Changes on the player also change the
+     * playlist position
+     * @param notificationName Name of the notification
+     */
+    void onNotification(String notificationName) {
+        int separator = notificationName.indexOf('.');
+        if (separator <= 0)
+            return;
+        String namespace = notificationName.substring(0, separator);
+        invalidate(namespace);
+        if (namespace.equals("Player"))
+            invalidate("Playlist");
+    }
+
+    /**
+     * Removes a call that got its response, keeps the result if needed and returns who is
+     * waiting for it
+     */
+    private synchronized List<Waiter<?>> finish(String key, InFlightCall inFlightCall, Object result) {
+        // If it was invalidated meanwhile, the response may be stale already
+        if (inFlightCalls.get(key) == inFlightCall) {
+            inFlightCalls.remove(key);
+            if ((result != null) && (inFlightCall.ttl > 0)) {
+                cachedResults.put(key, new CachedResult(result,
+                                                        SystemClock.elapsedRealtime() + inFlightCall.ttl));
+            }
+        }
+        return inFlightCall.waiters;
+    }
+
+    /**
+     * Returns the key of a call: its method name followed by its parameters, with the object
+     * fields sorted so that the order in which they were added doesn't matter
+     */
+    static String getKey(ApiMethod<?> method) {
+        StringBuilder key = new StringBuilder(method.getMethodName());
+        JsonNode params = method.toJsonObject().get(ApiMethod.PARAMS_NODE);
+        if (params != null) {
+            appendCanonical(params, key);
+        }
+        return key.toString();
+    }
+
+    private static void appendCanonical(JsonNode node, StringBuilder sb) {
+        if (node.isObject()) {
+            List<String> fieldNames = new ArrayList<>();
+            for (Iterator<String> it = node.fieldNames(); it.hasNext(); ) {
+                fieldNames.add(it.next());
+            }
+            Collections.sort(fieldNames);
+            sb.append('{');
+            for (String fieldName : fieldNames) {
+                sb.append('"').append(fieldName).append("\":");
+                appendCanonical(node.get(fieldName), sb);
+                sb.append(',');
+            }
+            sb.append('}');
+        } else if (node.isArray()) {
+            sb.append('[');
+            for (JsonNode element : node) {
+                appendCanonical(element, sb);
+                sb.append(',');
+            }
+            sb.append(']');
+        } else {
+            sb.append(node.toString());
+        }
+    }
+
+    private static class InFlightCall {
+        final long ttl;
+        final List<Waiter<?>> waiters = new ArrayList<>();
+        ApiFuture<?> wireFuture = null;
+
+        InFlightCall(long ttl) {
+            this.ttl = ttl;
+        }
+    }
+
+    private static class CachedResult {
+        final Object result;
+        final long expiryTime;
+
+        CachedResult(Object result, long expiryTime) {
+            this.result = result;
+            this.expiryTime = expiryTime;
+        }
+    }
+
+    /**
+     * A caller waiting for a response
+     */
+    private static class Waiter<T> {
+        final ApiCallback<T> callback;
+        final Handler handler;
+        final ApiFuture<T> future;
+
+        Waiter(ApiCallback<T> callback, Handler handler, ApiFuture<T> future) {
+            this.callback = callback;
+            this.handler = handler;
+            this.future = future;
+        }
+
+        void postSuccess(final T result) {
+            future.setDone();
+            if ((handler == null) || (callback == null) || future.isCancelled())
+                return;
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (!future.isCancelled())
+                        callback.onSuccess(result);
+                }
+            });
+        }
+
+        void postError(final int errorCode, final String description) {
+            future.setDone();
+            if ((handler == null) || (callback == null) || future.isCancelled())
+                return;
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (!future.isCancelled())
+                        callback.onError(errorCode, description);
+                }
+            });
+        }
+    }
+}
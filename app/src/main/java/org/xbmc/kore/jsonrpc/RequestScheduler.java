@@ -0,0 +1,200 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbmc.kore.jsonrpc;
+
+import android.os.SystemClock;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the HTTP requests of a {@link HostConnection} in the background, ahead of each other
+ * according to their priority class.
+ *
+ * Each class has its own queue and its own limit of requests running at the same time, so that
+ * a slow directory listing or library read never holds back a key press.
+ * Whenever a request finishes, the next one is taken from the highest priority queue that isn't
+ * at its limit. Requests of the same class run in the order they were queued, as long as the
+ * class limit is 1.
+ * The time each request spends waiting in its queue is reported to {@link ConnectionStats}.
+ */
+public class RequestScheduler {
+
+    /**
+     * Priority classes, from highest to lowest
+     */
+    public static final int PRIORITY_INTERACTIVE = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    public static final int PRIORITY_BACKGROUND = 2;
+    public static final int PRIORITY_COUNT = 3;
+
+    /**
+     * Maximum number of requests of each class running at the same time.
+     * Interactive and normal requests are kept sequential, as the order of key presses and
+     * playlist changes matters. Background reads are independent of each other
+     */
+    private static final int[] CONCURRENCY_LIMITS = {1, 1, 2};
+
+    /**
+     * Methods that are the direct result of the user pressing something, by name or name prefix
+     */
+    private static final String[] INTERACTIVE_METHODS = {
+            "Input.",
+            "Player.PlayPause",
+            "Player.Stop",
+            "Player.Seek",
+            "Player.GoTo",
+            "Player.SetSpeed",
+            "Application.SetVolume",
+            "Application.SetMute",
+    };
+
+    /**
+     * Methods that may take long and whose results aren't waited for interactively, by name or
+     * name prefix
+     */
+    private static final String[] BACKGROUND_METHODS = {
+            "Files.GetDirectory",
+            "Files.PrepareDownload",
+            "VideoLibrary.Get",
+            "AudioLibrary.Get",
+            "PVR.Get",
+            "Addons.GetAddons",
+            "Favourites.GetFavourites",
+    };
+
+    private static final long THREAD_KEEP_ALIVE = 30; // s
+
+    private final ConnectionStats stats;
+
+    private final ThreadPoolExecutor executor;
+
+    private final ArrayDeque<QueuedRequest>[] queues;
+    private final int[] running = new int[PRIORITY_COUNT];
+
+    @SuppressWarnings("unchecked")
+    public RequestScheduler(ConnectionStats stats) {
+        this.stats = stats;
+        // Requests are only handed to the executor when a class has room to run them, so the
+        // class limits already bound the number of threads. Idle threads go away after a while
+        this.executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+                                               THREAD_KEEP_ALIVE, TimeUnit.SECONDS,
+                                               new SynchronousQueue<Runnable>());
+        this.queues = new ArrayDeque[PRIORITY_COUNT];
+        for (int i = 0; i < PRIORITY_COUNT; i++) {
+            queues[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Returns the priority class of a JSON RPC method
+     * @param methodName Method name
+     * @return One of {@link #PRIORITY_INTERACTIVE}, {@link #PRIORITY_NORMAL} or
+     * {@link #PRIORITY_BACKGROUND}
+     */
+    public static int getPriority(String methodName) {
+        if (methodName == null)
+            return PRIORITY_NORMAL;
+        for (String prefix : INTERACTIVE_METHODS) {
+            if (methodName.startsWith(prefix))
+                return PRIORITY_INTERACTIVE;
+        }
+        for (String prefix : BACKGROUND_METHODS) {
+            if (methodName.startsWith(prefix))
+                return PRIORITY_BACKGROUND;
+        }
+        return PRIORITY_NORMAL;
+    }
+
+    /**
+     * Returns the priority class of a batch, which is the one of its highest priority method
+     */
+    public static int getPriority(ApiBatch batch) {
+        int priority = PRIORITY_BACKGROUND;
+        for (ApiBatch.Entry<?> entry : batch.getEntries()) {
+            priority = Math.min(priority, getPriority(entry.method.getMethodName()));
+        }
+        return priority;
+    }
+
+    /**
+     * Queues a request to be run as soon as its priority class allows it
+     * @param priority Priority class
+     * @param command Request to run
+     */
+    public void execute(int priority, Runnable command) {
+        synchronized (this) {
+            queues[priority].add(new QueuedRequest(priority, command));
+        }
+        dispatch();
+    }
+
+    /**
+     * Returns the number of requests of a priority class waiting to run
+     */
+    public synchronized int getQueuedCount(int priority) {
+        return queues[priority].size();
+    }
+
+    /**
+     * Hands the waiting requests to the executor, highest priority first, as long as their
+     * class is under its limit
+     */
+    private void dispatch() {
+        while (true) {
+            QueuedRequest next = null;
+            synchronized (this) {
+                for (int i = 0; i < PRIORITY_COUNT; i++) {
+                    if ((running[i] < CONCURRENCY_LIMITS[i]) && !queues[i].isEmpty()) {
+                        next = queues[i].poll();
+                        running[i]++;
+                        break;
+                    }
+                }
+            }
+            if (next == null)
+                return;
+            executor.execute(next);
+        }
+    }
+
+    private class QueuedRequest implements Runnable {
+        final int priority;
+        final Runnable command;
+        final long queuedTime;
+
+        QueuedRequest(int priority, Runnable command) {
+            this.priority = priority;
+            this.command = command;
+            this.queuedTime = SystemClock.elapsedRealtime();
+        }
+
+        @Override
+        public void run() {
+            stats.onQueueWait(priority, SystemClock.elapsedRealtime() - queuedTime);
+            try {
+                command.run();
+            } finally {
+                synchronized (RequestScheduler.this) {
+                    running[priority]--;
+                }
+                dispatch();
+            }
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package org.xbmc.kore.jsonrpc.method;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -26,6 +27,7 @@ import org.xbmc.kore.jsonrpc.type.AudioType;
 import org.xbmc.kore.jsonrpc.type.LibraryType;
 import org.xbmc.kore.jsonrpc.type.ListType;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -145,6 +147,17 @@ public class AudioLibrary {
 
             return new ApiList<>(result, limits);
         }
+
+        @Override
+        public ApiList<AudioType.DetailsArtist> resultFromJsonParser(JsonParser parser)
+                throws ApiException, IOException {
+            return ApiList.fromJsonParser(parser, LIST_NODE, new ApiList.ItemFactory<AudioType.DetailsArtist>() {
+                @Override
+                public AudioType.DetailsArtist fromJson(JsonNode node) {
+                    return new AudioType.DetailsArtist(node);
+                }
+            });
+        }
     }
 
     /**
@@ -202,6 +215,17 @@ public class AudioLibrary {
 
             return new ApiList<>(result, limits);
         }
+
+        @Override
+        public ApiList<AudioType.DetailsAlbum> resultFromJsonParser(JsonParser parser)
+                throws ApiException, IOException {
+            return ApiList.fromJsonParser(parser, LIST_NODE, new ApiList.ItemFactory<AudioType.DetailsAlbum>() {
+                @Override
+                public AudioType.DetailsAlbum fromJson(JsonNode node) {
+                    return new AudioType.DetailsAlbum(node);
+                }
+            });
+        }
     }
 
     /**
@@ -301,6 +325,46 @@ public class AudioLibrary {
 
             return new ApiList<>(result, limits);
         }
+
+        @Override
+        public ApiList<AudioType.DetailsSong> resultFromJsonParser(JsonParser parser)
+                throws ApiException, IOException {
+            return ApiList.fromJsonParser(parser, LIST_NODE, new ApiList.ItemFactory<AudioType.DetailsSong>() {
+                @Override
+                public AudioType.DetailsSong fromJson(JsonNode node) {
+                    return new AudioType.DetailsSong(node);
+                }
+            });
+        }
     }
 
+    /**
+     * Retrieve details about a specific song
+     */
+    public static class GetSongDetails extends ApiMethod<AudioType.DetailsSong> {
+        public final static String METHOD_NAME = "AudioLibrary.GetSongDetails";
+
+        /**
+         * Retrieve details about a specific song
+         *
+         * @param songId Song id
+         * @param properties Properties to retrieve. See {@link AudioType.FieldsSong} for a
+         *                   list of accepted values
+         */
+        public GetSongDetails(int songId, String... properties) {
+            super();
+            addParameterToRequest("songid", songId);
+            addParameterToRequest("properties", properties);
+        }
+
+        @Override
+        public String getMethodName() {
+            return METHOD_NAME;
+        }
+
+        @Override
+        public AudioType.DetailsSong resultFromJson(ObjectNode jsonObject) throws ApiException {
+            return new AudioType.DetailsSong(jsonObject.get(RESULT_NODE).get("songdetails"));
+        }
+    }
 }
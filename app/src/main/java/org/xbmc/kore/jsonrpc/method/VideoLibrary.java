@@ -15,6 +15,7 @@
  */
 package org.xbmc.kore.jsonrpc.method;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -24,6 +25,7 @@ import org.xbmc.kore.jsonrpc.ApiMethod;
 import org.xbmc.kore.jsonrpc.type.ListType;
 import org.xbmc.kore.jsonrpc.type.VideoType;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -113,6 +115,21 @@ public class VideoLibrary {
             addParameterToRequest("limits", limits);
         }
 
+        /**
+         * Retrieve the movies that match a filter, with limits
+         *
+         * @param limits Limits to retrieve. See {@link ListType.Limits}
+         * @param filter Filter to apply. See {@link ListType.FilterRule}
+         * @param properties Properties to retrieve. See {@link VideoType.FieldsMovie} for a list of
+         *                   accepted values
+         */
+        public GetMovies(ListType.Limits limits, ListType.FilterRule filter, String... properties) {
+            super();
+            addParameterToRequest("properties", properties);
+            addParameterToRequest("limits", limits);
+            addParameterToRequest("filter", filter);
+        }
+
         @Override
         public String getMethodName() {
             return METHOD_NAME;
@@ -137,6 +154,17 @@ public class VideoLibrary {
 
             return new ApiList<>(result, limits);
         }
+
+        @Override
+        public ApiList<VideoType.DetailsMovie> resultFromJsonParser(JsonParser parser)
+                throws ApiException, IOException {
+            return ApiList.fromJsonParser(parser, LIST_NODE, new ApiList.ItemFactory<VideoType.DetailsMovie>() {
+                @Override
+                public VideoType.DetailsMovie fromJson(JsonNode node) {
+                    return new VideoType.DetailsMovie(node);
+                }
+            });
+        }
     }
 
     /**
@@ -255,6 +283,17 @@ public class VideoLibrary {
 
             return new ApiList<>(result, limits);
         }
+
+        @Override
+        public ApiList<VideoType.DetailsTVShow> resultFromJsonParser(JsonParser parser)
+                throws ApiException, IOException {
+            return ApiList.fromJsonParser(parser, LIST_NODE, new ApiList.ItemFactory<VideoType.DetailsTVShow>() {
+                @Override
+                public VideoType.DetailsTVShow fromJson(JsonNode node) {
+                    return new VideoType.DetailsTVShow(node);
+                }
+            });
+        }
     }
 
     /**
@@ -321,7 +360,7 @@ public class VideoLibrary {
     /**
      * Retrieve all tv seasons
      */
-    public static class GetSeasons extends ApiMethod<List<VideoType.DetailsSeason>> {
+    public static class GetSeasons extends ApiMethod<ApiList<VideoType.DetailsSeason>> {
         public final static String METHOD_NAME = "VideoLibrary.GetSeasons";
 
         private final static String LIST_NODE = "seasons";
@@ -339,35 +378,60 @@ public class VideoLibrary {
             addParameterToRequest("properties", properties);
         }
 
+        /**
+         * Retrieve the seasons of all tv shows, with limits. Kodi only accepts a call without
+         * a tv show from version 17 (JSON-RPC v8) on
+         *
+         * @param limits Limits to retrieve. See {@link ListType.Limits}
+         * @param properties Properties to retrieve. See {@link VideoType.FieldsSeason} for a
+         *                   list of accepted values
+         */
+        public GetSeasons(ListType.Limits limits, String... properties) {
+            super();
+            addParameterToRequest("properties", properties);
+            addParameterToRequest("limits", limits);
+        }
+
         @Override
         public String getMethodName() {
             return METHOD_NAME;
         }
 
         @Override
-        public List<VideoType.DetailsSeason> resultFromJson(ObjectNode jsonObject)
+        public ApiList<VideoType.DetailsSeason> resultFromJson(ObjectNode jsonObject)
                 throws ApiException {
+            ListType.LimitsReturned limits = new ListType.LimitsReturned(jsonObject);
             JsonNode resultNode = jsonObject.get(RESULT_NODE);
             ArrayNode items = resultNode.has(LIST_NODE) ?
                               (ArrayNode)resultNode.get(LIST_NODE) : null;
             if (items == null) {
-                return new ArrayList<VideoType.DetailsSeason>(0);
+                return new ApiList<>(new ArrayList<VideoType.DetailsSeason>(0), limits);
             }
-            ArrayList<VideoType.DetailsSeason> result = new ArrayList<VideoType.DetailsSeason>(items
-                    .size());
+            ArrayList<VideoType.DetailsSeason> result = new ArrayList<>(items.size());
 
             for (JsonNode item : items) {
                 result.add(new VideoType.DetailsSeason(item));
             }
 
-            return result;
+            return new ApiList<>(result, limits);
+        }
+
+        @Override
+        public ApiList<VideoType.DetailsSeason> resultFromJsonParser(JsonParser parser)
+                throws ApiException, IOException {
+            return ApiList.fromJsonParser(parser, LIST_NODE, new ApiList.ItemFactory<VideoType.DetailsSeason>() {
+                @Override
+                public VideoType.DetailsSeason fromJson(JsonNode node) {
+                    return new VideoType.DetailsSeason(node);
+                }
+            });
         }
     }
 
     /**
      * Retrieve all tv show episodes
      */
-    public static class GetEpisodes extends ApiMethod<List<VideoType.DetailsEpisode>> {
+    public static class GetEpisodes extends ApiMethod<ApiList<VideoType.DetailsEpisode>> {
         public final static String METHOD_NAME = "VideoLibrary.GetEpisodes";
 
         private final static String LIST_NODE = "episodes";
@@ -400,28 +464,83 @@ public class VideoLibrary {
             addParameterToRequest("properties", properties);
         }
 
+        /**
+         * Retrieve the episodes of all tv shows, with limits
+         *
+         * @param limits Limits to retrieve. See {@link ListType.Limits}
+         * @param properties Properties to retrieve. See {@link VideoType.FieldsEpisode} for a
+         *                   list of accepted values
+         */
+        public GetEpisodes(ListType.Limits limits, String... properties) {
+            super();
+            addParameterToRequest("properties", properties);
+            addParameterToRequest("limits", limits);
+        }
+
         @Override
         public String getMethodName() {
             return METHOD_NAME;
         }
 
         @Override
-        public List<VideoType.DetailsEpisode> resultFromJson(ObjectNode jsonObject)
+        public ApiList<VideoType.DetailsEpisode> resultFromJson(ObjectNode jsonObject)
                 throws ApiException {
+            ListType.LimitsReturned limits = new ListType.LimitsReturned(jsonObject);
             JsonNode resultNode = jsonObject.get(RESULT_NODE);
             ArrayNode items = resultNode.has(LIST_NODE) ?
                               (ArrayNode)resultNode.get(LIST_NODE) : null;
             if (items == null) {
-                return new ArrayList<VideoType.DetailsEpisode>(0);
+                return new ApiList<>(new ArrayList<VideoType.DetailsEpisode>(0), limits);
             }
-            ArrayList<VideoType.DetailsEpisode> result = new ArrayList<VideoType.DetailsEpisode>(items
-                    .size());
+            ArrayList<VideoType.DetailsEpisode> result = new ArrayList<>(items.size());
 
             for (JsonNode item : items) {
                 result.add(new VideoType.DetailsEpisode(item));
             }
 
-            return result;
+            return new ApiList<>(result, limits);
+        }
+
+        @Override
+        public ApiList<VideoType.DetailsEpisode> resultFromJsonParser(JsonParser parser)
+                throws ApiException, IOException {
+            return ApiList.fromJsonParser(parser, LIST_NODE, new ApiList.ItemFactory<VideoType.DetailsEpisode>() {
+                @Override
+                public VideoType.DetailsEpisode fromJson(JsonNode node) {
+                    return new VideoType.DetailsEpisode(node);
+                }
+            });
+        }
+    }
+
+    /**
+     * Retrieve details about a specific tv show episode
+     */
+    public static class GetEpisodeDetails extends ApiMethod<VideoType.DetailsEpisode> {
+        public final static String METHOD_NAME = "VideoLibrary.GetEpisodeDetails";
+
+        /**
+         * Retrieve details about a specific tv show episode
+         *
+         * @param episodeId Episode id
+         * @param properties Properties to retrieve. See {@link VideoType.FieldsEpisode} for a list of
+         *                   accepted values
+         */
+        public GetEpisodeDetails(int episodeId, String... properties) {
+            super();
+            addParameterToRequest("episodeid", episodeId);
+            addParameterToRequest("properties", properties);
+        }
+
+        @Override
+        public String getMethodName() {
+            return METHOD_NAME;
+        }
+
+        @Override
+        public VideoType.DetailsEpisode resultFromJson(ObjectNode jsonObject)
+                throws ApiException {
+            return new VideoType.DetailsEpisode(jsonObject.get(RESULT_NODE).get("episodedetails"));
         }
     }
 
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbmc.kore.jsonrpc.notification;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.xbmc.kore.jsonrpc.ApiNotification;
+import org.xbmc.kore.utils.JsonUtils;
+
+/**
+ * All AudioLibrary.* notifications
+ */
+public class AudioLibrary {
+
+    /**
+     * Item types sent on the notifications
+     */
+    public static final String ITEM_TYPE_SONG = "song";
+    public static final String ITEM_TYPE_ALBUM = "album";
+    public static final String ITEM_TYPE_ARTIST = "artist";
+
+    /**
+     * AudioLibrary.OnUpdate notification
+     * An item has been updated, or added to the library
+     */
+    public static class OnUpdate extends ApiNotification {
+        public static final String  NOTIFICATION_NAME = "AudioLibrary.OnUpdate";
+
+        public final int itemId;
+        /**
+         * Type of the item: "song", "album" or "artist"
+         */
+        public final String itemType;
+        /**
+         * New playcount, or -1 if the playcount didn't change
+         */
+        public final int playcount;
+        /**
+         * Whether the item was just added to the library. Only sent by recent versions of Kodi
+         */
+        public final boolean added;
+        /**
+         * Whether the update is part of a larger operation, like a library scan
+         */
+        public final boolean transaction;
+
+        public OnUpdate(ObjectNode node) {
+            super(node);
+            JsonNode dataNode = node.get("data");
+            // Recent versions send the item on an "item" node, older ones on the data node
+            JsonNode itemNode = ((dataNode != null) && dataNode.has("item")) ? dataNode.get("item") : dataNode;
+            itemId = JsonUtils.intFromJsonNode(itemNode, "id");
+            itemType = JsonUtils.stringFromJsonNode(itemNode, "type");
+            playcount = JsonUtils.intFromJsonNode(dataNode, "playcount", -1);
+            added = JsonUtils.booleanFromJsonNode(dataNode, "added", false);
+            transaction = JsonUtils.booleanFromJsonNode(dataNode, "transaction", false);
+        }
+
+        public String getNotificationName() { return NOTIFICATION_NAME; }
+    }
+
+    /**
+     * AudioLibrary.OnRemove notification
+     * An item has been removed from the library
+     */
+    public static class OnRemove extends ApiNotification {
+        public static final String  NOTIFICATION_NAME = "AudioLibrary.OnRemove";
+
+        public final int itemId;
+        /**
+         * Type of the item: "song", "album" or "artist"
+         */
+        public final String itemType;
+        /**
+         * Whether the removal is part of a larger operation, like a library clean
+         */
+        public final boolean transaction;
+
+        public OnRemove(ObjectNode node) {
+            super(node);
+            JsonNode dataNode = node.get("data");
+            itemId = JsonUtils.intFromJsonNode(dataNode, "id");
+            itemType = JsonUtils.stringFromJsonNode(dataNode, "type");
+            transaction = JsonUtils.booleanFromJsonNode(dataNode, "transaction", false);
+        }
+
+        public String getNotificationName() { return NOTIFICATION_NAME; }
+    }
+
+    /**
+     * AudioLibrary.OnScanFinished notification
+     * A library scan has finished
+     */
+    public static class OnScanFinished extends ApiNotification {
+        public static final String  NOTIFICATION_NAME = "AudioLibrary.OnScanFinished";
+
+        public OnScanFinished(ObjectNode node) {
+            super(node);
+        }
+
+        public String getNotificationName() { return NOTIFICATION_NAME; }
+    }
+
+    /**
+     * AudioLibrary.OnCleanFinished notification
+     * A library clean operation has finished
+     */
+    public static class OnCleanFinished extends ApiNotification {
+        public static final String  NOTIFICATION_NAME = "AudioLibrary.OnCleanFinished";
+
+        public OnCleanFinished(ObjectNode node) {
+            super(node);
+        }
+
+        public String getNotificationName() { return NOTIFICATION_NAME; }
+    }
+}
@@ -185,7 +185,7 @@ public class Player {
 
         public NotificationsItem(JsonNode node) {
             type = JsonUtils.stringFromJsonNode(node, "type", TYPE_UNKNOWN);
-            id = JsonUtils.intFromJsonNode(node, "speed");
+            id = JsonUtils.intFromJsonNode(node, "id", -1);
             title = JsonUtils.stringFromJsonNode(node, "title");
             year = JsonUtils.intFromJsonNode(node, "year", 0);
             episode = JsonUtils.intFromJsonNode(node, "episode", 0);
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbmc.kore.jsonrpc.notification;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.xbmc.kore.jsonrpc.ApiNotification;
+import org.xbmc.kore.utils.JsonUtils;
+
+/**
+ * All VideoLibrary.* notifications
+ */
+public class VideoLibrary {
+
+    /**
+     * Item types sent on the notifications
+     */
+    public static final String ITEM_TYPE_MOVIE = "movie";
+    public static final String ITEM_TYPE_TVSHOW = "tvshow";
+    public static final String ITEM_TYPE_EPISODE = "episode";
+    public static final String ITEM_TYPE_MUSICVIDEO = "musicvideo";
+
+    /**
+     * VideoLibrary.OnUpdate notification
+     * An item has been updated, or added to the library
+     */
+    public static class OnUpdate extends ApiNotification {
+        public static final String  NOTIFICATION_NAME = "VideoLibrary.OnUpdate";
+
+        public final int itemId;
+        /**
+         * Type of the item: "movie", "tvshow", "episode" or "musicvideo"
+         */
+        public final String itemType;
+        /**
+         * New playcount, or -1 if the playcount didn't change
+         */
+        public final int playcount;
+        /**
+         * Whether the item was just added to the library. Only sent by recent versions of Kodi
+         */
+        public final boolean added;
+        /**
+         * Whether the update is part of a larger operation, like a library scan
+         */
+        public final boolean transaction;
+
+        public OnUpdate(ObjectNode node) {
+            super(node);
+            JsonNode dataNode = node.get("data");
+            // Recent versions send the item on an "item" node, older ones on the data node
+            JsonNode itemNode = ((dataNode != null) && dataNode.has("item")) ? dataNode.get("item") : dataNode;
+            itemId = JsonUtils.intFromJsonNode(itemNode, "id");
+            itemType = JsonUtils.stringFromJsonNode(itemNode, "type");
+            playcount = JsonUtils.intFromJsonNode(dataNode, "playcount", -1);
+            added = JsonUtils.booleanFromJsonNode(dataNode, "added", false);
+            transaction = JsonUtils.booleanFromJsonNode(dataNode, "transaction", false);
+        }
+
+        public String getNotificationName() { return NOTIFICATION_NAME; }
+    }
+
+    /**
+     * VideoLibrary.OnRemove notification
+     * An item has been removed from the library
+     */
+    public static class OnRemove extends ApiNotification {
+        public static final String  NOTIFICATION_NAME = "VideoLibrary.OnRemove";
+
+        public final int itemId;
+        /**
+         * Type of the item: "movie", "tvshow", "episode" or "musicvideo"
+         */
+        public final String itemType;
+        /**
+         * Whether the removal is part of a larger operation, like a library clean
+         */
+        public final boolean transaction;
+
+        public OnRemove(ObjectNode node) {
+            super(node);
+            JsonNode dataNode = node.get("data");
+            itemId = JsonUtils.intFromJsonNode(dataNode, "id");
+            itemType = JsonUtils.stringFromJsonNode(dataNode, "type");
+            transaction = JsonUtils.booleanFromJsonNode(dataNode, "transaction", false);
+        }
+
+        public String getNotificationName() { return NOTIFICATION_NAME; }
+    }
+
+    /**
+     * VideoLibrary.OnScanFinished notification
+     * A library scan has finished
+     */
+    public static class OnScanFinished extends ApiNotification {
+        public static final String  NOTIFICATION_NAME = "VideoLibrary.OnScanFinished";
+
+        public OnScanFinished(ObjectNode node) {
+            super(node);
+        }
+
+        public String getNotificationName() { return NOTIFICATION_NAME; }
+    }
+
+    /**
+     * VideoLibrary.OnCleanFinished notification
+     * A library clean operation has finished
+     */
+    public static class OnCleanFinished extends ApiNotification {
+        public static final String  NOTIFICATION_NAME = "VideoLibrary.OnCleanFinished";
+
+        public OnCleanFinished(ObjectNode node) {
+            super(node);
+        }
+
+        public String getNotificationName() { return NOTIFICATION_NAME; }
+    }
+}
@@ -44,6 +44,17 @@ public class GlobalType {
             seconds = JsonUtils.intFromJsonNode(node, SECONDS, 0);
         }
 
+        /**
+         * Builds a time from its fields, to anchor a {@link org.xbmc.kore.host.PlaybackClock}
+         * on a position that didn't come from the host
+         */
+        public Time(int hours, int minutes, int seconds, int milliseconds) {
+            this.hours = hours;
+            this.minutes = minutes;
+            this.seconds = seconds;
+            this.milliseconds = milliseconds;
+        }
+
         /**
          * Returns the seconds from midnight that this time object represents
          * @return Seconds from midnight
@@ -343,14 +343,63 @@ public class ListType {
         }
     }
 
+    /**
+     * List.Filter.Rule
+     */
+    public static class FilterRule
+            implements ApiParameter {
+        public static final String OPERATOR_IS = "is";
+        public static final String OPERATOR_GREATER_THAN = "greaterthan";
+        public static final String OPERATOR_LESS_THAN = "lessthan";
+        public static final String OPERATOR_AFTER = "after";
+        public static final String OPERATOR_BEFORE = "before";
+
+        public static final String FIELD = "field";
+        public static final String OPERATOR = "operator";
+        public static final String VALUE = "value";
+
+        protected static final ObjectMapper objectMapper = new ObjectMapper();
+
+        public final String field;
+        public final String operator;
+        public final String value;
+
+        /**
+         * Constructor
+         * @param field Field to filter on. Depends on the list being filtered, see the
+         *              List.Filter.Fields types
+         * @param operator Operator, one of the constants in this class
+         * @param value Value to compare with
+         */
+        public FilterRule(String field, String operator, String value) {
+            this.field = field;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        public JsonNode toJsonNode() {
+            final ObjectNode node = objectMapper.createObjectNode();
+            node.put(FIELD, field);
+            node.put(OPERATOR, operator);
+            node.put(VALUE, value);
+            return node;
+        }
+    }
+
     public static class LimitsReturned {
         public int start = -1;
         public int end = -1;
         public int total = -1;
 
         public LimitsReturned(ObjectNode jsonNode) {
-            JsonNode resultNode = jsonNode.get("result");
-            JsonNode item = resultNode.has("limits") ? resultNode.get("limits") : null;
+            this(jsonNode.get("result").get("limits"));
+        }
+
+        /**
+         * Constructor from the limits node itself
+         * @param item Limits node, if null all values are set to -1
+         */
+        public LimitsReturned(JsonNode item) {
             if (item == null) {
                 return;
             }
@@ -179,6 +179,44 @@ public class PlayerType {
             totaltime = node.has(TOTALTIME) ? new GlobalType.Time(node.get(TOTALTIME)) : null;
             type = JsonUtils.stringFromJsonNode(node, TYPE, "video");
         }
+
+        /**
+         * Copies a set of properties, replacing the ones that change while playing.
+         * Used to apply changes reported by notifications without asking for all the
+         * properties again
+         * @param base Properties to copy
+         * @param speed New speed
+         * @param time New time, null to keep the one in base
+         * @param percentage New percentage
+         * @param repeat New repeat mode, null to keep the one in base
+         * @param shuffled New shuffled state
+         */
+        public PropertyValue(PropertyValue base, int speed, GlobalType.Time time, double percentage,
+                             String repeat, boolean shuffled) {
+            audiostreams = base.audiostreams;
+            canchangespeed = base.canchangespeed;
+            canmove = base.canmove;
+            canrepeat = base.canrepeat;
+            canrotate = base.canrotate;
+            canseek = base.canseek;
+            canshuffle = base.canshuffle;
+            canzoom = base.canzoom;
+            currentaudiostream = base.currentaudiostream;
+            currentsubtitle = base.currentsubtitle;
+            live = base.live;
+            partymode = base.partymode;
+            this.percentage = percentage;
+            playlistid = base.playlistid;
+            position = base.position;
+            this.repeat = (repeat != null) ? repeat : base.repeat;
+            this.shuffled = shuffled;
+            this.speed = speed;
+            subtitleenabled = base.subtitleenabled;
+            subtitles = base.subtitles;
+            this.time = (time != null) ? time : base.time;
+            totaltime = base.totaltime;
+            type = base.type;
+        }
     }
 
     /**
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbmc.kore.provider;
+
+import android.content.ContentProvider;
+import android.content.ContentProviderClient;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.net.Uri;
+
+/**
+ * A batch of rows to bulk insert in one of the {@link MediaProvider} tables, without building a
+ * {@link ContentValues} for each row.
+ *
+ * The batch declares its columns once, and for each row writes the values by column index, so
+ * the provider can bind them straight into a compiled insert statement. Use this for the big
+ * tables (songs, episodes), where allocating and hashing a {@link ContentValues} per row
+ * dominates the sync time.
+ */
+public abstract class InsertBatch {
+
+    /**
+     * Receives the values of a row. Column indexes refer to {@link #getColumns()}
+     */
+    public interface RowWriter {
+        void writeLong(int column, long value);
+        void writeDouble(int column, double value);
+        void writeString(int column, String value);
+    }
+
+    private final String[] columns;
+
+    /**
+     * Constructor
+     * @param columns Columns written for each row, in the order used by
+     *                {@link #writeRow(int, RowWriter)}
+     */
+    protected InsertBatch(String... columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Returns the columns of this batch
+     * @return Column names
+     */
+    public String[] getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns the number of rows to insert
+     * @return Number of rows
+     */
+    public abstract int size();
+
+    /**
+     * Writes the values of a row. Columns not written are inserted as null
+     * @param position Row position
+     * @param writer Writer to use
+     */
+    public abstract void writeRow(int position, RowWriter writer);
+
+    /**
+     * Inserts this batch through the {@link MediaProvider} responsible for the uri.
+     * If the provider lives in this process the rows are bound straight into a compiled
+     * statement, otherwise they are converted to {@link ContentValues} and inserted through
+     * {@link ContentResolver#bulkInsert(Uri, ContentValues[])}
+     * @param contentResolver Content resolver
+     * @param uri Uri of the table, same as for bulkInsert
+     * @return Number of rows inserted
+     */
+    public int insert(ContentResolver contentResolver, Uri uri) {
+        if (size() == 0) return 0;
+
+        ContentProviderClient client = contentResolver.acquireContentProviderClient(uri);
+        if (client != null) {
+            try {
+                ContentProvider provider = client.getLocalContentProvider();
+                if (provider instanceof MediaProvider) {
+                    return ((MediaProvider) provider).bulkInsert(uri, this);
+                }
+            } finally {
+                client.release();
+            }
+        }
+        return contentResolver.bulkInsert(uri, toContentValues());
+    }
+
+    /**
+     * Converts the rows of this batch to {@link ContentValues}
+     * @return One {@link ContentValues} per row
+     */
+    public ContentValues[] toContentValues() {
+        final ContentValues[] values = new ContentValues[size()];
+        for (int i = 0; i < values.length; i++) {
+            final ContentValues row = new ContentValues(columns.length);
+            writeRow(i, new RowWriter() {
+                @Override
+                public void writeLong(int column, long value) {
+                    row.put(columns[column], value);
+                }
+
+                @Override
+                public void writeDouble(int column, double value) {
+                    row.put(columns[column], value);
+                }
+
+                @Override
+                public void writeString(int column, String value) {
+                    row.put(columns[column], value);
+                }
+            });
+            values[i] = row;
+        }
+        return values;
+    }
+}
@@ -32,6 +32,11 @@ public class MediaContract {
      */
     public static final String LIMIT_QUERY = "limit";
 
+    /**
+     * Query parameter with the text to look for in search URIs
+     */
+    public static final String SEARCH_QUERY = "query";
+
     /**
      * Paths to tables
      */
@@ -50,6 +55,13 @@ public class MediaContract {
     public static final String PATH_ALBUM_ARTISTS = "album_artists";
     public static final String PATH_ALBUM_GENRES = "album_genres";
     public static final String PATH_MUSIC_VIDEOS = "music_videos";
+    public static final String PATH_SEARCH = "search";
+    public static final String PATH_PVR_CHANNEL_GROUPS = "pvr_channel_groups";
+    public static final String PATH_PVR_CHANNELS = "pvr_channels";
+    public static final String PATH_PVR_BROADCASTS = "pvr_broadcasts";
+    public static final String PATH_ADDONS = "addons";
+    public static final String PATH_FAVOURITES = "favourites";
+    public static final String PATH_SYNC_STATE = "sync_state";
 
     /** Last time this entry was updated or synchronized. */
     public interface SyncColumns {
@@ -164,6 +176,15 @@ public class MediaContract {
                         .build();
         }
 
+        /** Build {@link Uri} for the movies matching a full text search query. */
+        public static Uri buildMoviesSearchUri(long hostId, String query) {
+            return Hosts.buildHostUri(hostId).buildUpon()
+                        .appendPath(PATH_SEARCH)
+                        .appendPath(PATH_MOVIES)
+                        .appendQueryParameter(SEARCH_QUERY, query)
+                        .build();
+        }
+
         /** Build {@link Uri} for requested {@link #_ID}. */
         public static Uri buildMovieUri(long hostId, long movieId) {
             return Hosts.buildHostUri(hostId).buildUpon()
@@ -259,6 +280,15 @@ public class MediaContract {
                         .build();
         }
 
+        /** Build {@link Uri} for the tv shows matching a full text search query. */
+        public static Uri buildTVShowsSearchUri(long hostId, String query) {
+            return Hosts.buildHostUri(hostId).buildUpon()
+                        .appendPath(PATH_SEARCH)
+                        .appendPath(PATH_TVSHOWS)
+                        .appendQueryParameter(SEARCH_QUERY, query)
+                        .build();
+        }
+
         /** Build {@link Uri} for requested {@link #_ID}. */
         public static Uri buildTVShowUri(long hostId, long tvshowId) {
             return Hosts.buildHostUri(hostId).buildUpon()
@@ -498,6 +528,15 @@ public class MediaContract {
                         .build();
         }
 
+        /** Build {@link Uri} for the artists matching a full text search query. */
+        public static Uri buildArtistsSearchUri(long hostId, String query) {
+            return Hosts.buildHostUri(hostId).buildUpon()
+                        .appendPath(PATH_SEARCH)
+                        .appendPath(PATH_ARTISTS)
+                        .appendQueryParameter(SEARCH_QUERY, query)
+                        .build();
+        }
+
         /** Build {@link Uri} for requested {@link #_ID}. */
         public static Uri buildArtistUri(long hostId, long artistId) {
             return Hosts.buildHostUri(hostId).buildUpon()
@@ -552,6 +591,15 @@ public class MediaContract {
                         .build();
         }
 
+        /** Build {@link Uri} for the albums matching a full text search query. */
+        public static Uri buildAlbumsSearchUri(long hostId, String query) {
+            return Hosts.buildHostUri(hostId).buildUpon()
+                        .appendPath(PATH_SEARCH)
+                        .appendPath(PATH_ALBUMS)
+                        .appendQueryParameter(SEARCH_QUERY, query)
+                        .build();
+        }
+
         /** Build {@link Uri} for albums artists list. */
         public static Uri buildAlbumArtistsListUri(long hostId, long albumId) {
             return Hosts.buildHostUri(hostId).buildUpon()
@@ -643,6 +691,15 @@ public class MediaContract {
                         .build();
         }
 
+        /** Build {@link Uri} for the songs matching a full text search query. */
+        public static Uri buildSongsSearchUri(long hostId, String query) {
+            return Hosts.buildHostUri(hostId).buildUpon()
+                        .appendPath(PATH_SEARCH)
+                        .appendPath(PATH_SONGS)
+                        .appendQueryParameter(SEARCH_QUERY, query)
+                        .build();
+        }
+
         /** Read {@link #_ID} from {@link Albums} {@link Uri}. */
         public static String getSongId(Uri uri) {
             return uri.getPathSegments().get(5);
@@ -857,6 +914,15 @@ public class MediaContract {
                         .build();
         }
 
+        /** Build {@link Uri} for the music videos matching a full text search query. */
+        public static Uri buildMusicVideosSearchUri(long hostId, String query) {
+            return Hosts.buildHostUri(hostId).buildUpon()
+                        .appendPath(PATH_SEARCH)
+                        .appendPath(PATH_MUSIC_VIDEOS)
+                        .appendQueryParameter(SEARCH_QUERY, query)
+                        .build();
+        }
+
         /** Build {@link Uri} for requested {@link #_ID}. */
         public static Uri buildMusicVideoUri(long hostId, long musicVideoId) {
             return Hosts.buildHostUri(hostId).buildUpon()
@@ -878,4 +944,296 @@ public class MediaContract {
         };
     }
 
+    /**
+     * Columns for table PVR_CHANNEL_GROUPS
+     * For XBMC reference/unique key use HOST_ID + CHANNELGROUPID
+     */
+    public interface PVRChannelGroupsColumns {
+        String HOST_ID = "host_id";
+        String CHANNELGROUPID = "channelgroupid";
+        String CHANNELTYPE = "channeltype";
+        String LABEL = "label";
+    }
+
+    public static class PVRChannelGroups implements BaseColumns, SyncColumns, PVRChannelGroupsColumns {
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_PVR_CHANNEL_GROUPS).build();
+
+        public static final String CONTENT_TYPE =
+                "vnd.android.cursor.dir/vnd.org.xbmc." + PATH_PVR_CHANNEL_GROUPS;
+
+        /** Build {@link Uri} for channel groups list. */
+        public static Uri buildChannelGroupsListUri(long hostId) {
+            return Hosts.buildHostUri(hostId).buildUpon()
+                        .appendPath(PATH_PVR_CHANNEL_GROUPS)
+                        .build();
+        }
+
+        /** Read {@link #CHANNELGROUPID} from {@link PVRChannelGroups} {@link Uri}. */
+        public static String getChannelGroupId(Uri uri) {
+            return uri.getPathSegments().get(3);
+        }
+
+        public final static String[] ALL_COLUMNS = {
+                _ID, UPDATED, HOST_ID, CHANNELGROUPID, CHANNELTYPE, LABEL
+        };
+    }
+
+    /**
+     * Columns for table PVR_CHANNELS. There's a row for each channel in each group
+     * For XBMC reference/unique key use HOST_ID + CHANNELGROUPID + CHANNELID
+     */
+    public interface PVRChannelsColumns {
+        String HOST_ID = "host_id";
+        String CHANNELGROUPID = "channelgroupid";
+        String CHANNELID = "channelid";
+        String CHANNELTYPE = "channeltype";
+        String CHANNEL = "channel";
+        String THUMBNAIL = "thumbnail";
+        String HIDDEN = "hidden";
+        String LOCKED = "locked";
+
+        /** Last time the broadcasts of the channel were synced, in ms */
+        String EPG_UPDATED = "epg_updated";
+        /** End time of the last broadcast of the channel that was synced, in ms.
+         * {@link Long#MAX_VALUE} if the channel had no guide, or it couldn't be read */
+        String EPG_END = "epg_end";
+
+        /** Title of the broadcast airing when queried. Not stored, only available in list queries */
+        String BROADCASTNOW_TITLE = "broadcastnow_title";
+    }
+
+    public static class PVRChannels implements BaseColumns, SyncColumns, PVRChannelsColumns {
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_PVR_CHANNELS).build();
+
+        public static final String CONTENT_TYPE =
+                "vnd.android.cursor.dir/vnd.org.xbmc." + PATH_PVR_CHANNELS;
+
+        /** Build {@link Uri} for the channels of all the groups. */
+        public static Uri buildChannelsListUri(long hostId) {
+            return Hosts.buildHostUri(hostId).buildUpon()
+                        .appendPath(PATH_PVR_CHANNELS)
+                        .build();
+        }
+
+        /** Build {@link Uri} for the channels of a group. */
+        public static Uri buildChannelGroupChannelsListUri(long hostId, long channelGroupId) {
+            return Hosts.buildHostUri(hostId).buildUpon()
+                        .appendPath(PATH_PVR_CHANNEL_GROUPS)
+                        .appendPath(String.valueOf(channelGroupId))
+                        .appendPath(PATH_PVR_CHANNELS)
+                        .build();
+        }
+
+        /** Read {@link #CHANNELID} from {@link PVRChannels} {@link Uri}. */
+        public static String getChannelId(Uri uri) {
+            return uri.getPathSegments().get(3);
+        }
+
+        public final static String[] ALL_COLUMNS = {
+                _ID, UPDATED, HOST_ID, CHANNELGROUPID, CHANNELID, CHANNELTYPE, CHANNEL, THUMBNAIL,
+                HIDDEN, LOCKED, EPG_UPDATED, EPG_END
+        };
+    }
+
+    /**
+     * Columns for table PVR_BROADCASTS. Only the broadcasts that haven't ended, up to a
+     * few days ahead, are stored
+     * For XBMC reference/unique key use HOST_ID + CHANNELID + BROADCASTID
+     */
+    public interface PVRBroadcastsColumns {
+        String HOST_ID = "host_id";
+        String CHANNELID = "channelid";
+        String BROADCASTID = "broadcastid";
+        String TITLE = "title";
+        String PLOT = "plot";
+        String GENRE = "genre";
+        String EPISODENAME = "episodename";
+        String THUMBNAIL = "thumbnail";
+        String RUNTIME = "runtime";
+        String HASTIMER = "hastimer";
+
+        /** In ms, UTC */
+        String STARTTIME = "starttime";
+        /** In ms, UTC */
+        String ENDTIME = "endtime";
+    }
+
+    public static class PVRBroadcasts implements BaseColumns, SyncColumns, PVRBroadcastsColumns {
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_PVR_BROADCASTS).build();
+
+        public static final String CONTENT_TYPE =
+                "vnd.android.cursor.dir/vnd.org.xbmc." + PATH_PVR_BROADCASTS;
+
+        /** Build {@link Uri} for the broadcasts of all the channels. */
+        public static Uri buildBroadcastsListUri(long hostId) {
+            return Hosts.buildHostUri(hostId).buildUpon()
+                        .appendPath(PATH_PVR_BROADCASTS)
+                        .build();
+        }
+
+        /** Build {@link Uri} for the broadcasts of a channel. */
+        public static Uri buildChannelBroadcastsListUri(long hostId, long channelId) {
+            return Hosts.buildHostUri(hostId).buildUpon()
+                        .appendPath(PATH_PVR_CHANNELS)
+                        .appendPath(String.valueOf(channelId))
+                        .appendPath(PATH_PVR_BROADCASTS)
+                        .build();
+        }
+
+        public final static String[] ALL_COLUMNS = {
+                _ID, UPDATED, HOST_ID, CHANNELID, BROADCASTID, TITLE, PLOT, GENRE, EPISODENAME,
+                THUMBNAIL, RUNTIME, HASTIMER, STARTTIME, ENDTIME
+        };
+    }
+
+    /**
+     * Columns for table ADDONS. Only the addons that can be browsed or executed are stored
+     * For XBMC reference/unique key use HOST_ID + ADDONID
+     */
+    public interface AddonsColumns {
+        String HOST_ID = "host_id";
+        String ADDONID = "addonid";
+        String TYPE = "type";
+        String NAME = "name";
+        String VERSION = "version";
+        String SUMMARY = "summary";
+        String DESCRIPTION = "description";
+        String PATH = "path";
+        String AUTHOR = "author";
+        String THUMBNAIL = "thumbnail";
+        String FANART = "fanart";
+        String DISCLAIMER = "disclaimer";
+        String RATING = "rating";
+        String ENABLED = "enabled";
+    }
+
+    public static class Addons implements BaseColumns, SyncColumns, AddonsColumns {
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_ADDONS).build();
+
+        public static final String CONTENT_TYPE =
+                "vnd.android.cursor.dir/vnd.org.xbmc." + PATH_ADDONS;
+
+        /** Build {@link Uri} for addons list. */
+        public static Uri buildAddonsListUri(long hostId) {
+            return Hosts.buildHostUri(hostId).buildUpon()
+                        .appendPath(PATH_ADDONS)
+                        .build();
+        }
+
+        public final static String[] ALL_COLUMNS = {
+                _ID, UPDATED, HOST_ID, ADDONID, TYPE, NAME, VERSION, SUMMARY, DESCRIPTION, PATH,
+                AUTHOR, THUMBNAIL, FANART, DISCLAIMER, RATING, ENABLED
+        };
+    }
+
+    /**
+     * Columns for table FAVOURITES. Favourites have no id on XBMC, they're stored in the
+     * order XBMC returns them
+     */
+    public interface FavouritesColumns {
+        String HOST_ID = "host_id";
+        String TITLE = "title";
+        String TYPE = "type";
+        String PATH = "path";
+        String WINDOW = "window";
+        String WINDOW_PARAMETER = "window_parameter";
+        String THUMBNAIL = "thumbnail";
+    }
+
+    public static class Favourites implements BaseColumns, SyncColumns, FavouritesColumns {
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_FAVOURITES).build();
+
+        public static final String CONTENT_TYPE =
+                "vnd.android.cursor.dir/vnd.org.xbmc." + PATH_FAVOURITES;
+
+        /** Build {@link Uri} for favourites list. */
+        public static Uri buildFavouritesListUri(long hostId) {
+            return Hosts.buildHostUri(hostId).buildUpon()
+                        .appendPath(PATH_FAVOURITES)
+                        .build();
+        }
+
+        public final static String[] ALL_COLUMNS = {
+                _ID, UPDATED, HOST_ID, TITLE, TYPE, PATH, WINDOW, WINDOW_PARAMETER, THUMBNAIL
+        };
+    }
+
+    /**
+     * Columns for table SYNC_STATE. Records when each sync type last finished for a host,
+     * so that freshness is known even when the sync stored no rows
+     * For unique key use HOST_ID + SYNC_TYPE
+     */
+    public interface SyncStateColumns {
+        String HOST_ID = "host_id";
+        /** One of the LibrarySyncService sync types */
+        String SYNC_TYPE = "sync_type";
+    }
+
+    public static class SyncState implements BaseColumns, SyncColumns, SyncStateColumns {
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_SYNC_STATE).build();
+
+        public static final String CONTENT_TYPE =
+                "vnd.android.cursor.dir/vnd.org.xbmc." + PATH_SYNC_STATE;
+
+        /** Build {@link Uri} for the sync states of a host. */
+        public static Uri buildSyncStateListUri(long hostId) {
+            return Hosts.buildHostUri(hostId).buildUpon()
+                        .appendPath(PATH_SYNC_STATE)
+                        .build();
+        }
+
+        public final static String[] ALL_COLUMNS = {
+                _ID, UPDATED, HOST_ID, SYNC_TYPE
+        };
+    }
+
+    /**
+     * Columns returned by a search across all media types
+     */
+    public interface SearchColumns {
+        String HOST_ID = "host_id";
+        String MEDIA_TYPE = "media_type";
+        /** Kodi id of the item (movieid, songid, ...) */
+        String ITEM_ID = "item_id";
+        /** Kodi id of the parent item: tvshowid for episodes, albumid for songs */
+        String PARENT_ID = "parent_id";
+        String TITLE = "title";
+        String DETAILS = "details";
+        String THUMBNAIL = "thumbnail";
+    }
+
+    /**
+     * Full text search across all the media types of a host. {@link #_ID} is the id of the
+     * row in the table of the media type.
+     */
+    public static class Search implements BaseColumns, SearchColumns {
+        public static final String MEDIA_TYPE_MOVIE = "movie";
+        public static final String MEDIA_TYPE_TVSHOW = "tvshow";
+        public static final String MEDIA_TYPE_EPISODE = "episode";
+        public static final String MEDIA_TYPE_ARTIST = "artist";
+        public static final String MEDIA_TYPE_ALBUM = "album";
+        public static final String MEDIA_TYPE_SONG = "song";
+        public static final String MEDIA_TYPE_MUSIC_VIDEO = "musicvideo";
+
+        public static final String CONTENT_TYPE =
+                "vnd.android.cursor.dir/vnd.org.xbmc." + PATH_SEARCH;
+
+        /** Build {@link Uri} for all the items matching a full text search query. */
+        public static Uri buildSearchUri(long hostId, String query) {
+            return Hosts.buildHostUri(hostId).buildUpon()
+                        .appendPath(PATH_SEARCH)
+                        .appendQueryParameter(SEARCH_QUERY, query)
+                        .build();
+        }
+
+        public final static String[] ALL_COLUMNS = {
+                _ID, HOST_ID, MEDIA_TYPE, ITEM_ID, PARENT_ID, TITLE, DETAILS, THUMBNAIL
+        };
+    }
 }
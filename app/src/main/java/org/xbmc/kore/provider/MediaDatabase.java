@@ -19,6 +19,7 @@ import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.provider.BaseColumns;
+import android.text.TextUtils;
 
 import org.xbmc.kore.host.HostInfo;
 import org.xbmc.kore.utils.LogUtils;
@@ -38,7 +39,12 @@ public class MediaDatabase extends SQLiteOpenHelper {
             DB_VERSION_PRE_HOST_VERSION = 8,
             DB_VERSION_PRE_HOST_HTTPS = 9,
             DB_VERSION_PRE_LAST_PLAYED = 10,
-            DB_VERSION = 11;
+            DB_VERSION_PRE_SEARCH = 11,
+            DB_VERSION_PRE_INDEXES = 12,
+            DB_VERSION_PRE_PVR = 13,
+            DB_VERSION_PRE_ADDONS = 14,
+            DB_VERSION_PRE_SYNC_STATE = 15,
+            DB_VERSION = 16;
 
 	/**
 	 * Tables exposed
@@ -59,6 +65,23 @@ public class MediaDatabase extends SQLiteOpenHelper {
         String ALBUM_ARTISTS = "album_artists";
         String ALBUM_GENRES = "album_genres";
         String MUSIC_VIDEOS = "music_videos";
+        String PVR_CHANNEL_GROUPS = "pvr_channel_groups";
+        String PVR_CHANNELS = "pvr_channels";
+        String PVR_BROADCASTS = "pvr_broadcasts";
+        String ADDONS = "addons";
+        String FAVOURITES = "favourites";
+        String SYNC_STATE = "sync_state";
+
+        /**
+         * Full text search tables, one for each searchable table
+         */
+        String MOVIES_SEARCH = "movies_search";
+        String TVSHOWS_SEARCH = "tvshows_search";
+        String EPISODES_SEARCH = "episodes_search";
+        String ARTISTS_SEARCH = "artists_search";
+        String ALBUMS_SEARCH = "albums_search";
+        String SONGS_SEARCH = "songs_search";
+        String MUSIC_VIDEOS_SEARCH = "music_videos_search";
 
         /**
          * Join to get Albums for an Artist
@@ -120,6 +143,20 @@ public class MediaDatabase extends SQLiteOpenHelper {
 
 
 
+    /**
+     * Columns of the full text search tables. Every search table has the same columns, and
+     * the docid of each row is the {@link BaseColumns#_ID} of the row it indexes
+     */
+    public interface SearchColumns {
+        String TITLE = "title";
+        /** Artists, cast or director */
+        String PEOPLE = "people";
+        /** Album or show title */
+        String ALBUM = "album";
+        String GENRES = "genres";
+        String PLOT = "plot";
+    }
+
     private interface References {
         String HOST_ID =
                 "REFERENCES " + Tables.HOSTS + "(" + BaseColumns._ID + ")";
@@ -457,7 +494,7 @@ public class MediaDatabase extends SQLiteOpenHelper {
         );
 
 
-        // TODO: Indices?
+        createIndexes(db);
 
         // Triggers on host delete
         db.execSQL(buildHostsDeleteTrigger(Tables.MOVIES, MediaContract.MoviesColumns.HOST_ID));
@@ -475,6 +512,20 @@ public class MediaDatabase extends SQLiteOpenHelper {
         db.execSQL(buildHostsDeleteTrigger(Tables.ALBUM_GENRES, MediaContract.AlbumGenresColumns.HOST_ID));
         db.execSQL(buildHostsDeleteTrigger(Tables.MUSIC_VIDEOS, MediaContract.MusicVideosColumns.HOST_ID));
 
+        createSearchTables(db);
+        createPVRTables(db);
+        createAddonsTables(db);
+        createSyncStateTable(db);
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        if (!db.isReadOnly()) {
+            // Rows deleted by ON CONFLICT REPLACE only fire the delete triggers that keep the
+            // search tables in sync if recursive triggers are enabled
+            db.execSQL("PRAGMA recursive_triggers = ON;");
+        }
     }
 
     private String buildHostsDeleteTrigger(String onTable, String hostIdColumn) {
@@ -530,6 +581,17 @@ public class MediaDatabase extends SQLiteOpenHelper {
                 db.execSQL("ALTER TABLE " + Tables.TVSHOWS +
                            " ADD COLUMN " + MediaContract.TVShowsColumns.LASTPLAYED +
                            " TEXT;");
+            case DB_VERSION_PRE_SEARCH:
+                createSearchTables(db);
+                SearchIndex.rebuild(db);
+            case DB_VERSION_PRE_INDEXES:
+                createIndexes(db);
+            case DB_VERSION_PRE_PVR:
+                createPVRTables(db);
+            case DB_VERSION_PRE_ADDONS:
+                createAddonsTables(db);
+            case DB_VERSION_PRE_SYNC_STATE:
+                createSyncStateTable(db);
         }
 	}
 
@@ -588,5 +650,226 @@ public class MediaDatabase extends SQLiteOpenHelper {
                    ") ON CONFLICT REPLACE)"
                   );
     }
+
+    /**
+     * Creates the PVR tables, with their indexes and host delete triggers
+     */
+    private void createPVRTables(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + Tables.PVR_CHANNEL_GROUPS + "(" +
+                   BaseColumns._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                   MediaContract.SyncColumns.UPDATED + " INTEGER NOT NULL," +
+                   MediaContract.PVRChannelGroupsColumns.HOST_ID + " INTEGER NOT NULL " + References.HOST_ID + ", " +
+                   MediaContract.PVRChannelGroupsColumns.CHANNELGROUPID + " INTEGER NOT NULL, " +
+                   MediaContract.PVRChannelGroupsColumns.CHANNELTYPE + " TEXT, " +
+                   MediaContract.PVRChannelGroupsColumns.LABEL + " TEXT, " +
+                   "UNIQUE (" +
+                   MediaContract.PVRChannelGroupsColumns.HOST_ID + ", " +
+                   MediaContract.PVRChannelGroupsColumns.CHANNELGROUPID +
+                   ") ON CONFLICT REPLACE)"
+        );
+
+        db.execSQL("CREATE TABLE " + Tables.PVR_CHANNELS + "(" +
+                   BaseColumns._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                   MediaContract.SyncColumns.UPDATED + " INTEGER NOT NULL," +
+                   MediaContract.PVRChannelsColumns.HOST_ID + " INTEGER NOT NULL " + References.HOST_ID + ", " +
+                   MediaContract.PVRChannelsColumns.CHANNELGROUPID + " INTEGER NOT NULL, " +
+                   MediaContract.PVRChannelsColumns.CHANNELID + " INTEGER NOT NULL, " +
+                   MediaContract.PVRChannelsColumns.CHANNELTYPE + " TEXT, " +
+                   MediaContract.PVRChannelsColumns.CHANNEL + " TEXT, " +
+                   MediaContract.PVRChannelsColumns.THUMBNAIL + " TEXT, " +
+                   MediaContract.PVRChannelsColumns.HIDDEN + " INTEGER, " +
+                   MediaContract.PVRChannelsColumns.LOCKED + " INTEGER, " +
+                   MediaContract.PVRChannelsColumns.EPG_UPDATED + " INTEGER DEFAULT 0, " +
+                   MediaContract.PVRChannelsColumns.EPG_END + " INTEGER DEFAULT 0, " +
+                   "UNIQUE (" +
+                   MediaContract.PVRChannelsColumns.HOST_ID + ", " +
+                   MediaContract.PVRChannelsColumns.CHANNELGROUPID + ", " +
+                   MediaContract.PVRChannelsColumns.CHANNELID +
+                   ") ON CONFLICT REPLACE)"
+        );
+
+        db.execSQL("CREATE TABLE " + Tables.PVR_BROADCASTS + "(" +
+                   BaseColumns._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                   MediaContract.SyncColumns.UPDATED + " INTEGER NOT NULL," +
+                   MediaContract.PVRBroadcastsColumns.HOST_ID + " INTEGER NOT NULL " + References.HOST_ID + ", " +
+                   MediaContract.PVRBroadcastsColumns.CHANNELID + " INTEGER NOT NULL, " +
+                   MediaContract.PVRBroadcastsColumns.BROADCASTID + " INTEGER NOT NULL, " +
+                   MediaContract.PVRBroadcastsColumns.TITLE + " TEXT, " +
+                   MediaContract.PVRBroadcastsColumns.PLOT + " TEXT, " +
+                   MediaContract.PVRBroadcastsColumns.GENRE + " TEXT, " +
+                   MediaContract.PVRBroadcastsColumns.EPISODENAME + " TEXT, " +
+                   MediaContract.PVRBroadcastsColumns.THUMBNAIL + " TEXT, " +
+                   MediaContract.PVRBroadcastsColumns.RUNTIME + " INTEGER, " +
+                   MediaContract.PVRBroadcastsColumns.HASTIMER + " INTEGER, " +
+                   MediaContract.PVRBroadcastsColumns.STARTTIME + " INTEGER NOT NULL, " +
+                   MediaContract.PVRBroadcastsColumns.ENDTIME + " INTEGER NOT NULL, " +
+                   "UNIQUE (" +
+                   MediaContract.PVRBroadcastsColumns.HOST_ID + ", " +
+                   MediaContract.PVRBroadcastsColumns.CHANNELID + ", " +
+                   MediaContract.PVRBroadcastsColumns.BROADCASTID +
+                   ") ON CONFLICT REPLACE)"
+        );
+
+        // The guide of a channel is read by start time, and ended broadcasts are pruned by end time
+        db.execSQL(buildIndex(Tables.PVR_CHANNELS, "channelid",
+                              MediaContract.PVRChannelsColumns.HOST_ID, MediaContract.PVRChannelsColumns.CHANNELID));
+        db.execSQL(buildIndex(Tables.PVR_BROADCASTS, "starttime",
+                              MediaContract.PVRBroadcastsColumns.HOST_ID, MediaContract.PVRBroadcastsColumns.CHANNELID,
+                              MediaContract.PVRBroadcastsColumns.STARTTIME));
+        db.execSQL(buildIndex(Tables.PVR_BROADCASTS, "endtime",
+                              MediaContract.PVRBroadcastsColumns.HOST_ID, MediaContract.PVRBroadcastsColumns.ENDTIME));
+
+        db.execSQL(buildHostsDeleteTrigger(Tables.PVR_CHANNEL_GROUPS, MediaContract.PVRChannelGroupsColumns.HOST_ID));
+        db.execSQL(buildHostsDeleteTrigger(Tables.PVR_CHANNELS, MediaContract.PVRChannelsColumns.HOST_ID));
+        db.execSQL(buildHostsDeleteTrigger(Tables.PVR_BROADCASTS, MediaContract.PVRBroadcastsColumns.HOST_ID));
+    }
+
+    /**
+     * Creates the addons and favourites tables, with their host delete triggers
+     */
+    private void createAddonsTables(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + Tables.ADDONS + "(" +
+                   BaseColumns._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                   MediaContract.SyncColumns.UPDATED + " INTEGER NOT NULL," +
+                   MediaContract.AddonsColumns.HOST_ID + " INTEGER NOT NULL " + References.HOST_ID + ", " +
+                   MediaContract.AddonsColumns.ADDONID + " TEXT NOT NULL, " +
+                   MediaContract.AddonsColumns.TYPE + " TEXT, " +
+                   MediaContract.AddonsColumns.NAME + " TEXT, " +
+                   MediaContract.AddonsColumns.VERSION + " TEXT, " +
+                   MediaContract.AddonsColumns.SUMMARY + " TEXT, " +
+                   MediaContract.AddonsColumns.DESCRIPTION + " TEXT, " +
+                   MediaContract.AddonsColumns.PATH + " TEXT, " +
+                   MediaContract.AddonsColumns.AUTHOR + " TEXT, " +
+                   MediaContract.AddonsColumns.THUMBNAIL + " TEXT, " +
+                   MediaContract.AddonsColumns.FANART + " TEXT, " +
+                   MediaContract.AddonsColumns.DISCLAIMER + " TEXT, " +
+                   MediaContract.AddonsColumns.RATING + " INTEGER, " +
+                   MediaContract.AddonsColumns.ENABLED + " INTEGER, " +
+                   "UNIQUE (" +
+                   MediaContract.AddonsColumns.HOST_ID + ", " +
+                   MediaContract.AddonsColumns.ADDONID +
+                   ") ON CONFLICT REPLACE)"
+        );
+
+        db.execSQL("CREATE TABLE " + Tables.FAVOURITES + "(" +
+                   BaseColumns._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                   MediaContract.SyncColumns.UPDATED + " INTEGER NOT NULL," +
+                   MediaContract.FavouritesColumns.HOST_ID + " INTEGER NOT NULL " + References.HOST_ID + ", " +
+                   MediaContract.FavouritesColumns.TITLE + " TEXT, " +
+                   MediaContract.FavouritesColumns.TYPE + " TEXT, " +
+                   MediaContract.FavouritesColumns.PATH + " TEXT, " +
+                   MediaContract.FavouritesColumns.WINDOW + " TEXT, " +
+                   MediaContract.FavouritesColumns.WINDOW_PARAMETER + " TEXT, " +
+                   MediaContract.FavouritesColumns.THUMBNAIL + " TEXT)"
+        );
+
+        // Favourites have no id on XBMC, so they're listed by host in insertion order
+        db.execSQL(buildIndex(Tables.FAVOURITES, "host_id",
+                              MediaContract.FavouritesColumns.HOST_ID, BaseColumns._ID));
+
+        db.execSQL(buildHostsDeleteTrigger(Tables.ADDONS, MediaContract.AddonsColumns.HOST_ID));
+        db.execSQL(buildHostsDeleteTrigger(Tables.FAVOURITES, MediaContract.FavouritesColumns.HOST_ID));
+    }
+
+    /**
+     * Creates the table with the last sync time of each sync type, with its host delete trigger
+     */
+    private void createSyncStateTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + Tables.SYNC_STATE + "(" +
+                   BaseColumns._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                   MediaContract.SyncColumns.UPDATED + " INTEGER NOT NULL," +
+                   MediaContract.SyncStateColumns.HOST_ID + " INTEGER NOT NULL " + References.HOST_ID + ", " +
+                   MediaContract.SyncStateColumns.SYNC_TYPE + " TEXT NOT NULL, " +
+                   "UNIQUE (" +
+                   MediaContract.SyncStateColumns.HOST_ID + ", " +
+                   MediaContract.SyncStateColumns.SYNC_TYPE +
+                   ") ON CONFLICT REPLACE)"
+        );
+
+        db.execSQL(buildHostsDeleteTrigger(Tables.SYNC_STATE, MediaContract.SyncStateColumns.HOST_ID));
+    }
+
+    /**
+     * Creates the indexes used by the provider queries. The UNIQUE constraints already index
+     * each table by host and id, so these cover the other join and filter orders, and the
+     * sorts on plain columns. Sorts that ignore articles are on an expression and can't use
+     * an index.
+     */
+    private void createIndexes(SQLiteDatabase db) {
+        // Joins and filters. The link tables are covered, so the joins never read their rows
+        db.execSQL(buildIndex(Tables.SONGS, "songid",
+                              MediaContract.SongsColumns.HOST_ID, MediaContract.SongsColumns.SONGID));
+        db.execSQL(buildIndex(Tables.SONG_ARTISTS, "artistid",
+                              MediaContract.SongArtistsColumns.HOST_ID, MediaContract.SongArtistsColumns.ARTISTID,
+                              MediaContract.SongArtistsColumns.SONGID));
+        db.execSQL(buildIndex(Tables.ALBUM_ARTISTS, "artistid",
+                              MediaContract.AlbumArtistsColumns.HOST_ID, MediaContract.AlbumArtistsColumns.ARTISTID,
+                              MediaContract.AlbumArtistsColumns.ALBUMID));
+        db.execSQL(buildIndex(Tables.ALBUM_GENRES, "genreid",
+                              MediaContract.AlbumGenresColumns.HOST_ID, MediaContract.AlbumGenresColumns.GENREID,
+                              MediaContract.AlbumGenresColumns.ALBUMID));
+        db.execSQL(buildIndex(Tables.EPISODES, "tvshowid",
+                              MediaContract.EpisodesColumns.HOST_ID, MediaContract.EpisodesColumns.TVSHOWID,
+                              MediaContract.EpisodesColumns.SEASON, MediaContract.EpisodesColumns.EPISODE));
+
+        // List sorts
+        db.execSQL(buildIndex(Tables.MOVIES, "title",
+                              MediaContract.MoviesColumns.HOST_ID, MediaContract.MoviesColumns.TITLE + " COLLATE NOCASE"));
+        db.execSQL(buildIndex(Tables.MOVIES, "year",
+                              MediaContract.MoviesColumns.HOST_ID, MediaContract.MoviesColumns.YEAR));
+        db.execSQL(buildIndex(Tables.MOVIES, "rating",
+                              MediaContract.MoviesColumns.HOST_ID, MediaContract.MoviesColumns.RATING));
+        db.execSQL(buildIndex(Tables.MOVIES, "dateadded",
+                              MediaContract.MoviesColumns.HOST_ID, MediaContract.MoviesColumns.DATEADDED));
+        db.execSQL(buildIndex(Tables.MOVIES, "lastplayed",
+                              MediaContract.MoviesColumns.HOST_ID, MediaContract.MoviesColumns.LASTPLAYED));
+        db.execSQL(buildIndex(Tables.MOVIES, "runtime",
+                              MediaContract.MoviesColumns.HOST_ID, MediaContract.MoviesColumns.RUNTIME));
+        db.execSQL(buildIndex(Tables.TVSHOWS, "title",
+                              MediaContract.TVShowsColumns.HOST_ID, MediaContract.TVShowsColumns.TITLE + " COLLATE NOCASE"));
+        db.execSQL(buildIndex(Tables.TVSHOWS, "premiered",
+                              MediaContract.TVShowsColumns.HOST_ID, MediaContract.TVShowsColumns.PREMIERED));
+        db.execSQL(buildIndex(Tables.TVSHOWS, "rating",
+                              MediaContract.TVShowsColumns.HOST_ID, MediaContract.TVShowsColumns.RATING));
+        db.execSQL(buildIndex(Tables.TVSHOWS, "dateadded",
+                              MediaContract.TVShowsColumns.HOST_ID, MediaContract.TVShowsColumns.DATEADDED));
+        db.execSQL(buildIndex(Tables.TVSHOWS, "lastplayed",
+                              MediaContract.TVShowsColumns.HOST_ID, MediaContract.TVShowsColumns.LASTPLAYED));
+        db.execSQL(buildIndex(Tables.AUDIO_GENRES, "title",
+                              MediaContract.AudioGenresColumns.HOST_ID, MediaContract.AudioGenresColumns.TITLE + " COLLATE NOCASE"));
+    }
+
+    private String buildIndex(String onTable, String name, String... columns) {
+        return "CREATE INDEX " + onTable + "_" + name + "_index ON " + onTable +
+               "(" + TextUtils.join(", ", columns) + ");";
+    }
+
+    private void createSearchTables(SQLiteDatabase db) {
+        String[][] searchTables = {
+                {Tables.MOVIES_SEARCH, Tables.MOVIES},
+                {Tables.TVSHOWS_SEARCH, Tables.TVSHOWS},
+                {Tables.EPISODES_SEARCH, Tables.EPISODES},
+                {Tables.ARTISTS_SEARCH, Tables.ARTISTS},
+                {Tables.ALBUMS_SEARCH, Tables.ALBUMS},
+                {Tables.SONGS_SEARCH, Tables.SONGS},
+                {Tables.MUSIC_VIDEOS_SEARCH, Tables.MUSIC_VIDEOS},
+        };
+        for (String[] searchTable : searchTables) {
+            db.execSQL("CREATE VIRTUAL TABLE " + searchTable[0] + " USING fts4(" +
+                       SearchColumns.TITLE + ", " +
+                       SearchColumns.PEOPLE + ", " +
+                       SearchColumns.ALBUM + ", " +
+                       SearchColumns.GENRES + ", " +
+                       SearchColumns.PLOT + ")"
+            );
+
+            // Rows are added to the search tables by the provider after each insert, but
+            // deleted here, so that deletes by host, by selection or by conflict are all covered
+            db.execSQL("CREATE TRIGGER " + searchTable[1] + "_search_delete AFTER DELETE ON " + searchTable[1] +
+                       " BEGIN DELETE FROM " + searchTable[0] +
+                       " WHERE docid=old." + BaseColumns._ID +
+                       ";" + " END;");
+        }
+    }
 }
 
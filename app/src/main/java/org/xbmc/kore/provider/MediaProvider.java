@@ -20,14 +20,20 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.MatrixCursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
 import android.provider.BaseColumns;
+import android.support.annotation.VisibleForTesting;
 
 import org.xbmc.kore.utils.LogUtils;
 import org.xbmc.kore.utils.SelectionBuilder;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Provider for {@link MediaContract} data.
@@ -98,6 +104,34 @@ public class MediaProvider extends ContentProvider {
     private static final int MUSIC_VIDEOS_LIST = 1101;
     private static final int MUSIC_VIDEOS_ID = 1102;
 
+    private static final int SEARCH_ALL = 1200;
+    private static final int SEARCH_MOVIES = 1201;
+    private static final int SEARCH_TVSHOWS = 1202;
+    private static final int SEARCH_ARTISTS = 1203;
+    private static final int SEARCH_ALBUMS = 1204;
+    private static final int SEARCH_SONGS = 1205;
+    private static final int SEARCH_MUSIC_VIDEOS = 1206;
+
+    private static final int PVR_CHANNEL_GROUPS_ALL = 1300;
+    private static final int PVR_CHANNEL_GROUPS_LIST = 1301;
+
+    private static final int PVR_CHANNELS_ALL = 1400;
+    private static final int PVR_CHANNELS_LIST = 1401;
+    private static final int PVR_CHANNEL_GROUP_CHANNELS_LIST = 1402;
+
+    private static final int PVR_BROADCASTS_ALL = 1500;
+    private static final int PVR_BROADCASTS_LIST = 1501;
+    private static final int PVR_CHANNEL_BROADCASTS_LIST = 1502;
+
+    private static final int ADDONS_ALL = 1600;
+    private static final int ADDONS_LIST = 1601;
+
+    private static final int FAVOURITES_ALL = 1700;
+    private static final int FAVOURITES_LIST = 1701;
+
+    private static final int SYNC_STATE_ALL = 1800;
+    private static final int SYNC_STATE_LIST = 1801;
+
     /**
      * Build and return a {@link UriMatcher} that catches all {@link Uri} variations supported by
      * this {@link ContentProvider}.
@@ -221,6 +255,46 @@ public class MediaProvider extends ContentProvider {
         matcher.addURI(authority, MediaContract.PATH_HOSTS + "/*/" +
                                   MediaContract.PATH_MUSIC_VIDEOS + "/*", MUSIC_VIDEOS_ID);
 
+        // Search
+        String searchPath = MediaContract.PATH_HOSTS + "/*/" + MediaContract.PATH_SEARCH;
+        matcher.addURI(authority, searchPath, SEARCH_ALL);
+        matcher.addURI(authority, searchPath + "/" + MediaContract.PATH_MOVIES, SEARCH_MOVIES);
+        matcher.addURI(authority, searchPath + "/" + MediaContract.PATH_TVSHOWS, SEARCH_TVSHOWS);
+        matcher.addURI(authority, searchPath + "/" + MediaContract.PATH_ARTISTS, SEARCH_ARTISTS);
+        matcher.addURI(authority, searchPath + "/" + MediaContract.PATH_ALBUMS, SEARCH_ALBUMS);
+        matcher.addURI(authority, searchPath + "/" + MediaContract.PATH_SONGS, SEARCH_SONGS);
+        matcher.addURI(authority, searchPath + "/" + MediaContract.PATH_MUSIC_VIDEOS, SEARCH_MUSIC_VIDEOS);
+
+        // PVR
+        matcher.addURI(authority, MediaContract.PATH_PVR_CHANNEL_GROUPS, PVR_CHANNEL_GROUPS_ALL);
+        matcher.addURI(authority, MediaContract.PATH_HOSTS + "/*/" +
+                                  MediaContract.PATH_PVR_CHANNEL_GROUPS, PVR_CHANNEL_GROUPS_LIST);
+        matcher.addURI(authority, MediaContract.PATH_PVR_CHANNELS, PVR_CHANNELS_ALL);
+        matcher.addURI(authority, MediaContract.PATH_HOSTS + "/*/" +
+                                  MediaContract.PATH_PVR_CHANNELS, PVR_CHANNELS_LIST);
+        matcher.addURI(authority, MediaContract.PATH_HOSTS + "/*/" +
+                                  MediaContract.PATH_PVR_CHANNEL_GROUPS + "/*/" +
+                                  MediaContract.PATH_PVR_CHANNELS, PVR_CHANNEL_GROUP_CHANNELS_LIST);
+        matcher.addURI(authority, MediaContract.PATH_PVR_BROADCASTS, PVR_BROADCASTS_ALL);
+        matcher.addURI(authority, MediaContract.PATH_HOSTS + "/*/" +
+                                  MediaContract.PATH_PVR_BROADCASTS, PVR_BROADCASTS_LIST);
+        matcher.addURI(authority, MediaContract.PATH_HOSTS + "/*/" +
+                                  MediaContract.PATH_PVR_CHANNELS + "/*/" +
+                                  MediaContract.PATH_PVR_BROADCASTS, PVR_CHANNEL_BROADCASTS_LIST);
+
+        // Addons and favourites
+        matcher.addURI(authority, MediaContract.PATH_ADDONS, ADDONS_ALL);
+        matcher.addURI(authority, MediaContract.PATH_HOSTS + "/*/" +
+                                  MediaContract.PATH_ADDONS, ADDONS_LIST);
+        matcher.addURI(authority, MediaContract.PATH_FAVOURITES, FAVOURITES_ALL);
+        matcher.addURI(authority, MediaContract.PATH_HOSTS + "/*/" +
+                                  MediaContract.PATH_FAVOURITES, FAVOURITES_LIST);
+
+        // Sync state
+        matcher.addURI(authority, MediaContract.PATH_SYNC_STATE, SYNC_STATE_ALL);
+        matcher.addURI(authority, MediaContract.PATH_HOSTS + "/*/" +
+                                  MediaContract.PATH_SYNC_STATE, SYNC_STATE_LIST);
+
         return matcher;
     }
 
@@ -249,6 +323,7 @@ public class MediaProvider extends ContentProvider {
                 return MediaContract.Hosts.CONTENT_ITEM_TYPE;
             case MOVIES_ALL:
             case MOVIES_LIST:
+            case SEARCH_MOVIES:
                 return MediaContract.Movies.CONTENT_TYPE;
             case MOVIES_ID:
                 return MediaContract.Movies.CONTENT_ITEM_TYPE;
@@ -257,6 +332,7 @@ public class MediaProvider extends ContentProvider {
                 return MediaContract.MovieCast.CONTENT_TYPE;
             case TVSHOWS_ALL:
             case TVSHOWS_LIST:
+            case SEARCH_TVSHOWS:
                 return MediaContract.TVShows.CONTENT_TYPE;
             case TVSHOWS_ID:
                 return MediaContract.TVShows.CONTENT_ITEM_TYPE;
@@ -278,6 +354,7 @@ public class MediaProvider extends ContentProvider {
             case ARTISTS_ALL:
             case ARTISTS_LIST:
             case ALBUM_ARTISTS_LIST:
+            case SEARCH_ARTISTS:
                 return MediaContract.Artists.CONTENT_TYPE;
             case ARTISTS_ID:
                 return MediaContract.Artists.CONTENT_ITEM_TYPE;
@@ -285,6 +362,7 @@ public class MediaProvider extends ContentProvider {
             case ALBUMS_LIST:
             case ARTIST_ALBUMS_LIST:
             case AUDIO_GENRE_ALBUMS_LIST:
+            case SEARCH_ALBUMS:
                 return MediaContract.Albums.CONTENT_TYPE;
             case ALBUMS_ID:
                 return MediaContract.Albums.CONTENT_ITEM_TYPE;
@@ -292,6 +370,7 @@ public class MediaProvider extends ContentProvider {
             case SONGS_LIST:
             case ARTIST_SONGS_LIST:
             case SONGS_ALBUM:
+            case SEARCH_SONGS:
                 return MediaContract.Songs.CONTENT_TYPE;
             case SONGS_ID:
                 return MediaContract.Songs.CONTENT_ITEM_TYPE;
@@ -309,9 +388,32 @@ public class MediaProvider extends ContentProvider {
                 return MediaContract.SongArtists.CONTENT_TYPE;
             case MUSIC_VIDEOS_ALL:
             case MUSIC_VIDEOS_LIST:
+            case SEARCH_MUSIC_VIDEOS:
                 return MediaContract.MusicVideos.CONTENT_TYPE;
+            case SEARCH_ALL:
+                return MediaContract.Search.CONTENT_TYPE;
             case MUSIC_VIDEOS_ID:
                 return MediaContract.MusicVideos.CONTENT_ITEM_TYPE;
+            case PVR_CHANNEL_GROUPS_ALL:
+            case PVR_CHANNEL_GROUPS_LIST:
+                return MediaContract.PVRChannelGroups.CONTENT_TYPE;
+            case PVR_CHANNELS_ALL:
+            case PVR_CHANNELS_LIST:
+            case PVR_CHANNEL_GROUP_CHANNELS_LIST:
+                return MediaContract.PVRChannels.CONTENT_TYPE;
+            case PVR_BROADCASTS_ALL:
+            case PVR_BROADCASTS_LIST:
+            case PVR_CHANNEL_BROADCASTS_LIST:
+                return MediaContract.PVRBroadcasts.CONTENT_TYPE;
+            case ADDONS_ALL:
+            case ADDONS_LIST:
+                return MediaContract.Addons.CONTENT_TYPE;
+            case FAVOURITES_ALL:
+            case FAVOURITES_LIST:
+                return MediaContract.Favourites.CONTENT_TYPE;
+            case SYNC_STATE_ALL:
+            case SYNC_STATE_LIST:
+                return MediaContract.SyncState.CONTENT_TYPE;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
@@ -327,6 +429,19 @@ public class MediaProvider extends ContentProvider {
         final int match = sUriMatcher.match(uri);
         Cursor cursor;
         switch (match) {
+            case SEARCH_ALL: {
+                if (SearchIndex.matchExpression(uri.getQueryParameter(MediaContract.SEARCH_QUERY)) == null) {
+                    // Nothing to look for
+                    cursor = new MatrixCursor((projection != null) ? projection : MediaContract.Search.ALL_COLUMNS);
+                    break;
+                }
+                final SelectionBuilder builder = buildQuerySelection(uri, match);
+                String limit = uri.getQueryParameter(MediaContract.LIMIT_QUERY);
+
+                cursor = builder.where(selection, selectionArgs)
+                                .query(db, projection, sortOrder, limit);
+                break;
+            }
             default: {
                 // Most cases are handled with simple SelectionBuilder
                 final SelectionBuilder builder = buildQuerySelection(uri, match);
@@ -339,6 +454,23 @@ public class MediaProvider extends ContentProvider {
         return cursor;
     }
 
+    /**
+     * Returns the output of EXPLAIN QUERY PLAN for the query that {@link #query} runs for the
+     * same arguments. Used to check that queries use indexes
+     * @return Cursor with the query plan, one row per step
+     */
+    @VisibleForTesting
+    Cursor explainQueryPlan(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                                   String sortOrder) {
+        final SQLiteDatabase db = mOpenHelper.getReadableDatabase();
+        final int match = sUriMatcher.match(uri);
+        final SelectionBuilder builder = buildQuerySelection(uri, match);
+        String limit = uri.getQueryParameter(MediaContract.LIMIT_QUERY);
+
+        return builder.where(selection, selectionArgs)
+                      .explainQueryPlan(db, projection, sortOrder, limit);
+    }
+
     /** {@inheritDoc} */
     @Override
     public Uri insert(Uri uri, ContentValues values) {
@@ -353,6 +485,15 @@ public class MediaProvider extends ContentProvider {
                 insertedUri = MediaContract.Hosts.buildHostUri(hostId);
                 break;
             }
+            case SYNC_STATE_ALL: {
+                if (!values.containsKey(MediaContract.SyncColumns.UPDATED)) {
+                    values.put(MediaContract.SyncColumns.UPDATED, System.currentTimeMillis());
+                }
+                db.insertOrThrow(MediaDatabase.Tables.SYNC_STATE, null, values);
+                insertedUri = MediaContract.SyncState.buildSyncStateListUri(
+                        values.getAsLong(MediaContract.SyncState.HOST_ID));
+                break;
+            }
             default: {
                 throw new UnsupportedOperationException("Unsuported uri: " + uri);
             }
@@ -367,7 +508,93 @@ public class MediaProvider extends ContentProvider {
     public int bulkInsert(Uri uri, ContentValues[] values) {
         long startTime = System.currentTimeMillis();
         final int match = sUriMatcher.match(uri);
+        final String table = getBulkInsertTable(match, uri);
+        final boolean addUpdated = hasUpdatedColumn(match);
 
+        // Rows usually share the same columns, so compile one statement per distinct set of
+        // columns and bind each row by index, instead of letting insert() rebuild and recompile
+        // the sql for every row
+        HashMap<Set<String>, CompiledInsert> statements = new HashMap<>();
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        db.beginTransaction();
+
+        long updateTime = System.currentTimeMillis();
+        try {
+            long lastRowId = SearchIndex.getLastRowId(db, table);
+            for (ContentValues value : values) {
+                Set<String> keys = value.keySet();
+                CompiledInsert insert = statements.get(keys);
+                if (insert == null) {
+                    insert = new CompiledInsert(db, table, keys.toArray(new String[keys.size()]),
+                                                addUpdated && !keys.contains(MediaContract.SyncColumns.UPDATED));
+                    statements.put(new HashSet<>(keys), insert);
+                }
+                insert.clear();
+                for (int i = 0; i < insert.columns.length; i++) {
+                    insert.writeObject(i, value.get(insert.columns[i]));
+                }
+                insert.execute(updateTime);
+            }
+            SearchIndex.onRowsInserted(db, table, lastRowId);
+            db.setTransactionSuccessful();
+        } catch (Exception e) {
+            LogUtils.LOGD(TAG, "Couldn't bulk insert records. Exception: " + e.getMessage());
+        } finally {
+            for (CompiledInsert insert : statements.values()) {
+                insert.close();
+            }
+            db.endTransaction();
+        }
+        context.getContentResolver().notifyChange(uri, null);
+
+        LogUtils.LOGD(TAG, "Bulk insert finished for uri (" + uri +
+                ") in (ms): " + (System.currentTimeMillis() - startTime));
+        return values.length;
+    }
+
+    /**
+     * Bulk inserts a batch of rows, binding them straight into a compiled statement.
+     * Same semantics as {@link #bulkInsert(Uri, ContentValues[])}, but without a
+     * {@link ContentValues} per row. Use {@link InsertBatch#insert(android.content.ContentResolver, Uri)}
+     * instead of calling this directly.
+     * @param uri Uri of the table
+     * @param batch Rows to insert
+     * @return Number of rows inserted
+     */
+    public int bulkInsert(Uri uri, InsertBatch batch) {
+        long startTime = System.currentTimeMillis();
+        final int match = sUriMatcher.match(uri);
+        final String table = getBulkInsertTable(match, uri);
+
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        db.beginTransaction();
+
+        long updateTime = System.currentTimeMillis();
+        CompiledInsert insert = null;
+        try {
+            long lastRowId = SearchIndex.getLastRowId(db, table);
+            insert = new CompiledInsert(db, table, batch.getColumns(), hasUpdatedColumn(match));
+            for (int i = 0; i < batch.size(); i++) {
+                insert.clear();
+                batch.writeRow(i, insert);
+                insert.execute(updateTime);
+            }
+            SearchIndex.onRowsInserted(db, table, lastRowId);
+            db.setTransactionSuccessful();
+        } catch (Exception e) {
+            LogUtils.LOGD(TAG, "Couldn't bulk insert records. Exception: " + e.getMessage());
+        } finally {
+            if (insert != null) insert.close();
+            db.endTransaction();
+        }
+        context.getContentResolver().notifyChange(uri, null);
+
+        LogUtils.LOGD(TAG, "Bulk insert finished for uri (" + uri +
+                ") in (ms): " + (System.currentTimeMillis() - startTime));
+        return batch.size();
+    }
+
+    private String getBulkInsertTable(int match, Uri uri) {
         String table;
         switch (match) {
             case MOVIES_ALL: {
@@ -426,39 +653,127 @@ public class MediaProvider extends ContentProvider {
                 table = MediaDatabase.Tables.MUSIC_VIDEOS;
                 break;
             }
+            case PVR_CHANNEL_GROUPS_ALL: {
+                table = MediaDatabase.Tables.PVR_CHANNEL_GROUPS;
+                break;
+            }
+            case PVR_CHANNELS_ALL: {
+                table = MediaDatabase.Tables.PVR_CHANNELS;
+                break;
+            }
+            case PVR_BROADCASTS_ALL: {
+                table = MediaDatabase.Tables.PVR_BROADCASTS;
+                break;
+            }
+            case ADDONS_ALL: {
+                table = MediaDatabase.Tables.ADDONS;
+                break;
+            }
+            case FAVOURITES_ALL: {
+                table = MediaDatabase.Tables.FAVOURITES;
+                break;
+            }
             default: {
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
             }
         }
-        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
-        db.beginTransaction();
+        return table;
+    }
 
-        long updateTime = System.currentTimeMillis();
-        try {
-            for (ContentValues value : values) {
-                switch (match) {
-                    case ALBUM_GENRES_ALL:
-                    case ALBUM_ARTISTS_ALL:
-                    case SONG_ARTISTS_ALL:
-                        // Nothing to add to these tables
-                        break;
-                    default:
-                        value.put(MediaContract.SyncColumns.UPDATED, updateTime);
-                        break;
+    private static boolean hasUpdatedColumn(int match) {
+        switch (match) {
+            case ALBUM_GENRES_ALL:
+            case ALBUM_ARTISTS_ALL:
+            case SONG_ARTISTS_ALL:
+                // Nothing to add to these tables
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * An insert statement compiled for a fixed set of columns, optionally followed by the
+     * {@link MediaContract.SyncColumns#UPDATED} column
+     */
+    private static class CompiledInsert implements InsertBatch.RowWriter {
+        final String[] columns;
+        private final boolean addUpdated;
+        private final SQLiteStatement statement;
+
+        CompiledInsert(SQLiteDatabase db, String table, String[] columns, boolean addUpdated) {
+            this.columns = columns;
+            this.addUpdated = addUpdated;
+
+            StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (");
+            StringBuilder params = new StringBuilder();
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    sql.append(',');
+                    params.append(',');
                 }
-                db.insertOrThrow(table, null, value);
+                sql.append(columns[i]);
+                params.append('?');
             }
-            db.setTransactionSuccessful();
-        } catch (Exception e) {
-            LogUtils.LOGD(TAG, "Couldn't bulk insert records. Exception: " + e.getMessage());
-        } finally {
-            db.endTransaction();
+            if (addUpdated) {
+                sql.append(columns.length > 0 ? "," : "").append(MediaContract.SyncColumns.UPDATED);
+                params.append(columns.length > 0 ? ",?" : "?");
+            }
+            sql.append(") VALUES (").append(params).append(')');
+            statement = db.compileStatement(sql.toString());
         }
-        context.getContentResolver().notifyChange(uri, null);
 
-        LogUtils.LOGD(TAG, "Bulk insert finished for uri (" + uri +
-                ") in (ms): " + (System.currentTimeMillis() - startTime));
-        return values.length;
+        void clear() {
+            statement.clearBindings();
+        }
+
+        void execute(long updateTime) {
+            if (addUpdated) {
+                statement.bindLong(columns.length + 1, updateTime);
+            }
+            statement.executeInsert();
+        }
+
+        void close() {
+            statement.close();
+        }
+
+        void writeObject(int column, Object value) {
+            if (value == null) {
+                statement.bindNull(column + 1);
+            } else if (value instanceof String) {
+                statement.bindString(column + 1, (String) value);
+            } else if ((value instanceof Double) || (value instanceof Float)) {
+                statement.bindDouble(column + 1, ((Number) value).doubleValue());
+            } else if (value instanceof Number) {
+                statement.bindLong(column + 1, ((Number) value).longValue());
+            } else if (value instanceof Boolean) {
+                statement.bindLong(column + 1, ((Boolean) value) ? 1 : 0);
+            } else if (value instanceof byte[]) {
+                statement.bindBlob(column + 1, (byte[]) value);
+            } else {
+                statement.bindString(column + 1, value.toString());
+            }
+        }
+
+        @Override
+        public void writeLong(int column, long value) {
+            statement.bindLong(column + 1, value);
+        }
+
+        @Override
+        public void writeDouble(int column, double value) {
+            statement.bindDouble(column + 1, value);
+        }
+
+        @Override
+        public void writeString(int column, String value) {
+            if (value == null) {
+                statement.bindNull(column + 1);
+            } else {
+                statement.bindString(column + 1, value);
+            }
+        }
     }
 
     /** {@inheritDoc} */
@@ -477,7 +792,8 @@ public class MediaProvider extends ContentProvider {
             case ALBUMS_ID:
             case SONGS_ID:
             case AUDIO_GENRES_ID:
-            case MUSIC_VIDEOS_ID: {
+            case MUSIC_VIDEOS_ID:
+            case PVR_CHANNELS_LIST: {
                 // Add updated field
                 values.put(MediaContract.SyncColumns.UPDATED, System.currentTimeMillis());
                 break;
@@ -799,13 +1115,141 @@ public class MediaProvider extends ContentProvider {
                               .where(MediaContract.MusicVideos.HOST_ID + "=?", hostId)
                               .where(MediaContract.MusicVideos.MUSICVIDEOID + "=?", musicVideoId);
             }
+            case PVR_CHANNEL_GROUPS_ALL: {
+                return builder.table(MediaDatabase.Tables.PVR_CHANNEL_GROUPS);
+            }
+            case PVR_CHANNEL_GROUPS_LIST: {
+                final String hostId = MediaContract.Hosts.getHostId(uri);
+                return builder.table(MediaDatabase.Tables.PVR_CHANNEL_GROUPS)
+                              .where(MediaContract.PVRChannelGroups.HOST_ID + "=?", hostId);
+            }
+            case PVR_CHANNELS_ALL: {
+                return builder.table(MediaDatabase.Tables.PVR_CHANNELS);
+            }
+            case PVR_CHANNELS_LIST: {
+                final String hostId = MediaContract.Hosts.getHostId(uri);
+                return builder.table(MediaDatabase.Tables.PVR_CHANNELS)
+                              .map(MediaContract.PVRChannels.BROADCASTNOW_TITLE, buildBroadcastNowTitleClause())
+                              .where(MediaContract.PVRChannels.HOST_ID + "=?", hostId);
+            }
+            case PVR_CHANNEL_GROUP_CHANNELS_LIST: {
+                final String hostId = MediaContract.Hosts.getHostId(uri);
+                final String channelGroupId = MediaContract.PVRChannelGroups.getChannelGroupId(uri);
+                return builder.table(MediaDatabase.Tables.PVR_CHANNELS)
+                              .map(MediaContract.PVRChannels.BROADCASTNOW_TITLE, buildBroadcastNowTitleClause())
+                              .where(MediaContract.PVRChannels.HOST_ID + "=?", hostId)
+                              .where(MediaContract.PVRChannels.CHANNELGROUPID + "=?", channelGroupId);
+            }
+            case PVR_BROADCASTS_ALL: {
+                return builder.table(MediaDatabase.Tables.PVR_BROADCASTS);
+            }
+            case PVR_BROADCASTS_LIST: {
+                final String hostId = MediaContract.Hosts.getHostId(uri);
+                return builder.table(MediaDatabase.Tables.PVR_BROADCASTS)
+                              .where(MediaContract.PVRBroadcasts.HOST_ID + "=?", hostId);
+            }
+            case PVR_CHANNEL_BROADCASTS_LIST: {
+                final String hostId = MediaContract.Hosts.getHostId(uri);
+                final String channelId = MediaContract.PVRChannels.getChannelId(uri);
+                return builder.table(MediaDatabase.Tables.PVR_BROADCASTS)
+                              .where(MediaContract.PVRBroadcasts.HOST_ID + "=?", hostId)
+                              .where(MediaContract.PVRBroadcasts.CHANNELID + "=?", channelId);
+            }
+            case ADDONS_ALL: {
+                return builder.table(MediaDatabase.Tables.ADDONS);
+            }
+            case ADDONS_LIST: {
+                final String hostId = MediaContract.Hosts.getHostId(uri);
+                return builder.table(MediaDatabase.Tables.ADDONS)
+                              .where(MediaContract.Addons.HOST_ID + "=?", hostId);
+            }
+            case FAVOURITES_ALL: {
+                return builder.table(MediaDatabase.Tables.FAVOURITES);
+            }
+            case FAVOURITES_LIST: {
+                final String hostId = MediaContract.Hosts.getHostId(uri);
+                return builder.table(MediaDatabase.Tables.FAVOURITES)
+                              .where(MediaContract.Favourites.HOST_ID + "=?", hostId);
+            }
+            case SYNC_STATE_ALL: {
+                return builder.table(MediaDatabase.Tables.SYNC_STATE);
+            }
+            case SYNC_STATE_LIST: {
+                final String hostId = MediaContract.Hosts.getHostId(uri);
+                return builder.table(MediaDatabase.Tables.SYNC_STATE)
+                              .where(MediaContract.SyncState.HOST_ID + "=?", hostId);
+            }
 
+            case SEARCH_ALL: {
+                final long hostId = Long.parseLong(MediaContract.Hosts.getHostId(uri));
+                final String matchExpression =
+                        SearchIndex.matchExpression(uri.getQueryParameter(MediaContract.SEARCH_QUERY));
+                if (matchExpression == null) {
+                    throw new IllegalArgumentException("Nothing to search for in uri: " + uri);
+                }
+                return builder.table(SearchIndex.searchAllTable(hostId, matchExpression));
+            }
+            case SEARCH_MOVIES: {
+                return buildSearchSelection(uri, MOVIES_LIST, BaseColumns._ID,
+                                            MediaDatabase.Tables.MOVIES_SEARCH);
+            }
+            case SEARCH_TVSHOWS: {
+                return buildSearchSelection(uri, TVSHOWS_LIST, BaseColumns._ID,
+                                            MediaDatabase.Tables.TVSHOWS_SEARCH);
+            }
+            case SEARCH_ARTISTS: {
+                return buildSearchSelection(uri, ARTISTS_LIST, BaseColumns._ID,
+                                            MediaDatabase.Tables.ARTISTS_SEARCH);
+            }
+            case SEARCH_ALBUMS: {
+                return buildSearchSelection(uri, ALBUMS_LIST, BaseColumns._ID,
+                                            MediaDatabase.Tables.ALBUMS_SEARCH);
+            }
+            case SEARCH_SONGS: {
+                return buildSearchSelection(uri, SONGS_LIST, Qualified.SONGS_ID,
+                                            MediaDatabase.Tables.SONGS_SEARCH);
+            }
+            case SEARCH_MUSIC_VIDEOS: {
+                return buildSearchSelection(uri, MUSIC_VIDEOS_LIST, BaseColumns._ID,
+                                            MediaDatabase.Tables.MUSIC_VIDEOS_SEARCH);
+            }
             default: {
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
             }
         }
     }
 
+    /**
+     * Subquery for the title of the broadcast airing now on each channel, so that the
+     * channel list shows it from the stored guide
+     */
+    private static String buildBroadcastNowTitleClause() {
+        String now = String.valueOf(System.currentTimeMillis());
+        return "(SELECT " + MediaContract.PVRBroadcasts.TITLE +
+               " FROM " + MediaDatabase.Tables.PVR_BROADCASTS +
+               " WHERE " + Qualified.PVR_BROADCASTS_HOST_ID + "=" + Qualified.PVR_CHANNELS_HOST_ID +
+               " AND " + Qualified.PVR_BROADCASTS_CHANNELID + "=" + Qualified.PVR_CHANNELS_CHANNELID +
+               " AND " + Qualified.PVR_BROADCASTS_STARTTIME + "<=" + now +
+               " AND " + Qualified.PVR_BROADCASTS_ENDTIME + ">" + now +
+               " LIMIT 1)";
+    }
+
+    /**
+     * Build a {@link SelectionBuilder} for a search {@link Uri}, restricting the list
+     * selection to the rows that match the full text search query
+     */
+    private SelectionBuilder buildSearchSelection(Uri uri, int listMatch, String idColumn,
+                                                  String searchTable) {
+        final SelectionBuilder builder = buildQuerySelection(uri, listMatch);
+        final String matchExpression =
+                SearchIndex.matchExpression(uri.getQueryParameter(MediaContract.SEARCH_QUERY));
+        if (matchExpression == null) {
+            // Nothing to look for
+            return builder.where("0");
+        }
+        return builder.where(SearchIndex.matchSelection(idColumn, searchTable), matchExpression);
+    }
+
     /**
      * {@link MediaContract} fields that are fully qualified with a specific
      * parent {@link MediaDatabase.Tables}. Used when needed to work around SQL ambiguity.
@@ -855,5 +1299,17 @@ public class MediaProvider extends ContentProvider {
                 MediaDatabase.Tables.SONG_ARTISTS + "." + MediaContract.SongArtists.HOST_ID;
         String SONG_ARTISTS_ARTISTID =
                 MediaDatabase.Tables.SONG_ARTISTS + "." + MediaContract.SongArtists.ARTISTID;
+        String PVR_CHANNELS_HOST_ID =
+                MediaDatabase.Tables.PVR_CHANNELS + "." + MediaContract.PVRChannels.HOST_ID;
+        String PVR_CHANNELS_CHANNELID =
+                MediaDatabase.Tables.PVR_CHANNELS + "." + MediaContract.PVRChannels.CHANNELID;
+        String PVR_BROADCASTS_HOST_ID =
+                MediaDatabase.Tables.PVR_BROADCASTS + "." + MediaContract.PVRBroadcasts.HOST_ID;
+        String PVR_BROADCASTS_CHANNELID =
+                MediaDatabase.Tables.PVR_BROADCASTS + "." + MediaContract.PVRBroadcasts.CHANNELID;
+        String PVR_BROADCASTS_STARTTIME =
+                MediaDatabase.Tables.PVR_BROADCASTS + "." + MediaContract.PVRBroadcasts.STARTTIME;
+        String PVR_BROADCASTS_ENDTIME =
+                MediaDatabase.Tables.PVR_BROADCASTS + "." + MediaContract.PVRBroadcasts.ENDTIME;
     }
 }
@@ -0,0 +1,346 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbmc.kore.provider;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.provider.BaseColumns;
+
+import org.xbmc.kore.provider.MediaDatabase.SearchColumns;
+import org.xbmc.kore.provider.MediaDatabase.Tables;
+
+/**
+ * Keeps the full text search tables up to date with the media tables, and builds the queries
+ * that use them.
+ *
+ * Rows are indexed by the provider after each bulk insert, in the same transaction. As the
+ * tables use AUTOINCREMENT ids, the rows just inserted are the ones with an id greater than
+ * the max id before the insert, which lets the index be updated without scanning the table.
+ * Deletes are handled by triggers, see {@link MediaDatabase}.
+ */
+class SearchIndex {
+
+    /**
+     * A search table and the expressions, over the indexed table aliased as {@link #SRC}, that
+     * fill each of its {@link SearchColumns}
+     */
+    private static class Index {
+        final String searchTable;
+        final String table;
+        final String select;
+
+        Index(String searchTable, String table,
+              String title, String people, String album, String genres, String plot) {
+            this.searchTable = searchTable;
+            this.table = table;
+            this.select = "SELECT " + SRC + "." + BaseColumns._ID + ", " +
+                          title + ", " + people + ", " + album + ", " + genres + ", " + plot +
+                          " FROM " + table + " " + SRC;
+        }
+    }
+
+    private static final String SRC = "src";
+
+    private static final Index MOVIES = new Index(
+            Tables.MOVIES_SEARCH, Tables.MOVIES,
+            src(MediaContract.Movies.TITLE),
+            concat(src(MediaContract.Movies.DIRECTOR),
+                   castNames(Tables.MOVIE_CAST, MediaContract.MovieCast.NAME,
+                             MediaContract.MovieCast.HOST_ID, MediaContract.MovieCast.MOVIEID,
+                             MediaContract.Movies.HOST_ID, MediaContract.Movies.MOVIEID)),
+            "NULL",
+            src(MediaContract.Movies.GENRES),
+            src(MediaContract.Movies.PLOT));
+
+    private static final Index TVSHOWS = new Index(
+            Tables.TVSHOWS_SEARCH, Tables.TVSHOWS,
+            src(MediaContract.TVShows.TITLE),
+            castNames(Tables.TVSHOWS_CAST, MediaContract.TVShowCast.NAME,
+                      MediaContract.TVShowCast.HOST_ID, MediaContract.TVShowCast.TVSHOWID,
+                      MediaContract.TVShows.HOST_ID, MediaContract.TVShows.TVSHOWID),
+            "NULL",
+            src(MediaContract.TVShows.GENRES),
+            src(MediaContract.TVShows.PLOT));
+
+    private static final Index EPISODES = new Index(
+            Tables.EPISODES_SEARCH, Tables.EPISODES,
+            src(MediaContract.Episodes.TITLE),
+            src(MediaContract.Episodes.DIRECTOR),
+            src(MediaContract.Episodes.SHOWTITLE),
+            "NULL",
+            src(MediaContract.Episodes.PLOT));
+
+    private static final Index ARTISTS = new Index(
+            Tables.ARTISTS_SEARCH, Tables.ARTISTS,
+            src(MediaContract.Artists.ARTIST),
+            "NULL",
+            "NULL",
+            src(MediaContract.Artists.GENRE),
+            src(MediaContract.Artists.DESCRIPTION));
+
+    private static final Index ALBUMS = new Index(
+            Tables.ALBUMS_SEARCH, Tables.ALBUMS,
+            src(MediaContract.Albums.TITLE),
+            src(MediaContract.Albums.DISPLAYARTIST),
+            "NULL",
+            src(MediaContract.Albums.GENRE),
+            "NULL");
+
+    private static final Index SONGS = new Index(
+            Tables.SONGS_SEARCH, Tables.SONGS,
+            src(MediaContract.Songs.TITLE),
+            src(MediaContract.Songs.DISPLAYARTIST),
+            "(SELECT a." + MediaContract.Albums.TITLE + " FROM " + Tables.ALBUMS + " a" +
+            " WHERE a." + MediaContract.Albums.HOST_ID + "=" + src(MediaContract.Songs.HOST_ID) +
+            " AND a." + MediaContract.Albums.ALBUMID + "=" + src(MediaContract.Songs.ALBUMID) + ")",
+            "NULL",
+            "NULL");
+
+    private static final Index MUSIC_VIDEOS = new Index(
+            Tables.MUSIC_VIDEOS_SEARCH, Tables.MUSIC_VIDEOS,
+            src(MediaContract.MusicVideos.TITLE),
+            src(MediaContract.MusicVideos.ARTIST),
+            src(MediaContract.MusicVideos.ALBUM),
+            src(MediaContract.MusicVideos.GENRES),
+            src(MediaContract.MusicVideos.PLOT));
+
+    private static final Index[] ALL_INDEXES = {
+            MOVIES, TVSHOWS, EPISODES, ARTISTS, ALBUMS, SONGS, MUSIC_VIDEOS
+    };
+
+    private static String src(String column) {
+        return SRC + "." + column;
+    }
+
+    private static String concat(String first, String second) {
+        return "ifnull(" + first + ", '') || ' ' || ifnull(" + second + ", '')";
+    }
+
+    private static String castNames(String castTable, String nameColumn,
+                                    String castHostIdColumn, String castParentIdColumn,
+                                    String hostIdColumn, String parentIdColumn) {
+        return "(SELECT group_concat(c." + nameColumn + ", ' ') FROM " + castTable + " c" +
+               " WHERE c." + castHostIdColumn + "=" + src(hostIdColumn) +
+               " AND c." + castParentIdColumn + "=" + src(parentIdColumn) + ")";
+    }
+
+    /**
+     * Selects the ids of the rows of a table whose parent is referenced by a row of another
+     * table with an id greater than a given one, e.g. movies whose cast was just inserted
+     */
+    private static String parentsOfNewRows(String table, String hostIdColumn, String idColumn,
+                                           String childTable, String childHostIdColumn, String childIdColumn) {
+        return src(BaseColumns._ID) + " IN (SELECT p." + BaseColumns._ID +
+               " FROM " + childTable + " c JOIN " + table + " p" +
+               " ON p." + hostIdColumn + "=c." + childHostIdColumn +
+               " AND p." + idColumn + "=c." + childIdColumn +
+               " WHERE c." + BaseColumns._ID + ">?)";
+    }
+
+    /**
+     * Returns the max id of a table, to call before inserting into it
+     * @param db Database
+     * @param table Table
+     * @return Max id, or 0 if the table is empty
+     */
+    static long getLastRowId(SQLiteDatabase db, String table) {
+        return DatabaseUtils.longForQuery(db, "SELECT MAX(" + BaseColumns._ID + ") FROM " + table, null);
+    }
+
+    /**
+     * Updates the search tables after rows are inserted in a table. Should be called in the
+     * same transaction as the insert
+     * @param db Database
+     * @param table Table in which rows were inserted
+     * @param lastRowId Value of {@link #getLastRowId(SQLiteDatabase, String)} before the insert
+     */
+    static void onRowsInserted(SQLiteDatabase db, String table, long lastRowId) {
+        String newRows = src(BaseColumns._ID) + ">?";
+        switch (table) {
+            case Tables.MOVIES:
+                insert(db, MOVIES, newRows, lastRowId);
+                break;
+            case Tables.MOVIE_CAST:
+                reindex(db, MOVIES,
+                        parentsOfNewRows(Tables.MOVIES, MediaContract.Movies.HOST_ID, MediaContract.Movies.MOVIEID,
+                                         Tables.MOVIE_CAST, MediaContract.MovieCast.HOST_ID, MediaContract.MovieCast.MOVIEID),
+                        lastRowId);
+                break;
+            case Tables.TVSHOWS:
+                insert(db, TVSHOWS, newRows, lastRowId);
+                break;
+            case Tables.TVSHOWS_CAST:
+                reindex(db, TVSHOWS,
+                        parentsOfNewRows(Tables.TVSHOWS, MediaContract.TVShows.HOST_ID, MediaContract.TVShows.TVSHOWID,
+                                         Tables.TVSHOWS_CAST, MediaContract.TVShowCast.HOST_ID, MediaContract.TVShowCast.TVSHOWID),
+                        lastRowId);
+                break;
+            case Tables.EPISODES:
+                insert(db, EPISODES, newRows, lastRowId);
+                break;
+            case Tables.ARTISTS:
+                insert(db, ARTISTS, newRows, lastRowId);
+                break;
+            case Tables.ALBUMS:
+                insert(db, ALBUMS, newRows, lastRowId);
+                // Songs may have been inserted before their album, so update their album title
+                reindex(db, SONGS,
+                        parentsOfNewRows(Tables.SONGS, MediaContract.Songs.HOST_ID, MediaContract.Songs.ALBUMID,
+                                         Tables.ALBUMS, MediaContract.Albums.HOST_ID, MediaContract.Albums.ALBUMID),
+                        lastRowId);
+                break;
+            case Tables.SONGS:
+                insert(db, SONGS, newRows, lastRowId);
+                break;
+            case Tables.MUSIC_VIDEOS:
+                insert(db, MUSIC_VIDEOS, newRows, lastRowId);
+                break;
+            default:
+                // Not indexed
+                break;
+        }
+    }
+
+    /**
+     * Clears and refills all the search tables from the media tables
+     * @param db Database
+     */
+    static void rebuild(SQLiteDatabase db) {
+        for (Index index : ALL_INDEXES) {
+            db.execSQL("DELETE FROM " + index.searchTable);
+            db.execSQL(insertSql(index, "1"));
+        }
+    }
+
+    private static void insert(SQLiteDatabase db, Index index, String where, long arg) {
+        db.execSQL(insertSql(index, where), new Object[] {arg});
+    }
+
+    private static void reindex(SQLiteDatabase db, Index index, String where, long arg) {
+        db.execSQL("DELETE FROM " + index.searchTable + " WHERE docid IN (" +
+                   "SELECT " + src(BaseColumns._ID) + " FROM " + index.table + " " + SRC +
+                   " WHERE " + where + ")", new Object[] {arg});
+        insert(db, index, where, arg);
+    }
+
+    private static String insertSql(Index index, String where) {
+        return "INSERT INTO " + index.searchTable + " (docid, " +
+               SearchColumns.TITLE + ", " +
+               SearchColumns.PEOPLE + ", " +
+               SearchColumns.ALBUM + ", " +
+               SearchColumns.GENRES + ", " +
+               SearchColumns.PLOT + ") " +
+               index.select + " WHERE " + where;
+    }
+
+    /**
+     * Converts the text entered by the user into an FTS match expression, in which every word
+     * must match the prefix of a word in any of the indexed columns, so that partial words
+     * match while typing
+     * @param query Text entered by the user
+     * @return Match expression, or null if the text has no words
+     */
+    static String matchExpression(String query) {
+        if (query == null) return null;
+
+        StringBuilder match = new StringBuilder();
+        // Quoting each word keeps it from being read as an operator (AND, OR, NEAR...)
+        for (String word : query.split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) continue;
+            if (match.length() > 0) match.append(' ');
+            match.append('"').append(word).append("*\"");
+        }
+        return (match.length() > 0) ? match.toString() : null;
+    }
+
+    /**
+     * Returns a selection that restricts a query to the rows matching a search table
+     * @param idColumn Column with the id of the rows, qualified if needed
+     * @param searchTable Search table, one of the *_SEARCH tables
+     * @return Selection, with one argument: the match expression
+     */
+    static String matchSelection(String idColumn, String searchTable) {
+        return idColumn + " IN (SELECT docid FROM " + searchTable +
+               " WHERE " + searchTable + " MATCH ?)";
+    }
+
+    /**
+     * Returns a subquery, to use as a table, with the items of all the media types that match
+     * the search, with {@link MediaContract.SearchColumns} columns
+     * @param hostId Host id
+     * @param match Match expression, from {@link #matchExpression(String)}
+     * @return Subquery
+     */
+    static String searchAllTable(long hostId, String match) {
+        String[] selects = {
+                searchSelect(MOVIES, MediaContract.Search.MEDIA_TYPE_MOVIE, hostId, match,
+                             MediaContract.Movies.HOST_ID, MediaContract.Movies.MOVIEID, "NULL",
+                             MediaContract.Movies.TITLE, MediaContract.Movies.GENRES,
+                             MediaContract.Movies.THUMBNAIL),
+                searchSelect(TVSHOWS, MediaContract.Search.MEDIA_TYPE_TVSHOW, hostId, match,
+                             MediaContract.TVShows.HOST_ID, MediaContract.TVShows.TVSHOWID, "NULL",
+                             MediaContract.TVShows.TITLE, MediaContract.TVShows.GENRES,
+                             MediaContract.TVShows.THUMBNAIL),
+                searchSelect(EPISODES, MediaContract.Search.MEDIA_TYPE_EPISODE, hostId, match,
+                             MediaContract.Episodes.HOST_ID, MediaContract.Episodes.EPISODEID,
+                             src(MediaContract.Episodes.TVSHOWID),
+                             MediaContract.Episodes.TITLE, MediaContract.Episodes.SHOWTITLE,
+                             MediaContract.Episodes.THUMBNAIL),
+                searchSelect(ARTISTS, MediaContract.Search.MEDIA_TYPE_ARTIST, hostId, match,
+                             MediaContract.Artists.HOST_ID, MediaContract.Artists.ARTISTID, "NULL",
+                             MediaContract.Artists.ARTIST, MediaContract.Artists.GENRE,
+                             MediaContract.Artists.THUMBNAIL),
+                searchSelect(ALBUMS, MediaContract.Search.MEDIA_TYPE_ALBUM, hostId, match,
+                             MediaContract.Albums.HOST_ID, MediaContract.Albums.ALBUMID, "NULL",
+                             MediaContract.Albums.TITLE, MediaContract.Albums.DISPLAYARTIST,
+                             MediaContract.Albums.THUMBNAIL),
+                searchSelect(SONGS, MediaContract.Search.MEDIA_TYPE_SONG, hostId, match,
+                             MediaContract.Songs.HOST_ID, MediaContract.Songs.SONGID,
+                             src(MediaContract.Songs.ALBUMID),
+                             MediaContract.Songs.TITLE, MediaContract.Songs.DISPLAYARTIST,
+                             MediaContract.Songs.THUMBNAIL),
+                searchSelect(MUSIC_VIDEOS, MediaContract.Search.MEDIA_TYPE_MUSIC_VIDEO, hostId, match,
+                             MediaContract.MusicVideos.HOST_ID, MediaContract.MusicVideos.MUSICVIDEOID, "NULL",
+                             MediaContract.MusicVideos.TITLE, MediaContract.MusicVideos.ARTIST,
+                             MediaContract.MusicVideos.THUMBNAIL),
+        };
+
+        StringBuilder table = new StringBuilder("(");
+        for (int i = 0; i < selects.length; i++) {
+            if (i > 0) table.append(" UNION ALL ");
+            table.append(selects[i]);
+        }
+        return table.append(")").toString();
+    }
+
+    private static String searchSelect(Index index, String mediaType, long hostId, String match,
+                                       String hostIdColumn, String itemIdColumn, String parentId,
+                                       String titleColumn, String detailsColumn, String thumbnailColumn) {
+        return "SELECT " +
+               src(BaseColumns._ID) + " AS " + MediaContract.Search._ID + ", " +
+               src(hostIdColumn) + " AS " + MediaContract.Search.HOST_ID + ", " +
+               DatabaseUtils.sqlEscapeString(mediaType) + " AS " + MediaContract.Search.MEDIA_TYPE + ", " +
+               src(itemIdColumn) + " AS " + MediaContract.Search.ITEM_ID + ", " +
+               parentId + " AS " + MediaContract.Search.PARENT_ID + ", " +
+               src(titleColumn) + " AS " + MediaContract.Search.TITLE + ", " +
+               src(detailsColumn) + " AS " + MediaContract.Search.DETAILS + ", " +
+               src(thumbnailColumn) + " AS " + MediaContract.Search.THUMBNAIL +
+               " FROM " + index.table + " " + SRC +
+               " WHERE " + src(hostIdColumn) + "=" + hostId +
+               " AND " + src(BaseColumns._ID) + " IN (SELECT docid FROM " + index.searchTable +
+               " WHERE " + index.searchTable + " MATCH " + DatabaseUtils.sqlEscapeString(match) + ")";
+    }
+}
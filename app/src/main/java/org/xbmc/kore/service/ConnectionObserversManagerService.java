@@ -88,7 +88,7 @@ public class ConnectionObserversManagerService extends Service
 
         // Register us on the connection observer
         mHostConnectionObserver = connectionObserver;
-        mHostConnectionObserver.registerPlayerObserver(this, true);
+        mHostConnectionObserver.registerBackgroundPlayerObserver(this, true);
 
         // If we get killed, after returning from here, don't restart
         return START_STICKY;
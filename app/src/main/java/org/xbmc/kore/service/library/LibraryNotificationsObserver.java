@@ -0,0 +1,444 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xbmc.kore.service.library;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+import org.xbmc.kore.host.HostInfo;
+import org.xbmc.kore.jsonrpc.ApiCallback;
+import org.xbmc.kore.jsonrpc.HostConnection;
+import org.xbmc.kore.jsonrpc.notification.AudioLibrary;
+import org.xbmc.kore.jsonrpc.notification.VideoLibrary;
+import org.xbmc.kore.jsonrpc.type.VideoType;
+import org.xbmc.kore.provider.MediaContract;
+import org.xbmc.kore.utils.LogUtils;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps the local database up to date with the library notifications sent by Kodi.
+ *
+ * Playcount changes and removals are applied directly to the database. Other updates and
+ * additions are collected for a few seconds (a library scan sends a burst of them) and then
+ * synced through {@link LibrarySyncService}, item by item if there are only a few, or through
+ * an incremental sync of the whole section otherwise. TV shows have no incremental sync, so
+ * they are always synced show by show, all of them in a single request.
+ *
+ * Notifications are only sent through TCP, so this only works when the connection uses it.
+ * Everything runs on a background thread owned by this observer.
+ */
+public class LibraryNotificationsObserver
+        implements HostConnection.VideoLibraryNotificationsObserver,
+                   HostConnection.AudioLibraryNotificationsObserver {
+    public static final String TAG = LogUtils.makeLogTag(LibraryNotificationsObserver.class);
+
+    /**
+     * Time to wait after the last notification before syncing the items changed
+     */
+    private static final int SYNC_DELAY = 3000; // ms
+
+    /**
+     * Above this number of changed movies, sync the whole section instead of each movie
+     */
+    private static final int MAX_SINGLE_ITEM_SYNCS = 10;
+
+    private final Context context;
+    private final ContentResolver contentResolver;
+    private final HostConnection hostConnection;
+    private final int hostId;
+
+    private HandlerThread handlerThread;
+    private Handler handler;
+
+    // Items waiting to be synced. Only accessed on the handler thread
+    private final Set<Integer> pendingMovieIds = new HashSet<>();
+    private final Set<Integer> pendingTVShowIds = new HashSet<>();
+    private boolean pendingMusicSync = false;
+    private boolean pendingMusicVideosSync = false;
+
+    private final Runnable syncPendingRunnable = new Runnable() {
+        @Override
+        public void run() {
+            syncPending();
+        }
+    };
+
+    /**
+     * Constructor
+     * @param context Context
+     * @param hostInfo Host to which the connection belongs
+     * @param hostConnection Connection to observe
+     */
+    public LibraryNotificationsObserver(Context context, HostInfo hostInfo,
+                                        HostConnection hostConnection) {
+        this.context = context.getApplicationContext();
+        this.contentResolver = this.context.getContentResolver();
+        this.hostConnection = hostConnection;
+        this.hostId = hostInfo.getId();
+    }
+
+    /**
+     * Starts observing the library notifications
+     */
+    public void startObserving() {
+        if (handlerThread != null) return;
+
+        handlerThread = new HandlerThread("LibraryNotificationsObserver", Process.THREAD_PRIORITY_BACKGROUND);
+        handlerThread.start();
+        handler = new Handler(handlerThread.getLooper());
+
+        hostConnection.registerVideoLibraryNotificationsObserver(this, handler);
+        hostConnection.registerAudioLibraryNotificationsObserver(this, handler);
+    }
+
+    /**
+     * Stops observing the library notifications. Changes not yet synced are dropped
+     */
+    public void stopObserving() {
+        if (handlerThread == null) return;
+
+        hostConnection.unregisterVideoLibraryNotificationsObserver(this);
+        hostConnection.unregisterAudioLibraryNotificationsObserver(this);
+
+        handler.removeCallbacks(syncPendingRunnable);
+        handlerThread.quit();
+        handlerThread = null;
+        handler = null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onUpdate(VideoLibrary.OnUpdate notification) {
+        if (notification.itemType == null) return;
+        boolean playcountOnly = (notification.playcount >= 0) && !notification.added;
+        switch (notification.itemType) {
+            case VideoLibrary.ITEM_TYPE_MOVIE:
+                if (playcountOnly) {
+                    updatePlaycount(MediaContract.Movies.buildMovieUri(hostId, notification.itemId),
+                                    MediaContract.Movies.PLAYCOUNT, notification.playcount);
+                } else {
+                    pendingMovieIds.add(notification.itemId);
+                    scheduleSync();
+                }
+                break;
+            case VideoLibrary.ITEM_TYPE_TVSHOW:
+                pendingTVShowIds.add(notification.itemId);
+                scheduleSync();
+                break;
+            case VideoLibrary.ITEM_TYPE_EPISODE:
+                int tvshowId = getEpisodeTVShowId(notification.itemId);
+                if (tvshowId == -1) {
+                    // New episode, ask Kodi for its show
+                    syncEpisodeTVShow(notification.itemId);
+                } else if (playcountOnly) {
+                    updatePlaycount(MediaContract.Episodes.buildTVShowEpisodeUri(hostId, tvshowId, notification.itemId),
+                                    MediaContract.Episodes.PLAYCOUNT, notification.playcount);
+                } else {
+                    pendingTVShowIds.add(tvshowId);
+                    scheduleSync();
+                }
+                break;
+            case VideoLibrary.ITEM_TYPE_MUSICVIDEO:
+                if (playcountOnly) {
+                    updatePlaycount(MediaContract.MusicVideos.buildMusicVideoUri(hostId, notification.itemId),
+                                    MediaContract.MusicVideos.PLAYCOUNT, notification.playcount);
+                } else {
+                    pendingMusicVideosSync = true;
+                    scheduleSync();
+                }
+                break;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onRemove(VideoLibrary.OnRemove notification) {
+        if (notification.itemType == null) return;
+        LogUtils.LOGD(TAG, "Removing " + notification.itemType + " " + notification.itemId);
+        List<Integer> ids = Collections.singletonList(notification.itemId);
+        switch (notification.itemType) {
+            case VideoLibrary.ITEM_TYPE_MOVIE:
+                pendingMovieIds.remove(notification.itemId);
+                SyncUtils.deleteIds(contentResolver, MediaContract.MovieCast.CONTENT_URI,
+                                    MediaContract.MovieCast.HOST_ID, MediaContract.MovieCast.MOVIEID,
+                                    hostId, ids);
+                SyncUtils.deleteIds(contentResolver, MediaContract.Movies.CONTENT_URI,
+                                    MediaContract.Movies.HOST_ID, MediaContract.Movies.MOVIEID,
+                                    hostId, ids);
+                break;
+            case VideoLibrary.ITEM_TYPE_TVSHOW:
+                pendingTVShowIds.remove(notification.itemId);
+                SyncUtils.deleteIds(contentResolver, MediaContract.Episodes.CONTENT_URI,
+                                    MediaContract.Episodes.HOST_ID, MediaContract.Episodes.TVSHOWID,
+                                    hostId, ids);
+                SyncUtils.deleteIds(contentResolver, MediaContract.Seasons.CONTENT_URI,
+                                    MediaContract.Seasons.HOST_ID, MediaContract.Seasons.TVSHOWID,
+                                    hostId, ids);
+                SyncUtils.deleteIds(contentResolver, MediaContract.TVShowCast.CONTENT_URI,
+                                    MediaContract.TVShowCast.HOST_ID, MediaContract.TVShowCast.TVSHOWID,
+                                    hostId, ids);
+                SyncUtils.deleteIds(contentResolver, MediaContract.TVShows.CONTENT_URI,
+                                    MediaContract.TVShows.HOST_ID, MediaContract.TVShows.TVSHOWID,
+                                    hostId, ids);
+                break;
+            case VideoLibrary.ITEM_TYPE_EPISODE:
+                SyncUtils.deleteIds(contentResolver, MediaContract.Episodes.CONTENT_URI,
+                                    MediaContract.Episodes.HOST_ID, MediaContract.Episodes.EPISODEID,
+                                    hostId, ids);
+                break;
+            case VideoLibrary.ITEM_TYPE_MUSICVIDEO:
+                SyncUtils.deleteIds(contentResolver, MediaContract.MusicVideos.CONTENT_URI,
+                                    MediaContract.MusicVideos.HOST_ID, MediaContract.MusicVideos.MUSICVIDEOID,
+                                    hostId, ids);
+                break;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onScanFinished(VideoLibrary.OnScanFinished notification) {
+        // No need to wait for more updates
+        syncPending();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onCleanFinished(VideoLibrary.OnCleanFinished notification) {
+        // Each removal was already notified
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onUpdate(AudioLibrary.OnUpdate notification) {
+        boolean playcountOnly = (notification.playcount >= 0) && !notification.added;
+        if (playcountOnly && (notification.itemType != null)) {
+            switch (notification.itemType) {
+                case AudioLibrary.ITEM_TYPE_ALBUM:
+                    if (updatePlaycount(MediaContract.Albums.buildAlbumUri(hostId, notification.itemId),
+                                        MediaContract.Albums.PLAYCOUNT, notification.playcount) > 0)
+                        return;
+                    break;
+                case AudioLibrary.ITEM_TYPE_SONG:
+                    // Songs don't keep their playcount locally, so there's nothing to update
+                    if (isSongSynced(notification.itemId))
+                        return;
+                    break;
+            }
+        }
+
+        // Let the incremental sync figure out what else changed, or get the item we don't have
+        pendingMusicSync = true;
+        scheduleSync();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onRemove(AudioLibrary.OnRemove notification) {
+        if (notification.itemType == null) return;
+        LogUtils.LOGD(TAG, "Removing " + notification.itemType + " " + notification.itemId);
+        List<Integer> ids = Collections.singletonList(notification.itemId);
+        switch (notification.itemType) {
+            case AudioLibrary.ITEM_TYPE_SONG:
+                SyncUtils.deleteIds(contentResolver, MediaContract.SongArtists.CONTENT_URI,
+                                    MediaContract.SongArtists.HOST_ID, MediaContract.SongArtists.SONGID,
+                                    hostId, ids);
+                SyncUtils.deleteIds(contentResolver, MediaContract.Songs.CONTENT_URI,
+                                    MediaContract.Songs.HOST_ID, MediaContract.Songs.SONGID,
+                                    hostId, ids);
+                break;
+            case AudioLibrary.ITEM_TYPE_ALBUM:
+                SyncUtils.deleteIds(contentResolver, MediaContract.AlbumArtists.CONTENT_URI,
+                                    MediaContract.AlbumArtists.HOST_ID, MediaContract.AlbumArtists.ALBUMID,
+                                    hostId, ids);
+                SyncUtils.deleteIds(contentResolver, MediaContract.AlbumGenres.CONTENT_URI,
+                                    MediaContract.AlbumGenres.HOST_ID, MediaContract.AlbumGenres.ALBUMID,
+                                    hostId, ids);
+                SyncUtils.deleteIds(contentResolver, MediaContract.Albums.CONTENT_URI,
+                                    MediaContract.Albums.HOST_ID, MediaContract.Albums.ALBUMID,
+                                    hostId, ids);
+                break;
+            case AudioLibrary.ITEM_TYPE_ARTIST:
+                SyncUtils.deleteIds(contentResolver, MediaContract.AlbumArtists.CONTENT_URI,
+                                    MediaContract.AlbumArtists.HOST_ID, MediaContract.AlbumArtists.ARTISTID,
+                                    hostId, ids);
+                SyncUtils.deleteIds(contentResolver, MediaContract.SongArtists.CONTENT_URI,
+                                    MediaContract.SongArtists.HOST_ID, MediaContract.SongArtists.ARTISTID,
+                                    hostId, ids);
+                SyncUtils.deleteIds(contentResolver, MediaContract.Artists.CONTENT_URI,
+                                    MediaContract.Artists.HOST_ID, MediaContract.Artists.ARTISTID,
+                                    hostId, ids);
+                break;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onScanFinished(AudioLibrary.OnScanFinished notification) {
+        syncPending();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onCleanFinished(AudioLibrary.OnCleanFinished notification) {
+        // Each removal was already notified
+    }
+
+    /**
+     * Sets the playcount of an item on the database, returning the number of rows updated
+     */
+    private int updatePlaycount(Uri uri, String playcountColumn, int playcount) {
+        ContentValues values = new ContentValues(1);
+        values.put(playcountColumn, playcount);
+        return contentResolver.update(uri, values, null, null);
+    }
+
+    /**
+     * Returns whether a song is on the database
+     */
+    private boolean isSongSynced(int songId) {
+        Cursor cursor = contentResolver.query(
+                MediaContract.Songs.CONTENT_URI,
+                new String[] {MediaContract.Songs.SONGID},
+                MediaContract.Songs.HOST_ID + "=? AND " + MediaContract.Songs.SONGID + "=?",
+                new String[] {String.valueOf(hostId), String.valueOf(songId)},
+                null);
+        if (cursor == null) return false;
+        try {
+            return cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the tv show of an episode on the database, or -1 if the episode isn't there
+     */
+    private int getEpisodeTVShowId(int episodeId) {
+        Cursor cursor = contentResolver.query(
+                MediaContract.Episodes.CONTENT_URI,
+                new String[] {MediaContract.Episodes.TVSHOWID},
+                MediaContract.Episodes.HOST_ID + "=? AND " + MediaContract.Episodes.EPISODEID + "=?",
+                new String[] {String.valueOf(hostId), String.valueOf(episodeId)},
+                null);
+        if (cursor == null) return -1;
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Gets the tv show of an episode from Kodi and queues it for syncing
+     */
+    private void syncEpisodeTVShow(int episodeId) {
+        org.xbmc.kore.jsonrpc.method.VideoLibrary.GetEpisodeDetails action =
+                new org.xbmc.kore.jsonrpc.method.VideoLibrary.GetEpisodeDetails(
+                        episodeId, VideoType.FieldsEpisode.TVSHOWID);
+        action.execute(hostConnection, new ApiCallback<VideoType.DetailsEpisode>() {
+            @Override
+            public void onSuccess(VideoType.DetailsEpisode result) {
+                pendingTVShowIds.add(result.tvshowid);
+                scheduleSync();
+            }
+
+            @Override
+            public void onError(int errorCode, String description) {
+                LogUtils.LOGD(TAG, "Couldn't get the tv show of an updated episode: " + description);
+            }
+        }, handler);
+    }
+
+    private void scheduleSync() {
+        handler.removeCallbacks(syncPendingRunnable);
+        handler.postDelayed(syncPendingRunnable, SYNC_DELAY);
+    }
+
+    /**
+     * Syncs all the items changed since the last call
+     */
+    private void syncPending() {
+        handler.removeCallbacks(syncPendingRunnable);
+
+        if (pendingMovieIds.size() > MAX_SINGLE_ITEM_SYNCS) {
+            startSync(LibrarySyncService.SYNC_ALL_MOVIES, null, -1);
+        } else {
+            for (int movieId : pendingMovieIds) {
+                startSync(LibrarySyncService.SYNC_SINGLE_MOVIE, LibrarySyncService.SYNC_MOVIEID, movieId);
+            }
+        }
+        pendingMovieIds.clear();
+
+        if (!pendingTVShowIds.isEmpty()) {
+            int[] tvshowIds = new int[pendingTVShowIds.size()];
+            int i = 0;
+            for (int tvshowId : pendingTVShowIds) {
+                tvshowIds[i++] = tvshowId;
+            }
+            LogUtils.LOGD(TAG, "Library changed on Kodi, starting sync: " +
+                               LibrarySyncService.SYNC_SINGLE_TVSHOW + " " + pendingTVShowIds);
+            Intent syncIntent = buildSyncIntent(LibrarySyncService.SYNC_SINGLE_TVSHOW);
+            syncIntent.putExtra(LibrarySyncService.SYNC_TVSHOWIDS, tvshowIds);
+            context.startService(syncIntent);
+        }
+        pendingTVShowIds.clear();
+
+        if (pendingMusicSync) {
+            startSync(LibrarySyncService.SYNC_ALL_MUSIC, null, -1);
+            pendingMusicSync = false;
+        }
+
+        if (pendingMusicVideosSync) {
+            startSync(LibrarySyncService.SYNC_ALL_MUSIC_VIDEOS, null, -1);
+            pendingMusicVideosSync = false;
+        }
+    }
+
+    private void startSync(String syncType, String syncIdExtra, int itemId) {
+        LogUtils.LOGD(TAG, "Library changed on Kodi, starting sync: " + syncType +
+                           ((itemId != -1) ? " " + itemId : ""));
+        Intent syncIntent = buildSyncIntent(syncType);
+        if (syncIdExtra != null) {
+            syncIntent.putExtra(syncIdExtra, itemId);
+        }
+        context.startService(syncIntent);
+    }
+
+    private Intent buildSyncIntent(String syncType) {
+        Intent syncIntent = new Intent(context, LibrarySyncService.class);
+        syncIntent.putExtra(syncType, true);
+        syncIntent.putExtra(LibrarySyncService.SYNC_INCREMENTAL, true);
+
+        // Don't bother the user with these
+        Bundle syncExtras = new Bundle();
+        syncExtras.putBoolean(LibrarySyncService.SILENT_SYNC, true);
+        syncIntent.putExtra(LibrarySyncService.SYNC_EXTRAS, syncExtras);
+        return syncIntent;
+    }
+}
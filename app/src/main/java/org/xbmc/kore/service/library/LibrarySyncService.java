@@ -18,13 +18,16 @@ package org.xbmc.kore.service.library;
 import android.annotation.SuppressLint;
 import android.app.Service;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.os.Binder;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.IBinder;
 import android.os.Process;
+import android.preference.PreferenceManager;
 
+import org.xbmc.kore.Settings;
 import org.xbmc.kore.host.HostInfo;
 import org.xbmc.kore.host.HostManager;
 import org.xbmc.kore.jsonrpc.HostConnection;
@@ -48,9 +51,27 @@ public class LibrarySyncService extends Service {
     public static final String SYNC_SINGLE_TVSHOW = "sync_single_tvshow";
     public static final String SYNC_ALL_MUSIC = "sync_all_music";
     public static final String SYNC_ALL_MUSIC_VIDEOS = "sync_all_music_videos";
+    public static final String SYNC_ARTWORK = "sync_artwork";
+    public static final String SYNC_PVR = "sync_pvr";
+    public static final String SYNC_ADDONS = "sync_addons";
+    public static final String SYNC_FAVOURITES = "sync_favourites";
 
     public static final String SYNC_MOVIEID = "sync_movieid";
     public static final String SYNC_TVSHOWID = "sync_tvshowid";
+    /**
+     * Extra with several tv shows to sync one after the other. Applies to {@link #SYNC_SINGLE_TVSHOW}
+     */
+    public static final String SYNC_TVSHOWIDS = "sync_tvshowids";
+    /**
+     * Extra with a channel whose guide to refresh, even if it isn't stale. Applies to {@link #SYNC_PVR}
+     */
+    public static final String SYNC_CHANNELID = "sync_channelid";
+
+    /**
+     * Extra to only sync what changed since the last sync, instead of replacing everything.
+     * Applies to {@link #SYNC_ALL_MOVIES} and {@link #SYNC_ALL_MUSIC}
+     */
+    public static final String SYNC_INCREMENTAL = "sync_incremental";
 
     /**
      * Extra used to pass parameters that will be sent back to the caller
@@ -107,10 +128,12 @@ public class LibrarySyncService extends Service {
         // Get the request parameters that we should pass when calling back the caller
         Bundle syncExtras = intent.getBundleExtra(SYNC_EXTRAS);
 
+        boolean syncIncremental = intent.getBooleanExtra(SYNC_INCREMENTAL, false);
+
         // Sync all movies
         boolean syncAllMovies = intent.getBooleanExtra(SYNC_ALL_MOVIES, false);
         if (syncAllMovies) {
-            syncOrchestrator.addSyncItem(new SyncMovies(hostInfo.getId(), syncExtras));
+            syncOrchestrator.addSyncItem(new SyncMovies(hostInfo.getId(), syncIncremental, syncExtras));
         }
 
         // Sync a single movie
@@ -125,7 +148,9 @@ public class LibrarySyncService extends Service {
         // Sync all tvshows
         boolean syncAllTVShows = intent.getBooleanExtra(SYNC_ALL_TVSHOWS, false);
         if (syncAllTVShows) {
-            syncOrchestrator.addSyncItem(new SyncTVShows(hostInfo.getId(), syncExtras));
+            boolean syncAllSeasons =
+                    hostInfo.getKodiVersionMajor() >= SyncTVShows.MIN_KODI_VERSION_ALL_SEASONS;
+            syncOrchestrator.addSyncItem(new SyncTVShows(hostInfo.getId(), syncAllSeasons, syncExtras));
         }
 
         // Sync a single tvshow
@@ -135,12 +160,18 @@ public class LibrarySyncService extends Service {
             if (tvshowId != -1) {
                 syncOrchestrator.addSyncItem(new SyncTVShows(hostInfo.getId(), tvshowId, syncExtras));
             }
+            int[] tvshowIds = intent.getIntArrayExtra(SYNC_TVSHOWIDS);
+            if (tvshowIds != null) {
+                for (int id : tvshowIds) {
+                    syncOrchestrator.addSyncItem(new SyncTVShows(hostInfo.getId(), id, syncExtras));
+                }
+            }
         }
 
         // Sync all music
         boolean syncAllMusic = intent.getBooleanExtra(SYNC_ALL_MUSIC, false);
         if (syncAllMusic) {
-            syncOrchestrator.addSyncItem(new SyncMusic(hostInfo.getId(), syncExtras));
+            syncOrchestrator.addSyncItem(new SyncMusic(hostInfo.getId(), syncIncremental, syncExtras));
         }
 
         // Sync all music videos
@@ -149,6 +180,38 @@ public class LibrarySyncService extends Service {
             syncOrchestrator.addSyncItem(new SyncMusicVideos(hostInfo.getId(), syncExtras));
         }
 
+        // Sync the PVR channels and guide
+        boolean syncPVR = intent.getBooleanExtra(SYNC_PVR, false);
+        if (syncPVR) {
+            int channelId = intent.getIntExtra(SYNC_CHANNELID, -1);
+            syncOrchestrator.addSyncItem(new SyncPVR(hostInfo.getId(), channelId, syncExtras));
+        }
+
+        // Sync the addons
+        boolean syncAddons = intent.getBooleanExtra(SYNC_ADDONS, false);
+        if (syncAddons) {
+            syncOrchestrator.addSyncItem(new SyncAddons(hostInfo.getId(), syncExtras));
+        }
+
+        // Sync the favourites
+        boolean syncFavourites = intent.getBooleanExtra(SYNC_FAVOURITES, false);
+        if (syncFavourites) {
+            syncOrchestrator.addSyncItem(new SyncFavourites(hostInfo.getId(), syncExtras));
+        }
+
+        // Download the artwork of what was synced, if the user wants it. Only on full syncs the
+        // user asked for, not on the incremental or silent ones started in the background
+        boolean silentSync = (syncExtras != null) && syncExtras.getBoolean(SILENT_SYNC, false);
+        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(this);
+        if ((syncAllMovies || syncAllTVShows || syncAllMusic) &&
+            !syncIncremental && !silentSync &&
+            preferences.getBoolean(Settings.KEY_PREF_PREWARM_ARTWORK,
+                                   Settings.DEFAULT_PREF_PREWARM_ARTWORK)) {
+            syncOrchestrator.addSyncItem(new SyncArtwork(this, hostInfo,
+                                                         syncAllMovies, syncAllTVShows, syncAllMusic,
+                                                         null));
+        }
+
         // Start syncing
         syncOrchestrator.startSync();
 
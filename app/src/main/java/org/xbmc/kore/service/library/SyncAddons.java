@@ -0,0 +1,149 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbmc.kore.service.library;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.os.Bundle;
+import android.os.Handler;
+import android.text.format.DateUtils;
+
+import org.xbmc.kore.jsonrpc.ApiCallback;
+import org.xbmc.kore.jsonrpc.HostConnection;
+import org.xbmc.kore.jsonrpc.method.Addons;
+import org.xbmc.kore.jsonrpc.type.AddonType;
+import org.xbmc.kore.provider.MediaContract;
+import org.xbmc.kore.utils.LogUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Syncs the addons that can be browsed or executed to the local database.
+ *
+ * Silent syncs, started when the addon list is shown, only call Kodi if the stored list is
+ * older than {@link #MAX_AGE}. Syncs requested by the user always refresh it.
+ */
+public class SyncAddons extends SyncItem {
+    public static final String TAG = LogUtils.makeLogTag(SyncAddons.class);
+
+    /**
+     * Addons are rarely installed or removed, so the stored list is kept for a while
+     */
+    private static final long MAX_AGE = DateUtils.DAY_IN_MILLIS;
+
+    private static final String[] PROPERTIES = {
+            AddonType.Fields.NAME, AddonType.Fields.VERSION, AddonType.Fields.SUMMARY,
+            AddonType.Fields.DESCRIPTION,  AddonType.Fields.PATH, AddonType.Fields.AUTHOR,
+            AddonType.Fields.THUMBNAIL, AddonType.Fields.DISCLAIMER, AddonType.Fields.FANART,
+            //AddonType.Fields.DEPENDENCIES, AddonType.Fields.BROKEN, AddonType.Fields.EXTRAINFO,
+            AddonType.Fields.RATING, AddonType.Fields.ENABLED
+    };
+
+    /**
+     * Types of the addons that are stored, the ones the user can open
+     */
+    private static final Set<String> TYPES = new HashSet<>(Arrays.asList(
+            AddonType.Types.UNKNOWN,
+            AddonType.Types.XBMC_PYTHON_PLUGINSOURCE,
+            AddonType.Types.XBMC_PYTHON_SCRIPT,
+            AddonType.Types.XBMC_ADDON_AUDIO,
+            AddonType.Types.XBMC_ADDON_EXECUTABLE,
+            AddonType.Types.XBMC_ADDON_VIDEO,
+            AddonType.Types.XBMC_ADDON_IMAGE));
+
+    private final int hostId;
+    private final Bundle syncExtras;
+
+    /**
+     * Syncs the addons list of a host to the local database
+     * @param hostId XBMC host id
+     */
+    public SyncAddons(final int hostId, Bundle syncExtras) {
+        this.hostId = hostId;
+        this.syncExtras = syncExtras;
+    }
+
+    /** {@inheritDoc} */
+    public String getDescription() {
+        return "Sync addons for host: " + hostId;
+    }
+
+    /** {@inheritDoc} */
+    public String getSyncType() {
+        return LibrarySyncService.SYNC_ADDONS;
+    }
+
+    /** {@inheritDoc} */
+    public Bundle getSyncExtras() {
+        return syncExtras;
+    }
+
+    /** {@inheritDoc} */
+    public void sync(final SyncOrchestrator orchestrator,
+                     final HostConnection hostConnection,
+                     final Handler callbackHandler,
+                     final ContentResolver contentResolver) {
+        boolean silentSync = (syncExtras != null) &&
+                             syncExtras.getBoolean(LibrarySyncService.SILENT_SYNC, false);
+        if (silentSync) {
+            long updated = SyncUtils.getLastSynced(contentResolver, hostId, getSyncType());
+            if (System.currentTimeMillis() - updated < MAX_AGE) {
+                LogUtils.LOGD(TAG, "Stored addons are recent, not syncing");
+                orchestrator.syncItemFinished();
+                return;
+            }
+        }
+
+        Addons.GetAddons action = new Addons.GetAddons(PROPERTIES);
+        action.execute(hostConnection, new ApiCallback<List<AddonType.Details>>() {
+            @Override
+            public void onSuccess(List<AddonType.Details> result) {
+                deleteAddons(contentResolver);
+                insertAddons(result, contentResolver);
+                SyncUtils.setLastSynced(contentResolver, hostId, getSyncType());
+                orchestrator.syncItemFinished();
+            }
+
+            @Override
+            public void onError(int errorCode, String description) {
+                // Keep what's stored, it's still better than nothing
+                orchestrator.syncItemFailed(errorCode, description);
+            }
+        }, callbackHandler);
+    }
+
+    private void deleteAddons(final ContentResolver contentResolver) {
+        String where = MediaContract.AddonsColumns.HOST_ID + "=?";
+        contentResolver.delete(MediaContract.Addons.CONTENT_URI,
+                               where, new String[]{String.valueOf(hostId)});
+    }
+
+    private void insertAddons(List<AddonType.Details> addons, ContentResolver contentResolver) {
+        List<ContentValues> addonsValues = new ArrayList<>(addons.size());
+        for (AddonType.Details addon : addons) {
+            if (TYPES.contains(addon.type)) {
+                addonsValues.add(SyncUtils.contentValuesFromAddon(hostId, addon));
+            }
+        }
+
+        contentResolver.bulkInsert(MediaContract.Addons.CONTENT_URI,
+                                   addonsValues.toArray(new ContentValues[addonsValues.size()]));
+    }
+}
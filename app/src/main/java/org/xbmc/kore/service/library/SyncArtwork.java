@@ -0,0 +1,248 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbmc.kore.service.library;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.res.Resources;
+import android.database.Cursor;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.net.Uri;
+import android.os.BatteryManager;
+import android.os.Bundle;
+import android.os.Handler;
+import android.support.v4.net.ConnectivityManagerCompat;
+import android.text.TextUtils;
+
+import org.xbmc.kore.R;
+import org.xbmc.kore.host.HostInfo;
+import org.xbmc.kore.jsonrpc.HostConnection;
+import org.xbmc.kore.provider.MediaContract;
+import org.xbmc.kore.utils.ArtworkRequestHandler;
+import org.xbmc.kore.utils.LogUtils;
+import org.xbmc.kore.utils.UIUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downloads the artwork shown in the movies, tv shows and albums grids to the artwork disk
+ * cache, so that the library can be browsed without waiting for images, even offline.
+ *
+ * This should be added after the items that sync those libraries, as it reads the artwork from
+ * the local database. Artwork is only downloaded on unmetered networks, with a few concurrent
+ * downloads when charging and one at a time otherwise, and it stops if the conditions change.
+ * As images already on disk are skipped, a later sync resumes where an interrupted one stopped.
+ */
+public class SyncArtwork extends SyncItem {
+    public static final String TAG = LogUtils.makeLogTag(SyncArtwork.class);
+
+    private static final int MAX_DOWNLOADS_CHARGING = 3;
+    private static final int MAX_DOWNLOADS_ON_BATTERY = 1;
+
+    private final Context context;
+    private final HostInfo hostInfo;
+    private final boolean syncMovies, syncTVShows, syncMusic;
+    private final Bundle syncExtras;
+
+    private volatile boolean stopped = false;
+
+    /**
+     * Downloads the artwork of the given libraries
+     * @param context Context
+     * @param hostInfo Host from which to download
+     * @param syncMovies Whether to download the movie posters
+     * @param syncTVShows Whether to download the tv show posters
+     * @param syncMusic Whether to download the album covers
+     */
+    public SyncArtwork(Context context, HostInfo hostInfo,
+                       boolean syncMovies, boolean syncTVShows, boolean syncMusic,
+                       Bundle syncExtras) {
+        this.context = context.getApplicationContext();
+        this.hostInfo = hostInfo;
+        this.syncMovies = syncMovies;
+        this.syncTVShows = syncTVShows;
+        this.syncMusic = syncMusic;
+        this.syncExtras = syncExtras;
+    }
+
+    /** {@inheritDoc} */
+    public String getDescription() {
+        return "Sync artwork for host: " + hostInfo.getName();
+    }
+
+    /** {@inheritDoc} */
+    public String getSyncType() {
+        return LibrarySyncService.SYNC_ARTWORK;
+    }
+
+    /** {@inheritDoc} */
+    public Bundle getSyncExtras() {
+        return syncExtras;
+    }
+
+    /** {@inheritDoc} */
+    public void sync(final SyncOrchestrator orchestrator,
+                     final HostConnection hostConnection,
+                     final Handler callbackHandler,
+                     final ContentResolver contentResolver) {
+        if (!canDownload()) {
+            LogUtils.LOGD(TAG, "Not on an unmetered network, skipping artwork download");
+            orchestrator.syncItemFinished();
+            return;
+        }
+
+        // Use the same sizes as the grids, so that images are stored in the tier they load
+        Resources resources = context.getResources();
+        int posterWidth = (int)(resources.getDimension(R.dimen.now_playing_poster_width) /
+                                UIUtils.IMAGE_RESIZE_FACTOR);
+        int posterHeight = (int)(resources.getDimension(R.dimen.now_playing_poster_height) /
+                                 UIUtils.IMAGE_RESIZE_FACTOR);
+        int albumWidth = resources.getDimensionPixelOffset(R.dimen.detail_poster_width_square);
+        int albumHeight = resources.getDimensionPixelOffset(R.dimen.detail_poster_height_square);
+
+        List<ArtworkDownload> downloads = new ArrayList<>();
+        if (syncMovies) {
+            addDownloads(downloads, contentResolver,
+                         MediaContract.Movies.buildMoviesListUri(hostInfo.getId()),
+                         MediaContract.Movies.THUMBNAIL, posterWidth, posterHeight);
+        }
+        if (syncTVShows) {
+            addDownloads(downloads, contentResolver,
+                         MediaContract.TVShows.buildTVShowsListUri(hostInfo.getId()),
+                         MediaContract.TVShows.THUMBNAIL, posterWidth, posterHeight);
+        }
+        if (syncMusic) {
+            addDownloads(downloads, contentResolver,
+                         MediaContract.Albums.buildAlbumsListUri(hostInfo.getId()),
+                         MediaContract.Albums.THUMBNAIL, albumWidth, albumHeight);
+        }
+
+        if (downloads.isEmpty()) {
+            orchestrator.syncItemFinished();
+            return;
+        }
+
+        final ArtworkRequestHandler artworkHandler =
+                new ArtworkRequestHandler(context, hostConnection.getOkHttpClient());
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                isCharging() ? MAX_DOWNLOADS_CHARGING : MAX_DOWNLOADS_ON_BATTERY);
+        final AtomicInteger pending = new AtomicInteger(downloads.size());
+        final AtomicInteger downloaded = new AtomicInteger(0);
+        final long startTime = System.currentTimeMillis();
+
+        LogUtils.LOGD(TAG, "Checking " + downloads.size() + " images");
+        for (final ArtworkDownload download : downloads) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!stopped) {
+                        if (canDownload()) {
+                            try {
+                                if (artworkHandler.warm(hostInfo, download.imagePath,
+                                                        download.width, download.height)) {
+                                    downloaded.incrementAndGet();
+                                }
+                            } catch (IOException e) {
+                                // Missing images are common, keep going
+                                LogUtils.LOGD(TAG, "Couldn't download image " + download.imagePath +
+                                                   ": " + e.getMessage());
+                            }
+                        } else {
+                            LogUtils.LOGD(TAG, "Network changed, stopping artwork download");
+                            stopped = true;
+                        }
+                    }
+
+                    if (pending.decrementAndGet() == 0) {
+                        executor.shutdown();
+                        LogUtils.LOGD(TAG, "Downloaded " + downloaded.get() + " images in " +
+                                           (System.currentTimeMillis() - startTime) + "ms");
+                        callbackHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                orchestrator.syncItemFinished();
+                            }
+                        });
+                    }
+                }
+            });
+        }
+    }
+
+    private void addDownloads(List<ArtworkDownload> downloads, ContentResolver contentResolver,
+                              Uri uri, String column, int width, int height) {
+        Cursor cursor = contentResolver.query(uri, new String[] {column}, null, null, null);
+        if (cursor == null)
+            return;
+
+        // Several items may share the same image
+        Set<String> imagePaths = new LinkedHashSet<>();
+        try {
+            while (cursor.moveToNext()) {
+                String imagePath = cursor.getString(0);
+                if (!TextUtils.isEmpty(imagePath)) {
+                    imagePaths.add(imagePath);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        for (String imagePath : imagePaths) {
+            downloads.add(new ArtworkDownload(imagePath, width, height));
+        }
+    }
+
+    /**
+     * Returns whether we're connected to an unmetered network
+     */
+    private boolean canDownload() {
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+        return (networkInfo != null) && networkInfo.isConnected() &&
+               !ConnectivityManagerCompat.isActiveNetworkMetered(connectivityManager);
+    }
+
+    private boolean isCharging() {
+        // Sticky broadcast, no receiver needed
+        Intent batteryStatus = context.registerReceiver(
+                null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        return (batteryStatus != null) &&
+               (batteryStatus.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0);
+    }
+
+    private static class ArtworkDownload {
+        final String imagePath;
+        final int width, height;
+
+        ArtworkDownload(String imagePath, int width, int height) {
+            this.imagePath = imagePath;
+            this.width = width;
+            this.height = height;
+        }
+    }
+}
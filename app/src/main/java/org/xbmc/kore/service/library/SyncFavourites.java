@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017 XBMC Foundation. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbmc.kore.service.library;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.os.Bundle;
+import android.os.Handler;
+import android.text.format.DateUtils;
+
+import org.xbmc.kore.jsonrpc.ApiCallback;
+import org.xbmc.kore.jsonrpc.ApiList;
+import org.xbmc.kore.jsonrpc.HostConnection;
+import org.xbmc.kore.jsonrpc.method.Favourites;
+import org.xbmc.kore.jsonrpc.type.FavouriteType;
+import org.xbmc.kore.provider.MediaContract;
+import org.xbmc.kore.utils.LogUtils;
+
+import java.util.List;
+
+/**
+ * Syncs the favourites to the local database.
+ *
+ * Silent syncs, started when the favourites list is shown, only call Kodi if the stored list
+ * is older than {@link #MAX_AGE}. Syncs requested by the user always refresh it.
+ */
+public class SyncFavourites extends SyncItem {
+    public static final String TAG = LogUtils.makeLogTag(SyncFavourites.class);
+
+    /**
+     * Favourites are changed from Kodi's UI more often than addons, so they're refreshed sooner
+     */
+    private static final long MAX_AGE = DateUtils.HOUR_IN_MILLIS;
+
+    private final int hostId;
+    private final Bundle syncExtras;
+
+    /**
+     * Syncs the favourites of a host to the local database
+     * @param hostId XBMC host id
+     */
+    public SyncFavourites(final int hostId, Bundle syncExtras) {
+        this.hostId = hostId;
+        this.syncExtras = syncExtras;
+    }
+
+    /** {@inheritDoc} */
+    public String getDescription() {
+        return "Sync favourites for host: " + hostId;
+    }
+
+    /** {@inheritDoc} */
+    public String getSyncType() {
+        return LibrarySyncService.SYNC_FAVOURITES;
+    }
+
+    /** {@inheritDoc} */
+    public Bundle getSyncExtras() {
+        return syncExtras;
+    }
+
+    /** {@inheritDoc} */
+    public void sync(final SyncOrchestrator orchestrator,
+                     final HostConnection hostConnection,
+                     final Handler callbackHandler,
+                     final ContentResolver contentResolver) {
+        boolean silentSync = (syncExtras != null) &&
+                             syncExtras.getBoolean(LibrarySyncService.SILENT_SYNC, false);
+        if (silentSync) {
+            long updated = SyncUtils.getLastSynced(contentResolver, hostId, getSyncType());
+            if (System.currentTimeMillis() - updated < MAX_AGE) {
+                LogUtils.LOGD(TAG, "Stored favourites are recent, not syncing");
+                orchestrator.syncItemFinished();
+                return;
+            }
+        }
+
+        Favourites.GetFavourites action = new Favourites.GetFavourites();
+        action.execute(hostConnection, new ApiCallback<ApiList<FavouriteType.DetailsFavourite>>() {
+            @Override
+            public void onSuccess(ApiList<FavouriteType.DetailsFavourite> result) {
+                deleteFavourites(contentResolver);
+                insertFavourites(result.items, contentResolver);
+                SyncUtils.setLastSynced(contentResolver, hostId, getSyncType());
+                orchestrator.syncItemFinished();
+            }
+
+            @Override
+            public void onError(int errorCode, String description) {
+                // Keep what's stored, it's still better than nothing
+                orchestrator.syncItemFailed(errorCode, description);
+            }
+        }, callbackHandler);
+    }
+
+    private void deleteFavourites(final ContentResolver contentResolver) {
+        String where = MediaContract.FavouritesColumns.HOST_ID + "=?";
+        contentResolver.delete(MediaContract.Favourites.CONTENT_URI,
+                               where, new String[]{String.valueOf(hostId)});
+    }
+
+    private void insertFavourites(List<FavouriteType.DetailsFavourite> favourites, ContentResolver contentResolver) {
+        ContentValues favouritesValuesBatch[] = new ContentValues[favourites.size()];
+        for (int i = 0; i < favourites.size(); i++) {
+            favouritesValuesBatch[i] = SyncUtils.contentValuesFromFavourite(hostId, favourites.get(i));
+        }
+
+        // Insert them in the order they were returned, which is the order they're listed
+        contentResolver.bulkInsert(MediaContract.Favourites.CONTENT_URI, favouritesValuesBatch);
+    }
+}
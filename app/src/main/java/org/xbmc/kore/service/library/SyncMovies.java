@@ -20,9 +20,11 @@ import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.os.Bundle;
 import android.os.Handler;
+import android.text.TextUtils;
 
 import org.xbmc.kore.jsonrpc.ApiCallback;
 import org.xbmc.kore.jsonrpc.ApiList;
+import org.xbmc.kore.jsonrpc.ApiMethod;
 import org.xbmc.kore.jsonrpc.HostConnection;
 import org.xbmc.kore.jsonrpc.method.VideoLibrary;
 import org.xbmc.kore.jsonrpc.type.ListType;
@@ -31,15 +33,20 @@ import org.xbmc.kore.provider.MediaContract;
 import org.xbmc.kore.utils.LogUtils;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class SyncMovies extends SyncItem {
     public static final String TAG = LogUtils.makeLogTag(SyncMovies.class);
 
     private static final int LIMIT_SYNC_MOVIES = 300;
+    private static final int LIMIT_SYNC_MOVIE_IDS = 5000;
 
     private final int hostId;
     private final int movieId;
+    private final boolean incremental;
     private final Bundle syncExtras;
 
     /**
@@ -47,8 +54,19 @@ public class SyncMovies extends SyncItem {
      * @param hostId XBMC host id
      */
     public SyncMovies(final int hostId, Bundle syncExtras) {
+        this(hostId, false, syncExtras);
+    }
+
+    /**
+     * Syncs all the movies on selected XBMC to the local database
+     * @param hostId XBMC host id
+     * @param incremental Whether to only sync the movies that changed since the last sync,
+     *                    instead of replacing all of them
+     */
+    public SyncMovies(final int hostId, final boolean incremental, Bundle syncExtras) {
         this.hostId = hostId;
         this.movieId = -1;
+        this.incremental = incremental;
         this.syncExtras = syncExtras;
     }
 
@@ -59,6 +77,7 @@ public class SyncMovies extends SyncItem {
     public SyncMovies(final int hostId, final int movieId, Bundle syncExtras) {
         this.hostId = hostId;
         this.movieId = movieId;
+        this.incremental = false;
         this.syncExtras = syncExtras;
     }
 
@@ -107,8 +126,10 @@ public class SyncMovies extends SyncItem {
                 // VideoType.FieldsMovie.ART
         };
 
-        if (movieId == -1) {
-            syncAllMovies(orchestrator, hostConnection, callbackHandler, contentResolver, properties, 0);
+        if ((movieId == -1) && incremental) {
+            syncChangedMovies(orchestrator, hostConnection, callbackHandler, contentResolver, properties);
+        } else if (movieId == -1) {
+            syncAllMovies(orchestrator, hostConnection, callbackHandler, contentResolver, properties);
         } else {
             // Sync a specific movie
             VideoLibrary.GetMovieDetails action =
@@ -133,59 +154,194 @@ public class SyncMovies extends SyncItem {
     }
 
     /**
-     * Syncs all the movies, calling itself recursively
+     * Syncs all the movies, page by page
      * Uses the {@link VideoLibrary.GetMovies} version with limits to make sure
-     * that Kodi doesn't blow up, and calls itself recursively until all the
-     * movies are returned
+     * that Kodi doesn't blow up, and through a {@link SyncPipeline} so that the next
+     * page is requested while the current one is being inserted
      */
     private void syncAllMovies(final SyncOrchestrator orchestrator,
                                final HostConnection hostConnection,
                                final Handler callbackHandler,
                                final ContentResolver contentResolver,
-                               final String properties[],
-                               final int startIdx) {
-        // Call GetMovies with the current limits set
-        ListType.Limits limits = new ListType.Limits(startIdx, startIdx + LIMIT_SYNC_MOVIES);
-        VideoLibrary.GetMovies action = new VideoLibrary.GetMovies(limits, properties);
-        action.execute(hostConnection, new ApiCallback<ApiList<VideoType.DetailsMovie>>() {
+                               final String properties[]) {
+        SyncPipeline.PagedTask<VideoType.DetailsMovie> moviesTask =
+                new SyncPipeline.PagedTask<VideoType.DetailsMovie>(LIMIT_SYNC_MOVIES) {
             @Override
-            public void onSuccess(ApiList<VideoType.DetailsMovie> result) {
-                ListType.LimitsReturned limitsReturned = null;
-                if (result != null) {
-                    limitsReturned = result.limits;
-                }
+            public ApiMethod<ApiList<VideoType.DetailsMovie>> getPage(ListType.Limits limits) {
+                return new VideoLibrary.GetMovies(limits, properties);
+            }
 
-                if (startIdx == 0) {
-                    // First call, delete movies from DB
-                    deleteMovies(contentResolver, hostId, -1);
-                }
-                if (!result.items.isEmpty()) {
-                    insertMovies(orchestrator, contentResolver, result.items);
+            @Override
+            public void insertPage(List<VideoType.DetailsMovie> items) {
+                LogUtils.LOGD(TAG, "syncAllMovies, movies gotten: " + items.size());
+                insertMovies(orchestrator, contentResolver, items);
+            }
+        };
+
+        new SyncPipeline(orchestrator, hostConnection, callbackHandler)
+                .add(moviesTask)
+                .start(new Runnable() {
+                    @Override
+                    public void run() {
+                        // First insert, delete movies from DB
+                        deleteMovies(contentResolver, hostId, -1);
+                    }
+                });
+    }
+
+    /**
+     * Syncs only the movies that changed since the last sync.
+     * Movies added after the most recent date added on the database are upserted, then the
+     * ids of all movies on Kodi are compared with the local ones: movies that are gone are
+     * deleted and any new movie that was missed (e.g. with an older date added) is fetched
+     * individually. If there's nothing on the database yet, or too many movies are missing,
+     * falls back to a full sync.
+     * Changes to movies already on the database, such as their playcount, aren't picked up here,
+     * they arrive through the library notifications or a full sync.
+     */
+    private void syncChangedMovies(final SyncOrchestrator orchestrator,
+                                   final HostConnection hostConnection,
+                                   final Handler callbackHandler,
+                                   final ContentResolver contentResolver,
+                                   final String properties[]) {
+        callbackHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                final Set<Integer> localIds = SyncUtils.getLocalIds(
+                        contentResolver, MediaContract.Movies.CONTENT_URI,
+                        MediaContract.Movies.HOST_ID, MediaContract.Movies.MOVIEID, hostId);
+                String lastDateAdded = SyncUtils.getMaxValue(
+                        contentResolver, MediaContract.Movies.CONTENT_URI,
+                        MediaContract.Movies.HOST_ID, MediaContract.Movies.DATEADDED, hostId);
+                if (localIds.isEmpty() || TextUtils.isEmpty(lastDateAdded)) {
+                    LogUtils.LOGD(TAG, "syncChangedMovies: No movies on the database, syncing all.");
+                    syncAllMovies(orchestrator, hostConnection, callbackHandler, contentResolver, properties);
+                    return;
                 }
 
-                LogUtils.LOGD(TAG, "syncAllMovies, movies gotten: " + result.items.size());
-                if (SyncUtils.moreItemsAvailable(limitsReturned)) {
-                    // Max limit returned, there may be some more movies
-                    // As we're going to recurse, these result objects can add up, so
-                    // let's help the GC and indicate that we don't need this memory
-                    // (hopefully this works)
-                    result = null;
-                    syncAllMovies(orchestrator, hostConnection, callbackHandler, contentResolver,
-                                  properties, startIdx + LIMIT_SYNC_MOVIES);
-                } else {
-                    // Less than the limit was returned so we can finish
-                    // (if it returned more there's a bug in Kodi but it
-                    // shouldn't be a problem as they got inserted in the DB)
-                    orchestrator.syncItemFinished();
+                final SyncPipeline pipeline = new SyncPipeline(orchestrator, hostConnection, callbackHandler);
+                final Set<Integer> syncedIds = new HashSet<>();
+                final ListType.FilterRule filter =
+                        new ListType.FilterRule(VideoType.FieldsMovie.DATEADDED,
+                                                ListType.FilterRule.OPERATOR_AFTER, lastDateAdded);
+
+                pipeline.add(new SyncPipeline.PagedTask<VideoType.DetailsMovie>(LIMIT_SYNC_MOVIES) {
+                    @Override
+                    public ApiMethod<ApiList<VideoType.DetailsMovie>> getPage(ListType.Limits limits) {
+                        return new VideoLibrary.GetMovies(limits, filter, properties);
+                    }
+
+                    @Override
+                    public void insertPage(List<VideoType.DetailsMovie> items) {
+                        LogUtils.LOGD(TAG, "syncChangedMovies, movies added: " + items.size());
+                        upsertMovies(orchestrator, contentResolver, items);
+                        for (VideoType.DetailsMovie movie : items) {
+                            syncedIds.add(movie.movieid);
+                        }
+                    }
+
+                    @Override
+                    public void onFinished() {
+                        pipeline.add(syncRemovedMoviesTask(pipeline, orchestrator, contentResolver,
+                                                           properties, localIds, syncedIds));
+                    }
+                }).start(null);
+            }
+        });
+    }
+
+    /**
+     * Lists the ids of all the movies on Kodi and compares them with the local ones
+     */
+    private SyncPipeline.PagedTask<VideoType.DetailsMovie> syncRemovedMoviesTask(final SyncPipeline pipeline,
+                                                                                final SyncOrchestrator orchestrator,
+                                                                                final ContentResolver contentResolver,
+                                                                                final String properties[],
+                                                                                final Set<Integer> localIds,
+                                                                                final Set<Integer> syncedIds) {
+        final Set<Integer> remoteIds = new HashSet<>();
+        return new SyncPipeline.PagedTask<VideoType.DetailsMovie>(LIMIT_SYNC_MOVIE_IDS) {
+            @Override
+            public ApiMethod<ApiList<VideoType.DetailsMovie>> getPage(ListType.Limits limits) {
+                // No properties, we only want the ids
+                return new VideoLibrary.GetMovies(limits);
+            }
+
+            @Override
+            public void insertPage(List<VideoType.DetailsMovie> items) {
+                for (VideoType.DetailsMovie movie : items) {
+                    remoteIds.add(movie.movieid);
                 }
             }
 
             @Override
-            public void onError(int errorCode, String description) {
-                // Ok, something bad happened, just quit
-                orchestrator.syncItemFailed(errorCode, description);
+            public void onFinished() {
+                Set<Integer> removedIds = new HashSet<>(localIds);
+                removedIds.removeAll(remoteIds);
+                if (!removedIds.isEmpty()) {
+                    LogUtils.LOGD(TAG, "syncChangedMovies, movies removed: " + removedIds.size());
+                    SyncUtils.deleteIds(contentResolver, MediaContract.MovieCast.CONTENT_URI,
+                                        MediaContract.MovieCast.HOST_ID, MediaContract.MovieCast.MOVIEID,
+                                        hostId, removedIds);
+                    SyncUtils.deleteIds(contentResolver, MediaContract.Movies.CONTENT_URI,
+                                        MediaContract.Movies.HOST_ID, MediaContract.Movies.MOVIEID,
+                                        hostId, removedIds);
+                }
+
+                final List<Integer> missingIds = new ArrayList<>(remoteIds);
+                missingIds.removeAll(localIds);
+                missingIds.removeAll(syncedIds);
+                if (missingIds.size() > LIMIT_SYNC_MOVIES) {
+                    // Cheaper to page through everything than to get them one by one
+                    LogUtils.LOGD(TAG, "syncChangedMovies, too many movies missing, syncing all.");
+                    pipeline.add(new SyncPipeline.PagedTask<VideoType.DetailsMovie>(LIMIT_SYNC_MOVIES) {
+                        @Override
+                        public ApiMethod<ApiList<VideoType.DetailsMovie>> getPage(ListType.Limits limits) {
+                            return new VideoLibrary.GetMovies(limits, properties);
+                        }
+
+                        @Override
+                        public void insertPage(List<VideoType.DetailsMovie> items) {
+                            upsertMovies(orchestrator, contentResolver, items);
+                        }
+                    });
+                } else if (!missingIds.isEmpty()) {
+                    pipeline.add(new SyncPipeline.SequenceTask<VideoType.DetailsMovie>() {
+                        @Override
+                        public int size() {
+                            return missingIds.size();
+                        }
+
+                        @Override
+                        public ApiMethod<VideoType.DetailsMovie> getMethod(int position) {
+                            return new VideoLibrary.GetMovieDetails(missingIds.get(position), properties);
+                        }
+
+                        @Override
+                        public void insert(int position, VideoType.DetailsMovie result) {
+                            upsertMovies(orchestrator, contentResolver, Collections.singletonList(result));
+                        }
+                    });
+                }
             }
-        }, callbackHandler);
+        };
+    }
+
+    /**
+     * Replaces the given movies on the database, if they exist, including their cast
+     */
+    private void upsertMovies(final SyncOrchestrator orchestrator,
+                              final ContentResolver contentResolver,
+                              final List<VideoType.DetailsMovie> movies) {
+        List<Integer> movieIds = new ArrayList<>(movies.size());
+        for (VideoType.DetailsMovie movie : movies) {
+            movieIds.add(movie.movieid);
+        }
+        // Movies are replaced on insert, but the old cast would remain
+        SyncUtils.deleteIds(contentResolver, MediaContract.MovieCast.CONTENT_URI,
+                            MediaContract.MovieCast.HOST_ID, MediaContract.MovieCast.MOVIEID,
+                            hostId, movieIds);
+        insertMovies(orchestrator, contentResolver, movies);
     }
 
     /**
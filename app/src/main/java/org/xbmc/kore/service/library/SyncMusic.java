@@ -18,11 +18,12 @@ package org.xbmc.kore.service.library;
 
 import android.content.ContentResolver;
 import android.content.ContentValues;
+import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 
-import org.xbmc.kore.jsonrpc.ApiCallback;
 import org.xbmc.kore.jsonrpc.ApiList;
+import org.xbmc.kore.jsonrpc.ApiMethod;
 import org.xbmc.kore.jsonrpc.HostConnection;
 import org.xbmc.kore.jsonrpc.method.AudioLibrary;
 import org.xbmc.kore.jsonrpc.type.AudioType;
@@ -32,7 +33,11 @@ import org.xbmc.kore.provider.MediaContract;
 import org.xbmc.kore.utils.LogUtils;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class SyncMusic extends SyncItem {
     public static final String TAG = LogUtils.makeLogTag(SyncMusic.class);
@@ -40,8 +45,10 @@ public class SyncMusic extends SyncItem {
     private static final int LIMIT_SYNC_ARTISTS = 300;
     private static final int LIMIT_SYNC_ALBUMS = 300;
     private static final int LIMIT_SYNC_SONGS = 600;
+    private static final int LIMIT_SYNC_SONG_IDS = 5000;
 
     private final int hostId;
+    private final boolean incremental;
     private final Bundle syncExtras;
 
     /**
@@ -49,7 +56,18 @@ public class SyncMusic extends SyncItem {
      * @param hostId XBMC host id
      */
     public SyncMusic(final int hostId, Bundle syncExtras) {
+        this(hostId, false, syncExtras);
+    }
+
+    /**
+     * Syncs all the music on selected XBMC to the local database
+     * @param hostId XBMC host id
+     * @param incremental Whether to only sync the songs that changed since the last sync,
+     *                    instead of replacing all of them
+     */
+    public SyncMusic(final int hostId, final boolean incremental, Bundle syncExtras) {
         this.hostId = hostId;
+        this.incremental = incremental;
         this.syncExtras = syncExtras;
     }
 
@@ -71,7 +89,78 @@ public class SyncMusic extends SyncItem {
                      final HostConnection hostConnection,
                      final Handler callbackHandler,
                      final ContentResolver contentResolver) {
-        chainCallSyncArtists(orchestrator, hostConnection, callbackHandler, contentResolver, 0);
+        if (incremental) {
+            syncChangedMusic(orchestrator, hostConnection, callbackHandler, contentResolver);
+        } else {
+            syncAllMusic(orchestrator, hostConnection, callbackHandler, contentResolver);
+        }
+    }
+
+    /**
+     * Syncs artists, genres, albums and songs concurrently, after deleting all the music info.
+     * Each of these is paged independently through a {@link SyncPipeline}, so the next page
+     * is requested while the current one is being inserted.
+     */
+    private void syncAllMusic(final SyncOrchestrator orchestrator,
+                              final HostConnection hostConnection,
+                              final Handler callbackHandler,
+                              final ContentResolver contentResolver) {
+        new SyncPipeline(orchestrator, hostConnection, callbackHandler)
+                .add(syncArtistsTask(contentResolver, null))
+                .add(syncGenresTask(contentResolver, null))
+                .add(syncAlbumsTask(contentResolver, null))
+                .add(syncSongsTask(contentResolver))
+                .start(new Runnable() {
+                    @Override
+                    public void run() {
+                        // First delete all music info
+                        deleteMusicInfo(contentResolver, hostId);
+                    }
+                });
+    }
+
+    /**
+     * Syncs only the songs that changed since the last sync.
+     * Artists, genres and albums are small compared to songs, so they're still fetched in full,
+     * but replaced in place instead of deleted first. For songs, only the ids are listed, and
+     * compared with the local ones: songs that are gone are deleted and new ones are fetched
+     * individually. If there are no songs on the database yet, or too many new songs, falls back
+     * to syncing all songs.
+     */
+    private void syncChangedMusic(final SyncOrchestrator orchestrator,
+                                  final HostConnection hostConnection,
+                                  final Handler callbackHandler,
+                                  final ContentResolver contentResolver) {
+        callbackHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                final Set<Integer> localSongIds = SyncUtils.getLocalIds(
+                        contentResolver, MediaContract.Songs.CONTENT_URI,
+                        MediaContract.Songs.HOST_ID, MediaContract.Songs.SONGID, hostId);
+                if (localSongIds.isEmpty()) {
+                    LogUtils.LOGD(TAG, "syncChangedMusic: No songs on the database, syncing all.");
+                    syncAllMusic(orchestrator, hostConnection, callbackHandler, contentResolver);
+                    return;
+                }
+
+                Set<Integer> localArtistIds = SyncUtils.getLocalIds(
+                        contentResolver, MediaContract.Artists.CONTENT_URI,
+                        MediaContract.Artists.HOST_ID, MediaContract.Artists.ARTISTID, hostId);
+                Set<Integer> localGenreIds = SyncUtils.getLocalIds(
+                        contentResolver, MediaContract.AudioGenres.CONTENT_URI,
+                        MediaContract.AudioGenres.HOST_ID, MediaContract.AudioGenres.GENREID, hostId);
+                Set<Integer> localAlbumIds = SyncUtils.getLocalIds(
+                        contentResolver, MediaContract.Albums.CONTENT_URI,
+                        MediaContract.Albums.HOST_ID, MediaContract.Albums.ALBUMID, hostId);
+
+                SyncPipeline pipeline = new SyncPipeline(orchestrator, hostConnection, callbackHandler);
+                pipeline.add(syncArtistsTask(contentResolver, localArtistIds))
+                        .add(syncGenresTask(contentResolver, localGenreIds))
+                        .add(syncAlbumsTask(contentResolver, localAlbumIds))
+                        .add(syncChangedSongsTask(pipeline, contentResolver, localSongIds))
+                        .start(null);
+            }
+        });
     }
 
     private final static String getArtistsProperties[] = {
@@ -88,54 +177,36 @@ public class SyncMusic extends SyncItem {
     };
 
     /**
-     * Gets all artists recursively and forwards the call to Genres
-     * Genres->Albums->Songs
+     * Gets all artists, page by page
+     * @param localArtistIds If not null, artists on this set that aren't on Kodi are deleted
      */
-    public void chainCallSyncArtists(final SyncOrchestrator orchestrator,
-                                     final HostConnection hostConnection,
-                                     final Handler callbackHandler,
-                                     final ContentResolver contentResolver,
-                                     final int startIdx) {
-        // Artists->Genres->Albums->Songs
-        // Only gets album artists (first parameter)
-        ListType.Limits limits = new ListType.Limits(startIdx, startIdx + LIMIT_SYNC_ARTISTS);
-        AudioLibrary.GetArtists action = new AudioLibrary.GetArtists(limits, true, getArtistsProperties);
-        action.execute(hostConnection, new ApiCallback<ApiList<AudioType.DetailsArtist>>() {
+    private SyncPipeline.PagedTask<AudioType.DetailsArtist> syncArtistsTask(final ContentResolver contentResolver,
+                                                                           final Set<Integer> localArtistIds) {
+        final Set<Integer> remoteArtistIds = new HashSet<>();
+        return new SyncPipeline.PagedTask<AudioType.DetailsArtist>(LIMIT_SYNC_ARTISTS) {
             @Override
-            public void onSuccess(ApiList<AudioType.DetailsArtist> result) {
-                List<AudioType.DetailsArtist> items;
-                ListType.LimitsReturned limitsReturned;
-                if (result == null) {  // Safeguard
-                    items = new ArrayList<>(0);
-                    limitsReturned = null;
-                } else {
-                    items = result.items;
-                    limitsReturned = result.limits;
-                }
-
-                // First delete all music info
-                if (startIdx == 0) deleteMusicInfo(contentResolver, hostId);
+            public ApiMethod<ApiList<AudioType.DetailsArtist>> getPage(ListType.Limits limits) {
+                // Only gets album artists (first parameter)
+                return new AudioLibrary.GetArtists(limits, true, getArtistsProperties);
+            }
 
+            @Override
+            public void insertPage(List<AudioType.DetailsArtist> items) {
                 insertArtists(items, contentResolver);
-
-                if (SyncUtils.moreItemsAvailable(limitsReturned)) {
-                    LogUtils.LOGD(TAG, "chainCallSyncArtists: More results on media center, recursing.");
-                    result = null; // Help the GC?
-                    chainCallSyncArtists(orchestrator, hostConnection, callbackHandler, contentResolver,
-                                         startIdx + LIMIT_SYNC_ARTISTS);
-                } else {
-                    // Ok, we have all the artists, proceed
-                    LogUtils.LOGD(TAG, "chainCallSyncArtists: Got all results, continuing");
-                    chainCallSyncGenres(orchestrator, hostConnection, callbackHandler, contentResolver);
+                if (localArtistIds == null) return;
+                for (AudioType.DetailsArtist artist : items) {
+                    remoteArtistIds.add(artist.artistid);
                 }
             }
 
             @Override
-            public void onError(int errorCode, String description) {
-                // Ok, something bad happend, just quit
-                orchestrator.syncItemFailed(errorCode, description);
+            public void onFinished() {
+                if (localArtistIds == null) return;
+                deleteRemoved(contentResolver, localArtistIds, remoteArtistIds,
+                              MediaContract.Artists.CONTENT_URI, MediaContract.Artists.HOST_ID,
+                              MediaContract.Artists.ARTISTID);
             }
-        }, callbackHandler);
+        };
     }
 
     private void deleteMusicInfo(final ContentResolver contentResolver,
@@ -162,31 +233,39 @@ public class SyncMusic extends SyncItem {
     private final static String getGenresProperties[] = {
             LibraryType.FieldsGenre.TITLE, LibraryType.FieldsGenre.THUMBNAIL
     };
+
     /**
-     * Syncs Audio genres and forwards calls to sync albums:
-     * Genres->Albums->Songs
+     * Syncs Audio genres, which aren't paged
+     * @param localGenreIds If not null, genres on this set that aren't on Kodi are deleted
      */
-    private void chainCallSyncGenres(final SyncOrchestrator orchestrator,
-                                     final HostConnection hostConnection,
-                                     final Handler callbackHandler,
-                                     final ContentResolver contentResolver) {
-        // Genres->Albums->Songs
-        AudioLibrary.GetGenres action = new AudioLibrary.GetGenres(getGenresProperties);
-        action.execute(hostConnection, new ApiCallback<List<LibraryType.DetailsGenre>>() {
+    private SyncPipeline.SequenceTask<List<LibraryType.DetailsGenre>> syncGenresTask(final ContentResolver contentResolver,
+                                                                                    final Set<Integer> localGenreIds) {
+        return new SyncPipeline.SequenceTask<List<LibraryType.DetailsGenre>>() {
             @Override
-            public void onSuccess(List<LibraryType.DetailsGenre> result) {
-                if (result != null)
-                    insertGenresItems(result, contentResolver);
+            public int size() {
+                return 1;
+            }
 
-                chainCallSyncAlbums(orchestrator, hostConnection, callbackHandler, contentResolver, 0);
+            @Override
+            public ApiMethod<List<LibraryType.DetailsGenre>> getMethod(int position) {
+                return new AudioLibrary.GetGenres(getGenresProperties);
             }
 
             @Override
-            public void onError(int errorCode, String description) {
-                // Ok, something bad happend, just quit
-                orchestrator.syncItemFailed(errorCode, description);
+            public void insert(int position, List<LibraryType.DetailsGenre> result) {
+                if (result == null) return;
+                insertGenresItems(result, contentResolver);
+
+                if (localGenreIds == null) return;
+                Set<Integer> remoteGenreIds = new HashSet<>();
+                for (LibraryType.DetailsGenre genre : result) {
+                    remoteGenreIds.add(genre.genreid);
+                }
+                deleteRemoved(contentResolver, localGenreIds, remoteGenreIds,
+                              MediaContract.AudioGenres.CONTENT_URI, MediaContract.AudioGenres.HOST_ID,
+                              MediaContract.AudioGenres.GENREID);
             }
-        }, callbackHandler);
+        };
     }
 
     private static final String getAlbumsProperties[] = {
@@ -204,55 +283,46 @@ public class SyncMusic extends SyncItem {
     };
 
     /**
-     * Syncs Albums recursively and forwards calls to sync songs:
-     * Albums->Songs
+     * Gets all albums, page by page
+     * @param localAlbumIds If not null, the albums are replaced in place and albums on this set
+     *                      that aren't on Kodi are deleted
      */
-    private void chainCallSyncAlbums(final SyncOrchestrator orchestrator,
-                                     final HostConnection hostConnection,
-                                     final Handler callbackHandler,
-                                     final ContentResolver contentResolver,
-                                     final int startIdx) {
-        final long albumSyncStartTime = System.currentTimeMillis();
-        // Albums->Songs
-        ListType.Limits limits = new ListType.Limits(startIdx, startIdx + LIMIT_SYNC_ALBUMS);
-        AudioLibrary.GetAlbums action = new AudioLibrary.GetAlbums(limits, getAlbumsProperties);
-        action.execute(hostConnection, new ApiCallback<ApiList<AudioType.DetailsAlbum>>() {
+    private SyncPipeline.PagedTask<AudioType.DetailsAlbum> syncAlbumsTask(final ContentResolver contentResolver,
+                                                                         final Set<Integer> localAlbumIds) {
+        final Set<Integer> remoteAlbumIds = new HashSet<>();
+        return new SyncPipeline.PagedTask<AudioType.DetailsAlbum>(LIMIT_SYNC_ALBUMS) {
             @Override
-            public void onSuccess(ApiList<AudioType.DetailsAlbum> result) {
-                List<AudioType.DetailsAlbum> items;
-                ListType.LimitsReturned limitsReturned;
-                if (result == null) {  // Safeguard
-                    items = new ArrayList<>(0);
-                    limitsReturned = null;
-                } else {
-                    items = result.items;
-                    limitsReturned = result.limits;
-                }
+            public ApiMethod<ApiList<AudioType.DetailsAlbum>> getPage(ListType.Limits limits) {
+                return new AudioLibrary.GetAlbums(limits, getAlbumsProperties);
+            }
 
-                // Insert the partial results
-                insertAlbumsItems(items, contentResolver);
+            @Override
+            public void insertPage(List<AudioType.DetailsAlbum> items) {
+                if (localAlbumIds == null) {
+                    insertAlbumsItems(items, contentResolver);
+                    return;
+                }
 
-                LogUtils.LOGD(TAG, "Finished inserting artists and genres in: " +
-                                   (System.currentTimeMillis() - albumSyncStartTime));
-
-                if (SyncUtils.moreItemsAvailable(limitsReturned)) {
-                    LogUtils.LOGD(TAG, "chainCallSyncAlbums: More results on media center, recursing.");
-                    result = null; // Help the GC?
-                    chainCallSyncAlbums(orchestrator, hostConnection, callbackHandler, contentResolver,
-                                        startIdx + LIMIT_SYNC_ALBUMS);
-                } else {
-                    // Ok, we have all the albums, proceed to songs
-                    LogUtils.LOGD(TAG, "chainCallSyncAlbums: Got all results, continuing");
-                    chainCallSyncSongs(orchestrator, hostConnection, callbackHandler, contentResolver, 0);
+                List<Integer> albumIds = new ArrayList<>(items.size());
+                for (AudioType.DetailsAlbum album : items) {
+                    albumIds.add(album.albumid);
                 }
+                // Albums are replaced on insert, but not their artists and genres
+                deleteAlbumLinks(contentResolver, albumIds);
+                insertAlbumsItems(items, contentResolver);
+                remoteAlbumIds.addAll(albumIds);
             }
 
             @Override
-            public void onError(int errorCode, String description) {
-                // Ok, something bad happend, just quit
-                orchestrator.syncItemFailed(errorCode, description);
+            public void onFinished() {
+                if (localAlbumIds == null) return;
+                Set<Integer> removedIds = deleteRemoved(contentResolver, localAlbumIds, remoteAlbumIds,
+                                                        MediaContract.Albums.CONTENT_URI,
+                                                        MediaContract.Albums.HOST_ID,
+                                                        MediaContract.Albums.ALBUMID);
+                deleteAlbumLinks(contentResolver, removedIds);
             }
-        }, callbackHandler);
+        };
     }
 
     private static final String getSongsProperties[] = {
@@ -278,50 +348,129 @@ public class SyncMusic extends SyncItem {
     };
 
     /**
-     * Syncs songs and stops
+     * Gets all songs, page by page
      */
-    private void chainCallSyncSongs(final SyncOrchestrator orchestrator,
-                                    final HostConnection hostConnection,
-                                    final Handler callbackHandler,
-                                    final ContentResolver contentResolver,
-                                    final int startIdx) {
-        // Songs
-        ListType.Limits limits = new ListType.Limits(startIdx, startIdx + LIMIT_SYNC_SONGS);
-        AudioLibrary.GetSongs action = new AudioLibrary.GetSongs(limits, getSongsProperties);
-        action.execute(hostConnection, new ApiCallback<ApiList<AudioType.DetailsSong>>() {
+    private SyncPipeline.PagedTask<AudioType.DetailsSong> syncSongsTask(final ContentResolver contentResolver) {
+        return new SyncPipeline.PagedTask<AudioType.DetailsSong>(LIMIT_SYNC_SONGS) {
             @Override
-            public void onSuccess(ApiList<AudioType.DetailsSong> result) {
-                List<AudioType.DetailsSong> items;
-                ListType.LimitsReturned limitsReturned;
-                if (result == null) {  // Safeguard
-                    items = new ArrayList<>(0);
-                    limitsReturned = null;
-                } else {
-                    items = result.items;
-                    limitsReturned = result.limits;
-                }
+            public ApiMethod<ApiList<AudioType.DetailsSong>> getPage(ListType.Limits limits) {
+                return new AudioLibrary.GetSongs(limits, getSongsProperties);
+            }
 
-                // Save partial results to DB
+            @Override
+            public void insertPage(List<AudioType.DetailsSong> items) {
                 insertSongsItems(items, contentResolver);
+            }
+        };
+    }
 
-                if (SyncUtils.moreItemsAvailable(limitsReturned)) {
-                    LogUtils.LOGD(TAG, "chainCallSyncSongs: More results on media center, recursing.");
-                    result = null; // Help the GC?
-                    chainCallSyncSongs(orchestrator, hostConnection, callbackHandler, contentResolver,
-                                       startIdx + LIMIT_SYNC_SONGS);
-                } else {
-                    // Ok, we have all the songs, insert them
-                    LogUtils.LOGD(TAG, "chainCallSyncSongs: Got all results, continuing");
-                    orchestrator.syncItemFinished();
+    /**
+     * Lists the ids of all the songs on Kodi, deletes the ones that are gone and syncs the new ones
+     */
+    private SyncPipeline.PagedTask<AudioType.DetailsSong> syncChangedSongsTask(final SyncPipeline pipeline,
+                                                                              final ContentResolver contentResolver,
+                                                                              final Set<Integer> localSongIds) {
+        final Set<Integer> remoteSongIds = new HashSet<>();
+        return new SyncPipeline.PagedTask<AudioType.DetailsSong>(LIMIT_SYNC_SONG_IDS) {
+            @Override
+            public ApiMethod<ApiList<AudioType.DetailsSong>> getPage(ListType.Limits limits) {
+                // No properties, we only want the ids
+                return new AudioLibrary.GetSongs(limits);
+            }
+
+            @Override
+            public void insertPage(List<AudioType.DetailsSong> items) {
+                for (AudioType.DetailsSong song : items) {
+                    remoteSongIds.add(song.songid);
                 }
             }
 
             @Override
-            public void onError(int errorCode, String description) {
-                // Ok, something bad happened, just quit
-                orchestrator.syncItemFailed(errorCode, description);
+            public void onFinished() {
+                Set<Integer> removedIds = deleteRemoved(contentResolver, localSongIds, remoteSongIds,
+                                                        MediaContract.Songs.CONTENT_URI,
+                                                        MediaContract.Songs.HOST_ID,
+                                                        MediaContract.Songs.SONGID);
+                SyncUtils.deleteIds(contentResolver, MediaContract.SongArtists.CONTENT_URI,
+                                    MediaContract.SongArtists.HOST_ID, MediaContract.SongArtists.SONGID,
+                                    hostId, removedIds);
+
+                final List<Integer> newIds = new ArrayList<>(remoteSongIds);
+                newIds.removeAll(localSongIds);
+                LogUtils.LOGD(TAG, "syncChangedMusic: Songs removed: " + removedIds.size() +
+                                   ", songs added: " + newIds.size());
+                if (newIds.size() > LIMIT_SYNC_SONGS) {
+                    // Cheaper to page through everything than to get them one by one
+                    pipeline.add(new SyncPipeline.PagedTask<AudioType.DetailsSong>(LIMIT_SYNC_SONGS) {
+                        @Override
+                        public ApiMethod<ApiList<AudioType.DetailsSong>> getPage(ListType.Limits limits) {
+                            return new AudioLibrary.GetSongs(limits, getSongsProperties);
+                        }
+
+                        @Override
+                        public void insertPage(List<AudioType.DetailsSong> items) {
+                            upsertSongsItems(items, contentResolver);
+                        }
+                    });
+                } else if (!newIds.isEmpty()) {
+                    pipeline.add(new SyncPipeline.SequenceTask<AudioType.DetailsSong>() {
+                        @Override
+                        public int size() {
+                            return newIds.size();
+                        }
+
+                        @Override
+                        public ApiMethod<AudioType.DetailsSong> getMethod(int position) {
+                            return new AudioLibrary.GetSongDetails(newIds.get(position), getSongsProperties);
+                        }
+
+                        @Override
+                        public void insert(int position, AudioType.DetailsSong result) {
+                            upsertSongsItems(Collections.singletonList(result), contentResolver);
+                        }
+                    });
+                }
             }
-        }, callbackHandler);
+        };
+    }
+
+    /**
+     * Deletes the items that are on the local ids set but not on the remote one
+     * @return Ids deleted
+     */
+    private Set<Integer> deleteRemoved(ContentResolver contentResolver,
+                                       Set<Integer> localIds, Set<Integer> remoteIds,
+                                       Uri contentUri, String hostIdColumn, String idColumn) {
+        Set<Integer> removedIds = new HashSet<>(localIds);
+        removedIds.removeAll(remoteIds);
+        if (!removedIds.isEmpty()) {
+            SyncUtils.deleteIds(contentResolver, contentUri, hostIdColumn, idColumn,
+                                hostId, removedIds);
+        }
+        return removedIds;
+    }
+
+    private void deleteAlbumLinks(ContentResolver contentResolver, Collection<Integer> albumIds) {
+        SyncUtils.deleteIds(contentResolver, MediaContract.AlbumArtists.CONTENT_URI,
+                            MediaContract.AlbumArtists.HOST_ID, MediaContract.AlbumArtists.ALBUMID,
+                            hostId, albumIds);
+        SyncUtils.deleteIds(contentResolver, MediaContract.AlbumGenres.CONTENT_URI,
+                            MediaContract.AlbumGenres.HOST_ID, MediaContract.AlbumGenres.ALBUMID,
+                            hostId, albumIds);
+    }
+
+    /**
+     * Replaces the given songs on the database, if they exist, including their artists
+     */
+    private void upsertSongsItems(List<AudioType.DetailsSong> items, ContentResolver contentResolver) {
+        List<Integer> songIds = new ArrayList<>(items.size());
+        for (AudioType.DetailsSong song : items) {
+            songIds.add(song.songid);
+        }
+        SyncUtils.deleteIds(contentResolver, MediaContract.SongArtists.CONTENT_URI,
+                            MediaContract.SongArtists.HOST_ID, MediaContract.SongArtists.SONGID,
+                            hostId, songIds);
+        insertSongsItems(items, contentResolver);
     }
 
     public void insertArtists(List<AudioType.DetailsArtist> items, ContentResolver contentResolver) {
@@ -384,29 +533,9 @@ public class SyncMusic extends SyncItem {
     }
 
     public void insertSongsItems(List<AudioType.DetailsSong> items, ContentResolver contentResolver) {
-        ContentValues songValuesBatch[] = new ContentValues[items.size()];
-        int totalArtistsCount = 0;
-        for (int i = 0; i < items.size(); i++) {
-            AudioType.DetailsSong song = items.get(i);
-            songValuesBatch[i] = SyncUtils.contentValuesFromSong(hostId, song);
-
-            totalArtistsCount += song.artistid.size();
-        }
-        contentResolver.bulkInsert(MediaContract.Songs.CONTENT_URI, songValuesBatch);
-
-        // Iterate on each song, collect the artists and insert them
-        ContentValues songArtistsValuesBatch[] = new ContentValues[totalArtistsCount];
-        int artistCount = 0;
-        for (AudioType.DetailsSong song : items) {
-            for (int artistId : song.artistid) {
-                songArtistsValuesBatch[artistCount] = new ContentValues();
-                songArtistsValuesBatch[artistCount].put(MediaContract.SongArtists.HOST_ID, hostId);
-                songArtistsValuesBatch[artistCount].put(MediaContract.SongArtists.SONGID, song.songid);
-                songArtistsValuesBatch[artistCount].put(MediaContract.SongArtists.ARTISTID, artistId);
-                artistCount++;
-            }
-        }
-
-        contentResolver.bulkInsert(MediaContract.SongArtists.CONTENT_URI, songArtistsValuesBatch);
+        SyncUtils.insertBatchFromSongs(hostId, items)
+                .insert(contentResolver, MediaContract.Songs.CONTENT_URI);
+        SyncUtils.insertBatchFromSongArtists(hostId, items)
+                .insert(contentResolver, MediaContract.SongArtists.CONTENT_URI);
     }
 }
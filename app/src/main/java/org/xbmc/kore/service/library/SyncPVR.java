@@ -0,0 +1,500 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbmc.kore.service.library;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.os.Handler;
+import android.text.format.DateUtils;
+
+import org.xbmc.kore.jsonrpc.ApiBatch;
+import org.xbmc.kore.jsonrpc.ApiCallback;
+import org.xbmc.kore.jsonrpc.HostConnection;
+import org.xbmc.kore.jsonrpc.method.PVR;
+import org.xbmc.kore.jsonrpc.type.PVRType;
+import org.xbmc.kore.provider.MediaContract;
+import org.xbmc.kore.utils.LogUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Syncs the PVR channel groups, channels and guide to the local database.
+ *
+ * Groups and channels are replaced on each sync requested by the user, and on silent syncs
+ * once they're older than {@link #CHANNELS_MAX_AGE}. The guide is kept for a rolling window of
+ * {@link #EPG_WINDOW} and, as Kodi only returns the whole guide of a channel, it's refreshed per
+ * channel, only for the channels whose guide is old or about to run out. Guides are requested
+ * in batches of several channels, and ended broadcasts are pruned.
+ */
+public class SyncPVR extends SyncItem {
+    public static final String TAG = LogUtils.makeLogTag(SyncPVR.class);
+
+    /**
+     * Silent syncs reuse the stored groups and channels while they're newer than this
+     */
+    private static final long CHANNELS_MAX_AGE = DateUtils.HOUR_IN_MILLIS;
+
+    /**
+     * How far ahead of now broadcasts are stored
+     */
+    private static final long EPG_WINDOW = 3 * DateUtils.DAY_IN_MILLIS;
+
+    /**
+     * Guides older than this are refreshed, to pick up schedule changes
+     */
+    private static final long EPG_MAX_AGE = 6 * DateUtils.HOUR_IN_MILLIS;
+
+    /**
+     * Guides that end sooner than this are refreshed, to keep the window full
+     */
+    private static final long EPG_LOOKAHEAD = 12 * DateUtils.HOUR_IN_MILLIS;
+
+    /**
+     * Guides are never refreshed more often than this, so that channels without a guide
+     * aren't requested on every sync
+     */
+    private static final long EPG_MIN_AGE = 30 * DateUtils.MINUTE_IN_MILLIS;
+
+    /**
+     * Guide end stored for channels without a guide, or whose guide couldn't be read, so that
+     * they're only refreshed after {@link #EPG_MAX_AGE}
+     */
+    private static final long EPG_END_NONE = Long.MAX_VALUE;
+
+    /**
+     * Number of channels whose guide is requested in a single batch
+     */
+    private static final int EPG_BATCH_SIZE = 20;
+
+    private static final String[] BROADCAST_PROPERTIES = {
+            PVRType.FieldsBroadcast.TITLE, PVRType.FieldsBroadcast.PLOT,
+            PVRType.FieldsBroadcast.STARTTIME, PVRType.FieldsBroadcast.ENDTIME,
+            PVRType.FieldsBroadcast.RUNTIME, PVRType.FieldsBroadcast.GENRE,
+            PVRType.FieldsBroadcast.EPISODENAME, PVRType.FieldsBroadcast.THUMBNAIL,
+            PVRType.FieldsBroadcast.HASTIMER,
+    };
+
+    private static final String[] CHANNEL_PROPERTIES = {
+            PVRType.FieldsChannel.THUMBNAIL, PVRType.FieldsChannel.CHANNELTYPE,
+            PVRType.FieldsChannel.HIDDEN, PVRType.FieldsChannel.LOCKED,
+            PVRType.FieldsChannel.CHANNEL,
+    };
+
+    private final int hostId;
+    private final int channelId;
+    private final Bundle syncExtras;
+
+    /**
+     * Syncs the channels and the guide of the channels that need it
+     * @param hostId XBMC host id
+     */
+    public SyncPVR(final int hostId, Bundle syncExtras) {
+        this(hostId, -1, syncExtras);
+    }
+
+    /**
+     * Syncs the channels and the guide of the channels that need it. Unless the sync is silent,
+     * the guide of the given channel is always refreshed
+     * @param hostId XBMC host id
+     * @param channelId Channel whose guide to refresh, -1 for none
+     */
+    public SyncPVR(final int hostId, final int channelId, Bundle syncExtras) {
+        this.hostId = hostId;
+        this.channelId = channelId;
+        this.syncExtras = syncExtras;
+    }
+
+    /** {@inheritDoc} */
+    public String getDescription() {
+        return "Sync PVR for host: " + hostId;
+    }
+
+    /** {@inheritDoc} */
+    public String getSyncType() {
+        return LibrarySyncService.SYNC_PVR;
+    }
+
+    /** {@inheritDoc} */
+    public Bundle getSyncExtras() {
+        return syncExtras;
+    }
+
+    /** {@inheritDoc} */
+    public void sync(final SyncOrchestrator orchestrator,
+                     final HostConnection hostConnection,
+                     final Handler callbackHandler,
+                     final ContentResolver contentResolver) {
+        if (isSilentSync() &&
+            (System.currentTimeMillis() - SyncUtils.getLastSynced(contentResolver, hostId, getSyncType()) <
+             CHANNELS_MAX_AGE)) {
+            LogUtils.LOGD(TAG, "Stored channels are recent, only syncing stale guides");
+            Map<Integer, EPGState> epgStates = getEPGStates(contentResolver);
+            syncBroadcasts(orchestrator, hostConnection, callbackHandler, contentResolver,
+                           getStaleChannels(epgStates.keySet(), epgStates));
+            return;
+        }
+
+        final List<PVRType.DetailsChannelGroup> channelGroups = new ArrayList<>();
+        final BatchTracker tracker = new BatchTracker(orchestrator, PVRType.ChannelType.allValues.length) {
+            @Override
+            void onFinished() {
+                syncChannels(orchestrator, hostConnection, callbackHandler, contentResolver,
+                             channelGroups);
+            }
+        };
+        ApiBatch batch = new ApiBatch();
+        for (String channelType : PVRType.ChannelType.allValues) {
+            batch.add(new PVR.GetChannelGroups(channelType),
+                      new ApiCallback<List<PVRType.DetailsChannelGroup>>() {
+                          @Override
+                          public void onSuccess(List<PVRType.DetailsChannelGroup> result) {
+                              channelGroups.addAll(result);
+                              tracker.onSuccess();
+                          }
+
+                          @Override
+                          public void onError(int errorCode, String description) {
+                              tracker.onError(errorCode, description);
+                          }
+                      });
+        }
+        batch.execute(hostConnection, callbackHandler);
+    }
+
+    /**
+     * Gets the channels of every group, and stores groups and channels
+     */
+    private void syncChannels(final SyncOrchestrator orchestrator,
+                              final HostConnection hostConnection,
+                              final Handler callbackHandler,
+                              final ContentResolver contentResolver,
+                              final List<PVRType.DetailsChannelGroup> channelGroups) {
+        if (channelGroups.isEmpty()) {
+            deleteChannels(contentResolver);
+            contentResolver.delete(MediaContract.PVRBroadcasts.CONTENT_URI,
+                                   MediaContract.PVRBroadcasts.HOST_ID + "=?",
+                                   new String[] {String.valueOf(hostId)});
+            SyncUtils.setLastSynced(contentResolver, hostId, getSyncType());
+            orchestrator.syncItemFinished();
+            return;
+        }
+
+        final Map<Integer, List<PVRType.DetailsChannel>> groupChannels = new HashMap<>();
+        final BatchTracker tracker = new BatchTracker(orchestrator, channelGroups.size()) {
+            @Override
+            void onFinished() {
+                Map<Integer, EPGState> epgStates = getEPGStates(contentResolver);
+                storeChannels(contentResolver, channelGroups, groupChannels, epgStates);
+                SyncUtils.setLastSynced(contentResolver, hostId, getSyncType());
+
+                Set<Integer> channelIds = new LinkedHashSet<>();
+                for (List<PVRType.DetailsChannel> channels : groupChannels.values()) {
+                    for (PVRType.DetailsChannel channel : channels) {
+                        channelIds.add(channel.channelid);
+                    }
+                }
+                syncBroadcasts(orchestrator, hostConnection, callbackHandler, contentResolver,
+                               getStaleChannels(channelIds, epgStates));
+            }
+        };
+        ApiBatch batch = new ApiBatch();
+        for (final PVRType.DetailsChannelGroup channelGroup : channelGroups) {
+            batch.add(new PVR.GetChannels(channelGroup.channelgroupid, CHANNEL_PROPERTIES),
+                      new ApiCallback<List<PVRType.DetailsChannel>>() {
+                          @Override
+                          public void onSuccess(List<PVRType.DetailsChannel> result) {
+                              groupChannels.put(channelGroup.channelgroupid, result);
+                              tracker.onSuccess();
+                          }
+
+                          @Override
+                          public void onError(int errorCode, String description) {
+                              tracker.onError(errorCode, description);
+                          }
+                      });
+        }
+        batch.execute(hostConnection, callbackHandler);
+    }
+
+    /**
+     * Gets the guides of the given channels, a batch of channels at a time
+     */
+    private void syncBroadcasts(final SyncOrchestrator orchestrator,
+                                final HostConnection hostConnection,
+                                final Handler callbackHandler,
+                                final ContentResolver contentResolver,
+                                final List<Integer> channelIds) {
+        if (channelIds.isEmpty()) {
+            LogUtils.LOGD(TAG, "Finished syncing guides");
+            pruneBroadcasts(contentResolver);
+            orchestrator.syncItemFinished();
+            return;
+        }
+
+        final List<Integer> batchChannelIds =
+                new ArrayList<>(channelIds.subList(0, Math.min(EPG_BATCH_SIZE, channelIds.size())));
+        final List<Integer> nextChannelIds =
+                new ArrayList<>(channelIds.subList(batchChannelIds.size(), channelIds.size()));
+        final Map<Integer, List<PVRType.DetailsBroadcast>> channelBroadcasts = new HashMap<>();
+        final Set<Integer> failedChannelIds = new HashSet<>();
+        final int[] remaining = { batchChannelIds.size() };
+
+        LogUtils.LOGD(TAG, "Getting guides of " + batchChannelIds.size() + " channels, " +
+                           nextChannelIds.size() + " to go");
+        ApiBatch batch = new ApiBatch();
+        for (final Integer batchChannelId : batchChannelIds) {
+            batch.add(new PVR.GetBroadcasts(batchChannelId, BROADCAST_PROPERTIES),
+                      new ApiCallback<List<PVRType.DetailsBroadcast>>() {
+                          @Override
+                          public void onSuccess(List<PVRType.DetailsBroadcast> result) {
+                              channelBroadcasts.put(batchChannelId, result);
+                              onBroadcastsReceived();
+                          }
+
+                          @Override
+                          public void onError(int errorCode, String description) {
+                              // Channels without a guide are common, keep going
+                              LogUtils.LOGD(TAG, "Couldn't get guide of channel " + batchChannelId +
+                                                 ": " + description);
+                              failedChannelIds.add(batchChannelId);
+                              onBroadcastsReceived();
+                          }
+
+                          private void onBroadcastsReceived() {
+                              if (--remaining[0] > 0)
+                                  return;
+                              storeBroadcasts(contentResolver, channelBroadcasts, failedChannelIds);
+                              syncBroadcasts(orchestrator, hostConnection, callbackHandler,
+                                             contentResolver, nextChannelIds);
+                          }
+                      });
+        }
+        batch.execute(hostConnection, callbackHandler);
+    }
+
+    /**
+     * Returns the channels whose guide should be refreshed, in the order they're given
+     */
+    private List<Integer> getStaleChannels(Set<Integer> channelIds, Map<Integer, EPGState> epgStates) {
+        long now = System.currentTimeMillis();
+        Set<Integer> staleChannelIds = new LinkedHashSet<>();
+        if ((channelId != -1) && !isSilentSync()) {
+            staleChannelIds.add(channelId);
+        }
+        for (Integer id : channelIds) {
+            EPGState epgState = epgStates.get(id);
+            if ((epgState == null) || epgState.isStale(now)) {
+                staleChannelIds.add(id);
+            }
+        }
+        LogUtils.LOGD(TAG, staleChannelIds.size() + " channels with a stale guide");
+        return new ArrayList<>(staleChannelIds);
+    }
+
+    /**
+     * Returns the state of the stored guide of each channel
+     */
+    private Map<Integer, EPGState> getEPGStates(ContentResolver contentResolver) {
+        Map<Integer, EPGState> epgStates = new LinkedHashMap<>();
+        Cursor cursor = contentResolver.query(
+                MediaContract.PVRChannels.buildChannelsListUri(hostId),
+                new String[] {
+                        MediaContract.PVRChannels.CHANNELID,
+                        MediaContract.PVRChannels.EPG_UPDATED,
+                        MediaContract.PVRChannels.EPG_END
+                },
+                null, null, null);
+        if (cursor == null) return epgStates;
+        try {
+            while (cursor.moveToNext()) {
+                epgStates.put(cursor.getInt(0), new EPGState(cursor.getLong(1), cursor.getLong(2)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return epgStates;
+    }
+
+    /**
+     * Replaces the stored groups and channels, keeping the state of the stored guides
+     */
+    private void storeChannels(ContentResolver contentResolver,
+                               List<PVRType.DetailsChannelGroup> channelGroups,
+                               Map<Integer, List<PVRType.DetailsChannel>> groupChannels,
+                               Map<Integer, EPGState> epgStates) {
+        ContentValues[] channelGroupsValues = new ContentValues[channelGroups.size()];
+        List<ContentValues> channelsValues = new ArrayList<>();
+        Set<Integer> channelIds = new HashSet<>();
+        for (int i = 0; i < channelGroups.size(); i++) {
+            PVRType.DetailsChannelGroup channelGroup = channelGroups.get(i);
+            channelGroupsValues[i] = SyncUtils.contentValuesFromChannelGroup(hostId, channelGroup);
+
+            List<PVRType.DetailsChannel> channels = groupChannels.get(channelGroup.channelgroupid);
+            if (channels == null) continue;
+            for (PVRType.DetailsChannel channel : channels) {
+                ContentValues channelValues =
+                        SyncUtils.contentValuesFromChannel(hostId, channelGroup.channelgroupid, channel);
+                EPGState epgState = epgStates.get(channel.channelid);
+                if (epgState != null) {
+                    channelValues.put(MediaContract.PVRChannels.EPG_UPDATED, epgState.updated);
+                    channelValues.put(MediaContract.PVRChannels.EPG_END, epgState.end);
+                }
+                channelsValues.add(channelValues);
+                channelIds.add(channel.channelid);
+            }
+        }
+
+        deleteChannels(contentResolver);
+        contentResolver.bulkInsert(MediaContract.PVRChannelGroups.CONTENT_URI, channelGroupsValues);
+        contentResolver.bulkInsert(MediaContract.PVRChannels.CONTENT_URI,
+                                   channelsValues.toArray(new ContentValues[channelsValues.size()]));
+
+        // Drop the guides of the channels that are gone
+        Set<Integer> removedChannelIds = new HashSet<>(epgStates.keySet());
+        removedChannelIds.removeAll(channelIds);
+        if (!removedChannelIds.isEmpty()) {
+            SyncUtils.deleteIds(contentResolver, MediaContract.PVRBroadcasts.CONTENT_URI,
+                                MediaContract.PVRBroadcasts.HOST_ID, MediaContract.PVRBroadcasts.CHANNELID,
+                                hostId, removedChannelIds);
+        }
+    }
+
+    private void deleteChannels(ContentResolver contentResolver) {
+        String[] hostIdArgs = new String[] {String.valueOf(hostId)};
+        contentResolver.delete(MediaContract.PVRChannelGroups.CONTENT_URI,
+                               MediaContract.PVRChannelGroups.HOST_ID + "=?", hostIdArgs);
+        contentResolver.delete(MediaContract.PVRChannels.CONTENT_URI,
+                               MediaContract.PVRChannels.HOST_ID + "=?", hostIdArgs);
+    }
+
+    /**
+     * Replaces the stored guides of the given channels with the broadcasts in the window,
+     * and updates their state. The guides of the failed channels are kept, but their state is
+     * updated as well, so that they aren't requested again on every sync
+     */
+    private void storeBroadcasts(ContentResolver contentResolver,
+                                 Map<Integer, List<PVRType.DetailsBroadcast>> channelBroadcasts,
+                                 Set<Integer> failedChannelIds) {
+        long now = System.currentTimeMillis();
+        long windowEnd = now + EPG_WINDOW;
+        List<ContentValues> broadcastsValues = new ArrayList<>();
+        Map<Integer, Long> channelEnds = new HashMap<>();
+        for (Map.Entry<Integer, List<PVRType.DetailsBroadcast>> entry : channelBroadcasts.entrySet()) {
+            long channelEnd = 0;
+            for (PVRType.DetailsBroadcast broadcast : entry.getValue()) {
+                if ((broadcast.endtime.getTime() <= now) || (broadcast.starttime.getTime() >= windowEnd))
+                    continue;
+                broadcastsValues.add(SyncUtils.contentValuesFromBroadcast(hostId, entry.getKey(), broadcast));
+                channelEnd = Math.max(channelEnd, broadcast.endtime.getTime());
+            }
+            channelEnds.put(entry.getKey(), (channelEnd == 0) ? EPG_END_NONE : channelEnd);
+        }
+        for (Integer failedChannelId : failedChannelIds) {
+            channelEnds.put(failedChannelId, EPG_END_NONE);
+        }
+        if (channelEnds.isEmpty())
+            return;
+
+        SyncUtils.deleteIds(contentResolver, MediaContract.PVRBroadcasts.CONTENT_URI,
+                            MediaContract.PVRBroadcasts.HOST_ID, MediaContract.PVRBroadcasts.CHANNELID,
+                            hostId, channelBroadcasts.keySet());
+        contentResolver.bulkInsert(MediaContract.PVRBroadcasts.CONTENT_URI,
+                                   broadcastsValues.toArray(new ContentValues[broadcastsValues.size()]));
+
+        // The same channel has a row in each of its groups
+        String where = MediaContract.PVRChannels.CHANNELID + "=?";
+        for (Map.Entry<Integer, Long> entry : channelEnds.entrySet()) {
+            ContentValues values = new ContentValues();
+            values.put(MediaContract.PVRChannels.EPG_UPDATED, now);
+            values.put(MediaContract.PVRChannels.EPG_END, entry.getValue());
+            contentResolver.update(MediaContract.PVRChannels.buildChannelsListUri(hostId), values,
+                                   where, new String[] {String.valueOf(entry.getKey())});
+        }
+    }
+
+    /**
+     * Deletes the broadcasts that already ended
+     */
+    private void pruneBroadcasts(ContentResolver contentResolver) {
+        String where = MediaContract.PVRBroadcasts.HOST_ID + "=? AND " +
+                       MediaContract.PVRBroadcasts.ENDTIME + "<=?";
+        contentResolver.delete(MediaContract.PVRBroadcasts.CONTENT_URI, where,
+                               new String[] {String.valueOf(hostId),
+                                             String.valueOf(System.currentTimeMillis())});
+    }
+
+    /**
+     * State of the stored guide of a channel
+     */
+    private static class EPGState {
+        final long updated, end;
+
+        EPGState(long updated, long end) {
+            this.updated = updated;
+            this.end = end;
+        }
+
+        boolean isStale(long now) {
+            long age = now - updated;
+            return (age >= EPG_MAX_AGE) ||
+                   ((age >= EPG_MIN_AGE) && (end < now + EPG_LOOKAHEAD));
+        }
+    }
+
+    private boolean isSilentSync() {
+        return (syncExtras != null) && syncExtras.getBoolean(LibrarySyncService.SILENT_SYNC, false);
+    }
+
+    /**
+     * Tracks the responses to the methods of a batch, failing the sync on the first error
+     * and calling {@link #onFinished()} once all of them succeeded
+     */
+    private abstract static class BatchTracker {
+        private final SyncOrchestrator orchestrator;
+        private int remaining;
+        private boolean failed = false;
+
+        BatchTracker(SyncOrchestrator orchestrator, int count) {
+            this.orchestrator = orchestrator;
+            this.remaining = count;
+        }
+
+        abstract void onFinished();
+
+        void onSuccess() {
+            if (failed) return;
+            if (--remaining == 0) {
+                onFinished();
+            }
+        }
+
+        void onError(int errorCode, String description) {
+            if (failed) return;
+            failed = true;
+            LogUtils.LOGD(TAG, "Error syncing PVR: " + description);
+            orchestrator.syncItemFailed(errorCode, description);
+        }
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xbmc.kore.service.library;
+
+import android.os.Handler;
+
+import org.xbmc.kore.jsonrpc.ApiCallback;
+import org.xbmc.kore.jsonrpc.ApiList;
+import org.xbmc.kore.jsonrpc.ApiMethod;
+import org.xbmc.kore.jsonrpc.HostConnection;
+import org.xbmc.kore.jsonrpc.type.ListType;
+import org.xbmc.kore.utils.LogUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the calls of a {@link SyncItem} as a set of independent tasks.
+ *
+ * Every task is started at the same time, so independent entity types (artists, genres,
+ * albums...) are requested without waiting for each other. Within a task, the request for the
+ * next page (or item) is sent before the current one is inserted in the database, so that the
+ * network round trip overlaps the insert. Each task has at most one response in flight and one
+ * being inserted, which keeps memory bounded regardless of the library size.
+ *
+ * All callbacks, and therefore all inserts, run on the callback handler, so there's no need to
+ * synchronize state between tasks. When all tasks finish the pipeline calls
+ * {@link SyncOrchestrator#syncItemFinished()}, and on the first error it stops every task and
+ * calls {@link SyncOrchestrator#syncItemFailed(int, String)}.
+ */
+public class SyncPipeline {
+    public static final String TAG = LogUtils.makeLogTag(SyncPipeline.class);
+
+    /**
+     * A task that pages through a list call using {@link ListType.Limits}
+     * @param <T> Type of the items on the list
+     */
+    public static abstract class PagedTask<T> {
+        private final int pageSize;
+
+        /**
+         * Constructor
+         * @param pageSize Number of items to request on each call
+         */
+        public PagedTask(int pageSize) {
+            this.pageSize = pageSize;
+        }
+
+        /**
+         * Returns the method that gets the page with the specified limits
+         * @param limits Limits of the page
+         * @return Method to call
+         */
+        public abstract ApiMethod<ApiList<T>> getPage(ListType.Limits limits);
+
+        /**
+         * Inserts a page of items in the database. Called on the callback handler
+         * @param items Items returned, never empty
+         */
+        public abstract void insertPage(List<T> items);
+
+        /**
+         * Called after the last page is inserted. New tasks can be added to the pipeline here.
+         */
+        public void onFinished() { }
+    }
+
+    /**
+     * A task that issues one call for each position of a fixed size sequence
+     * @param <T> Method return type
+     */
+    public static abstract class SequenceTask<T> {
+        /**
+         * Returns the number of calls to make
+         * @return Number of calls
+         */
+        public abstract int size();
+
+        /**
+         * Returns the method to call for the specified position
+         * @param position Position on the sequence
+         * @return Method to call
+         */
+        public abstract ApiMethod<T> getMethod(int position);
+
+        /**
+         * Inserts the result of a call in the database. Called on the callback handler
+         * @param position Position on the sequence
+         * @param result Result of the call
+         */
+        public abstract void insert(int position, T result);
+
+        /**
+         * Called after the last result is inserted. New tasks can be added to the pipeline here.
+         */
+        public void onFinished() { }
+    }
+
+    private final SyncOrchestrator orchestrator;
+    private final HostConnection hostConnection;
+    private final Handler callbackHandler;
+
+    private final List<Runnable> tasksToStart = new ArrayList<>();
+    private Runnable beforeFirstInsert;
+    private int runningTasks = 0;
+    private boolean started = false;
+    private boolean failed = false;
+
+    /**
+     * Constructor
+     * @param orchestrator Orchestrator to call when finished
+     * @param hostConnection Host connection to use
+     * @param callbackHandler Handler on which to post callbacks and run the inserts
+     */
+    public SyncPipeline(SyncOrchestrator orchestrator,
+                        HostConnection hostConnection,
+                        Handler callbackHandler) {
+        this.orchestrator = orchestrator;
+        this.hostConnection = hostConnection;
+        this.callbackHandler = callbackHandler;
+    }
+
+    /**
+     * Adds a paged task to the pipeline. If the pipeline is already running, the task is
+     * started immediately, which is only allowed from the callback handler.
+     * @param task Task to add
+     * @return This pipeline, to allow chaining calls
+     */
+    public <T> SyncPipeline add(final PagedTask<T> task) {
+        runningTasks++;
+        startOrQueue(new Runnable() {
+            @Override
+            public void run() {
+                fetchPage(task, 0);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Adds a sequence task to the pipeline. If the pipeline is already running, the task is
+     * started immediately, which is only allowed from the callback handler.
+     * @param task Task to add
+     * @return This pipeline, to allow chaining calls
+     */
+    public <T> SyncPipeline add(final SequenceTask<T> task) {
+        runningTasks++;
+        startOrQueue(new Runnable() {
+            @Override
+            public void run() {
+                fetchItem(task, 0);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Starts all the tasks added
+     * @param beforeFirstInsert Runnable to run once, before the first insert of any task
+     *                          (usually to delete the existing info). If nothing is inserted,
+     *                          it is run when all the tasks finish successfully, so that an
+     *                          empty result still clears the existing info. Can be null
+     */
+    public void start(final Runnable beforeFirstInsert) {
+        callbackHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                SyncPipeline.this.beforeFirstInsert = beforeFirstInsert;
+                started = true;
+                if (runningTasks == 0) {
+                    prepareInsert();
+                    orchestrator.syncItemFinished();
+                    return;
+                }
+                for (Runnable task : tasksToStart) {
+                    task.run();
+                }
+                tasksToStart.clear();
+            }
+        });
+    }
+
+    private void startOrQueue(Runnable task) {
+        if (started) {
+            task.run();
+        } else {
+            tasksToStart.add(task);
+        }
+    }
+
+    private <T> void fetchPage(final PagedTask<T> task, final int startIdx) {
+        ListType.Limits limits = new ListType.Limits(startIdx, startIdx + task.pageSize);
+        task.getPage(limits).execute(hostConnection, new ApiCallback<ApiList<T>>() {
+            @Override
+            public void onSuccess(ApiList<T> result) {
+                if (failed) return;
+
+                boolean moreItems = (result != null) && SyncUtils.moreItemsAvailable(result.limits);
+                if (moreItems) {
+                    // Ask for the next page now, it'll be fetched while we insert this one
+                    fetchPage(task, startIdx + task.pageSize);
+                }
+                if ((result != null) && !result.items.isEmpty()) {
+                    prepareInsert();
+                    task.insertPage(result.items);
+                }
+                if (!moreItems) {
+                    task.onFinished();
+                    taskFinished();
+                }
+            }
+
+            @Override
+            public void onError(int errorCode, String description) {
+                taskFailed(errorCode, description);
+            }
+        }, callbackHandler);
+    }
+
+    private <T> void fetchItem(final SequenceTask<T> task, final int position) {
+        if (position >= task.size()) {
+            task.onFinished();
+            taskFinished();
+            return;
+        }
+
+        task.getMethod(position).execute(hostConnection, new ApiCallback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                if (failed) return;
+
+                boolean moreItems = position + 1 < task.size();
+                if (moreItems) {
+                    // Ask for the next item now, it'll be fetched while we insert this one
+                    fetchItem(task, position + 1);
+                }
+                prepareInsert();
+                task.insert(position, result);
+                if (!moreItems) {
+                    task.onFinished();
+                    taskFinished();
+                }
+            }
+
+            @Override
+            public void onError(int errorCode, String description) {
+                taskFailed(errorCode, description);
+            }
+        }, callbackHandler);
+    }
+
+    private void prepareInsert() {
+        if (beforeFirstInsert != null) {
+            beforeFirstInsert.run();
+            beforeFirstInsert = null;
+        }
+    }
+
+    private void taskFinished() {
+        runningTasks--;
+        if ((runningTasks == 0) && !failed) {
+            // Nothing was inserted if this is still pending, but the existing info must go anyway
+            prepareInsert();
+            orchestrator.syncItemFinished();
+        }
+    }
+
+    private void taskFailed(int errorCode, String description) {
+        if (failed) return;
+        // Ok, something bad happened, stop every task and quit
+        failed = true;
+        orchestrator.syncItemFailed(errorCode, description);
+    }
+}
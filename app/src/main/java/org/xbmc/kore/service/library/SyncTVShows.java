@@ -22,8 +22,8 @@ import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 
-import org.xbmc.kore.jsonrpc.ApiCallback;
 import org.xbmc.kore.jsonrpc.ApiList;
+import org.xbmc.kore.jsonrpc.ApiMethod;
 import org.xbmc.kore.jsonrpc.HostConnection;
 import org.xbmc.kore.jsonrpc.method.VideoLibrary;
 import org.xbmc.kore.jsonrpc.type.ListType;
@@ -32,24 +32,54 @@ import org.xbmc.kore.provider.MediaContract;
 import org.xbmc.kore.utils.LogUtils;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+/**
+ * Syncs the TV shows, seasons and episodes to the local database.
+ *
+ * A full sync pages through the shows, the seasons and the episodes of the whole library at
+ * the same time, without filtering by show, so the number of calls depends on the number of
+ * episodes and not on the number of shows. Kodi versions before
+ * {@link #MIN_KODI_VERSION_ALL_SEASONS} require a show to get seasons, so on those the
+ * seasons are still requested show by show.
+ */
 public class SyncTVShows extends SyncItem {
     public static final String TAG = LogUtils.makeLogTag(SyncTVShows.class);
 
+    /**
+     * First Kodi version that returns the seasons of all the shows in a single call
+     */
+    public static final int MIN_KODI_VERSION_ALL_SEASONS = 17;
+
     private static final int LIMIT_SYNC_TVSHOWS = 200;
+    private static final int LIMIT_SYNC_SEASONS = 500;
+    private static final int LIMIT_SYNC_EPISODES = 300;
 
     private final int hostId;
     private final int tvshowId;
+    private final boolean syncAllSeasons;
     private final Bundle syncExtras;
 
     /**
-     * Syncs all the TVShows on selected XBMC to the local database
+     * Syncs all the TVShows on selected XBMC to the local database, getting the seasons
+     * show by show
      * @param hostId XBMC host id
      */
     public SyncTVShows(final int hostId, Bundle syncExtras) {
+        this(hostId, false, syncExtras);
+    }
+
+    /**
+     * Syncs all the TVShows on selected XBMC to the local database
+     * @param hostId XBMC host id
+     * @param syncAllSeasons Whether the host returns the seasons of all shows in one call.
+     *                       See {@link #MIN_KODI_VERSION_ALL_SEASONS}
+     */
+    public SyncTVShows(final int hostId, boolean syncAllSeasons, Bundle syncExtras) {
         this.hostId = hostId;
         this.tvshowId = -1;
+        this.syncAllSeasons = syncAllSeasons;
         this.syncExtras = syncExtras;
     }
 
@@ -61,6 +91,7 @@ public class SyncTVShows extends SyncItem {
     public SyncTVShows(final int hostId, final int tvshowId, Bundle syncExtras) {
         this.hostId = hostId;
         this.tvshowId = tvshowId;
+        this.syncAllSeasons = false;
         this.syncExtras = syncExtras;
     }
 
@@ -103,74 +134,116 @@ public class SyncTVShows extends SyncItem {
                      final HostConnection hostConnection,
                      final Handler callbackHandler,
                      final ContentResolver contentResolver) {
+        final SyncPipeline pipeline = new SyncPipeline(orchestrator, hostConnection, callbackHandler);
         if (tvshowId == -1) {
-            syncAllTVShows(orchestrator, hostConnection, callbackHandler, contentResolver,
-                           0, new ArrayList<VideoType.DetailsTVShow>());
+            pipeline.add(syncAllTVShowsTask(pipeline, contentResolver))
+                    .add(syncAllEpisodesTask(contentResolver));
+            if (syncAllSeasons) {
+                pipeline.add(syncAllSeasonsTask(contentResolver));
+            }
+            pipeline.start(new Runnable() {
+                        @Override
+                        public void run() {
+                            deleteTVShows(contentResolver, hostId, -1);
+                        }
+                    });
         } else {
-            VideoLibrary.GetTVShowDetails action =
-                    new VideoLibrary.GetTVShowDetails(tvshowId, getTVShowsProperties);
-            action.execute(hostConnection, new ApiCallback<VideoType.DetailsTVShow>() {
+            pipeline.add(new SyncPipeline.SequenceTask<VideoType.DetailsTVShow>() {
+                @Override
+                public int size() {
+                    return 1;
+                }
+
                 @Override
-                public void onSuccess(VideoType.DetailsTVShow result) {
+                public ApiMethod<VideoType.DetailsTVShow> getMethod(int position) {
+                    return new VideoLibrary.GetTVShowDetails(tvshowId, getTVShowsProperties);
+                }
+
+                @Override
+                public void insert(int position, VideoType.DetailsTVShow result) {
                     deleteTVShows(contentResolver, hostId, tvshowId);
                     List<VideoType.DetailsTVShow> tvShows = new ArrayList<>(1);
                     tvShows.add(result);
                     insertTVShows(tvShows, contentResolver);
-                    chainSyncSeasons(orchestrator, hostConnection, callbackHandler,
-                                     contentResolver, tvShows, 0);
-                    // insertTVShows calls syncItemFinished
                 }
 
                 @Override
-                public void onError(int errorCode, String description) {
-                    // Ok, something bad happend, just quit
-                    orchestrator.syncItemFailed(errorCode, description);
+                public void onFinished() {
+                    List<Integer> tvshowIds = Collections.singletonList(tvshowId);
+                    pipeline.add(syncSeasonsTask(tvshowIds, contentResolver))
+                            .add(syncEpisodesTask(tvshowIds, contentResolver));
                 }
-            }, callbackHandler);
+            }).start(null);
         }
     }
 
     /**
-     * Syncs all the TV shows, calling itself recursively
+     * Syncs all the TV shows, page by page
      * Uses the {@link VideoLibrary.GetTVShows} version with limits to make sure
-     * that Kodi doesn't blow up, and calls itself recursively until all the
-     * shows are returned
+     * that Kodi doesn't blow up. If the seasons can't be synced in pages, the ids of
+     * the shows are kept, and after the last page the seasons of each show are synced
      */
-    private void syncAllTVShows(final SyncOrchestrator orchestrator,
-                                final HostConnection hostConnection,
-                                final Handler callbackHandler,
-                                final ContentResolver contentResolver,
-                                final int startIdx,
-                                final List<VideoType.DetailsTVShow> allResults) {
-        // Call GetTVShows with the current limits set
-        ListType.Limits limits = new ListType.Limits(startIdx, startIdx + LIMIT_SYNC_TVSHOWS);
-        VideoLibrary.GetTVShows action = new VideoLibrary.GetTVShows(limits, getTVShowsProperties);
-        action.execute(hostConnection, new ApiCallback<ApiList<VideoType.DetailsTVShow>>() {
+    private SyncPipeline.PagedTask<VideoType.DetailsTVShow> syncAllTVShowsTask(final SyncPipeline pipeline,
+                                                                              final ContentResolver contentResolver) {
+        final List<Integer> tvshowIds = syncAllSeasons ? null : new ArrayList<Integer>();
+        return new SyncPipeline.PagedTask<VideoType.DetailsTVShow>(LIMIT_SYNC_TVSHOWS) {
+            @Override
+            public ApiMethod<ApiList<VideoType.DetailsTVShow>> getPage(ListType.Limits limits) {
+                return new VideoLibrary.GetTVShows(limits, getTVShowsProperties);
+            }
+
+            @Override
+            public void insertPage(List<VideoType.DetailsTVShow> items) {
+                insertTVShows(items, contentResolver);
+                if (tvshowIds != null) {
+                    for (VideoType.DetailsTVShow tvShow : items) {
+                        tvshowIds.add(tvShow.tvshowid);
+                    }
+                }
+            }
+
             @Override
-            public void onSuccess(ApiList<VideoType.DetailsTVShow> result) {
-                allResults.addAll(result.items);
-                if (SyncUtils.moreItemsAvailable(result.limits)) {
-                    // Max limit returned, there may be some more movies
-                    LogUtils.LOGD(TAG, "syncAllTVShows: More tv shows on media center, recursing.");
-                    syncAllTVShows(orchestrator, hostConnection, callbackHandler, contentResolver,
-                                   startIdx + LIMIT_SYNC_TVSHOWS, allResults);
-                } else {
-                    // Ok, we have all the shows, insert them
-                    LogUtils.LOGD(TAG, "syncAllTVShows: Got all tv shows. Total: " + allResults.size());
-                    deleteTVShows(contentResolver, hostId, -1);
-                    insertTVShows(allResults, contentResolver);
-
-                    chainSyncSeasons(orchestrator, hostConnection, callbackHandler,
-                                     contentResolver, allResults, 0);
+            public void onFinished() {
+                if (tvshowIds != null) {
+                    LogUtils.LOGD(TAG, "syncAllTVShows: Got all tv shows. Total: " + tvshowIds.size());
+                    pipeline.add(syncSeasonsTask(tvshowIds, contentResolver));
                 }
             }
+        };
+    }
+
+    /**
+     * Syncs the seasons of all the TV shows, page by page
+     */
+    private SyncPipeline.PagedTask<VideoType.DetailsSeason> syncAllSeasonsTask(final ContentResolver contentResolver) {
+        return new SyncPipeline.PagedTask<VideoType.DetailsSeason>(LIMIT_SYNC_SEASONS) {
+            @Override
+            public ApiMethod<ApiList<VideoType.DetailsSeason>> getPage(ListType.Limits limits) {
+                return new VideoLibrary.GetSeasons(limits, seasonsProperties);
+            }
 
             @Override
-            public void onError(int errorCode, String description) {
-                // Ok, something bad happend, just quit
-                orchestrator.syncItemFailed(errorCode, description);
+            public void insertPage(List<VideoType.DetailsSeason> items) {
+                insertSeasons(items, contentResolver);
             }
-        }, callbackHandler);
+        };
+    }
+
+    /**
+     * Syncs the episodes of all the TV shows, page by page
+     */
+    private SyncPipeline.PagedTask<VideoType.DetailsEpisode> syncAllEpisodesTask(final ContentResolver contentResolver) {
+        return new SyncPipeline.PagedTask<VideoType.DetailsEpisode>(LIMIT_SYNC_EPISODES) {
+            @Override
+            public ApiMethod<ApiList<VideoType.DetailsEpisode>> getPage(ListType.Limits limits) {
+                return new VideoLibrary.GetEpisodes(limits, getEpisodesProperties);
+            }
+
+            @Override
+            public void insertPage(List<VideoType.DetailsEpisode> items) {
+                insertEpisodes(items, contentResolver);
+            }
+        };
     }
 
     private void deleteTVShows(final ContentResolver contentResolver,
@@ -210,52 +283,30 @@ public class SyncTVShows extends SyncItem {
     };
 
     /**
-     * Sequentially syncs seasons for the tvshow specified, and on success recursively calls
-     * itself to sync the next tvshow on the list.
-     * This basically iterates through the tvshows list updating the seasons,
-     * in a sequential manner (defeating the parallel nature of host calls)
-     * After processing all tvshows on the list, starts the episode syncing
+     * Syncs the seasons of each tvshow on the list, one call per tvshow.
+     * The call for the next tvshow is made while the seasons of the current one are inserted
      *
-     * @param orchestrator Orchestrator to call when finished
-     * @param hostConnection Host connection to use
-     * @param callbackHandler Handler on which to post callbacks
+     * @param tvshowIds Ids of the TV shows to get seasons to
      * @param contentResolver Content resolver
-     * @param tvShows TV shows list to get seasons to
-     * @param position Position of the tvshow on the list to process
      */
-    private void chainSyncSeasons(final SyncOrchestrator orchestrator,
-                                  final HostConnection hostConnection,
-                                  final Handler callbackHandler,
-                                  final ContentResolver contentResolver,
-                                  final List<VideoType.DetailsTVShow> tvShows,
-                                  final int position) {
-        if (position < tvShows.size()) {
-            // Process this tvshow
-            final VideoType.DetailsTVShow tvShow = tvShows.get(position);
-
-            VideoLibrary.GetSeasons action = new VideoLibrary.GetSeasons(tvShow.tvshowid, seasonsProperties);
-            action.execute(hostConnection, new ApiCallback<List<VideoType.DetailsSeason>>() {
-                @Override
-                public void onSuccess(List<VideoType.DetailsSeason> result) {
-
-                    insertSeason(tvShow.tvshowid, result, contentResolver);
+    private SyncPipeline.SequenceTask<ApiList<VideoType.DetailsSeason>> syncSeasonsTask(final List<Integer> tvshowIds,
+                                                                                       final ContentResolver contentResolver) {
+        return new SyncPipeline.SequenceTask<ApiList<VideoType.DetailsSeason>>() {
+            @Override
+            public int size() {
+                return tvshowIds.size();
+            }
 
-                    // Sync the next tv show
-                    chainSyncSeasons(orchestrator, hostConnection, callbackHandler,
-                                     contentResolver, tvShows, position + 1);
-                }
+            @Override
+            public ApiMethod<ApiList<VideoType.DetailsSeason>> getMethod(int position) {
+                return new VideoLibrary.GetSeasons(tvshowIds.get(position), seasonsProperties);
+            }
 
-                @Override
-                public void onError(int errorCode, String description) {
-                    // Ok, something bad happend, just quit
-                    orchestrator.syncItemFailed(errorCode, description);
-                }
-            }, callbackHandler);
-        } else {
-            // We've processed all tvshows, start episode syncing
-            chainSyncEpisodes(orchestrator, hostConnection, callbackHandler,
-                              contentResolver, tvShows, 0);
-        }
+            @Override
+            public void insert(int position, ApiList<VideoType.DetailsSeason> result) {
+                insertSeason(tvshowIds.get(position), result.items, contentResolver);
+            }
+        };
     }
 
     private final static String getEpisodesProperties[] = {
@@ -281,49 +332,30 @@ public class SyncTVShows extends SyncItem {
     };
 
     /**
-     * Sequentially syncs episodes for the tvshow specified, and on success recursively calls
-     * itself to sync the next tvshow on the list.
-     * This basically iterates through the tvshows list updating the episodes,
-     * in a sequential manner (defeating the parallel nature of host calls)
+     * Syncs the episodes of each tvshow on the list, one call per tvshow.
+     * The call for the next tvshow is made while the episodes of the current one are inserted
      *
-     * @param orchestrator Orchestrator to call when finished
-     * @param hostConnection Host connection to use
-     * @param callbackHandler Handler on which to post callbacks
+     * @param tvshowIds Ids of the TV shows to get episodes to
      * @param contentResolver Content resolver
-     * @param tvShows TV shows list to get episodes to
-     * @param position Position of the tvshow on the list to process
      */
-    private void chainSyncEpisodes(final SyncOrchestrator orchestrator,
-                                   final HostConnection hostConnection,
-                                   final Handler callbackHandler,
-                                   final ContentResolver contentResolver,
-                                   final List<VideoType.DetailsTVShow> tvShows,
-                                   final int position) {
-        if (position < tvShows.size()) {
-            VideoType.DetailsTVShow tvShow = tvShows.get(position);
-
-            VideoLibrary.GetEpisodes action = new VideoLibrary.GetEpisodes(tvShow.tvshowid, getEpisodesProperties);
-            action.execute(hostConnection, new ApiCallback<List<VideoType.DetailsEpisode>>() {
-                @Override
-                public void onSuccess(List<VideoType.DetailsEpisode> result) {
-
-                    insertEpisodes(result, contentResolver);
+    private SyncPipeline.SequenceTask<ApiList<VideoType.DetailsEpisode>> syncEpisodesTask(final List<Integer> tvshowIds,
+                                                                                         final ContentResolver contentResolver) {
+        return new SyncPipeline.SequenceTask<ApiList<VideoType.DetailsEpisode>>() {
+            @Override
+            public int size() {
+                return tvshowIds.size();
+            }
 
-                    chainSyncEpisodes(orchestrator, hostConnection, callbackHandler,
-                                      contentResolver, tvShows, position + 1);
-                }
+            @Override
+            public ApiMethod<ApiList<VideoType.DetailsEpisode>> getMethod(int position) {
+                return new VideoLibrary.GetEpisodes(tvshowIds.get(position), getEpisodesProperties);
+            }
 
-                @Override
-                public void onError(int errorCode, String description) {
-                    // Ok, something bad happend, just quit
-                    orchestrator.syncItemFailed(errorCode, description);
-                }
-            }, callbackHandler);
-        } else {
-            // We're finished
-            LogUtils.LOGD(TAG, "Sync tv shows finished successfully");
-            orchestrator.syncItemFinished();
-        }
+            @Override
+            public void insert(int position, ApiList<VideoType.DetailsEpisode> result) {
+                insertEpisodes(result.items, contentResolver);
+            }
+        };
     }
 
     public void insertTVShows(List<VideoType.DetailsTVShow> tvShows, ContentResolver contentResolver) {
@@ -356,18 +388,14 @@ public class SyncTVShows extends SyncItem {
     }
 
     public void insertSeason(int tvshowId, List<VideoType.DetailsSeason> result, ContentResolver contentResolver) {
-        ContentValues seasonsValuesBatch[] = new ContentValues[result.size()];
-        int totalWatchedEpisodes = 0;
-        for (int i = 0; i < result.size(); i++) {
-            VideoType.DetailsSeason season = result.get(i);
-            seasonsValuesBatch[i] = SyncUtils.contentValuesFromSeason(hostId, season);
-
-            totalWatchedEpisodes += season.watchedepisodes;
-        }
-        // Insert the seasons
-        contentResolver.bulkInsert(MediaContract.Seasons.CONTENT_URI, seasonsValuesBatch);
+        insertSeasons(result, contentResolver);
 
         if (getSyncType().equals(LibrarySyncService.SYNC_SINGLE_TVSHOW)) {
+            int totalWatchedEpisodes = 0;
+            for (VideoType.DetailsSeason season : result) {
+                totalWatchedEpisodes += season.watchedepisodes;
+            }
+
             // HACK: Update watched episodes count for the tvshow with the sum
             // of watched episodes from seasons, given that the value that we
             // got from XBMC from the call to GetTVShowDetails is wrong (note
@@ -379,13 +407,18 @@ public class SyncTVShows extends SyncItem {
         }
     }
 
-    public void insertEpisodes(List<VideoType.DetailsEpisode> episodes, ContentResolver contentResolver) {
-        ContentValues episodesValuesBatch[] = new ContentValues[episodes.size()];
-        for (int i = 0; i < episodes.size(); i++) {
-            VideoType.DetailsEpisode episode = episodes.get(i);
-            episodesValuesBatch[i] = SyncUtils.contentValuesFromEpisode(hostId, episode);
+    public void insertSeasons(List<VideoType.DetailsSeason> seasons, ContentResolver contentResolver) {
+        ContentValues seasonsValuesBatch[] = new ContentValues[seasons.size()];
+        for (int i = 0; i < seasons.size(); i++) {
+            seasonsValuesBatch[i] = SyncUtils.contentValuesFromSeason(hostId, seasons.get(i));
         }
+        // Insert the seasons
+        contentResolver.bulkInsert(MediaContract.Seasons.CONTENT_URI, seasonsValuesBatch);
+    }
+
+    public void insertEpisodes(List<VideoType.DetailsEpisode> episodes, ContentResolver contentResolver) {
         // Insert the episodes
-        contentResolver.bulkInsert(MediaContract.Episodes.CONTENT_URI, episodesValuesBatch);
+        SyncUtils.insertBatchFromEpisodes(hostId, episodes)
+                .insert(contentResolver, MediaContract.Episodes.CONTENT_URI);
     }
 }
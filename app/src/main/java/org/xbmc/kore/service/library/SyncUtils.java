@@ -16,22 +16,33 @@
 package org.xbmc.kore.service.library;
 
 import android.content.ComponentName;
+import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
 import android.content.ServiceConnection;
+import android.database.Cursor;
+import android.net.Uri;
 import android.os.IBinder;
+import android.text.TextUtils;
 
 import org.xbmc.kore.host.HostInfo;
+import org.xbmc.kore.jsonrpc.type.AddonType;
+import org.xbmc.kore.jsonrpc.type.FavouriteType;
 import org.xbmc.kore.jsonrpc.type.ListType;
 import org.xbmc.kore.jsonrpc.type.VideoType;
 import org.xbmc.kore.jsonrpc.type.AudioType;
 import org.xbmc.kore.jsonrpc.type.LibraryType;
+import org.xbmc.kore.jsonrpc.type.PVRType;
+import org.xbmc.kore.provider.InsertBatch;
 import org.xbmc.kore.provider.MediaContract;
 import org.xbmc.kore.utils.Utils;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Util functions for the Library Sync Service
@@ -70,7 +81,7 @@ public class SyncUtils {
                 VideoType.Streams.Audio selectedStream = movie.streamdetails.audio.get(0);
                 List<String> languages = new ArrayList<String>(movie.streamdetails.audio.size());
                 for (int j = 0; j < movie.streamdetails.audio.size(); j++) {
-                    VideoType.Streams.Audio stream = movie.streamdetails.audio.get(0);
+                    VideoType.Streams.Audio stream = movie.streamdetails.audio.get(j);
                     if (stream.channels > selectedStream.channels) {
                         selectedStream = stream;
                     }
@@ -229,7 +240,7 @@ public class SyncUtils {
             VideoType.Streams.Audio selectedStream = episode.streamdetails.audio.get(0);
             List<String> languages = new ArrayList<String>(episode.streamdetails.audio.size());
             for (int j = 0; j < episode.streamdetails.audio.size(); j++) {
-                VideoType.Streams.Audio stream = episode.streamdetails.audio.get(0);
+                VideoType.Streams.Audio stream = episode.streamdetails.audio.get(j);
                 if (stream.channels > selectedStream.channels) {
                     selectedStream = stream;
                 }
@@ -262,6 +273,105 @@ public class SyncUtils {
         return episodeValues;
     }
 
+    /**
+     * Returns an {@link InsertBatch} that writes a list of {@link VideoType.DetailsEpisode} episodes
+     * with the same values as {@link #contentValuesFromEpisode(int, VideoType.DetailsEpisode)},
+     * without allocating a {@link ContentValues} per episode
+     * @param hostId Host id for these episodes
+     * @param episodes Episodes to insert
+     * @return Batch to insert in {@link MediaContract.Episodes#CONTENT_URI}
+     */
+    public static InsertBatch insertBatchFromEpisodes(final int hostId,
+                                                      final List<VideoType.DetailsEpisode> episodes) {
+        return new InsertBatch(MediaContract.EpisodesColumns.HOST_ID,
+                               MediaContract.EpisodesColumns.EPISODEID,
+                               MediaContract.EpisodesColumns.TVSHOWID,
+                               MediaContract.EpisodesColumns.SEASON,
+                               MediaContract.EpisodesColumns.EPISODE,
+                               MediaContract.EpisodesColumns.FANART,
+                               MediaContract.EpisodesColumns.THUMBNAIL,
+                               MediaContract.EpisodesColumns.PLAYCOUNT,
+                               MediaContract.EpisodesColumns.DATEADDED,
+                               MediaContract.EpisodesColumns.TITLE,
+                               MediaContract.EpisodesColumns.FILE,
+                               MediaContract.EpisodesColumns.PLOT,
+                               MediaContract.EpisodesColumns.DIRECTOR,
+                               MediaContract.EpisodesColumns.RUNTIME,
+                               MediaContract.EpisodesColumns.FIRSTAIRED,
+                               MediaContract.EpisodesColumns.RATING,
+                               MediaContract.EpisodesColumns.SHOWTITLE,
+                               MediaContract.EpisodesColumns.WRITER,
+                               MediaContract.EpisodesColumns.AUDIO_CHANNELS,
+                               MediaContract.EpisodesColumns.AUDIO_CODEC,
+                               MediaContract.EpisodesColumns.AUDIO_LANGUAGE,
+                               MediaContract.EpisodesColumns.SUBTITLES_LANGUAGES,
+                               MediaContract.EpisodesColumns.VIDEO_ASPECT,
+                               MediaContract.EpisodesColumns.VIDEO_CODEC,
+                               MediaContract.EpisodesColumns.VIDEO_HEIGHT,
+                               MediaContract.EpisodesColumns.VIDEO_WIDTH) {
+            @Override
+            public int size() {
+                return episodes.size();
+            }
+
+            @Override
+            public void writeRow(int position, RowWriter row) {
+                VideoType.DetailsEpisode episode = episodes.get(position);
+                row.writeLong(0, hostId);
+                row.writeLong(1, episode.episodeid);
+                row.writeLong(2, episode.tvshowid);
+                row.writeLong(3, episode.season);
+                row.writeLong(4, episode.episode);
+                row.writeString(5, episode.fanart);
+                row.writeString(6, episode.thumbnail);
+                row.writeLong(7, episode.playcount);
+                row.writeString(8, episode.dateadded);
+                row.writeString(9, episode.title);
+                row.writeString(10, episode.file);
+                row.writeString(11, episode.plot);
+                row.writeString(12, Utils.listStringConcat(episode.director, LIST_DELIMITER));
+                row.writeLong(13, episode.runtime);
+                row.writeString(14, episode.firstaired);
+                row.writeDouble(15, episode.rating);
+                row.writeString(16, episode.showtitle);
+                row.writeString(17, Utils.listStringConcat(episode.writer, LIST_DELIMITER));
+
+                List<VideoType.Streams.Audio> audio = episode.streamdetails.audio;
+                if (audio.size() > 0) {
+                    // Get the stream with the most channels and concat all the languages
+                    VideoType.Streams.Audio selectedStream = audio.get(0);
+                    List<String> languages = new ArrayList<String>(audio.size());
+                    for (VideoType.Streams.Audio stream : audio) {
+                        if (stream.channels > selectedStream.channels) {
+                            selectedStream = stream;
+                        }
+                        languages.add(stream.language);
+                    }
+                    row.writeLong(18, selectedStream.channels);
+                    row.writeString(19, selectedStream.codec);
+                    row.writeString(20, Utils.listStringConcat(languages, LIST_DELIMITER));
+                }
+                List<VideoType.Streams.Subtitle> subtitle = episode.streamdetails.subtitle;
+                if (subtitle.size() > 0) {
+                    // Concat all subtitle languages
+                    List<String> subtitles = new ArrayList<String>(subtitle.size());
+                    for (VideoType.Streams.Subtitle stream : subtitle) {
+                        subtitles.add(stream.language);
+                    }
+                    row.writeString(21, Utils.listStringConcat(subtitles, LIST_DELIMITER));
+                }
+                if (episode.streamdetails.video.size() > 0) {
+                    // We're only getting the first video channel...
+                    VideoType.Streams.Video video = episode.streamdetails.video.get(0);
+                    row.writeDouble(22, video.aspect);
+                    row.writeString(23, video.codec);
+                    row.writeLong(24, video.height);
+                    row.writeLong(25, video.width);
+                }
+            }
+        };
+    }
+
     /**
      * Returns {@link android.content.ContentValues} from a {@link AudioType.DetailsArtist} artist
      * @param hostId Host id for this movie
@@ -344,6 +454,90 @@ public class SyncUtils {
         return songValues;
     }
 
+    /**
+     * Returns an {@link InsertBatch} that writes a list of {@link AudioType.DetailsSong} songs
+     * with the same values as {@link #contentValuesFromSong(int, AudioType.DetailsSong)},
+     * without allocating a {@link ContentValues} per song
+     * @param hostId Host id for these songs
+     * @param songs Songs to insert
+     * @return Batch to insert in {@link MediaContract.Songs#CONTENT_URI}
+     */
+    public static InsertBatch insertBatchFromSongs(final int hostId,
+                                                   final List<AudioType.DetailsSong> songs) {
+        return new InsertBatch(MediaContract.Songs.HOST_ID,
+                               MediaContract.Songs.ALBUMID,
+                               MediaContract.Songs.SONGID,
+                               MediaContract.Songs.DURATION,
+                               MediaContract.Songs.THUMBNAIL,
+                               MediaContract.Songs.FILE,
+                               MediaContract.Songs.TRACK,
+                               MediaContract.Songs.TITLE,
+                               MediaContract.Songs.DISPLAYARTIST,
+                               MediaContract.Songs.DISC) {
+            @Override
+            public int size() {
+                return songs.size();
+            }
+
+            @Override
+            public void writeRow(int position, RowWriter row) {
+                AudioType.DetailsSong song = songs.get(position);
+                row.writeLong(0, hostId);
+                row.writeLong(1, song.albumid);
+                row.writeLong(2, song.songid);
+                row.writeLong(3, song.duration);
+                row.writeString(4, song.thumbnail);
+                row.writeString(5, song.file);
+                row.writeLong(6, song.track);
+                row.writeString(7, song.title);
+                row.writeString(8, song.displayartist);
+                row.writeLong(9, song.disc);
+            }
+        };
+    }
+
+    /**
+     * Returns an {@link InsertBatch} with the song/artist links of a list of
+     * {@link AudioType.DetailsSong} songs, one row per artist of each song
+     * @param hostId Host id for these songs
+     * @param songs Songs whose artists to insert
+     * @return Batch to insert in {@link MediaContract.SongArtists#CONTENT_URI}
+     */
+    public static InsertBatch insertBatchFromSongArtists(final int hostId,
+                                                         final List<AudioType.DetailsSong> songs) {
+        // Flatten the (song, artist) pairs once, as ints, so rows can be addressed by position
+        int count = 0;
+        for (AudioType.DetailsSong song : songs) {
+            count += song.artistid.size();
+        }
+        final int[] songIds = new int[count];
+        final int[] artistIds = new int[count];
+        int i = 0;
+        for (AudioType.DetailsSong song : songs) {
+            for (int artistId : song.artistid) {
+                songIds[i] = song.songid;
+                artistIds[i] = artistId;
+                i++;
+            }
+        }
+
+        return new InsertBatch(MediaContract.SongArtists.HOST_ID,
+                               MediaContract.SongArtists.SONGID,
+                               MediaContract.SongArtists.ARTISTID) {
+            @Override
+            public int size() {
+                return songIds.length;
+            }
+
+            @Override
+            public void writeRow(int position, RowWriter row) {
+                row.writeLong(0, hostId);
+                row.writeLong(1, songIds[position]);
+                row.writeLong(2, artistIds[position]);
+            }
+        };
+    }
+
     /**
      * Returns {@link android.content.ContentValues} from a {@link VideoType.DetailsMusicVideo} music video
      * @param hostId Host id
@@ -369,7 +563,7 @@ public class SyncUtils {
                 VideoType.Streams.Audio selectedStream = musicVideo.streamdetails.audio.get(0);
                 List<String> languages = new ArrayList<String>(musicVideo.streamdetails.audio.size());
                 for (int j = 0; j < musicVideo.streamdetails.audio.size(); j++) {
-                    VideoType.Streams.Audio stream = musicVideo.streamdetails.audio.get(0);
+                    VideoType.Streams.Audio stream = musicVideo.streamdetails.audio.get(j);
                     if (stream.channels > selectedStream.channels) {
                         selectedStream = stream;
                     }
@@ -416,6 +610,155 @@ public class SyncUtils {
         return musicVideoValues;
     }
 
+    /**
+     * Returns {@link android.content.ContentValues} from a {@link PVRType.DetailsChannelGroup} channel group
+     * @param hostId Host id for the channel group
+     * @param channelGroup {@link PVRType.DetailsChannelGroup}
+     * @return {@link android.content.ContentValues} with the channel group values
+     */
+    public static ContentValues contentValuesFromChannelGroup(int hostId, PVRType.DetailsChannelGroup channelGroup) {
+        ContentValues channelGroupValues = new ContentValues();
+        channelGroupValues.put(MediaContract.PVRChannelGroups.HOST_ID, hostId);
+        channelGroupValues.put(MediaContract.PVRChannelGroups.CHANNELGROUPID, channelGroup.channelgroupid);
+        channelGroupValues.put(MediaContract.PVRChannelGroups.CHANNELTYPE, channelGroup.channeltype);
+        channelGroupValues.put(MediaContract.PVRChannelGroups.LABEL, channelGroup.label);
+
+        return channelGroupValues;
+    }
+
+    /**
+     * Returns {@link android.content.ContentValues} from a {@link PVRType.DetailsChannel} channel
+     * @param hostId Host id for the channel
+     * @param channelGroupId Group the channel was listed in
+     * @param channel {@link PVRType.DetailsChannel}
+     * @return {@link android.content.ContentValues} with the channel values
+     */
+    public static ContentValues contentValuesFromChannel(int hostId, int channelGroupId, PVRType.DetailsChannel channel) {
+        ContentValues channelValues = new ContentValues();
+        channelValues.put(MediaContract.PVRChannels.HOST_ID, hostId);
+        channelValues.put(MediaContract.PVRChannels.CHANNELGROUPID, channelGroupId);
+        channelValues.put(MediaContract.PVRChannels.CHANNELID, channel.channelid);
+        channelValues.put(MediaContract.PVRChannels.CHANNELTYPE, channel.channeltype);
+        channelValues.put(MediaContract.PVRChannels.CHANNEL, channel.channel);
+        channelValues.put(MediaContract.PVRChannels.THUMBNAIL, channel.thumbnail);
+        channelValues.put(MediaContract.PVRChannels.HIDDEN, channel.hidden);
+        channelValues.put(MediaContract.PVRChannels.LOCKED, channel.locked);
+
+        return channelValues;
+    }
+
+    /**
+     * Returns {@link android.content.ContentValues} from a {@link PVRType.DetailsBroadcast} broadcast
+     * @param hostId Host id for the broadcast
+     * @param channelId Channel of the broadcast
+     * @param broadcast {@link PVRType.DetailsBroadcast}
+     * @return {@link android.content.ContentValues} with the broadcast values
+     */
+    public static ContentValues contentValuesFromBroadcast(int hostId, int channelId, PVRType.DetailsBroadcast broadcast) {
+        ContentValues broadcastValues = new ContentValues();
+        broadcastValues.put(MediaContract.PVRBroadcasts.HOST_ID, hostId);
+        broadcastValues.put(MediaContract.PVRBroadcasts.CHANNELID, channelId);
+        broadcastValues.put(MediaContract.PVRBroadcasts.BROADCASTID, broadcast.broadcastid);
+        broadcastValues.put(MediaContract.PVRBroadcasts.TITLE, broadcast.title);
+        broadcastValues.put(MediaContract.PVRBroadcasts.PLOT, broadcast.plot);
+        broadcastValues.put(MediaContract.PVRBroadcasts.GENRE, broadcast.genre);
+        broadcastValues.put(MediaContract.PVRBroadcasts.EPISODENAME, broadcast.episodename);
+        broadcastValues.put(MediaContract.PVRBroadcasts.THUMBNAIL, broadcast.thumbnail);
+        broadcastValues.put(MediaContract.PVRBroadcasts.RUNTIME, broadcast.runtime);
+        broadcastValues.put(MediaContract.PVRBroadcasts.HASTIMER, broadcast.hastimer);
+        broadcastValues.put(MediaContract.PVRBroadcasts.STARTTIME, broadcast.starttime.getTime());
+        broadcastValues.put(MediaContract.PVRBroadcasts.ENDTIME, broadcast.endtime.getTime());
+
+        return broadcastValues;
+    }
+
+    /**
+     * Returns {@link android.content.ContentValues} from a {@link AddonType.Details} addon.
+     * Kodi's formatting tags, like [B] or [COLOR], are removed from the texts
+     * @param hostId Host id for the addon
+     * @param addon {@link AddonType.Details}
+     * @return {@link android.content.ContentValues} with the addon values
+     */
+    public static ContentValues contentValuesFromAddon(int hostId, AddonType.Details addon) {
+        ContentValues addonValues = new ContentValues();
+        addonValues.put(MediaContract.Addons.HOST_ID, hostId);
+        addonValues.put(MediaContract.Addons.ADDONID, addon.addonid);
+        addonValues.put(MediaContract.Addons.TYPE, addon.type);
+        addonValues.put(MediaContract.Addons.NAME, removeFormattingTags(addon.name));
+        addonValues.put(MediaContract.Addons.VERSION, addon.version);
+        addonValues.put(MediaContract.Addons.SUMMARY, removeFormattingTags(addon.summary));
+        addonValues.put(MediaContract.Addons.DESCRIPTION, removeFormattingTags(addon.description));
+        addonValues.put(MediaContract.Addons.PATH, addon.path);
+        addonValues.put(MediaContract.Addons.AUTHOR, removeFormattingTags(addon.author));
+        addonValues.put(MediaContract.Addons.THUMBNAIL, addon.thumbnail);
+        addonValues.put(MediaContract.Addons.FANART, addon.fanart);
+        addonValues.put(MediaContract.Addons.DISCLAIMER, addon.disclaimer);
+        addonValues.put(MediaContract.Addons.RATING, addon.rating);
+        addonValues.put(MediaContract.Addons.ENABLED, addon.enabled);
+
+        return addonValues;
+    }
+
+    /**
+     * Returns {@link android.content.ContentValues} from a {@link FavouriteType.DetailsFavourite} favourite
+     * @param hostId Host id for the favourite
+     * @param favourite {@link FavouriteType.DetailsFavourite}
+     * @return {@link android.content.ContentValues} with the favourite values
+     */
+    public static ContentValues contentValuesFromFavourite(int hostId, FavouriteType.DetailsFavourite favourite) {
+        ContentValues favouriteValues = new ContentValues();
+        favouriteValues.put(MediaContract.Favourites.HOST_ID, hostId);
+        favouriteValues.put(MediaContract.Favourites.TITLE, favourite.title);
+        favouriteValues.put(MediaContract.Favourites.TYPE, favourite.type);
+        favouriteValues.put(MediaContract.Favourites.PATH, favourite.path);
+        favouriteValues.put(MediaContract.Favourites.WINDOW, favourite.window);
+        favouriteValues.put(MediaContract.Favourites.WINDOW_PARAMETER, favourite.windowParameter);
+        favouriteValues.put(MediaContract.Favourites.THUMBNAIL, favourite.thumbnail);
+
+        return favouriteValues;
+    }
+
+    private static String removeFormattingTags(String text) {
+        return (text == null) ? null : text.replaceAll("\\[.*?\\]", "");
+    }
+
+    /**
+     * Returns when a sync type last finished for a host, as recorded by
+     * {@link #setLastSynced(ContentResolver, int, String)}. Unlike the rows' update time, this
+     * is also known for syncs that stored nothing, like the ones of an empty list
+     * @param contentResolver Content resolver
+     * @param hostId Host id
+     * @param syncType One of the {@link LibrarySyncService} sync types
+     * @return Time of the last sync, in ms, or 0 if it never finished
+     */
+    public static long getLastSynced(ContentResolver contentResolver, int hostId, String syncType) {
+        Cursor cursor = contentResolver.query(MediaContract.SyncState.buildSyncStateListUri(hostId),
+                                              new String[] {MediaContract.SyncState.UPDATED},
+                                              MediaContract.SyncState.SYNC_TYPE + "=?",
+                                              new String[] {syncType}, null);
+        long updated = 0;
+        if (cursor != null) {
+            if (cursor.moveToFirst()) {
+                updated = cursor.getLong(0);
+            }
+            cursor.close();
+        }
+        return updated;
+    }
+
+    /**
+     * Records that a sync type just finished for a host
+     * @param contentResolver Content resolver
+     * @param hostId Host id
+     * @param syncType One of the {@link LibrarySyncService} sync types
+     */
+    public static void setLastSynced(ContentResolver contentResolver, int hostId, String syncType) {
+        ContentValues values = new ContentValues();
+        values.put(MediaContract.SyncState.HOST_ID, hostId);
+        values.put(MediaContract.SyncState.SYNC_TYPE, syncType);
+        contentResolver.insert(MediaContract.SyncState.CONTENT_URI, values);
+    }
+
     /**
      * Binds to {@link LibrarySyncService} and calls {@link OnServiceListener#onServiceConnected(LibrarySyncService)} when connected
      * @param context {@link Context}
@@ -493,4 +836,79 @@ public class SyncUtils {
         }
         return false;
     }
+
+    /**
+     * Max number of ids to put on a single delete statement, to stay well under SQLite's
+     * limit on the size of a statement
+     */
+    private static final int DELETE_IDS_CHUNK_SIZE = 500;
+
+    /**
+     * Returns the ids of the items of a host that are currently on the database
+     * @param contentResolver Content resolver
+     * @param contentUri Uri of the table, without host id
+     * @param hostIdColumn Host id column of the table
+     * @param idColumn Item id column of the table (the id on Kodi)
+     * @param hostId Host id
+     * @return Set of ids
+     */
+    public static Set<Integer> getLocalIds(ContentResolver contentResolver, Uri contentUri,
+                                           String hostIdColumn, String idColumn, int hostId) {
+        Set<Integer> ids = new HashSet<>();
+        Cursor cursor = contentResolver.query(contentUri, new String[] {idColumn},
+                                              hostIdColumn + "=?", new String[] {String.valueOf(hostId)},
+                                              null);
+        if (cursor == null) return ids;
+        try {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getInt(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the maximum value of a column for the items of a host, which can be used as a
+     * high-water mark for incremental syncs
+     * @param contentResolver Content resolver
+     * @param contentUri Uri of the table, without host id
+     * @param hostIdColumn Host id column of the table
+     * @param column Column to check
+     * @param hostId Host id
+     * @return Maximum value, or null if there aren't any items
+     */
+    public static String getMaxValue(ContentResolver contentResolver, Uri contentUri,
+                                     String hostIdColumn, String column, int hostId) {
+        Cursor cursor = contentResolver.query(contentUri, new String[] {"MAX(" + column + ")"},
+                                              hostIdColumn + "=?", new String[] {String.valueOf(hostId)},
+                                              null);
+        if (cursor == null) return null;
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Deletes the items of a host with the given ids
+     * @param contentResolver Content resolver
+     * @param contentUri Uri of the table, without host id
+     * @param hostIdColumn Host id column of the table
+     * @param idColumn Item id column of the table (the id on Kodi)
+     * @param hostId Host id
+     * @param ids Ids to delete
+     */
+    public static void deleteIds(ContentResolver contentResolver, Uri contentUri,
+                                 String hostIdColumn, String idColumn, int hostId,
+                                 Collection<Integer> ids) {
+        List<Integer> idsList = new ArrayList<>(ids);
+        for (int start = 0; start < idsList.size(); start += DELETE_IDS_CHUNK_SIZE) {
+            List<Integer> chunk = idsList.subList(start, Math.min(start + DELETE_IDS_CHUNK_SIZE, idsList.size()));
+            String where = hostIdColumn + "=? AND " + idColumn + " IN (" + TextUtils.join(",", chunk) + ")";
+            contentResolver.delete(contentUri, where, new String[] {String.valueOf(hostId)});
+        }
+    }
 }
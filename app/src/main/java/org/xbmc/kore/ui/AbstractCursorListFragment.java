@@ -71,6 +71,8 @@ public abstract class AbstractCursorListFragment extends AbstractListFragment
 	private boolean loaderLoading;
 	private String savedSearchFilter;
 	private boolean supportsSearch;
+	// Whether a sync started with startSilentSync is running, which doesn't show the animation
+	private boolean silentSyncing;
 
 	private SearchView searchView;
 
@@ -209,6 +211,7 @@ public abstract class AbstractCursorListFragment extends AbstractListFragment
         }
 
 		if (event.syncType.equals(getListSyncType())) {
+			silentSyncing = false;
 			hideRefreshAnimation();
 			if (event.status == MediaSyncEvent.STATUS_SUCCESS) {
 				refreshList();
@@ -228,7 +231,8 @@ public abstract class AbstractCursorListFragment extends AbstractListFragment
     @Override
     public void onServiceConnected(LibrarySyncService librarySyncService) {
         HostInfo hostInfo = HostManager.getInstance(getActivity()).getHostInfo();
-        if(SyncUtils.isLibrarySyncing(librarySyncService, hostInfo, getListSyncType())) {
+        if (!silentSyncing &&
+            SyncUtils.isLibrarySyncing(librarySyncService, hostInfo, getListSyncType())) {
             showRefreshAnimation();
         }
     }
@@ -249,6 +253,8 @@ public abstract class AbstractCursorListFragment extends AbstractListFragment
     public void onRefresh() {
 		showRefreshAnimation();
 		Intent syncIntent = new Intent(this.getActivity(), LibrarySyncService.class);
+        // An explicit refresh does a full sync. The incremental one only finds added and removed
+        // items, not changes to existing ones such as their playcount
         syncIntent.putExtra(getListSyncType(), true);
 
         String syncID = getSyncID();
@@ -260,6 +266,36 @@ public abstract class AbstractCursorListFragment extends AbstractListFragment
         getActivity().startService(syncIntent);
     }
 
+	/**
+	 * Starts a sync of {@link #getListSyncType()} flagged as silent, so that no refresh
+	 * animation or toast is shown. Used by lists that show their stored items right away
+	 * and reconcile them with the host in the background.
+	 * If the list was never synced there's nothing to show, so a regular sync is started
+	 * instead, with its animation and errors. The sync must record its time with
+	 * {@link SyncUtils#setLastSynced(android.content.ContentResolver, int, String)}
+	 */
+	protected void startSilentSync() {
+		HostInfo hostInfo = HostManager.getInstance(getActivity()).getHostInfo();
+		if (hostInfo == null)
+			return;
+
+		if (SyncUtils.getLastSynced(getActivity().getContentResolver(),
+									hostInfo.getId(), getListSyncType()) == 0) {
+			onRefresh();
+			return;
+		}
+
+		silentSyncing = true;
+		Intent syncIntent = new Intent(this.getActivity(), LibrarySyncService.class);
+		syncIntent.putExtra(getListSyncType(), true);
+
+		Bundle syncExtras = new Bundle();
+		syncExtras.putBoolean(LibrarySyncService.SILENT_SYNC, true);
+		syncIntent.putExtra(LibrarySyncService.SYNC_EXTRAS, syncExtras);
+
+		getActivity().startService(syncIntent);
+	}
+
     /**
      * Search view callbacks
      */
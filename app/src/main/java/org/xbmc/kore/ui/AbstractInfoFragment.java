@@ -111,9 +111,10 @@ abstract public class AbstractInfoFragment extends AbstractFragment
     private boolean expandDescription;
 
     /**
-     * Handler on which to post RPC callbacks
+     * Handler on which to post RPC callbacks. Calls still running when the view is destroyed
+     * are cancelled
      */
-    private Handler callbackHandler = new Handler();
+    protected final Handler callbackHandler = new Handler();
 
     /**
      * Use {@link #setDataHolder(DataHolder)}
@@ -245,6 +246,12 @@ abstract public class AbstractInfoFragment extends AbstractFragment
         SyncUtils.disconnectFromLibrarySyncService(getActivity(), serviceConnection);
     }
 
+    @Override
+    public void onDestroyView() {
+        hostManager.cancelRequests(callbackHandler);
+        super.onDestroyView();
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         switch (item.getItemId()) {
@@ -30,6 +30,7 @@ import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewTreeObserver;
+import android.widget.AbsListView;
 import android.widget.AdapterView;
 import android.widget.BaseAdapter;
 import android.widget.GridView;
@@ -59,6 +60,15 @@ public abstract class AbstractListFragment extends Fragment implements
 	abstract protected AdapterView.OnItemClickListener createOnItemClickListener();
 	abstract protected BaseAdapter createAdapter();
 
+	/**
+	 * Override to be notified when the list scrolls, for instance to prefetch the artwork of
+	 * the next items
+	 * @return Scroll listener, or null if not needed
+	 */
+	protected AbsListView.OnScrollListener createOnScrollListener() {
+		return null;
+	}
+
 	@Override
 	public void onCreate(@Nullable Bundle savedInstanceState) {
 		super.onCreate(savedInstanceState);
@@ -76,6 +86,7 @@ public abstract class AbstractListFragment extends Fragment implements
 
 		gridView.setEmptyView(emptyView);
 		gridView.setOnItemClickListener(createOnItemClickListener());
+		gridView.setOnScrollListener(createOnScrollListener());
 		gridView.setAdapter(adapter);
 
 		if (savedInstanceState != null) {
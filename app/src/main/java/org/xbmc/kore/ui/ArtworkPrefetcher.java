@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbmc.kore.ui;
+
+import android.database.Cursor;
+import android.widget.AbsListView;
+import android.widget.Adapter;
+import android.widget.CursorAdapter;
+
+import org.xbmc.kore.host.HostManager;
+import org.xbmc.kore.utils.UIUtils;
+
+/**
+ * Scroll listener that loads the artwork of the items just below the visible ones in a
+ * cursor backed grid, so that it's already in memory when they're scrolled into view.
+ *
+ * Nothing is loaded while the grid is being flinged, as the items below would be skipped, and
+ * the artwork must be loaded with the same size the adapter uses, so that it hits the cache.
+ */
+public class ArtworkPrefetcher implements AbsListView.OnScrollListener {
+
+    private final HostManager hostManager;
+    private final int artColumn;
+    private final int artWidth, artHeight;
+
+    private int scrollState = SCROLL_STATE_IDLE;
+    private Cursor prefetchedCursor = null;
+    private int prefetchedUntil = 0;
+
+    /**
+     * Constructor
+     * @param hostManager Hostmanager connected to the host
+     * @param artColumn Index of the column with the artwork url in the adapter's cursor
+     * @param artWidth Width at which the adapter loads the artwork
+     * @param artHeight Height at which the adapter loads the artwork
+     */
+    public ArtworkPrefetcher(HostManager hostManager, int artColumn, int artWidth, int artHeight) {
+        this.hostManager = hostManager;
+        this.artColumn = artColumn;
+        this.artWidth = artWidth;
+        this.artHeight = artHeight;
+    }
+
+    @Override
+    public void onScrollStateChanged(AbsListView view, int scrollState) {
+        this.scrollState = scrollState;
+        if (scrollState != SCROLL_STATE_FLING) {
+            prefetch(view, view.getFirstVisiblePosition(), view.getChildCount());
+        }
+    }
+
+    @Override
+    public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+        if (scrollState != SCROLL_STATE_FLING) {
+            prefetch(view, firstVisibleItem, visibleItemCount);
+        }
+    }
+
+    /**
+     * Loads the artwork of the screen of items after the visible ones, skipping the ones
+     * already loaded
+     */
+    private void prefetch(AbsListView view, int firstVisibleItem, int visibleItemCount) {
+        Adapter adapter = view.getAdapter();
+        if (!(adapter instanceof CursorAdapter) || (visibleItemCount <= 0))
+            return;
+        Cursor cursor = ((CursorAdapter)adapter).getCursor();
+        if ((cursor == null) || cursor.isClosed())
+            return;
+
+        if (cursor != prefetchedCursor) {
+            // New results, start over
+            prefetchedCursor = cursor;
+            prefetchedUntil = 0;
+        }
+
+        int start = Math.max(firstVisibleItem + visibleItemCount, prefetchedUntil);
+        int end = Math.min(firstVisibleItem + 2 * visibleItemCount, cursor.getCount());
+        if (start >= end)
+            return;
+
+        // The adapter moves the cursor when binding views, so leave it where it was
+        int savedPosition = cursor.getPosition();
+        for (int i = start; i < end; i++) {
+            if (cursor.moveToPosition(i)) {
+                UIUtils.prefetchImage(hostManager, cursor.getString(artColumn), artWidth, artHeight);
+            }
+        }
+        cursor.moveToPosition(savedPosition);
+        prefetchedUntil = end;
+    }
+}
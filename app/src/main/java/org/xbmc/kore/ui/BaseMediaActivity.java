@@ -43,6 +43,7 @@ import org.xbmc.kore.host.HostConnectionObserver;
 import org.xbmc.kore.host.HostManager;
 import org.xbmc.kore.jsonrpc.ApiCallback;
 import org.xbmc.kore.jsonrpc.ApiMethod;
+import org.xbmc.kore.jsonrpc.HostConnection;
 import org.xbmc.kore.jsonrpc.method.Application;
 import org.xbmc.kore.jsonrpc.method.Player;
 import org.xbmc.kore.jsonrpc.type.ListType;
@@ -202,6 +203,8 @@ public abstract class BaseMediaActivity extends BaseActivity
         if(!showNowPlayingPanel)
             return;
 
+        nowPlayingPanel.setPlaybackClock(null);
+
         hostConnectionObserver = hostManager.getHostConnectionObserver();
         if (hostConnectionObserver == null)
             return;
@@ -360,7 +363,8 @@ public abstract class BaseMediaActivity extends BaseActivity
     public void onProgressChanged(int progress) {
         PlayerType.PositionTime positionTime = new PlayerType.PositionTime(progress);
         Player.Seek seekAction = new Player.Seek(currentActivePlayerId, positionTime);
-        seekAction.execute(HostManager.getInstance(this).getConnection(), new ApiCallback<PlayerType.SeekReturnType>() {
+        seekAction.executeLatest(HostManager.getInstance(this).getConnection(), HostConnection.CONTROL_SEEK,
+                                 new ApiCallback<PlayerType.SeekReturnType>() {
             @Override
             public void onSuccess(PlayerType.SeekReturnType result) {
                 // Ignore
@@ -452,7 +456,8 @@ public abstract class BaseMediaActivity extends BaseActivity
             @Override
             public void onVolumeChanged(int volume) {
                 new Application.SetVolume(volume)
-                        .execute(hostManager.getConnection(), defaultIntActionCallback, new Handler());
+                        .executeLatest(hostManager.getConnection(), HostConnection.CONTROL_VOLUME,
+                                       defaultIntActionCallback, new Handler());
             }
         });
 
@@ -465,6 +470,7 @@ public abstract class BaseMediaActivity extends BaseActivity
 
         hostConnectionObserver.registerApplicationObserver(this, true);
         hostConnectionObserver.registerPlayerObserver(this, true);
+        nowPlayingPanel.setPlaybackClock(hostConnectionObserver.getPlaybackClock());
 
         hostConnectionObserver.forceRefreshResults();
     }
@@ -484,12 +490,9 @@ public abstract class BaseMediaActivity extends BaseActivity
             nowPlayingPanel.setPanelState(SlidingUpPanelLayout.PanelState.COLLAPSED);
         }
 
-        nowPlayingPanel.setMediaProgress(getPropertiesResult.time, getPropertiesResult.totaltime);
-
         nowPlayingPanel.setPlayButton(getPropertiesResult.speed > 0);
         nowPlayingPanel.setShuffled(getPropertiesResult.shuffled);
         nowPlayingPanel.setRepeatMode(getPropertiesResult.repeat);
-        nowPlayingPanel.setSpeed(getPropertiesResult.speed);
 
         switch (getItemResult.type) {
             case ListType.ItemsAll.TYPE_MOVIE:
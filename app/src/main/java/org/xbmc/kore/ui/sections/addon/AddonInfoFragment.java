@@ -18,7 +18,6 @@ package org.xbmc.kore.ui.sections.addon;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.os.Bundle;
-import android.os.Handler;
 import android.view.View;
 import android.widget.ImageButton;
 import android.widget.Toast;
@@ -45,11 +44,6 @@ public class AddonInfoFragment extends AbstractInfoFragment {
     public static final String BUNDLE_KEY_ADDONID = "addonid";
     public static final String BUNDLE_KEY_BROWSABLE = "browsable";
 
-    /**
-     * Handler on which to post RPC callbacks
-     */
-    private Handler callbackHandler = new Handler();
-
     private String addonId;
 
     @Override
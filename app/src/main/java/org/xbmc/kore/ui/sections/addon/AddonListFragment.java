@@ -19,37 +19,35 @@ import android.annotation.TargetApi;
 import android.app.Activity;
 import android.content.Context;
 import android.content.res.Resources;
+import android.database.Cursor;
+import android.net.Uri;
 import android.os.Bundle;
-import android.os.Handler;
+import android.provider.BaseColumns;
+import android.support.v4.content.CursorLoader;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.AdapterView;
-import android.widget.ArrayAdapter;
-import android.widget.BaseAdapter;
+import android.widget.CursorAdapter;
 import android.widget.ImageView;
 import android.widget.TextView;
-import android.widget.Toast;
 
 import org.xbmc.kore.R;
+import org.xbmc.kore.host.HostInfo;
 import org.xbmc.kore.host.HostManager;
-import org.xbmc.kore.jsonrpc.ApiCallback;
-import org.xbmc.kore.jsonrpc.method.Addons;
 import org.xbmc.kore.jsonrpc.type.AddonType;
+import org.xbmc.kore.provider.MediaContract;
+import org.xbmc.kore.service.library.LibrarySyncService;
+import org.xbmc.kore.ui.AbstractCursorListFragment;
 import org.xbmc.kore.ui.AbstractInfoFragment;
-import org.xbmc.kore.ui.AbstractListFragment;
 import org.xbmc.kore.utils.LogUtils;
 import org.xbmc.kore.utils.UIUtils;
 import org.xbmc.kore.utils.Utils;
 
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
-
 /**
- * Fragment that presents the movie list
+ * Fragment that presents the addons list, from the local database.
+ * The list is reconciled with the host in the background when it's shown.
  */
-public class AddonListFragment extends AbstractListFragment {
+public class AddonListFragment extends AbstractCursorListFragment {
     private static final String TAG = LogUtils.makeLogTag(AddonListFragment.class);
 
     public interface OnAddonSelectedListener {
@@ -59,28 +57,29 @@ public class AddonListFragment extends AbstractListFragment {
     // Activity listener
     private OnAddonSelectedListener listenerActivity;
 
-    /**
-     * Handler on which to post RPC callbacks
-     */
-    private Handler callbackHandler = new Handler();
+    @Override
+    protected String getListSyncType() { return LibrarySyncService.SYNC_ADDONS; }
 
     @Override
-    protected AdapterView.OnItemClickListener createOnItemClickListener() {
-        return new AdapterView.OnItemClickListener() {
-            @Override
-            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-                // Get the movie id from the tag
-                ViewHolder tag = (ViewHolder) view.getTag();
-                // Notify the activity
-                listenerActivity.onAddonSelected(tag);
-            }
-        };
+    protected void onListItemClicked(View view) {
+        // Get the addon from the tag
+        ViewHolder tag = (ViewHolder) view.getTag();
+        // Notify the activity
+        listenerActivity.onAddonSelected(tag);
     }
 
+    @Override
+    protected CursorAdapter createAdapter() {
+        return new AddonsAdapter(getActivity());
+    }
 
     @Override
-    protected BaseAdapter createAdapter() {
-        return new AddonsAdapter(getActivity(), R.layout.grid_item_addon);
+    protected CursorLoader createCursorLoader() {
+        HostInfo hostInfo = HostManager.getInstance(getActivity()).getHostInfo();
+        Uri uri = MediaContract.Addons.buildAddonsListUri(hostInfo != null ? hostInfo.getId() : -1);
+
+        return new CursorLoader(getActivity(), uri,
+                                AddonListQuery.PROJECTION, null, null, AddonListQuery.SORT);
     }
 
     @Override
@@ -88,8 +87,10 @@ public class AddonListFragment extends AbstractListFragment {
         super.onActivityCreated(savedInstanceState);
         setHasOptionsMenu(false);
 
-        if (getAdapter().getCount() == 0)
-            callGetAddonsAndSetup();
+        if (savedInstanceState == null) {
+            // Show the stored addons right away, and refresh them in the background if old
+            startSilentSync();
+        }
     }
 
     @Override
@@ -108,95 +109,46 @@ public class AddonListFragment extends AbstractListFragment {
         listenerActivity = null;
     }
 
-    @Override
-    public void onRefresh () {
-        if (HostManager.getInstance(getActivity()).getHostInfo() != null) {
-            callGetAddonsAndSetup();
-        } else {
-            hideRefreshAnimation();
-            Toast.makeText(getActivity(), R.string.no_xbmc_configured, Toast.LENGTH_SHORT)
-                 .show();
-        }
-    }
-    public class AddonNameComparator implements Comparator<AddonType.Details>
-    {
-        public int compare(AddonType.Details left, AddonType.Details right) {
-            return left.name.toLowerCase().compareTo(right.name.toLowerCase());
-        }
-    }
     /**
-     * Get the addons list and setup the gridview
+     * Addons list query parameters.
      */
-    private void callGetAddonsAndSetup() {
-        final AddonsAdapter adapter = (AddonsAdapter) getAdapter();
-
-        showRefreshAnimation();
-        // Get the addon list, this is done asyhnchronously
-        String[] properties = new String[] {
-                AddonType.Fields.NAME, AddonType.Fields.VERSION, AddonType.Fields.SUMMARY,
-                AddonType.Fields.DESCRIPTION,  AddonType.Fields.PATH, AddonType.Fields.AUTHOR,
-                AddonType.Fields.THUMBNAIL, AddonType.Fields.DISCLAIMER, AddonType.Fields.FANART,
-                //AddonType.Fields.DEPENDENCIES, AddonType.Fields.BROKEN, AddonType.Fields.EXTRAINFO,
-                AddonType.Fields.RATING, AddonType.Fields.ENABLED
+    private interface AddonListQuery {
+        String[] PROJECTION = {
+                BaseColumns._ID,
+                MediaContract.Addons.ADDONID,
+                MediaContract.Addons.TYPE,
+                MediaContract.Addons.NAME,
+                MediaContract.Addons.VERSION,
+                MediaContract.Addons.SUMMARY,
+                MediaContract.Addons.DESCRIPTION,
+                MediaContract.Addons.AUTHOR,
+                MediaContract.Addons.THUMBNAIL,
+                MediaContract.Addons.FANART,
         };
-        Addons.GetAddons action = new Addons.GetAddons(properties);
-        action.execute(HostManager.getInstance(getActivity()).getConnection(),
-                       new ApiCallback<List<AddonType.Details>>() {
-                           @Override
-                           public void onSuccess(List<AddonType.Details> result) {
-                               if (!isAdded()) return;
-
-                               for (AddonType.Details addon : result) {
-                                   String regex = "\\[.*?\\]";
-                                   addon.name = addon.name.replaceAll(regex, "");
-                                   addon.description = addon.description.replaceAll(regex, "");
-                                   addon.summary = addon.summary.replaceAll(regex, "");
-                                   addon.author = addon.author.replaceAll(regex, "");
-                               }
-                               Collections.sort(result, new AddonNameComparator());
-
-                               adapter.clear();
-                               for (AddonType.Details addon : result) {
-                                   if (addon.type.equals(AddonType.Types.UNKNOWN) ||
-                                       addon.type.equals(AddonType.Types.XBMC_PYTHON_PLUGINSOURCE) ||
-                                       addon.type.equals(AddonType.Types.XBMC_PYTHON_SCRIPT) ||
-                                       addon.type.equals(AddonType.Types.XBMC_ADDON_AUDIO) ||
-                                       addon.type.equals(AddonType.Types.XBMC_ADDON_EXECUTABLE) ||
-                                       addon.type.equals(AddonType.Types.XBMC_ADDON_VIDEO) ||
-                                       addon.type.equals(AddonType.Types.XBMC_ADDON_IMAGE)) {
-                                       adapter.add(addon);
-                                   }
-                               }
-
-                               adapter.notifyDataSetChanged();
-                               hideRefreshAnimation();
-
-                               if(adapter.getCount() == 0) {
-                                   getEmptyView().setText(R.string.no_addons_found_refresh);
-                               }
-                           }
-
-                           @Override
-                           public void onError(int errorCode, String description) {
-                               if (!isAdded()) return;
-
-                               Toast.makeText(getActivity(),
-                                              String.format(getString(R.string.error_getting_addon_info), description),
-                                              Toast.LENGTH_SHORT).show();
-                               hideRefreshAnimation();
-                           }
-                       }, callbackHandler);
+
+        String SORT = MediaContract.Addons.NAME + " COLLATE NOCASE ASC";
+
+        int ID = 0;
+        int ADDONID = 1;
+        int TYPE = 2;
+        int NAME = 3;
+        int VERSION = 4;
+        int SUMMARY = 5;
+        int DESCRIPTION = 6;
+        int AUTHOR = 7;
+        int THUMBNAIL = 8;
+        int FANART = 9;
     }
 
-    private class AddonsAdapter extends ArrayAdapter<AddonType.Details> {
+    private class AddonsAdapter extends CursorAdapter {
 
         private HostManager hostManager;
         private int artWidth, artHeight;
         private String author;
         private String version;
 
-        public AddonsAdapter(Context context, int resource) {
-            super(context, resource);
+        public AddonsAdapter(Context context) {
+            super(context, null, false);
             this.hostManager = HostManager.getInstance(context);
 
             // Get the art dimensions
@@ -211,46 +163,52 @@ public class AddonListFragment extends AbstractListFragment {
         }
 
         /** {@inheritDoc} */
-        @TargetApi(21)
         @Override
-        public View getView(int position, View convertView, ViewGroup parent) {
-            if (convertView == null) {
-                convertView = LayoutInflater.from(getActivity())
+        public View newView(Context context, final Cursor cursor, ViewGroup parent) {
+            final View view = LayoutInflater.from(context)
                                             .inflate(R.layout.grid_item_addon, parent, false);
 
-                // Setup View holder pattern
-                ViewHolder viewHolder = new ViewHolder();
-                viewHolder.titleView = (TextView)convertView.findViewById(R.id.title);
-                viewHolder.detailsView = (TextView)convertView.findViewById(R.id.details);
-                viewHolder.artView = (ImageView)convertView.findViewById(R.id.art);
-                convertView.setTag(viewHolder);
-            }
+            // Setup View holder pattern
+            ViewHolder viewHolder = new ViewHolder();
+            viewHolder.titleView = (TextView)view.findViewById(R.id.title);
+            viewHolder.detailsView = (TextView)view.findViewById(R.id.details);
+            viewHolder.artView = (ImageView)view.findViewById(R.id.art);
+            view.setTag(viewHolder);
+            return view;
+        }
 
-            final ViewHolder viewHolder = (ViewHolder)convertView.getTag();
-            AddonType.Details addonDetails = this.getItem(position);
-
-            viewHolder.dataHolder.setTitle(addonDetails.name);
-            viewHolder.dataHolder.setDescription(addonDetails.description);
-            viewHolder.dataHolder.setUndertitle(addonDetails.summary);
-            viewHolder.dataHolder.setFanArtUrl(addonDetails.fanart);
-            viewHolder.dataHolder.setPosterUrl(addonDetails.thumbnail);
-            viewHolder.dataHolder.setDetails(author + " " + addonDetails.author + "\n" +
-                                             version + " " +addonDetails.version);
-            viewHolder.dataHolder.getBundle().putString(AddonInfoFragment.BUNDLE_KEY_ADDONID, addonDetails.addonid);
+        /** {@inheritDoc} */
+        @TargetApi(21)
+        @Override
+        public void bindView(View view, Context context, Cursor cursor) {
+            final ViewHolder viewHolder = (ViewHolder)view.getTag();
+
+            String addonId = cursor.getString(AddonListQuery.ADDONID);
+            String summary = cursor.getString(AddonListQuery.SUMMARY);
+            String thumbnail = cursor.getString(AddonListQuery.THUMBNAIL);
+
+            viewHolder.dataHolder.setTitle(cursor.getString(AddonListQuery.NAME));
+            viewHolder.dataHolder.setDescription(cursor.getString(AddonListQuery.DESCRIPTION));
+            viewHolder.dataHolder.setUndertitle(summary);
+            viewHolder.dataHolder.setFanArtUrl(cursor.getString(AddonListQuery.FANART));
+            viewHolder.dataHolder.setPosterUrl(thumbnail);
+            viewHolder.dataHolder.setDetails(author + " " + cursor.getString(AddonListQuery.AUTHOR) + "\n" +
+                                             version + " " + cursor.getString(AddonListQuery.VERSION));
+            viewHolder.dataHolder.getBundle().putString(AddonInfoFragment.BUNDLE_KEY_ADDONID, addonId);
             viewHolder.dataHolder.getBundle().putBoolean(AddonInfoFragment.BUNDLE_KEY_BROWSABLE,
-                                                         AddonType.Types.XBMC_PYTHON_PLUGINSOURCE.equals(addonDetails.type));
+                                                         AddonType.Types.XBMC_PYTHON_PLUGINSOURCE.equals(
+                                                                 cursor.getString(AddonListQuery.TYPE)));
 
             viewHolder.titleView.setText(viewHolder.dataHolder.getTitle());
-            viewHolder.detailsView.setText(addonDetails.summary);
+            viewHolder.detailsView.setText(summary);
 
-            UIUtils.loadImageWithCharacterAvatar(getContext(), hostManager,
-                                                 addonDetails.thumbnail, viewHolder.dataHolder.getTitle(),
+            UIUtils.loadImageWithCharacterAvatar(context, hostManager,
+                                                 thumbnail, viewHolder.dataHolder.getTitle(),
                                                  viewHolder.artView, artWidth, artHeight);
 
             if(Utils.isLollipopOrLater()) {
-                viewHolder.artView.setTransitionName("a"+addonDetails.addonid);
+                viewHolder.artView.setTransitionName("a" + addonId);
             }
-            return convertView;
         }
     }
 
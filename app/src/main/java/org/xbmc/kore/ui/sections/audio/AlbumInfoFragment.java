@@ -19,7 +19,6 @@ package org.xbmc.kore.ui.sections.audio;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
-import android.os.Handler;
 import android.provider.BaseColumns;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.CursorLoader;
@@ -55,7 +54,6 @@ public class AlbumInfoFragment extends AbstractInfoFragment
 
     private static final int LOADER_ALBUM = 0;
 
-    private Handler callbackHandler = new Handler();
     private AlbumSongsListFragment albumSongsListFragment;
 
     @Override
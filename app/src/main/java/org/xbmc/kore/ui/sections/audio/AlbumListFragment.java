@@ -33,6 +33,7 @@ import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.CursorAdapter;
 import android.widget.ImageView;
 import android.widget.PopupMenu;
@@ -48,6 +49,7 @@ import org.xbmc.kore.provider.MediaDatabase;
 import org.xbmc.kore.service.library.LibrarySyncService;
 import org.xbmc.kore.ui.AbstractCursorListFragment;
 import org.xbmc.kore.ui.AbstractInfoFragment;
+import org.xbmc.kore.ui.ArtworkPrefetcher;
 import org.xbmc.kore.utils.LogUtils;
 import org.xbmc.kore.utils.MediaPlayerUtils;
 import org.xbmc.kore.utils.UIUtils;
@@ -166,6 +168,13 @@ public class AlbumListFragment extends AbstractCursorListFragment {
         return new AlbumsAdapter(getActivity());
     }
 
+    @Override
+    protected AbsListView.OnScrollListener createOnScrollListener() {
+        AlbumsAdapter adapter = (AlbumsAdapter) getAdapter();
+        return new ArtworkPrefetcher(adapter.hostManager, AlbumListQuery.THUMBNAIL,
+                                     adapter.artWidth, adapter.artHeight);
+    }
+
     @Override
     protected CursorLoader createCursorLoader() {
         Uri uri;
@@ -176,14 +185,17 @@ public class AlbumListFragment extends AbstractCursorListFragment {
             uri = MediaContract.AlbumArtists.buildAlbumsForArtistListUri(hostId, artistId);
         } else if (genreId != -1) {
             uri = MediaContract.AlbumGenres.buildAlbumsForGenreListUri(hostId, genreId);
+        } else if (!TextUtils.isEmpty(getSearchFilter())) {
+            uri = MediaContract.Albums.buildAlbumsSearchUri(hostId, getSearchFilter());
         } else {
             uri = MediaContract.Albums.buildAlbumsListUri(hostId);
         }
 
+        // Albums of an artist or genre are few, so they're filtered with a simple like
         String selection = null;
         String selectionArgs[] = null;
         String searchFilter = getSearchFilter();
-        if (!TextUtils.isEmpty(searchFilter)) {
+        if (!TextUtils.isEmpty(searchFilter) && ((artistId != -1) || (genreId != -1))) {
             selection = MediaContract.Albums.TITLE + " LIKE ?";
             selectionArgs = new String[] {"%" + searchFilter + "%"};
         }
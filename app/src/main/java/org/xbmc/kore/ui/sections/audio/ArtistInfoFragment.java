@@ -19,7 +19,6 @@ package org.xbmc.kore.ui.sections.audio;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
-import android.os.Handler;
 import android.provider.BaseColumns;
 import android.support.annotation.Nullable;
 import android.support.v4.app.LoaderManager;
@@ -53,10 +52,6 @@ public class ArtistInfoFragment extends AbstractInfoFragment
     private static final int LOADER_ARTIST = 0,
             LOADER_SONGS = 1;
 
-    /**
-     * Handler on which to post RPC callbacks
-     */
-    private Handler callbackHandler = new Handler();
 
     @Override
     protected AbstractAdditionalInfoFragment getAdditionalInfoFragment() {
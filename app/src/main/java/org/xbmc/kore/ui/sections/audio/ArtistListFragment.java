@@ -79,18 +79,18 @@ public class ArtistListFragment extends AbstractCursorListFragment {
     @Override
     protected CursorLoader createCursorLoader() {
         HostInfo hostInfo = HostManager.getInstance(getActivity()).getHostInfo();
-        Uri uri = MediaContract.Artists.buildArtistsListUri(hostInfo != null ? hostInfo.getId() : -1);
+        int hostId = hostInfo != null ? hostInfo.getId() : -1;
 
-        String selection = null;
-        String selectionArgs[] = null;
+        Uri uri;
         String searchFilter = getSearchFilter();
         if (!TextUtils.isEmpty(searchFilter)) {
-            selection = MediaContract.ArtistsColumns.ARTIST + " LIKE ?";
-            selectionArgs = new String[] {"%" + searchFilter + "%"};
+            uri = MediaContract.Artists.buildArtistsSearchUri(hostId, searchFilter);
+        } else {
+            uri = MediaContract.Artists.buildArtistsListUri(hostId);
         }
 
         return new CursorLoader(getActivity(), uri,
-                ArtistListQuery.PROJECTION, selection, selectionArgs, ArtistListQuery.SORT);
+                ArtistListQuery.PROJECTION, null, null, ArtistListQuery.SORT);
     }
 
     @Override
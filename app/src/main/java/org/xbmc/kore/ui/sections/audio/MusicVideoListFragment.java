@@ -75,18 +75,18 @@ public class MusicVideoListFragment extends AbstractCursorListFragment {
     @Override
     protected CursorLoader createCursorLoader() {
         HostInfo hostInfo = HostManager.getInstance(getActivity()).getHostInfo();
-        Uri uri = MediaContract.MusicVideos.buildMusicVideosListUri(hostInfo != null ? hostInfo.getId() : -1);
+        int hostId = hostInfo != null ? hostInfo.getId() : -1;
 
-        String selection = null;
-        String selectionArgs[] = null;
+        Uri uri;
         String searchFilter = getSearchFilter();
         if (!TextUtils.isEmpty(searchFilter)) {
-            selection = MediaContract.MusicVideosColumns.TITLE + " LIKE ?";
-            selectionArgs = new String[] {"%" + searchFilter + "%"};
+            uri = MediaContract.MusicVideos.buildMusicVideosSearchUri(hostId, searchFilter);
+        } else {
+            uri = MediaContract.MusicVideos.buildMusicVideosListUri(hostId);
         }
 
         return new CursorLoader(getActivity(), uri,
-                MusicVideosListQuery.PROJECTION, selection, selectionArgs, MusicVideosListQuery.SORT);
+                MusicVideosListQuery.PROJECTION, null, null, MusicVideosListQuery.SORT);
     }
 
     @Override
@@ -120,14 +120,17 @@ public class SongsListFragment extends AbstractCursorListFragment {
             uri = MediaContract.Songs.buildArtistSongsListUri(hostId, artistId);
         } else if (albumId != -1) {
             uri = MediaContract.Songs.buildAlbumSongsListUri(hostId, albumId);
+        } else if (!TextUtils.isEmpty(getSearchFilter())) {
+            uri = MediaContract.Songs.buildSongsSearchUri(hostId, getSearchFilter());
         } else { // get all songs
             uri = MediaContract.Songs.buildSongsListUri(hostId);
         }
 
+        // Songs of an artist or album are few, so they're filtered with a simple like
         String selection = null;
         String selectionArgs[] = null;
         String searchFilter = getSearchFilter();
-        if (!TextUtils.isEmpty(searchFilter)) {
+        if (!TextUtils.isEmpty(searchFilter) && ((artistId != -1) || (albumId != -1))) {
             selection = MediaDatabase.Tables.SONGS + "." + MediaContract.Songs.TITLE + " LIKE ?";
             selectionArgs = new String[] {"%" + searchFilter + "%"};
         }
@@ -17,151 +17,140 @@ package org.xbmc.kore.ui.sections.favourites;
 
 import android.content.Context;
 import android.content.res.Resources;
+import android.database.Cursor;
+import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
-import android.support.annotation.NonNull;
+import android.provider.BaseColumns;
 import android.support.annotation.Nullable;
 import android.support.annotation.StringRes;
-import android.support.v4.widget.SwipeRefreshLayout;
+import android.support.v4.content.CursorLoader;
 import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.AdapterView;
-import android.widget.ArrayAdapter;
-import android.widget.BaseAdapter;
+import android.widget.CursorAdapter;
 import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import org.xbmc.kore.R;
+import org.xbmc.kore.host.HostInfo;
 import org.xbmc.kore.host.HostManager;
 import org.xbmc.kore.jsonrpc.ApiCallback;
-import org.xbmc.kore.jsonrpc.ApiList;
-import org.xbmc.kore.jsonrpc.method.Favourites;
 import org.xbmc.kore.jsonrpc.method.GUI;
 import org.xbmc.kore.jsonrpc.type.FavouriteType;
 import org.xbmc.kore.jsonrpc.type.PlaylistType;
-import org.xbmc.kore.ui.AbstractListFragment;
-import org.xbmc.kore.utils.LogUtils;
+import org.xbmc.kore.provider.MediaContract;
+import org.xbmc.kore.service.library.LibrarySyncService;
+import org.xbmc.kore.ui.AbstractCursorListFragment;
 import org.xbmc.kore.utils.MediaPlayerUtils;
 import org.xbmc.kore.utils.UIUtils;
 
-import java.util.List;
-
 import butterknife.ButterKnife;
 
-public class FavouritesListFragment extends AbstractListFragment implements SwipeRefreshLayout.OnRefreshListener {
+/**
+ * Fragment that presents the favourites, from the local database.
+ * The list is reconciled with the host in the background when it's shown.
+ */
+public class FavouritesListFragment extends AbstractCursorListFragment {
     private static final String TAG = "FavouritesListFragment";
 
     private Handler callbackHandler = new Handler();
 
+    private final ApiCallback<String> genericApiCallback = new ApiCallback<String>() {
+        @Override
+        public void onSuccess(String result) {
+            // Do Nothing
+        }
+
+        @Override
+        public void onError(int errorCode, String description) {
+            if (!isAdded()) return;
+            Toast.makeText(getActivity(), description, Toast.LENGTH_SHORT).show();
+        }
+    };
+
     @Override
     public void onActivityCreated(@Nullable Bundle savedInstanceState) {
         super.onActivityCreated(savedInstanceState);
-        getFavourites();
+
+        if (savedInstanceState == null) {
+            // Show the stored favourites right away, and refresh them in the background if old
+            startSilentSync();
+        }
     }
 
     @Override
-    protected AdapterView.OnItemClickListener createOnItemClickListener() {
-        final ApiCallback<String> genericApiCallback = new ApiCallback<String>() {
-            @Override
-            public void onSuccess(String result) {
-                // Do Nothing
-            }
+    protected String getListSyncType() { return LibrarySyncService.SYNC_FAVOURITES; }
 
-            @Override
-            public void onError(int errorCode, String description) {
-                Toast.makeText(getActivity(), description, Toast.LENGTH_SHORT).show();
-            }
-        };
-        return new AdapterView.OnItemClickListener() {
-            @Override
-            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-                final FavouritesAdapter favouritesAdapter = (FavouritesAdapter) getAdapter();
-                final HostManager hostManager = HostManager.getInstance(getActivity());
-
-                final FavouriteType.DetailsFavourite detailsFavourite =
-                        favouritesAdapter.getItem(position);
-                if (detailsFavourite == null) {
-                    return;
-                }
-                if (detailsFavourite.type.equals(FavouriteType.FavouriteTypeEnum.WINDOW)
-                        && !TextUtils.isEmpty(detailsFavourite.window)) {
-                    GUI.ActivateWindow activateWindow = new GUI.ActivateWindow(detailsFavourite.window,
-                            detailsFavourite.windowParameter);
-                    hostManager.getConnection().execute(activateWindow, genericApiCallback, callbackHandler);
-                } else if (detailsFavourite.type.equals(FavouriteType.FavouriteTypeEnum.MEDIA)
-                        && !TextUtils.isEmpty(detailsFavourite.path)) {
-                    final PlaylistType.Item playlistItem = new PlaylistType.Item();
-                    playlistItem.file = detailsFavourite.path;
-                    MediaPlayerUtils.play(FavouritesListFragment.this, playlistItem);
-                } else {
-                    Toast.makeText(getActivity(), R.string.unable_to_play_favourite_item,
-                            Toast.LENGTH_SHORT).show();
-                }
-            }
-        };
+    @Override
+    protected void onListItemClicked(View view) {
+        final FavouriteItemViewHolder vh = (FavouriteItemViewHolder) view.getTag();
+        final HostManager hostManager = HostManager.getInstance(getActivity());
+
+        if (FavouriteType.FavouriteTypeEnum.WINDOW.equals(vh.type)
+                && !TextUtils.isEmpty(vh.window)) {
+            GUI.ActivateWindow activateWindow = new GUI.ActivateWindow(vh.window, vh.windowParameter);
+            hostManager.getConnection().execute(activateWindow, genericApiCallback, callbackHandler);
+        } else if (FavouriteType.FavouriteTypeEnum.MEDIA.equals(vh.type)
+                && !TextUtils.isEmpty(vh.path)) {
+            final PlaylistType.Item playlistItem = new PlaylistType.Item();
+            playlistItem.file = vh.path;
+            MediaPlayerUtils.play(FavouritesListFragment.this, playlistItem);
+        } else {
+            Toast.makeText(getActivity(), R.string.unable_to_play_favourite_item,
+                    Toast.LENGTH_SHORT).show();
+        }
     }
 
     @Override
-    protected BaseAdapter createAdapter() {
+    protected CursorAdapter createAdapter() {
         return new FavouritesAdapter(getActivity(), HostManager.getInstance(getActivity()));
     }
 
     @Override
-    public void onRefresh() {
-        getFavourites();
-    }
-
-    private void getFavourites() {
-        final HostManager hostManager = HostManager.getInstance(getActivity());
-        final Favourites.GetFavourites action = new Favourites.GetFavourites();
-
-        hostManager.getConnection().execute(action, new ApiCallback<ApiList<FavouriteType.DetailsFavourite>>() {
-            @Override
-            public void onSuccess(ApiList<FavouriteType.DetailsFavourite> result) {
-                if (!isAdded()) return;
-                LogUtils.LOGD(TAG, "Got Favourites");
-
-                // To prevent the empty text from appearing on the first load, set it now
-                getEmptyView().setText(getString(R.string.no_channels_found_refresh));
-                setupFavouritesList(result.items);
-                hideRefreshAnimation();
-            }
+    protected CursorLoader createCursorLoader() {
+        HostInfo hostInfo = HostManager.getInstance(getActivity()).getHostInfo();
+        Uri uri = MediaContract.Favourites.buildFavouritesListUri(hostInfo != null ? hostInfo.getId() : -1);
 
-            @Override
-            public void onError(int errorCode, String description) {
-                if (!isAdded()) return;
-                LogUtils.LOGD(TAG, "Error getting favourites: " + description);
-
-                getEmptyView().setText(getString(R.string.error_favourites, description));
-                Toast.makeText(getActivity(), getString(R.string.error_favourites, description),
-                        Toast.LENGTH_SHORT).show();
-                hideRefreshAnimation();
-            }
-        }, callbackHandler);
+        return new CursorLoader(getActivity(), uri,
+                FavouritesListQuery.PROJECTION, null, null, FavouritesListQuery.SORT);
     }
 
     /**
-     * Called to set the GridView with the favourites that are coming from the host.
-     *
-     * @param favourites the favourites list that is supplied to the GridView.
+     * Favourites list query parameters.
      */
-    private void setupFavouritesList(List<FavouriteType.DetailsFavourite> favourites) {
-        final FavouritesAdapter favouritesAdapter = (FavouritesAdapter) getAdapter();
-        favouritesAdapter.clear();
-        favouritesAdapter.addAll(favourites);
-        favouritesAdapter.notifyDataSetChanged();
+    private interface FavouritesListQuery {
+        String[] PROJECTION = {
+                BaseColumns._ID,
+                MediaContract.Favourites.TITLE,
+                MediaContract.Favourites.TYPE,
+                MediaContract.Favourites.PATH,
+                MediaContract.Favourites.WINDOW,
+                MediaContract.Favourites.WINDOW_PARAMETER,
+                MediaContract.Favourites.THUMBNAIL,
+        };
+
+        // Same order as Kodi
+        String SORT = BaseColumns._ID + " ASC";
+
+        int ID = 0;
+        int TITLE = 1;
+        int TYPE = 2;
+        int PATH = 3;
+        int WINDOW = 4;
+        int WINDOW_PARAMETER = 5;
+        int THUMBNAIL = 6;
     }
 
-    private static class FavouritesAdapter extends ArrayAdapter<FavouriteType.DetailsFavourite> {
+    private static class FavouritesAdapter extends CursorAdapter {
 
         private final HostManager hostManager;
         private final int artWidth, artHeight;
 
-        FavouritesAdapter(@NonNull Context context, HostManager hostManager) {
-            super(context, R.layout.grid_item_channel);
+        FavouritesAdapter(Context context, HostManager hostManager) {
+            super(context, null, false);
             this.hostManager = hostManager;
             Resources resources = context.getResources();
             artWidth = (int) (resources.getDimension(R.dimen.channellist_art_width) /
@@ -170,26 +159,32 @@ public class FavouritesListFragment extends AbstractListFragment implements Swip
                     UIUtils.IMAGE_RESIZE_FACTOR);
         }
 
-        @NonNull
         @Override
-        public View getView(int position, @Nullable View convertView, @NonNull ViewGroup parent) {
-            if (convertView == null) {
-                convertView = LayoutInflater.from(getContext()).inflate(R.layout.grid_item_channel,
-                        parent, false);
-                final FavouriteItemViewHolder vh = new FavouriteItemViewHolder(convertView);
-                convertView.setTag(vh);
-            }
-
-            final FavouriteItemViewHolder vh = (FavouriteItemViewHolder) convertView.getTag();
-            final FavouriteType.DetailsFavourite favouriteDetail = getItem(position);
+        public View newView(Context context, Cursor cursor, ViewGroup parent) {
+            final View view = LayoutInflater.from(context).inflate(R.layout.grid_item_channel,
+                    parent, false);
+            final FavouriteItemViewHolder vh = new FavouriteItemViewHolder(view);
+            view.setTag(vh);
 
             // We don't need the context menu here.
             vh.contextMenu.setVisibility(View.GONE);
+            return view;
+        }
 
-            vh.titleView.setText(favouriteDetail.title);
+        @Override
+        public void bindView(View view, Context context, Cursor cursor) {
+            final FavouriteItemViewHolder vh = (FavouriteItemViewHolder) view.getTag();
+
+            vh.title = cursor.getString(FavouritesListQuery.TITLE);
+            vh.type = cursor.getString(FavouritesListQuery.TYPE);
+            vh.path = cursor.getString(FavouritesListQuery.PATH);
+            vh.window = cursor.getString(FavouritesListQuery.WINDOW);
+            vh.windowParameter = cursor.getString(FavouritesListQuery.WINDOW_PARAMETER);
+
+            vh.titleView.setText(vh.title);
 
             @StringRes final int typeRes;
-            switch (favouriteDetail.type) {
+            switch (vh.type != null ? vh.type : "") {
                 case FavouriteType.FavouriteTypeEnum.MEDIA:
                     typeRes = R.string.media;
                     break;
@@ -204,11 +199,9 @@ public class FavouritesListFragment extends AbstractListFragment implements Swip
             }
             vh.detailView.setText(typeRes);
 
-            UIUtils.loadImageWithCharacterAvatar(getContext(), hostManager,
-                    favouriteDetail.thumbnail, favouriteDetail.title,
+            UIUtils.loadImageWithCharacterAvatar(context, hostManager,
+                    cursor.getString(FavouritesListQuery.THUMBNAIL), vh.title,
                     vh.artView, artWidth, artHeight);
-
-            return convertView;
         }
     }
 
@@ -218,6 +211,8 @@ public class FavouritesListFragment extends AbstractListFragment implements Swip
         final TextView titleView;
         final TextView detailView;
 
+        String title, type, path, window, windowParameter;
+
         FavouriteItemViewHolder(View v) {
             artView = ButterKnife.findById(v, R.id.art);
             contextMenu = ButterKnife.findById(v, R.id.list_context_menu);
@@ -175,6 +175,13 @@ public class MediaFileListFragment extends AbstractListFragment {
         return root;
     }
 
+    @Override
+    public void onDestroyView() {
+        // Don't keep listing a directory nobody is going to see
+        hostManager.cancelRequests(callbackHandler);
+        super.onDestroyView();
+    }
+
     @Override
     public void setUserVisibleHint (boolean isVisibleToUser) {
         super.setUserVisibleHint(isVisibleToUser);
@@ -169,6 +169,8 @@ public class HostListFragment extends Fragment {
      * @param hostInfoRow Host to check
      */
     private void updateHostStatus(final HostInfoRow hostInfoRow) {
+        // Use a throwaway connection, not a pooled one, so that pinging every host doesn't leave
+        // them all connected and reconnecting
         final HostConnection hostConnection = new HostConnection(hostInfoRow.hostInfo);
         JSONRPC.Ping ping = new JSONRPC.Ping();
         ping.execute(hostConnection, new ApiCallback<String>() {
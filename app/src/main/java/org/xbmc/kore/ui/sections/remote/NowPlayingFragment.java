@@ -190,7 +190,8 @@ public class NowPlayingFragment extends Fragment
             @Override
             public void onVolumeChanged(int volume) {
                 new Application.SetVolume(volume)
-                        .execute(hostManager.getConnection(), defaultIntActionCallback, callbackHandler);
+                        .executeLatest(hostManager.getConnection(), HostConnection.CONTROL_VOLUME,
+                                       defaultIntActionCallback, callbackHandler);
             }
         });
 
@@ -212,8 +213,9 @@ public class NowPlayingFragment extends Fragment
         volumeLevelIndicator.setOnVolumeChangeListener(new VolumeLevelIndicator.OnVolumeChangeListener() {
             @Override
             public void onVolumeChanged(int volume) {
-                new Application.SetVolume(volume).execute(hostManager.getConnection(),
-                                                          defaultIntActionCallback, callbackHandler);
+                new Application.SetVolume(volume).executeLatest(hostManager.getConnection(),
+                                                                HostConnection.CONTROL_VOLUME,
+                                                                defaultIntActionCallback, callbackHandler);
             }
         });
 
@@ -235,12 +237,14 @@ public class NowPlayingFragment extends Fragment
         super.onResume();
         hostConnectionObserver.registerPlayerObserver(this, true);
         hostConnectionObserver.registerApplicationObserver(this, true);
+        mediaProgressIndicator.setPlaybackClock(hostConnectionObserver.getPlaybackClock());
     }
 
     @Override
     public void onPause() {
         super.onPause();
         stopNowPlayingInfo();
+        mediaProgressIndicator.setPlaybackClock(null);
         hostConnectionObserver.unregisterPlayerObserver(this);
         hostConnectionObserver.unregisterApplicationObserver(this);
     }
@@ -512,8 +516,7 @@ public class NowPlayingFragment extends Fragment
         // http://forum.xbmc.org/showthread.php?tid=198156
         // Forcing this call through HTTP works, as it doesn't block the TCP listener thread on XBMC
         HostInfo currentHostInfo = hostManager.getHostInfo();
-        HostConnection httpHostConnection = new HostConnection(currentHostInfo);
-        httpHostConnection.setProtocol(HostConnection.PROTOCOL_HTTP);
+        HostConnection httpHostConnection = hostManager.getHttpConnection(currentHostInfo);
 
         GUI.ActivateWindow action = new GUI.ActivateWindow(GUI.ActivateWindow.SUBTITLESEARCH);
 
@@ -617,7 +620,8 @@ public class NowPlayingFragment extends Fragment
     public void onProgressChanged(int progress) {
         PlayerType.PositionTime positionTime = new PlayerType.PositionTime(progress);
         Player.Seek seekAction = new Player.Seek(currentActivePlayerId, positionTime);
-        seekAction.execute(HostManager.getInstance(getContext()).getConnection(), new ApiCallback<PlayerType.SeekReturnType>() {
+        seekAction.executeLatest(HostManager.getInstance(getContext()).getConnection(), HostConnection.CONTROL_SEEK,
+                                 new ApiCallback<PlayerType.SeekReturnType>() {
             @Override
             public void onSuccess(PlayerType.SeekReturnType result) {
                 // Ignore
@@ -741,15 +745,8 @@ public class NowPlayingFragment extends Fragment
         mediaTitle.setText(title);
         mediaUndertitle.setText(underTitle);
 
+        // The progress follows the playback clock
         mediaProgressIndicator.setOnProgressChangeListener(this);
-        mediaProgressIndicator.setMaxProgress(getPropertiesResult.totaltime.ToSeconds());
-        mediaProgressIndicator.setProgress(getPropertiesResult.time.ToSeconds());
-
-        int speed = getPropertiesResult.speed;
-        //TODO: check if following is still necessary for PVR playback
-        if (getItemResult.type.equals(ListType.ItemsAll.TYPE_CHANNEL))
-            speed = 1;
-        mediaProgressIndicator.setSpeed(speed);
 
         if (!TextUtils.isEmpty(year) || !TextUtils.isEmpty(genreSeason)) {
             mediaYear.setVisibility(View.VISIBLE);
@@ -864,9 +861,6 @@ public class NowPlayingFragment extends Fragment
      * Cleans up anything left when stop playing
      */
     private void stopNowPlayingInfo() {
-        // Just stop the seek bar handler callbacks
-        mediaProgressIndicator.setSpeed(0);
-
         availableSubtitles = null;
         availableAudioStreams = null;
         currentSubtitleIndex = -1;
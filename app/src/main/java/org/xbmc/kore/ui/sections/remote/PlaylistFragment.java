@@ -54,6 +54,7 @@ import org.xbmc.kore.utils.LogUtils;
 import org.xbmc.kore.utils.UIUtils;
 import org.xbmc.kore.utils.Utils;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import butterknife.ButterKnife;
@@ -151,6 +152,12 @@ public class PlaylistFragment extends Fragment
         hostConnectionObserver.unregisterPlayerObserver(this);
     }
 
+    @Override
+    public void onDestroyView() {
+        hostManager.cancelRequests(callbackHandler);
+        super.onDestroyView();
+    }
+
     @Override
     public void onCreateOptionsMenu(Menu menu, MenuInflater inflater) {
         inflater.inflate(R.menu.playlist, menu);
@@ -478,11 +485,13 @@ public class PlaylistFragment extends Fragment
         /**
          * Manually set the items on the adapter
          * Calls notifyDataSetChanged()
+         * The items are copied, as the list may be shared with other callers of the same
+         * request and the adapter reorders them in place
          *
          * @param playlistItems Items
          */
         public void setPlaylistItems(List<ListType.ItemsAll> playlistItems) {
-            this.playlistItems = playlistItems;
+            this.playlistItems = (playlistItems == null) ? null : new ArrayList<>(playlistItems);
             notifyDataSetChanged();
         }
 
@@ -48,6 +48,7 @@ import org.xbmc.kore.eventclient.PacketBUTTON;
 import org.xbmc.kore.host.HostConnectionObserver;
 import org.xbmc.kore.host.HostInfo;
 import org.xbmc.kore.host.HostManager;
+import org.xbmc.kore.host.InputDispatcher;
 import org.xbmc.kore.jsonrpc.ApiCallback;
 import org.xbmc.kore.jsonrpc.ApiMethod;
 import org.xbmc.kore.jsonrpc.method.GUI;
@@ -92,6 +93,11 @@ public class RemoteFragment extends Fragment
      */
     private Handler callbackHandler = new Handler();
 
+    /**
+     * Sends the d-pad presses through json-rpc, keeping up with key repeats
+     */
+    private InputDispatcher inputDispatcher;
+
     /**
      * The current active player id
      */
@@ -161,6 +167,7 @@ public class RemoteFragment extends Fragment
         super.onCreate(savedInstanceState);
         hostManager = HostManager.getInstance(getActivity());
         hostConnectionObserver = hostManager.getHostConnectionObserver();
+        inputDispatcher = new InputDispatcher(hostManager, callbackHandler);
 
         buttonInAnim = AnimationUtils.loadAnimation(getActivity(), R.anim.button_in);
         buttonOutAnim = AnimationUtils.loadAnimation(getActivity(), R.anim.button_out);
@@ -201,10 +208,10 @@ public class RemoteFragment extends Fragment
             setupEventServerButton(selectButton, ButtonCodes.REMOTE_SELECT);
         } else {
             // Otherwise, use json-rpc
-            setupRepeatButton(leftButton, new Input.Left());
-            setupRepeatButton(rightButton, new Input.Right());
-            setupRepeatButton(upButton, new Input.Up());
-            setupRepeatButton(downButton, new Input.Down());
+            setupRepeatButton(leftButton, Input.ExecuteAction.LEFT);
+            setupRepeatButton(rightButton, Input.ExecuteAction.RIGHT);
+            setupRepeatButton(upButton, Input.ExecuteAction.UP);
+            setupRepeatButton(downButton, Input.ExecuteAction.DOWN);
 
             setupDefaultButton(selectButton, new Input.Select(), null);
         }
@@ -318,6 +325,9 @@ public class RemoteFragment extends Fragment
     public void onPause() {
         super.onPause();
         hostConnectionObserver.unregisterPlayerObserver(this);
+        inputDispatcher.cancelPending();
+        LogUtils.LOGD(TAG, "Input latency: " + inputDispatcher.getAverageLatency() +
+                           "ms, dropped presses: " + inputDispatcher.getDroppedCount());
         if (eventServerConnection != null) {
             eventServerConnection.quit();
             eventServerConnection = null;
@@ -338,12 +348,19 @@ public class RemoteFragment extends Fragment
                 });
     }
 
-    private void setupRepeatButton(View button, final ApiMethod<String> action) {
+    private void setupRepeatButton(View button, final String action) {
         button.setOnTouchListener(new RepeatListener(UIUtils.initialButtonRepeatInterval, UIUtils.buttonRepeatInterval,
                                                      new View.OnClickListener() {
                                                          @Override
                                                          public void onClick(View v) {
-                                                             action.execute(hostManager.getConnection(), defaultActionCallback, callbackHandler);
+                                                             inputDispatcher.press(action);
+                                                         }
+                                                     },
+                                                     new View.OnClickListener() {
+                                                         @Override
+                                                         public void onClick(View v) {
+                                                             // Don't keep moving after the key is released
+                                                             inputDispatcher.cancelPending();
                                                          }
                                                      }, buttonInAnim, buttonOutAnim, getActivity().getApplicationContext()));
     }
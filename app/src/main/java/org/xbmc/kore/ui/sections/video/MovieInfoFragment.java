@@ -19,7 +19,6 @@ import android.content.DialogInterface;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
-import android.os.Handler;
 import android.provider.BaseColumns;
 import android.support.annotation.Nullable;
 import android.support.v4.app.LoaderManager;
@@ -61,11 +60,6 @@ public class MovieInfoFragment extends AbstractInfoFragment
     // Loader IDs
     private static final int LOADER_MOVIE = 0;
 
-    /**
-     * Handler on which to post RPC callbacks
-     */
-    private Handler callbackHandler = new Handler();
-
     // Controls whether a automatic sync refresh has been issued for this show
     private static boolean hasIssuedOutdatedRefresh = false;
 
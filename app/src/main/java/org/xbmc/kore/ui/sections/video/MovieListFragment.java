@@ -33,6 +33,7 @@ import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.CursorAdapter;
 import android.widget.ImageView;
 import android.widget.TextView;
@@ -46,6 +47,7 @@ import org.xbmc.kore.provider.MediaDatabase;
 import org.xbmc.kore.service.library.LibrarySyncService;
 import org.xbmc.kore.ui.AbstractCursorListFragment;
 import org.xbmc.kore.ui.AbstractInfoFragment;
+import org.xbmc.kore.ui.ArtworkPrefetcher;
 import org.xbmc.kore.utils.LogUtils;
 import org.xbmc.kore.utils.UIUtils;
 import org.xbmc.kore.utils.Utils;
@@ -81,19 +83,29 @@ public class MovieListFragment extends AbstractCursorListFragment {
         return new MoviesAdapter(getActivity());
     }
 
+    @Override
+    protected AbsListView.OnScrollListener createOnScrollListener() {
+        MoviesAdapter adapter = (MoviesAdapter) getAdapter();
+        return new ArtworkPrefetcher(adapter.hostManager, MovieListQuery.THUMBNAIL,
+                                     adapter.artWidth, adapter.artHeight);
+    }
+
     @Override
     protected CursorLoader createCursorLoader() {
         HostInfo hostInfo = HostManager.getInstance(getActivity()).getHostInfo();
-        Uri uri = MediaContract.Movies.buildMoviesListUri(hostInfo != null? hostInfo.getId() : -1);
+        int hostId = hostInfo != null? hostInfo.getId() : -1;
 
-        StringBuilder selection = new StringBuilder();
-        String selectionArgs[] = null;
+        Uri uri;
         String searchFilter = getSearchFilter();
         if (!TextUtils.isEmpty(searchFilter)) {
-            selection.append(MediaContract.MoviesColumns.TITLE + " LIKE ?");
-            selectionArgs = new String[] {"%" + searchFilter + "%"};
+            uri = MediaContract.Movies.buildMoviesSearchUri(hostId, searchFilter);
+        } else {
+            uri = MediaContract.Movies.buildMoviesListUri(hostId);
         }
 
+        StringBuilder selection = new StringBuilder();
+        String selectionArgs[] = null;
+
         SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(getActivity());
         if (preferences.getBoolean(Settings.KEY_PREF_MOVIES_FILTER_HIDE_WATCHED, Settings.DEFAULT_PREF_MOVIES_FILTER_HIDE_WATCHED)) {
             if (selection.length() != 0)
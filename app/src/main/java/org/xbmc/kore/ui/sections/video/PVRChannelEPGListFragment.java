@@ -16,9 +16,13 @@
 package org.xbmc.kore.ui.sections.video;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.os.Bundle;
-import android.os.Handler;
+import android.provider.BaseColumns;
 import android.support.v4.app.Fragment;
+import android.support.v4.app.LoaderManager;
+import android.support.v4.content.CursorLoader;
+import android.support.v4.content.Loader;
 import android.support.v4.widget.SwipeRefreshLayout;
 import android.text.format.DateUtils;
 import android.view.LayoutInflater;
@@ -27,13 +31,13 @@ import android.view.ViewGroup;
 import android.widget.ArrayAdapter;
 import android.widget.ListView;
 import android.widget.TextView;
-import android.widget.Toast;
 
 import org.xbmc.kore.R;
 import org.xbmc.kore.host.HostManager;
-import org.xbmc.kore.jsonrpc.ApiCallback;
-import org.xbmc.kore.jsonrpc.method.PVR;
-import org.xbmc.kore.jsonrpc.type.PVRType;
+import org.xbmc.kore.jsonrpc.event.MediaSyncEvent;
+import org.xbmc.kore.provider.MediaContract;
+import org.xbmc.kore.service.library.LibrarySyncService;
+import org.xbmc.kore.ui.generic.RefreshItem;
 import org.xbmc.kore.utils.LogUtils;
 
 import java.util.ArrayList;
@@ -45,10 +49,11 @@ import butterknife.ButterKnife;
 import butterknife.InjectView;
 
 /**
- * Fragment that presents the Guide for a channel
+ * Fragment that presents the Guide for a channel, from the local database.
+ * The channel's guide is synced in the background if it is stale.
  */
 public class PVRChannelEPGListFragment extends Fragment
-        implements SwipeRefreshLayout.OnRefreshListener {
+        implements SwipeRefreshLayout.OnRefreshListener, LoaderManager.LoaderCallbacks<Cursor> {
     private static final String TAG = LogUtils.makeLogTag(PVRChannelEPGListFragment.class);
 
     private HostManager hostManager;
@@ -58,13 +63,12 @@ public class PVRChannelEPGListFragment extends Fragment
     @InjectView(R.id.swipe_refresh_layout) SwipeRefreshLayout swipeRefreshLayout;
     @InjectView(android.R.id.empty) TextView emptyView;
 
-    /**
-     * Handler on which to post RPC callbacks
-     */
-    private Handler callbackHandler = new Handler();
-
     private BoadcastsAdapter boadcastsAdapter = null;
 
+    private RefreshItem refreshItem;
+
+    private static final int LOADER_BROADCASTS = 0;
+
     private static final String BUNDLE_KEY_CHANNELID = "bundle_key_channelid";
 
     /**
@@ -101,6 +105,21 @@ public class PVRChannelEPGListFragment extends Fragment
 
         swipeRefreshLayout.setOnRefreshListener(this);
 
+        refreshItem = new RefreshItem(getActivity(), LibrarySyncService.SYNC_PVR);
+        refreshItem.setSyncItem(LibrarySyncService.SYNC_CHANNELID, channelId);
+        refreshItem.setSwipeRefreshLayout(swipeRefreshLayout);
+        refreshItem.setListener(new RefreshItem.RefreshItemListener() {
+            @Override
+            public void onSyncProcessEnded(MediaSyncEvent event) {
+                if (!isAdded()) return;
+                if (event.status == MediaSyncEvent.STATUS_SUCCESS) {
+                    browseEPG();
+                } else {
+                    emptyView.setText(String.format(getString(R.string.error_getting_pvr_info), event.errorMessage));
+                }
+            }
+        });
+
         emptyView.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
@@ -116,7 +135,29 @@ public class PVRChannelEPGListFragment extends Fragment
     public void onActivityCreated (Bundle savedInstanceState) {
         super.onActivityCreated(savedInstanceState);
         setHasOptionsMenu(false);
+
+        if (hostManager.getHostInfo() == null) {
+            emptyView.setText(R.string.no_xbmc_configured);
+            return;
+        }
+
         browseEPG();
+        if (savedInstanceState == null) {
+            // Show the stored guide right away, and refresh it in the background if stale
+            refreshItem.startSync(true);
+        }
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        refreshItem.register();
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        refreshItem.unregister();
     }
 
     /**
@@ -125,60 +166,83 @@ public class PVRChannelEPGListFragment extends Fragment
     /** {@inheritDoc} */
     @Override
     public void onRefresh () {
-        if (hostManager.getHostInfo() != null) {
-            browseEPG();
-        } else {
-            swipeRefreshLayout.setRefreshing(false);
-            Toast.makeText(getActivity(), R.string.no_xbmc_configured, Toast.LENGTH_SHORT)
-                 .show();
-        }
+        refreshItem.startSync(false);
     }
 
     /**
-     * Get the EPF for the channel and setup the listview
+     * Load the EPG for the channel and setup the listview
      */
     private void browseEPG() {
-        PVR.GetBroadcasts action = new PVR.GetBroadcasts(channelId, PVRType.FieldsBroadcast.allValues);
-        action.execute(hostManager.getConnection(), new ApiCallback<List<PVRType.DetailsBroadcast>>() {
-            @Override
-            public void onSuccess(List<PVRType.DetailsBroadcast> result) {
-                if (!isAdded()) return;
-                // To prevent the empty text from appearing on the first load, set it now
-                emptyView.setText(getString(R.string.no_broadcasts_found_refresh));
-                setupEPGListview(result);
-                swipeRefreshLayout.setRefreshing(false);
-            }
+        getLoaderManager().restartLoader(LOADER_BROADCASTS, null, this);
+    }
 
-            @Override
-            public void onError(int errorCode, String description) {
-                if (!isAdded()) return;
-                LogUtils.LOGD(TAG, "Error getting broadcasts: " + description);
-                // To prevent the empty text from appearing on the first load, set it now
-                emptyView.setText(String.format(getString(R.string.error_getting_pvr_info), description));
-                Toast.makeText(getActivity(),
-                               String.format(getString(R.string.error_getting_pvr_info), description),
-                               Toast.LENGTH_SHORT).show();
-                swipeRefreshLayout.setRefreshing(false);
-            }
-        }, callbackHandler);
+    /** {@inheritDoc} */
+    @Override
+    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
+        int hostId = hostManager.getHostInfo().getId();
+        return new CursorLoader(getActivity(),
+                                MediaContract.PVRBroadcasts.buildChannelBroadcastsListUri(hostId, channelId),
+                                BroadcastsListQuery.PROJECTION,
+                                MediaContract.PVRBroadcasts.ENDTIME + ">?",
+                                new String[] {String.valueOf(System.currentTimeMillis())},
+                                BroadcastsListQuery.SORT);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onLoadFinished(Loader<Cursor> loader, Cursor cursor) {
+        // To prevent the empty text from appearing on the first load, set it now
+        emptyView.setText(getString(R.string.no_broadcasts_found_refresh));
+        setupEPGListview(EPGListRow.buildFromCursor(cursor));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onLoaderReset(Loader<Cursor> loader) {
+        if (boadcastsAdapter != null) {
+            boadcastsAdapter.clear();
+        }
     }
 
     /**
      * Called when we get the Guide
      *
-     * @param result Broadcasts obtained
+     * @param rows Rows to show
      */
-    private void setupEPGListview(List<PVRType.DetailsBroadcast> result) {
+    private void setupEPGListview(List<EPGListRow> rows) {
         if (boadcastsAdapter == null) {
             boadcastsAdapter = new BoadcastsAdapter(getActivity(), R.layout.list_item_broadcast);
         }
 
         listView.setAdapter(boadcastsAdapter);
         boadcastsAdapter.clear();
-        boadcastsAdapter.addAll(EPGListRow.buildFromBroadcastList(result));
+        boadcastsAdapter.addAll(rows);
         boadcastsAdapter.notifyDataSetChanged();
     }
 
+    /**
+     * Broadcasts list query parameters.
+     */
+    private interface BroadcastsListQuery {
+        String[] PROJECTION = {
+                BaseColumns._ID,
+                MediaContract.PVRBroadcasts.BROADCASTID,
+                MediaContract.PVRBroadcasts.TITLE,
+                MediaContract.PVRBroadcasts.PLOT,
+                MediaContract.PVRBroadcasts.RUNTIME,
+                MediaContract.PVRBroadcasts.STARTTIME,
+        };
+
+        String SORT = MediaContract.PVRBroadcasts.STARTTIME + " ASC";
+
+        int ID = 0;
+        int BROADCASTID = 1;
+        int TITLE = 2;
+        int PLOT = 3;
+        int RUNTIME = 4;
+        int STARTTIME = 5;
+    }
+
     private class BoadcastsAdapter extends ArrayAdapter<EPGListRow> {
         public BoadcastsAdapter(Context context, int resource) {
             super(context, resource);
@@ -218,18 +282,17 @@ public class PVRChannelEPGListFragment extends Fragment
                 }
 
                 final BroadcastViewHolder viewHolder = (BroadcastViewHolder) convertView.getTag();
-                PVRType.DetailsBroadcast broadcastDetails = row.detailsBroadcast;
 
-                viewHolder.broadcastId = broadcastDetails.broadcastid;
-                viewHolder.title = broadcastDetails.title;
+                viewHolder.broadcastId = row.broadcastId;
+                viewHolder.title = row.title;
 
-                viewHolder.titleView.setText(broadcastDetails.title);
-                viewHolder.detailsView.setText(broadcastDetails.plot);
+                viewHolder.titleView.setText(row.title);
+                viewHolder.detailsView.setText(row.plot);
                 String duration = String.format(this.getContext().getString(R.string.minutes_abbrev2),
-                                                String.valueOf(broadcastDetails.runtime));
+                                                String.valueOf(row.runtime));
 
                 int flags = DateUtils.FORMAT_ABBREV_ALL | DateUtils.FORMAT_SHOW_TIME;
-                viewHolder.startTimeView.setText(DateUtils.formatDateTime(getActivity(), broadcastDetails.starttime.getTime(), flags));
+                viewHolder.startTimeView.setText(DateUtils.formatDateTime(getActivity(), row.date.getTime(), flags));
                 viewHolder.endTimeView.setText(duration);
             } else {
                 // For a day
@@ -275,11 +338,18 @@ public class PVRChannelEPGListFragment extends Fragment
 
         public int rowType;
         public Date date;
-        public PVRType.DetailsBroadcast detailsBroadcast;
 
-        public EPGListRow(PVRType.DetailsBroadcast detailsBroadcast) {
+        // Only set for broadcasts
+        public int broadcastId, runtime;
+        public String title, plot;
+
+        public EPGListRow(Cursor cursor) {
             this.rowType = TYPE_BROADCAST;
-            this.detailsBroadcast = detailsBroadcast;
+            this.date = new Date(cursor.getLong(BroadcastsListQuery.STARTTIME));
+            this.broadcastId = cursor.getInt(BroadcastsListQuery.BROADCASTID);
+            this.title = cursor.getString(BroadcastsListQuery.TITLE);
+            this.plot = cursor.getString(BroadcastsListQuery.PLOT);
+            this.runtime = cursor.getInt(BroadcastsListQuery.RUNTIME);
         }
 
         public EPGListRow(Date date) {
@@ -289,30 +359,28 @@ public class PVRChannelEPGListFragment extends Fragment
 
         /**
          * Build the list of rows to show
-         * @param broadcasts Broadcast list returned. Assuming it is ordered by date
+         * @param cursor Broadcasts loaded, ordered by start time and already without the
+         *               ones that have ended
          * @return List of rows to show
          */
-        public static List<EPGListRow> buildFromBroadcastList(List<PVRType.DetailsBroadcast> broadcasts) {
-            Date currentTime = new Date();
+        public static List<EPGListRow> buildFromCursor(Cursor cursor) {
             int previousDayIdx = 0, dayIdx;
             Calendar cal = Calendar.getInstance();
 
-            List<EPGListRow> result = new ArrayList<>(broadcasts.size() + 5);
+            List<EPGListRow> result = new ArrayList<>(cursor.getCount() + 5);
 
-            for (PVRType.DetailsBroadcast broadcast: broadcasts) {
-                // Ignore if before current time
-                if (broadcast.endtime.before(currentTime)) {
-                    continue;
-                }
+            cursor.moveToPosition(-1);
+            while (cursor.moveToNext()) {
+                EPGListRow broadcast = new EPGListRow(cursor);
 
-                cal.setTime(broadcast.starttime);
+                cal.setTime(broadcast.date);
                 dayIdx = cal.get(Calendar.YEAR) * 366 + cal.get(Calendar.DATE);
                 if (dayIdx > previousDayIdx) {
                     // New day, add a row representing it to the list
                     previousDayIdx = dayIdx;
-                    result.add(new EPGListRow(broadcast.starttime));
+                    result.add(new EPGListRow(broadcast.date));
                 }
-                result.add(new EPGListRow(broadcast));
+                result.add(broadcast);
             }
             return result;
         }
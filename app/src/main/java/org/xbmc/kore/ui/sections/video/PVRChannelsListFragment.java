@@ -18,16 +18,21 @@ package org.xbmc.kore.ui.sections.video;
 import android.app.Activity;
 import android.content.Context;
 import android.content.res.Resources;
+import android.database.Cursor;
 import android.os.Bundle;
 import android.os.Handler;
+import android.provider.BaseColumns;
 import android.support.v4.app.Fragment;
+import android.support.v4.app.LoaderManager;
+import android.support.v4.content.CursorLoader;
+import android.support.v4.content.Loader;
 import android.support.v4.widget.SwipeRefreshLayout;
 import android.view.LayoutInflater;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.AdapterView;
-import android.widget.ArrayAdapter;
+import android.widget.CursorAdapter;
 import android.widget.GridView;
 import android.widget.ImageView;
 import android.widget.PopupMenu;
@@ -38,23 +43,27 @@ import org.xbmc.kore.R;
 import org.xbmc.kore.host.HostManager;
 import org.xbmc.kore.jsonrpc.ApiCallback;
 import org.xbmc.kore.jsonrpc.ApiException;
+import org.xbmc.kore.jsonrpc.event.MediaSyncEvent;
 import org.xbmc.kore.jsonrpc.method.PVR;
 import org.xbmc.kore.jsonrpc.method.Player;
 import org.xbmc.kore.jsonrpc.type.PVRType;
+import org.xbmc.kore.provider.MediaContract;
+import org.xbmc.kore.service.library.LibrarySyncService;
 import org.xbmc.kore.ui.OnBackPressedListener;
+import org.xbmc.kore.ui.generic.RefreshItem;
 import org.xbmc.kore.utils.LogUtils;
 import org.xbmc.kore.utils.UIUtils;
 
-import java.util.List;
-
 import butterknife.ButterKnife;
 import butterknife.InjectView;
 
 /**
- * Fragment that presents the movie list
+ * Fragment that presents the PVR channel groups and channels, from the local database.
+ * The channels and guide are synced in the background when the fragment is created.
  */
 public class PVRChannelsListFragment extends Fragment
-        implements SwipeRefreshLayout.OnRefreshListener, OnBackPressedListener {
+        implements SwipeRefreshLayout.OnRefreshListener, OnBackPressedListener,
+                   LoaderManager.LoaderCallbacks<Cursor> {
     private static final String TAG = LogUtils.makeLogTag(PVRChannelsListFragment.class);
 
     public static final String CHANNELGROUPID = "channelgroupid";
@@ -82,6 +91,12 @@ public class PVRChannelsListFragment extends Fragment
     private ChannelGroupAdapter channelGroupAdapter = null;
     private ChannelAdapter channelAdapter = null;
 
+    private RefreshItem refreshItem;
+
+    // Loader IDs
+    private static final int LOADER_CHANNEL_GROUPS = 0,
+            LOADER_CHANNELS = 1;
+
     private int selectedChannelGroupId = -1;
     private int currentListType;
     private boolean singleChannelGroup = false;
@@ -107,6 +122,16 @@ public class PVRChannelsListFragment extends Fragment
 
         swipeRefreshLayout.setOnRefreshListener(this);
 
+        refreshItem = new RefreshItem(getActivity(), LibrarySyncService.SYNC_PVR);
+        refreshItem.setSwipeRefreshLayout(swipeRefreshLayout);
+        refreshItem.setListener(new RefreshItem.RefreshItemListener() {
+            @Override
+            public void onSyncProcessEnded(MediaSyncEvent event) {
+                if (!isAdded()) return;
+                onPVRSynced(event);
+            }
+        });
+
         emptyView.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
@@ -123,13 +148,21 @@ public class PVRChannelsListFragment extends Fragment
         super.onActivityCreated(savedInstanceState);
         setHasOptionsMenu(false);
 
+        if (hostManager.getHostInfo() == null) {
+            emptyView.setText(R.string.no_xbmc_configured);
+            return;
+        }
+
         if (selectedChannelGroupId == -1) {
-            if ((channelGroupAdapter == null) ||
-                (channelGroupAdapter.getCount() == 0))
-                browseChannelGroups();
+            browseChannelGroups();
         } else {
             browseChannels(selectedChannelGroupId);
         }
+
+        if (savedInstanceState == null) {
+            // Show what's stored right away, and refresh whatever is stale in the background
+            refreshItem.startSync(true);
+        }
     }
 
     @Override
@@ -151,11 +184,13 @@ public class PVRChannelsListFragment extends Fragment
     @Override
     public void onResume() {
         super.onResume();
+        refreshItem.register();
     }
 
     @Override
     public void onPause() {
         super.onPause();
+        refreshItem.unregister();
     }
 
     @Override
@@ -171,16 +206,23 @@ public class PVRChannelsListFragment extends Fragment
     /** {@inheritDoc} */
     @Override
     public void onRefresh () {
-        if (hostManager.getHostInfo() != null) {
+        refreshItem.startSync(false);
+    }
+
+    /**
+     * Called when the sync started by {@link #refreshItem} ends
+     */
+    private void onPVRSynced(MediaSyncEvent event) {
+        if (event.status == MediaSyncEvent.STATUS_SUCCESS) {
             if (selectedChannelGroupId == -1) {
                 browseChannelGroups();
             } else {
                 browseChannels(selectedChannelGroupId);
             }
+        } else if (event.errorCode == ApiException.API_ERROR) {
+            emptyView.setText(getString(R.string.might_not_have_pvr));
         } else {
-            swipeRefreshLayout.setRefreshing(false);
-            Toast.makeText(getActivity(), R.string.no_xbmc_configured, Toast.LENGTH_SHORT)
-                 .show();
+            emptyView.setText(String.format(getString(R.string.error_getting_pvr_info), event.errorMessage));
         }
     }
 
@@ -199,58 +241,90 @@ public class PVRChannelsListFragment extends Fragment
     }
 
     /**
-     * Get the channel groups list and setup the gridview
+     * Load the channel groups list and setup the gridview
      */
     private void browseChannelGroups() {
-        LogUtils.LOGD(TAG, "Getting channel groups");
-        String channelType = (currentListType == PVRListFragment.LIST_TV_CHANNELS)?
-                PVRType.ChannelType.TV : PVRType.ChannelType.RADIO;
-        PVR.GetChannelGroups action = new PVR.GetChannelGroups(channelType);
-        action.execute(hostManager.getConnection(), new ApiCallback<List<PVRType.DetailsChannelGroup>>() {
-            @Override
-            public void onSuccess(List<PVRType.DetailsChannelGroup> result) {
-                if (!isAdded()) return;
-                LogUtils.LOGD(TAG, "Got channel groups");
-
-                if (result.size() == 1) {
-                    // Single channel group, go directly to channel list
-                    singleChannelGroup = true;
-                    selectedChannelGroupId = result.get(0).channelgroupid;
-                    browseChannels(selectedChannelGroupId);
-                } else {
-                    // To prevent the empty text from appearing on the first load, set it now
-                    emptyView.setText(getString(R.string.no_channel_groups_found_refresh));
-                    setupChannelGroupsGridview(result);
-                    swipeRefreshLayout.setRefreshing(false);
-                }
-            }
+        LogUtils.LOGD(TAG, "Loading channel groups");
+        getLoaderManager().destroyLoader(LOADER_CHANNELS);
+        getLoaderManager().restartLoader(LOADER_CHANNEL_GROUPS, null, this);
+    }
 
-            @Override
-            public void onError(int errorCode, String description) {
-                if (!isAdded()) return;
-                LogUtils.LOGD(TAG, "Error getting channel groups: " + description);
+    /**
+     * Loads and displays the channels of a channelgroup
+     * @param channelGroupId id
+     */
+    private void browseChannels(final int channelGroupId) {
+        LogUtils.LOGD(TAG, "Loading channels of group " + channelGroupId);
+        Bundle args = new Bundle();
+        args.putInt(CHANNELGROUPID, channelGroupId);
+        getLoaderManager().destroyLoader(LOADER_CHANNEL_GROUPS);
+        getLoaderManager().restartLoader(LOADER_CHANNELS, args, this);
+    }
 
-                if (errorCode == ApiException.API_ERROR) {
-                    emptyView.setText(getString(R.string.might_not_have_pvr));
-                } else {
-                    emptyView.setText(String.format(getString(R.string.error_getting_pvr_info), description));
-                }
-                Toast.makeText(getActivity(),
-                               String.format(getString(R.string.error_getting_pvr_info), description),
-                               Toast.LENGTH_SHORT).show();
-                swipeRefreshLayout.setRefreshing(false);
+    /** {@inheritDoc} */
+    @Override
+    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
+        int hostId = hostManager.getHostInfo().getId();
+        if (id == LOADER_CHANNEL_GROUPS) {
+            String channelType = (currentListType == PVRListFragment.LIST_TV_CHANNELS)?
+                    PVRType.ChannelType.TV : PVRType.ChannelType.RADIO;
+            return new CursorLoader(getActivity(),
+                                    MediaContract.PVRChannelGroups.buildChannelGroupsListUri(hostId),
+                                    ChannelGroupsListQuery.PROJECTION,
+                                    MediaContract.PVRChannelGroups.CHANNELTYPE + "=?",
+                                    new String[] {channelType},
+                                    ChannelGroupsListQuery.SORT);
+        } else {
+            int channelGroupId = args.getInt(CHANNELGROUPID);
+            return new CursorLoader(getActivity(),
+                                    MediaContract.PVRChannels.buildChannelGroupChannelsListUri(hostId, channelGroupId),
+                                    ChannelsListQuery.PROJECTION, null, null,
+                                    ChannelsListQuery.SORT);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onLoadFinished(Loader<Cursor> loader, Cursor cursor) {
+        if (loader.getId() == LOADER_CHANNEL_GROUPS) {
+            LogUtils.LOGD(TAG, "Loaded channel groups");
+            if (cursor.getCount() == 1) {
+                // Single channel group, go directly to channel list
+                cursor.moveToFirst();
+                singleChannelGroup = true;
+                selectedChannelGroupId = cursor.getInt(ChannelGroupsListQuery.CHANNELGROUPID);
+                browseChannels(selectedChannelGroupId);
+            } else {
+                // To prevent the empty text from appearing on the first load, set it now
+                emptyView.setText(getString(R.string.no_channel_groups_found_refresh));
+                setupChannelGroupsGridview(cursor);
             }
-        }, callbackHandler);
+        } else {
+            LogUtils.LOGD(TAG, "Loaded channels");
+            // To prevent the empty text from appearing on the first load, set it now
+            emptyView.setText(getString(R.string.no_channels_found_refresh));
+            setupChannelsGridview(cursor);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onLoaderReset(Loader<Cursor> loader) {
+        if ((loader.getId() == LOADER_CHANNEL_GROUPS) && (channelGroupAdapter != null)) {
+            channelGroupAdapter.swapCursor(null);
+        } else if ((loader.getId() == LOADER_CHANNELS) && (channelAdapter != null)) {
+            channelAdapter.swapCursor(null);
+        }
     }
 
     /**
      * Called when we get the channel groups
      *
-     * @param result ChannelGroups obtained
+     * @param cursor ChannelGroups obtained
      */
-    private void setupChannelGroupsGridview(List<PVRType.DetailsChannelGroup> result) {
+    private void setupChannelGroupsGridview(Cursor cursor) {
         if (channelGroupAdapter == null) {
-            channelGroupAdapter = new ChannelGroupAdapter(getActivity(), R.layout.grid_item_channel_group);
+            channelGroupAdapter = new ChannelGroupAdapter(getActivity());
         }
         gridView.setAdapter(channelGroupAdapter);
         gridView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
@@ -265,56 +339,17 @@ public class PVRChannelsListFragment extends Fragment
             }
         });
 
-        channelGroupAdapter.clear();
-        channelGroupAdapter.addAll(result);
-        channelGroupAdapter.notifyDataSetChanged();
-    }
-
-    /**
-     * Gets and displays the channels of a channelgroup
-     * @param channelGroupId id
-     */
-    private void browseChannels(final int channelGroupId) {
-        String[] properties = PVRType.FieldsChannel.allValues;
-        LogUtils.LOGD(TAG, "Getting channels");
-
-        PVR.GetChannels action = new PVR.GetChannels(channelGroupId, properties);
-        action.execute(hostManager.getConnection(), new ApiCallback<List<PVRType.DetailsChannel>>() {
-            @Override
-            public void onSuccess(List<PVRType.DetailsChannel> result) {
-                if (!isAdded()) return;
-                LogUtils.LOGD(TAG, "Got channels");
-
-                // To prevent the empty text from appearing on the first load, set it now
-                emptyView.setText(getString(R.string.no_channels_found_refresh));
-                setupChannelsGridview(result);
-                swipeRefreshLayout.setRefreshing(false);
-            }
-
-            @Override
-            public void onError(int errorCode, String description) {
-                if (!isAdded()) return;
-                LogUtils.LOGD(TAG, "Error getting channels: " + description);
-
-                // To prevent the empty text from appearing on the first load, set it now
-                emptyView.setText(String.format(getString(R.string.error_getting_pvr_info), description));
-                Toast.makeText(getActivity(),
-                               String.format(getString(R.string.error_getting_pvr_info), description),
-                               Toast.LENGTH_SHORT).show();
-                swipeRefreshLayout.setRefreshing(false);
-            }
-        }, callbackHandler);
-
+        channelGroupAdapter.swapCursor(cursor);
     }
 
     /**
      * Called when we get the channels
      *
-     * @param result Channels obtained
+     * @param cursor Channels obtained
      */
-    private void setupChannelsGridview(List<PVRType.DetailsChannel> result) {
+    private void setupChannelsGridview(Cursor cursor) {
         if (channelAdapter == null) {
-            channelAdapter = new ChannelAdapter(getActivity(), R.layout.grid_item_channel);
+            channelAdapter = new ChannelAdapter(getActivity());
         }
         gridView.setAdapter(channelAdapter);
         gridView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
@@ -350,38 +385,77 @@ public class PVRChannelsListFragment extends Fragment
             }
         });
 
-        channelAdapter.clear();
-        channelAdapter.addAll(result);
-        channelAdapter.notifyDataSetChanged();
+        channelAdapter.swapCursor(cursor);
     }
 
-    private class ChannelGroupAdapter extends ArrayAdapter<PVRType.DetailsChannelGroup> {
+    /**
+     * Channel groups list query parameters.
+     */
+    private interface ChannelGroupsListQuery {
+        String[] PROJECTION = {
+                BaseColumns._ID,
+                MediaContract.PVRChannelGroups.CHANNELGROUPID,
+                MediaContract.PVRChannelGroups.LABEL,
+        };
+
+        // Same order as Kodi
+        String SORT = BaseColumns._ID + " ASC";
+
+        int ID = 0;
+        int CHANNELGROUPID = 1;
+        int LABEL = 2;
+    }
 
-        public ChannelGroupAdapter(Context context, int resource) {
-            super(context, resource);
+    /**
+     * Channels list query parameters.
+     */
+    private interface ChannelsListQuery {
+        String[] PROJECTION = {
+                BaseColumns._ID,
+                MediaContract.PVRChannels.CHANNELID,
+                MediaContract.PVRChannels.CHANNEL,
+                MediaContract.PVRChannels.THUMBNAIL,
+                MediaContract.PVRChannels.BROADCASTNOW_TITLE,
+        };
+
+        // Same order as Kodi
+        String SORT = BaseColumns._ID + " ASC";
+
+        int ID = 0;
+        int CHANNELID = 1;
+        int CHANNEL = 2;
+        int THUMBNAIL = 3;
+        int BROADCASTNOW_TITLE = 4;
+    }
+
+    private class ChannelGroupAdapter extends CursorAdapter {
+
+        public ChannelGroupAdapter(Context context) {
+            super(context, null, false);
         }
 
         /** {@inheritDoc} */
         @Override
-        public View getView(int position, View convertView, ViewGroup parent) {
-            if (convertView == null) {
-                convertView = LayoutInflater.from(getActivity())
+        public View newView(Context context, final Cursor cursor, ViewGroup parent) {
+            final View view = LayoutInflater.from(context)
                                             .inflate(R.layout.grid_item_channel_group, parent, false);
 
-                // Setup View holder pattern
-                ChannelGroupViewHolder viewHolder = new ChannelGroupViewHolder();
-                viewHolder.titleView = (TextView)convertView.findViewById(R.id.title);
-                convertView.setTag(viewHolder);
-            }
+            // Setup View holder pattern
+            ChannelGroupViewHolder viewHolder = new ChannelGroupViewHolder();
+            viewHolder.titleView = (TextView)view.findViewById(R.id.title);
+            view.setTag(viewHolder);
+            return view;
+        }
 
-            final ChannelGroupViewHolder viewHolder = (ChannelGroupViewHolder)convertView.getTag();
-            PVRType.DetailsChannelGroup channelGroupDetails = this.getItem(position);
+        /** {@inheritDoc} */
+        @Override
+        public void bindView(View view, Context context, Cursor cursor) {
+            final ChannelGroupViewHolder viewHolder = (ChannelGroupViewHolder)view.getTag();
 
-            viewHolder.channelGroupId = channelGroupDetails.channelgroupid;
-            viewHolder.channelGroupName = channelGroupDetails.label;
+            viewHolder.channelGroupId = cursor.getInt(ChannelGroupsListQuery.CHANNELGROUPID);
+            viewHolder.channelGroupName = cursor.getString(ChannelGroupsListQuery.LABEL);
 
             viewHolder.titleView.setText(viewHolder.channelGroupName);
-            return convertView;
         }
     }
 
@@ -395,7 +469,7 @@ public class PVRChannelsListFragment extends Fragment
         String channelGroupName;
     }
 
-    private class ChannelAdapter extends ArrayAdapter<PVRType.DetailsChannel> {
+    private class ChannelAdapter extends CursorAdapter {
 
         private HostManager hostManager;
         private int artWidth, artHeight;
@@ -445,8 +519,8 @@ public class PVRChannelsListFragment extends Fragment
             }
         };
 
-        public ChannelAdapter(Context context, int resource) {
-            super(context, resource);
+        public ChannelAdapter(Context context) {
+            super(context, null, false);
             this.hostManager = HostManager.getInstance(context);
 
             Resources resources = context.getResources();
@@ -458,40 +532,38 @@ public class PVRChannelsListFragment extends Fragment
 
         /** {@inheritDoc} */
         @Override
-        public View getView(int position, View convertView, ViewGroup parent) {
-            if (convertView == null) {
-                convertView = LayoutInflater
-                        .from(getActivity())
-                        .inflate(R.layout.grid_item_channel, parent, false);
-
-                // Setup View holder pattern
-                ChannelViewHolder viewHolder = new ChannelViewHolder();
-                viewHolder.titleView = (TextView)convertView.findViewById(R.id.title);
-                viewHolder.detailsView = (TextView)convertView.findViewById(R.id.details);
-                viewHolder.artView = (ImageView)convertView.findViewById(R.id.art);
-                viewHolder.contextMenu = (ImageView)convertView.findViewById(R.id.list_context_menu);
-                convertView.setTag(viewHolder);
-            }
+        public View newView(Context context, final Cursor cursor, ViewGroup parent) {
+            final View view = LayoutInflater.from(context)
+                                            .inflate(R.layout.grid_item_channel, parent, false);
+
+            // Setup View holder pattern
+            ChannelViewHolder viewHolder = new ChannelViewHolder();
+            viewHolder.titleView = (TextView)view.findViewById(R.id.title);
+            viewHolder.detailsView = (TextView)view.findViewById(R.id.details);
+            viewHolder.artView = (ImageView)view.findViewById(R.id.art);
+            viewHolder.contextMenu = (ImageView)view.findViewById(R.id.list_context_menu);
+            view.setTag(viewHolder);
+            return view;
+        }
 
-            final ChannelViewHolder viewHolder = (ChannelViewHolder)convertView.getTag();
-            PVRType.DetailsChannel channelDetails = this.getItem(position);
+        /** {@inheritDoc} */
+        @Override
+        public void bindView(View view, Context context, Cursor cursor) {
+            final ChannelViewHolder viewHolder = (ChannelViewHolder)view.getTag();
 
-            viewHolder.channelId = channelDetails.channelid;
-            viewHolder.channelName = channelDetails.channel;
+            viewHolder.channelId = cursor.getInt(ChannelsListQuery.CHANNELID);
+            viewHolder.channelName = cursor.getString(ChannelsListQuery.CHANNEL);
 
-            viewHolder.titleView.setText(channelDetails.channel);
-            String details = (channelDetails.broadcastnow != null)?
-                    channelDetails.broadcastnow.title : null;
-            viewHolder.detailsView.setText(details);
-            UIUtils.loadImageWithCharacterAvatar(getContext(), hostManager,
-                                                 channelDetails.thumbnail, channelDetails.channel,
+            viewHolder.titleView.setText(viewHolder.channelName);
+            viewHolder.detailsView.setText(cursor.getString(ChannelsListQuery.BROADCASTNOW_TITLE));
+            UIUtils.loadImageWithCharacterAvatar(context, hostManager,
+                                                 cursor.getString(ChannelsListQuery.THUMBNAIL),
+                                                 viewHolder.channelName,
                                                  viewHolder.artView, artWidth, artHeight);
 
             // For the popupmenu
             viewHolder.contextMenu.setTag(viewHolder);
             viewHolder.contextMenu.setOnClickListener(channelItemMenuClickListener);
-
-            return convertView;
         }
     }
 
@@ -19,7 +19,6 @@ import android.content.DialogInterface;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
-import android.os.Handler;
 import android.provider.BaseColumns;
 import android.support.annotation.Nullable;
 import android.support.v4.app.LoaderManager;
@@ -58,11 +57,6 @@ public class TVShowEpisodeInfoFragment extends AbstractInfoFragment
     // Loader IDs
     private static final int LOADER_EPISODE = 0;
 
-    /**
-     * Handler on which to post RPC callbacks
-     */
-    private Handler callbackHandler = new Handler();
-
     // Displayed episode
     private int tvshowId = -1;
 
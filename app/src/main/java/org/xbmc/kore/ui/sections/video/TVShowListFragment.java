@@ -34,6 +34,7 @@ import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.CursorAdapter;
 import android.widget.ImageView;
 import android.widget.ProgressBar;
@@ -48,6 +49,7 @@ import org.xbmc.kore.provider.MediaDatabase;
 import org.xbmc.kore.service.library.LibrarySyncService;
 import org.xbmc.kore.ui.AbstractCursorListFragment;
 import org.xbmc.kore.ui.AbstractInfoFragment;
+import org.xbmc.kore.ui.ArtworkPrefetcher;
 import org.xbmc.kore.utils.LogUtils;
 import org.xbmc.kore.utils.UIUtils;
 import org.xbmc.kore.utils.Utils;
@@ -83,19 +85,29 @@ public class TVShowListFragment extends AbstractCursorListFragment {
         return new TVShowsAdapter(getActivity());
     }
 
+    @Override
+    protected AbsListView.OnScrollListener createOnScrollListener() {
+        TVShowsAdapter adapter = (TVShowsAdapter) getAdapter();
+        return new ArtworkPrefetcher(adapter.hostManager, TVShowListQuery.THUMBNAIL,
+                                     adapter.artWidth, adapter.artHeight);
+    }
+
     @Override
     protected CursorLoader createCursorLoader() {
         HostInfo hostInfo = HostManager.getInstance(getActivity()).getHostInfo();
-        Uri uri = MediaContract.TVShows.buildTVShowsListUri(hostInfo != null ? hostInfo.getId() : -1);
+        int hostId = hostInfo != null ? hostInfo.getId() : -1;
 
-        StringBuilder selection = new StringBuilder();
-        String selectionArgs[] = null;
+        Uri uri;
         String searchFilter = getSearchFilter();
         if (!TextUtils.isEmpty(searchFilter)) {
-            selection.append(MediaContract.TVShowsColumns.TITLE + " LIKE ?");
-            selectionArgs = new String[] {"%" + searchFilter + "%"};
+            uri = MediaContract.TVShows.buildTVShowsSearchUri(hostId, searchFilter);
+        } else {
+            uri = MediaContract.TVShows.buildTVShowsListUri(hostId);
         }
 
+        StringBuilder selection = new StringBuilder();
+        String selectionArgs[] = null;
+
         // Filters
         SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(getActivity());
         if (preferences.getBoolean(Settings.KEY_PREF_TVSHOWS_FILTER_HIDE_WATCHED, Settings.DEFAULT_PREF_TVSHOWS_FILTER_HIDE_WATCHED)) {
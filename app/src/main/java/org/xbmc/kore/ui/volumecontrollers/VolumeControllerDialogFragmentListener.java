@@ -16,6 +16,7 @@ import org.xbmc.kore.host.HostConnectionObserver;
 import org.xbmc.kore.host.HostManager;
 import org.xbmc.kore.jsonrpc.ApiCallback;
 import org.xbmc.kore.jsonrpc.ApiMethod;
+import org.xbmc.kore.jsonrpc.HostConnection;
 import org.xbmc.kore.jsonrpc.method.Application;
 import org.xbmc.kore.ui.widgets.HighlightButton;
 import org.xbmc.kore.ui.widgets.VolumeLevelIndicator;
@@ -139,8 +140,8 @@ public class VolumeControllerDialogFragmentListener extends AppCompatDialogFragm
                     @Override
                     public void onVolumeChanged(int volume) {
                         cancelDismissDialog();
-                        new Application.SetVolume(volume).execute(hostManager.getConnection(),
-                                defaultIntActionCallback, callbackHandler);
+                        new Application.SetVolume(volume).executeLatest(hostManager.getConnection(),
+                                HostConnection.CONTROL_VOLUME, defaultIntActionCallback, callbackHandler);
                     }
                 });
         volumeLevelIndicator.setVolumeBarTouchTrackerListener(this);
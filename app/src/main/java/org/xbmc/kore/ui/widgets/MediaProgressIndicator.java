@@ -28,22 +28,29 @@ import android.widget.SeekBar;
 import android.widget.TextView;
 
 import org.xbmc.kore.R;
+import org.xbmc.kore.host.PlaybackClock;
 import org.xbmc.kore.utils.UIUtils;
 
 import butterknife.ButterKnife;
 import butterknife.InjectView;
 
-public class MediaProgressIndicator extends LinearLayout {
+/**
+ * Seek bar with the progress and duration of the media playing.
+ * The progress follows a {@link PlaybackClock}, set with {@link #setPlaybackClock(PlaybackClock)},
+ * while the view is attached to a window
+ */
+public class MediaProgressIndicator extends LinearLayout
+        implements PlaybackClock.OnTickListener {
 
     @InjectView(R.id.mpi_seek_bar) SeekBar seekBar;
     @InjectView(R.id.mpi_duration) TextView durationTextView;
     @InjectView(R.id.mpi_progress) TextView progressTextView;
 
-    private int speed = 0;
     private int maxProgress;
     private int progress;
-    private static final int SEEK_BAR_UPDATE_INTERVAL = 1000; // ms
-    private int progressIncrement;
+
+    private PlaybackClock playbackClock;
+    private boolean isTrackingTouch = false;
 
     private OnProgressChangeListener onProgressChangeListener;
 
@@ -84,16 +91,18 @@ public class MediaProgressIndicator extends LinearLayout {
             @Override
             public void onStartTrackingTouch(SeekBar seekBar) {
                 // Stop the seekbar from updating
-                seekBar.removeCallbacks(seekBarUpdater);
+                isTrackingTouch = true;
             }
 
             @Override
             public void onStopTrackingTouch(SeekBar seekBar) {
+                isTrackingTouch = false;
                 if (onProgressChangeListener != null)
                     onProgressChangeListener.onProgressChanged(seekBar.getProgress());
 
-                if (speed > 0)
-                    seekBar.postDelayed(seekBarUpdater, SEEK_BAR_UPDATE_INTERVAL);
+                // Move the clock now, so that we don't jump back until the host reports the seek
+                if (playbackClock != null)
+                    playbackClock.seekTo(seekBar.getProgress());
             }
         });
     }
@@ -116,20 +125,44 @@ public class MediaProgressIndicator extends LinearLayout {
         setMaxProgress(maxProgress);
     }
 
-    private Runnable seekBarUpdater = new Runnable() {
-        @Override
-        public void run() {
-            if ((maxProgress == 0) || (progress >= maxProgress)) {
-                seekBar.removeCallbacks(this);
-                return;
-            }
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (playbackClock != null)
+            playbackClock.addListener(this);
+    }
 
-            progress += progressIncrement;
-            setProgress(progress);
+    @Override
+    protected void onDetachedFromWindow() {
+        if (playbackClock != null)
+            playbackClock.removeListener(this);
+        super.onDetachedFromWindow();
+    }
 
-            seekBar.postDelayed(this, SEEK_BAR_UPDATE_INTERVAL);
-        }
-    };
+    @Override
+    public void onPlaybackTick(int time, int totalTime) {
+        if (isTrackingTouch)
+            return;
+
+        if (totalTime != maxProgress)
+            setMaxProgress(totalTime);
+        setProgress(time);
+    }
+
+    /**
+     * Sets the clock that this indicator follows
+     * @param playbackClock Clock to follow, null to stop following one
+     */
+    public void setPlaybackClock(PlaybackClock playbackClock) {
+        if (this.playbackClock == playbackClock)
+            return;
+
+        if (this.playbackClock != null)
+            this.playbackClock.removeListener(this);
+        this.playbackClock = playbackClock;
+        if ((playbackClock != null) && (getWindowToken() != null))
+            playbackClock.addListener(this);
+    }
 
     public void setOnProgressChangeListener(OnProgressChangeListener onProgressChangeListener) {
         this.onProgressChangeListener = onProgressChangeListener;
@@ -151,22 +184,6 @@ public class MediaProgressIndicator extends LinearLayout {
         durationTextView.setText(UIUtils.formatTime(max));
     }
 
-    /**
-     * Sets the play speed for the progress indicator
-     * @param speed set to 0 to stop updating the progress indicator.
-     */
-    public void setSpeed(int speed) {
-        if( speed == this.speed )
-            return;
-
-        this.speed = speed;
-        this.progressIncrement = speed * (SEEK_BAR_UPDATE_INTERVAL/1000);
-
-        seekBar.removeCallbacks(seekBarUpdater);
-        if (speed > 0)
-            seekBar.postDelayed(seekBarUpdater, SEEK_BAR_UPDATE_INTERVAL);
-    }
-
     private static class SavedState extends BaseSavedState {
         int progress;
         int maxProgress;
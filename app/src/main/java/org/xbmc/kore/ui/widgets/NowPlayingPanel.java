@@ -30,7 +30,7 @@ import android.widget.TextView;
 import com.sothree.slidinguppanel.SlidingUpPanelLayout;
 
 import org.xbmc.kore.R;
-import org.xbmc.kore.jsonrpc.type.GlobalType;
+import org.xbmc.kore.host.PlaybackClock;
 import org.xbmc.kore.utils.UIUtils;
 
 import butterknife.ButterKnife;
@@ -127,9 +127,12 @@ public class NowPlayingPanel extends SlidingUpPanelLayout {
         UIUtils.setPlayPauseButtonIcon(getContext(), playButton, play);
     }
 
-    public void setMediaProgress(GlobalType.Time time, GlobalType.Time totalTime) {
-        mediaProgressIndicator.setMaxProgress(totalTime.ToSeconds());
-        mediaProgressIndicator.setProgress(time.ToSeconds());
+    /**
+     * Sets the clock that the media progress follows
+     * @param playbackClock Clock to follow, null to stop following one
+     */
+    public void setPlaybackClock(PlaybackClock playbackClock) {
+        mediaProgressIndicator.setPlaybackClock(playbackClock);
     }
 
     /**
@@ -140,14 +143,6 @@ public class NowPlayingPanel extends SlidingUpPanelLayout {
         return mediaProgressIndicator;
     }
 
-    /**
-     *
-     * @param speed
-     */
-    public void setSpeed(int speed) {
-        mediaProgressIndicator.setSpeed(speed);
-    }
-
     public CharSequence getTitle() {
         return title.getText();
     }
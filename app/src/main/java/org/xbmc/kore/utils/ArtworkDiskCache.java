@@ -0,0 +1,288 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbmc.kore.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.StatFs;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Disk cache of downsampled artwork, keyed by the Kodi image path and a size tier.
+ *
+ * Instead of the original images, which can be several MB for a fanart, this stores each
+ * image already scaled to the smallest tier that covers the size it's shown at, so a poster
+ * grid needs tens of KB per image, both on disk and when decoding.
+ * The cache is bounded, and when full the least recently used files are deleted.
+ *
+ * All methods are thread safe, and do disk IO, so shouldn't be called on the main thread.
+ * Images are decoded and compressed outside the lock, so several can be loaded at once.
+ */
+public class ArtworkDiskCache {
+    private static final String TAG = LogUtils.makeLogTag(ArtworkDiskCache.class);
+
+    /**
+     * Sizes (in pixels, of the shorter side) at which images are stored
+     */
+    private static final int[] SIZE_TIERS = { 160, 320, 640, 1280, 1920 };
+
+    private static final String ARTWORK_CACHE = "artwork-cache";
+    private static final long MIN_DISK_CACHE_SIZE = 10 * 1024 * 1024; // 10MB
+    private static final long MAX_DISK_CACHE_SIZE = 200 * 1024 * 1024; // 200MB
+
+    private static final int JPEG_QUALITY = 85;
+
+    private final File directory;
+    private final long maxSize;
+    private long size = -1;
+
+    private static volatile ArtworkDiskCache instance = null;
+
+    /**
+     * Singleton access, as the size accounting needs a single instance per directory
+     * @param context Context
+     * @return Singleton instance
+     */
+    public static ArtworkDiskCache getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ArtworkDiskCache.class) {
+                if (instance == null) {
+                    instance = new ArtworkDiskCache(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    private ArtworkDiskCache(Context context) {
+        directory = new File(context.getApplicationContext().getCacheDir(), ARTWORK_CACHE);
+        if (!directory.exists()) {
+            //noinspection ResultOfMethodCallIgnored
+            directory.mkdirs();
+        }
+        maxSize = calculateDiskCacheSize(directory);
+    }
+
+    /**
+     * Returns the tier to use for an image shown at the given size
+     * @param width Width at which the image is shown
+     * @param height Height at which the image is shown
+     * @return Size of the shorter side of the stored image, which covers width and height.
+     *         The largest tier if the size isn't known
+     */
+    public static int getSizeTier(int width, int height) {
+        int size = Math.max(width, height);
+        if (size <= 0)
+            return SIZE_TIERS[SIZE_TIERS.length - 1];
+        for (int tier : SIZE_TIERS) {
+            if (tier >= size)
+                return tier;
+        }
+        return SIZE_TIERS[SIZE_TIERS.length - 1];
+    }
+
+    /**
+     * Checks whether an image is cached, without decoding it
+     * @param key Image key
+     * @param tier Size tier, from {@link #getSizeTier(int, int)}
+     * @return Whether the image is cached
+     */
+    public boolean contains(String key, int tier) {
+        return getFile(key, tier).exists();
+    }
+
+    /**
+     * Returns a cached image
+     * @param key Image key
+     * @param tier Size tier, from {@link #getSizeTier(int, int)}
+     * @return Decoded image, or null if it isn't cached
+     */
+    public Bitmap get(String key, int tier) {
+        File file = getFile(key, tier);
+        if (!file.exists())
+            return null;
+
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getAbsolutePath());
+        if (bitmap == null) {
+            // Corrupted, or removed meanwhile
+            synchronized (this) {
+                remove(file);
+            }
+            return null;
+        }
+        //noinspection ResultOfMethodCallIgnored
+        file.setLastModified(System.currentTimeMillis());
+        return bitmap;
+    }
+
+    /**
+     * Stores an image, trimming the cache if it gets over its size
+     * @param key Image key
+     * @param tier Size tier, from {@link #getSizeTier(int, int)}
+     * @param bitmap Image, already scaled to the tier
+     */
+    public void put(String key, int tier, Bitmap bitmap) {
+        File file = getFile(key, tier);
+        File tmpFile = null;
+        OutputStream out = null;
+        try {
+            // Compress to a temporary file, so that readers never see a partial image
+            tmpFile = File.createTempFile(file.getName(), ".tmp", directory);
+            out = new FileOutputStream(tmpFile);
+            Bitmap.CompressFormat format = bitmap.hasAlpha() ?
+                    Bitmap.CompressFormat.PNG : Bitmap.CompressFormat.JPEG;
+            if (!bitmap.compress(format, JPEG_QUALITY, out))
+                throw new IOException("Couldn't compress image");
+            out.close();
+            out = null;
+
+            synchronized (this) {
+                ensureSize();
+                remove(file);
+                if (!tmpFile.renameTo(file))
+                    throw new IOException("Couldn't rename " + tmpFile);
+                size += file.length();
+                trimToSize();
+            }
+        } catch (IOException e) {
+            LogUtils.LOGW(TAG, "Couldn't store image in disk cache", e);
+            if (tmpFile != null) {
+                //noinspection ResultOfMethodCallIgnored
+                tmpFile.delete();
+            }
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes all the cached images
+     */
+    public synchronized void clear() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        size = 0;
+    }
+
+    private File getFile(String key, int tier) {
+        return new File(directory, hash(key) + "_" + tier);
+    }
+
+    private void remove(File file) {
+        if (!file.exists())
+            return;
+        long length = file.length();
+        if (file.delete() && (size != -1)) {
+            size -= length;
+        }
+    }
+
+    /**
+     * Computes the current size of the cache, the first time it's needed
+     */
+    private void ensureSize() {
+        if (size != -1)
+            return;
+        size = 0;
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                size += file.length();
+            }
+        }
+    }
+
+    /**
+     * Deletes the least recently used files until the cache fits in its size, leaving
+     * some room so that this isn't done on every insert
+     */
+    private void trimToSize() {
+        if (size <= maxSize)
+            return;
+
+        File[] files = directory.listFiles();
+        if (files == null)
+            return;
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long lhsModified = lhs.lastModified(), rhsModified = rhs.lastModified();
+                return (lhsModified < rhsModified) ? -1 : ((lhsModified == rhsModified) ? 0 : 1);
+            }
+        });
+
+        long targetSize = maxSize * 9 / 10;
+        for (File file : files) {
+            if (size <= targetSize)
+                break;
+            remove(file);
+        }
+        LogUtils.LOGD(TAG, "Trimmed artwork cache to " + (size / 1024) + " KB");
+    }
+
+    private static long calculateDiskCacheSize(File dir) {
+        long size = MIN_DISK_CACHE_SIZE;
+
+        try {
+            StatFs statFs = new StatFs(dir.getAbsolutePath());
+            long available = ((long) statFs.getBlockCount()) * statFs.getBlockSize();
+            // Target 4% of the total space.
+            size = available / 25;
+        } catch (IllegalArgumentException ignored) {
+        }
+
+        return Math.max(Math.min(size, MAX_DISK_CACHE_SIZE), MIN_DISK_CACHE_SIZE);
+    }
+
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16))
+                  .append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // MD5 is always available
+            return String.valueOf(key.hashCode());
+        } catch (UnsupportedEncodingException e) {
+            // So is UTF-8
+            return String.valueOf(key.hashCode());
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbmc.kore.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.text.TextUtils;
+
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Response;
+import com.squareup.picasso.NetworkPolicy;
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.Request;
+import com.squareup.picasso.RequestHandler;
+
+import org.xbmc.kore.host.HostInfo;
+
+import java.io.IOException;
+
+/**
+ * Picasso {@link RequestHandler} for Kodi artwork, that goes through an {@link ArtworkDiskCache}.
+ *
+ * Artwork is downloaded once, decoded downsampled to the size tier of the request, and stored
+ * at that size, so that next loads only decode a small image from disk. Picasso then applies
+ * the request transformations and keeps the result in its (bounded) memory cache.
+ * Use {@link #buildUri(HostInfo, String)} to get the uri to pass to Picasso.
+ */
+public class ArtworkRequestHandler extends RequestHandler {
+    private static final String TAG = LogUtils.makeLogTag(ArtworkRequestHandler.class);
+
+    private static final String SCHEME = "kodi-artwork";
+    private static final String PARAM_PATH = "path";
+    private static final String PARAM_URL = "url";
+
+    private final OkHttpClient client;
+    private final ArtworkDiskCache diskCache;
+
+    /**
+     * Constructor
+     * @param context Context
+     * @param client Client to download the images, that should already handle authentication
+     */
+    public ArtworkRequestHandler(Context context, OkHttpClient client) {
+        this.client = client;
+        this.diskCache = ArtworkDiskCache.getInstance(context);
+    }
+
+    /**
+     * Returns the uri to load a Kodi image through this handler
+     * @param hostInfo Host the image belongs to
+     * @param imagePath Image path, as returned by Kodi
+     * @return Uri to pass to Picasso, null if there's no image
+     */
+    public static Uri buildUri(HostInfo hostInfo, String imagePath) {
+        if (TextUtils.isEmpty(imagePath) || (hostInfo == null))
+            return null;
+
+        return new Uri.Builder()
+                .scheme(SCHEME)
+                .authority(String.valueOf(hostInfo.getId()))
+                .appendQueryParameter(PARAM_PATH, imagePath)
+                .appendQueryParameter(PARAM_URL, hostInfo.getImageUrl(imagePath))
+                .build();
+    }
+
+    @Override
+    public boolean canHandleRequest(Request data) {
+        return (data.uri != null) && SCHEME.equals(data.uri.getScheme());
+    }
+
+    @Override
+    public Result load(Request request, int networkPolicy) throws IOException {
+        String key = getCacheKey(request.uri);
+        String url = request.uri.getQueryParameter(PARAM_URL);
+        int tier = ArtworkDiskCache.getSizeTier(request.targetWidth, request.targetHeight);
+
+        Bitmap bitmap = diskCache.get(key, tier);
+        if (bitmap != null) {
+            return new Result(bitmap, Picasso.LoadedFrom.DISK);
+        }
+
+        if (NetworkPolicy.isOfflineOnly(networkPolicy)) {
+            throw new IOException("Image not cached: " + url);
+        }
+
+        return new Result(download(key, url, tier), Picasso.LoadedFrom.NETWORK);
+    }
+
+    /**
+     * Downloads an image to the disk cache, without keeping it in memory, so that it's
+     * available offline when later loaded at the given size.
+     * This does network IO, so it shouldn't be called on the main thread
+     * @param hostInfo Host the image belongs to
+     * @param imagePath Image path, as returned by Kodi
+     * @param width Width at which the image will be shown
+     * @param height Height at which the image will be shown
+     * @return Whether the image was downloaded, false if it was already cached
+     * @throws IOException If the image couldn't be downloaded
+     */
+    public boolean warm(HostInfo hostInfo, String imagePath, int width, int height)
+            throws IOException {
+        Uri uri = buildUri(hostInfo, imagePath);
+        if (uri == null)
+            return false;
+
+        String key = getCacheKey(uri);
+        int tier = ArtworkDiskCache.getSizeTier(width, height);
+        if (diskCache.contains(key, tier))
+            return false;
+
+        download(key, uri.getQueryParameter(PARAM_URL), tier).recycle();
+        return true;
+    }
+
+    private static String getCacheKey(Uri uri) {
+        // The same path on different hosts may be a different image
+        return uri.getAuthority() + "/" + uri.getQueryParameter(PARAM_PATH);
+    }
+
+    /**
+     * Downloads an image, decodes it to the tier size and stores it in the disk cache
+     */
+    private Bitmap download(String key, String url, int tier) throws IOException {
+        Response response = client.newCall(new com.squareup.okhttp.Request.Builder().url(url).build())
+                                  .execute();
+        byte[] data;
+        try {
+            if (!response.isSuccessful()) {
+                throw new IOException("Couldn't download image " + url + ": " + response.code());
+            }
+            data = response.body().bytes();
+        } finally {
+            response.body().close();
+        }
+
+        Bitmap bitmap = decodeToTier(data, tier);
+        if (bitmap == null) {
+            throw new IOException("Couldn't decode image " + url);
+        }
+        diskCache.put(key, tier, bitmap);
+        return bitmap;
+    }
+
+    /**
+     * Decodes an image scaled down so that its shorter side is the tier size.
+     * Most of the scaling is done while decoding, through inSampleSize, so that the full size
+     * image is never in memory
+     * @param data Encoded image
+     * @param tier Size tier
+     * @return Decoded image, or null if it can't be decoded
+     */
+    private static Bitmap decodeToTier(byte[] data, int tier) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        int width = options.outWidth, height = options.outHeight;
+        int shorterSide = Math.min(width, height);
+        if (shorterSide <= 0)
+            return null;
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = 1;
+        while (shorterSide / (options.inSampleSize * 2) >= tier) {
+            options.inSampleSize *= 2;
+        }
+        Bitmap bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (bitmap == null)
+            return null;
+
+        int decodedShorterSide = Math.min(bitmap.getWidth(), bitmap.getHeight());
+        if (decodedShorterSide > tier) {
+            float scale = (float)tier / decodedShorterSide;
+            Bitmap scaled = Bitmap.createScaledBitmap(bitmap,
+                                                      Math.round(bitmap.getWidth() * scale),
+                                                      Math.round(bitmap.getHeight() * scale),
+                                                      true);
+            if (scaled != bitmap) {
+                bitmap.recycle();
+            }
+            bitmap = scaled;
+        }
+        LogUtils.LOGD(TAG, "Decoded image " + width + "x" + height +
+                           " to " + bitmap.getWidth() + "x" + bitmap.getHeight());
+        return bitmap;
+    }
+}
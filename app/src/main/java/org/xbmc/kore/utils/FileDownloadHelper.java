@@ -27,6 +27,7 @@ import android.widget.Toast;
 import org.xbmc.kore.R;
 import org.xbmc.kore.Settings;
 import org.xbmc.kore.host.HostInfo;
+import org.xbmc.kore.host.HostManager;
 import org.xbmc.kore.jsonrpc.ApiCallback;
 import org.xbmc.kore.jsonrpc.HostConnection;
 import org.xbmc.kore.jsonrpc.method.Files;
@@ -287,8 +288,7 @@ public class FileDownloadHelper {
             return;
 
         // Check if we are connected to the host
-        final HostConnection httpHostConnection = new HostConnection(hostInfo);
-        httpHostConnection.setProtocol(HostConnection.PROTOCOL_HTTP);
+        final HostConnection httpHostConnection = HostManager.getInstance(context).getHttpConnection(hostInfo);
 
         JSONRPC.Ping action = new JSONRPC.Ping();
         action.execute(httpHostConnection, new ApiCallback<String>() {
@@ -320,8 +320,7 @@ public class FileDownloadHelper {
             return;
 
         // Check if we are connected to the host
-        final HostConnection httpHostConnection = new HostConnection(hostInfo);
-        httpHostConnection.setProtocol(HostConnection.PROTOCOL_HTTP);
+        final HostConnection httpHostConnection = HostManager.getInstance(context).getHttpConnection(hostInfo);
 
         JSONRPC.Ping action = new JSONRPC.Ping();
         action.execute(httpHostConnection, new ApiCallback<String>() {
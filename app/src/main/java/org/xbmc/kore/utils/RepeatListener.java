@@ -41,6 +41,7 @@ public class RepeatListener implements View.OnTouchListener {
     private int initialInterval;
     private final int repeatInterval;
     private final View.OnClickListener clickListener;
+    private final View.OnClickListener releaseListener;
 
     private Runnable handlerRunnable = new Runnable() {
         @Override
@@ -92,9 +93,28 @@ public class RepeatListener implements View.OnTouchListener {
      */
     public RepeatListener(int initialInterval, int repeatInterval, View.OnClickListener clickListener,
                           Animation animDown, Animation animUp, Context context) {
+        this(initialInterval, repeatInterval, clickListener, null, animDown, animUp, context);
+    }
+
+    /**
+     * Constructor for a repeat listener, with animation, vibration and a listener for the release
+     *
+     * @param initialInterval The interval after first click event. If negative, no repeat will occur
+     * @param repeatInterval The interval after second and subsequent click events. If negative, no repeat will occur
+     * @param clickListener The OnClickListener, that will be called periodically
+     * @param releaseListener Called when the view is released or the touch is cancelled, before
+     *                        the click of the release
+     * @param animDown Animation to play on touch
+     * @param animUp Animation to play on release
+     * @param context Context used to access preferences and services
+     */
+    public RepeatListener(int initialInterval, int repeatInterval, View.OnClickListener clickListener,
+                          View.OnClickListener releaseListener,
+                          Animation animDown, Animation animUp, Context context) {
         this.initialInterval = initialInterval;
         this.repeatInterval = repeatInterval;
         this.clickListener = clickListener;
+        this.releaseListener = releaseListener;
 
         this.animDown = animDown;
         this.animUp = animUp;
@@ -127,12 +147,16 @@ public class RepeatListener implements View.OnTouchListener {
                 }
                 break;
             case MotionEvent.ACTION_UP:
-                clickListener.onClick(view);
-                view.playSoundEffect(SoundEffectConstants.CLICK);
-                // Fallthrough
             case MotionEvent.ACTION_CANCEL:
                 repeatHandler.removeCallbacks(handlerRunnable);
                 downView = null;
+                if (releaseListener != null) {
+                    releaseListener.onClick(view);
+                }
+                if (motionEvent.getAction() == MotionEvent.ACTION_UP) {
+                    clickListener.onClick(view);
+                    view.playSoundEffect(SoundEffectConstants.CLICK);
+                }
 
                 if (animUp != null) {
                     view.startAnimation(animUp);
@@ -25,6 +25,8 @@ package org.xbmc.kore.utils;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.support.annotation.VisibleForTesting;
 import android.text.TextUtils;
 
 import java.util.ArrayList;
@@ -176,6 +178,19 @@ public class SelectionBuilder {
                 orderBy, limit);
     }
 
+    /**
+     * Return the query plan of the query that {@link #query} would execute, as returned by
+     * {@code EXPLAIN QUERY PLAN}. Only meant for tests, through the content provider.
+     */
+    @VisibleForTesting
+    public Cursor explainQueryPlan(SQLiteDatabase db, String[] columns, String orderBy, String limit) {
+        assertTable();
+        if (columns != null) mapColumns(columns);
+        String sql = SQLiteQueryBuilder.buildQueryString(false, mTable, columns, getSelection(),
+                mGroupBy.toString(), null, orderBy, limit);
+        return db.rawQuery("EXPLAIN QUERY PLAN " + sql, getSelectionArgs());
+    }
+
     /**
      * Execute update using the current internal state as {@code WHERE} clause.
      */
@@ -147,19 +147,40 @@ public class UIUtils {
 
         if ((imageWidth) > 0 && (imageHeight > 0)) {
             hostManager.getPicasso()
-                       .load(hostManager.getHostInfo().getImageUrl(imageUrl))
+                       .load(ArtworkRequestHandler.buildUri(hostManager.getHostInfo(), imageUrl))
                        .resize(imageWidth, imageHeight)
                        .centerCrop()
                        .into(imageView);
         } else {
             hostManager.getPicasso()
-                       .load(hostManager.getHostInfo().getImageUrl(imageUrl))
+                       .load(ArtworkRequestHandler.buildUri(hostManager.getHostInfo(), imageUrl))
                        .fit()
                        .centerCrop()
                        .into(imageView);
         }
     }
 
+    /**
+     * Loads an image into the memory cache, so that a later call to
+     * {@link #loadImageIntoImageview} or {@link #loadImageWithCharacterAvatar} with the same
+     * size shows it immediately
+     * @param hostManager Hostmanager connected to the host
+     * @param imageUrl XBMC url of the image to load
+     * @param imageWidth Width of the image, as it will be shown
+     * @param imageHeight Height of the image, as it will be shown
+     */
+    public static void prefetchImage(HostManager hostManager, String imageUrl,
+                                     int imageWidth, int imageHeight) {
+        if (TextUtils.isEmpty(imageUrl) || (imageWidth <= 0) || (imageHeight <= 0))
+            return;
+
+        hostManager.getPicasso()
+                   .load(ArtworkRequestHandler.buildUri(hostManager.getHostInfo(), imageUrl))
+                   .resize(imageWidth, imageHeight)
+                   .centerCrop()
+                   .fetch();
+    }
+
     private static TypedArray characterAvatarColors = null;
 //    private static Random randomGenerator = new Random();
 
@@ -186,14 +207,14 @@ public class UIUtils {
 
         if ((imageWidth) > 0 && (imageHeight > 0)) {
             hostManager.getPicasso()
-                       .load(hostManager.getHostInfo().getImageUrl(imageUrl))
+                       .load(ArtworkRequestHandler.buildUri(hostManager.getHostInfo(), imageUrl))
                        .placeholder(avatarDrawable)
                        .resize(imageWidth, imageHeight)
                        .centerCrop()
                        .into(imageView);
         } else {
             hostManager.getPicasso()
-                       .load(hostManager.getHostInfo().getImageUrl(imageUrl))
+                       .load(ArtworkRequestHandler.buildUri(hostManager.getHostInfo(), imageUrl))
                        .fit()
                        .centerCrop()
                        .into(imageView);
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xbmc.kore.eventclient;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the bytes of the UDP messages the packets are encoded in
+ */
+public class PacketTest {
+    private static final int HEADER_SIZE = 32;
+    private static final int MAX_PAYLOAD_SIZE = Packet.MAX_PACKET_SIZE - HEADER_SIZE;
+
+    @Test
+    public void buttonPacketTest() {
+        Packet packet = new PacketBUTTON("R1", "up", false, true, false, (short)0, (byte)0);
+        assertEquals(1, packet.getNumPackets());
+
+        ByteBuffer buffer = ByteBuffer.allocate(Packet.MAX_PACKET_SIZE);
+        packet.writeUDPMessage(1, buffer);
+        byte[] payload = new byte[] {
+                0x00, 0x00,                 // Code, unused when sending by name
+                0x00, 0x23,                 // Flags: use name, down, no repeat
+                0x00, 0x00,                 // Amount
+                'R', '1', 0x00,             // Map name
+                'u', 'p', 0x00              // Button name
+        };
+        checkMessage(buffer, Packet.PT_BUTTON, 1, 1, payload);
+    }
+
+    @Test
+    public void lastPacketTest() {
+        checkSplitPayload(MAX_PAYLOAD_SIZE + 251);
+    }
+
+    @Test
+    public void severalPacketsTest() {
+        checkSplitPayload(2 * MAX_PAYLOAD_SIZE + 272);
+    }
+
+    @Test
+    public void fullPacketsTest() {
+        checkSplitPayload(2 * MAX_PAYLOAD_SIZE);
+    }
+
+    /**
+     * Encodes a payload of the given size, and checks that each message carries the next
+     * piece of it, all of them full except the last one
+     */
+    private void checkSplitPayload(int size) {
+        byte[] payload = new byte[size];
+        for (int i = 0; i < size; i++) {
+            payload[i] = (byte)i;
+        }
+        Packet packet = new PacketBytes(payload);
+        int numPackets = (size + MAX_PAYLOAD_SIZE - 1) / MAX_PAYLOAD_SIZE;
+        assertEquals(numPackets, packet.getNumPackets());
+
+        ByteBuffer buffer = ByteBuffer.allocate(Packet.MAX_PACKET_SIZE);
+        int uid = 0;
+        for (int seq = 1; seq <= numPackets; seq++) {
+            packet.writeUDPMessage(seq, buffer);
+            int from = (seq - 1) * MAX_PAYLOAD_SIZE;
+            int to = Math.min(from + MAX_PAYLOAD_SIZE, size);
+            checkMessage(buffer, Packet.PT_BLOB, seq, numPackets,
+                         Arrays.copyOfRange(payload, from, to));
+
+            // Every message of a packet has the client's token
+            if (seq == 1) {
+                uid = buffer.getInt(18);
+            } else {
+                assertEquals(uid, buffer.getInt(18));
+            }
+        }
+    }
+
+    /**
+     * Checks the header, in network byte order, and payload of a message
+     */
+    private void checkMessage(ByteBuffer buffer, short packetType, int seq, int numPackets,
+                              byte[] payload) {
+        assertEquals(0, buffer.position());
+        assertEquals(HEADER_SIZE + payload.length, buffer.limit());
+        byte[] message = new byte[buffer.limit()];
+        buffer.duplicate().get(message);
+
+        assertArrayEquals(new byte[] {'X', 'B', 'M', 'C'}, Arrays.copyOfRange(message, 0, 4));
+        // Version 2.0
+        assertEquals(2, message[4]);
+        assertEquals(0, message[5]);
+        assertArrayEquals(new byte[] {(byte)(packetType >>> 8), (byte)packetType},
+                          Arrays.copyOfRange(message, 6, 8));
+        assertArrayEquals(bigEndian(seq), Arrays.copyOfRange(message, 8, 12));
+        assertArrayEquals(bigEndian(numPackets), Arrays.copyOfRange(message, 12, 16));
+        assertArrayEquals(new byte[] {(byte)(payload.length >>> 8), (byte)payload.length},
+                          Arrays.copyOfRange(message, 16, 18));
+        // Reserved
+        assertArrayEquals(new byte[10], Arrays.copyOfRange(message, 22, HEADER_SIZE));
+        assertArrayEquals(payload, Arrays.copyOfRange(message, HEADER_SIZE, message.length));
+    }
+
+    private static byte[] bigEndian(int i) {
+        return new byte[] {(byte)(i >>> 24), (byte)(i >>> 16), (byte)(i >>> 8), (byte)i};
+    }
+
+    /**
+     * Packet with an arbitrary payload
+     */
+    private static class PacketBytes extends Packet {
+        PacketBytes(byte[] payload) {
+            super(PT_BLOB);
+            appendPayload(payload);
+        }
+    }
+}
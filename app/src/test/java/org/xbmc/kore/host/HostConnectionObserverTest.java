@@ -0,0 +1,282 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xbmc.kore.host;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.xbmc.kore.BuildConfig;
+import org.xbmc.kore.jsonrpc.HostConnection;
+import org.xbmc.kore.jsonrpc.method.Player;
+import org.xbmc.kore.jsonrpc.notification.Player.NotificationsData;
+import org.xbmc.kore.jsonrpc.type.ListType;
+import org.xbmc.kore.jsonrpc.type.PlayerType;
+import org.xbmc.kore.testutils.tcpserver.MockTcpServer;
+import org.xbmc.kore.testutils.tcpserver.handlers.HttpConnectionHandler;
+import org.xbmc.kore.testutils.tcpserver.handlers.JSONConnectionHandlerManager;
+import org.xbmc.kore.testutils.tcpserver.handlers.JSONRPCHandler;
+import org.xbmc.kore.testutils.tcpserver.handlers.jsonrpc.JsonResponse;
+import org.xbmc.kore.testutils.tcpserver.handlers.jsonrpc.response.notifications.Player.OnSeek;
+import org.xbmc.kore.testutils.tcpserver.handlers.jsonrpc.response.notifications.Player.OnSpeedChanged;
+import org.xbmc.kore.utils.RoboThreadRunner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks which calls the player notifications make, and how often the player is checked
+ * through HTTP
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class HostConnectionObserverTest {
+    private static final int PLAYER_ID = 1;
+    private static final int ITEM_ID = 42;
+
+    private JSONConnectionHandlerManager manager;
+    private PlayerStateHandler playerHandler;
+    private MockTcpServer server;
+    private HostConnection hostConnection;
+    private HostConnectionObserver hostConnectionObserver;
+
+    @Before
+    public void setUp() throws Exception {
+        playerHandler = new PlayerStateHandler();
+        manager = new JSONConnectionHandlerManager();
+        manager.addHandler(playerHandler);
+        manager.addHandler(new JSONRPCHandler());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        hostConnectionObserver.stopObserving();
+        server.shutdown();
+        hostConnection.disconnect();
+    }
+
+    /**
+     * A seek is applied from the notification alone, and a speed change of the item playing
+     * only asks for the timing properties
+     */
+    @Test
+    public void tcpNotificationsTest() throws Exception {
+        server = new MockTcpServer(manager);
+        server.start();
+        hostConnection = new HostConnection(
+                new HostInfo("TESTHOST", server.getHostName(), HostConnection.PROTOCOL_TCP,
+                             HostInfo.DEFAULT_HTTP_PORT, server.getPort(), null, null, true,
+                             HostInfo.DEFAULT_EVENT_SERVER_PORT, false));
+        hostConnectionObserver = new HostConnectionObserver(hostConnection);
+
+        EventsRecorder recorder = new EventsRecorder();
+        hostConnectionObserver.registerPlayerObserver(recorder, false);
+        recorder.waitForEvents(1);
+        assertEquals("play 10", recorder.events.get(0));
+
+        playerHandler.requests.clear();
+        playerHandler.addNotification(new OnSeek(ITEM_ID, ListType.ItemsAll.TYPE_MOVIE, PLAYER_ID, 1,
+                                                 90, 100));
+        recorder.waitForEvents(2);
+        assertEquals("play 100", recorder.events.get(1));
+        assertEquals(100, hostConnectionObserver.getPlaybackClock().getTime());
+        assertEquals(Collections.<String>emptyList(), playerHandler.requests);
+
+        playerHandler.speed = 0;
+        playerHandler.addNotification(new OnSpeedChanged(ITEM_ID, ListType.ItemsAll.TYPE_MOVIE,
+                                                         PLAYER_ID, 0));
+        recorder.waitForEvents(3);
+        assertEquals("pause 10", recorder.events.get(2));
+        assertEquals(Collections.singletonList(Player.GetProperties.METHOD_NAME),
+                     playerHandler.requests);
+    }
+
+    /**
+     * The player is checked more often when something is playing, and when an observer is
+     * on screen
+     */
+    @Test
+    public void httpCheckIntervalTest() throws Exception {
+        server = new MockTcpServer(new HttpConnectionHandler(manager));
+        server.start();
+        hostConnection = new HostConnection(
+                new HostInfo("TESTHOST", server.getHostName(), HostConnection.PROTOCOL_HTTP,
+                             server.getPort(), HostInfo.DEFAULT_TCP_PORT, null, null, true,
+                             HostInfo.DEFAULT_EVENT_SERVER_PORT, false));
+        hostConnectionObserver = new HostConnectionObserver(hostConnection);
+
+        // Playing, on screen
+        EventsRecorder onScreenRecorder = new EventsRecorder();
+        hostConnectionObserver.registerPlayerObserver(onScreenRecorder, false);
+        onScreenRecorder.waitForEvents(1);
+        assertEquals(3000, hostConnectionObserver.getHttpPlayerCheckInterval());
+
+        // Playing, only in the background
+        EventsRecorder backgroundRecorder = new EventsRecorder();
+        hostConnectionObserver.registerBackgroundPlayerObserver(backgroundRecorder, true);
+        hostConnectionObserver.unregisterPlayerObserver(onScreenRecorder);
+        assertEquals(10000, hostConnectionObserver.getHttpPlayerCheckInterval());
+
+        // Idle, only in the background
+        playerHandler.playing = false;
+        backgroundRecorder.waitForEvents(2);
+        assertEquals("stop", backgroundRecorder.events.get(1));
+        assertEquals(30000, hostConnectionObserver.getHttpPlayerCheckInterval());
+
+        // Idle, on screen
+        hostConnectionObserver.registerPlayerObserver(new EventsRecorder(), true);
+        assertEquals(5000, hostConnectionObserver.getHttpPlayerCheckInterval());
+    }
+
+    /**
+     * Records the player events as "play &lt;seconds&gt;", "pause &lt;seconds&gt;" or "stop"
+     */
+    private static class EventsRecorder implements HostConnectionObserver.PlayerEventsObserver {
+        final List<String> events = new ArrayList<>();
+
+        void waitForEvents(int count) throws InterruptedException {
+            while (events.size() < count) {
+                assertTrue(RoboThreadRunner.run(10));
+            }
+        }
+
+        private void onEvent(String event) {
+            events.add(event);
+            RoboThreadRunner.stop();
+        }
+
+        @Override
+        public void playerOnPlay(PlayerType.GetActivePlayersReturnType getActivePlayerResult,
+                                 PlayerType.PropertyValue getPropertiesResult,
+                                 ListType.ItemsAll getItemResult) {
+            onEvent("play " + getPropertiesResult.time.ToSeconds());
+        }
+
+        @Override
+        public void playerOnPause(PlayerType.GetActivePlayersReturnType getActivePlayerResult,
+                                  PlayerType.PropertyValue getPropertiesResult,
+                                  ListType.ItemsAll getItemResult) {
+            onEvent("pause " + getPropertiesResult.time.ToSeconds());
+        }
+
+        @Override
+        public void playerOnStop() {
+            onEvent("stop");
+        }
+
+        @Override
+        public void playerOnPropertyChanged(NotificationsData notificationsData) {
+        }
+
+        @Override
+        public void playerOnConnectionError(int errorCode, String description) {
+            onEvent("error " + description);
+        }
+
+        @Override
+        public void playerNoResultsYet() {
+        }
+
+        @Override
+        public void systemOnQuit() {
+        }
+
+        @Override
+        public void inputOnInputRequested(String title, String type, String value) {
+        }
+
+        @Override
+        public void observerOnStopObserving() {
+        }
+    }
+
+    /**
+     * Answers the player calls with a movie playing on the video player, at 10 seconds, and
+     * sends the notifications it's given
+     */
+    private static class PlayerStateHandler implements JSONConnectionHandlerManager.ConnectionHandler {
+        final List<String> requests = new CopyOnWriteArrayList<>();
+        private final List<JsonResponse> notifications = new ArrayList<>();
+
+        volatile boolean playing = true;
+        volatile int speed = 1;
+
+        void addNotification(JsonResponse notification) {
+            synchronized (notifications) {
+                notifications.add(notification);
+            }
+        }
+
+        @Override
+        public String[] getType() {
+            return new String[]{Player.GetActivePlayers.METHOD_NAME,
+                                Player.GetProperties.METHOD_NAME,
+                                Player.GetItem.METHOD_NAME};
+        }
+
+        @Override
+        public ArrayList<JsonResponse> getResponse(String method, ObjectNode jsonRequest) {
+            ArrayList<JsonResponse> responses = new ArrayList<>();
+            int id = jsonRequest.get("id").asInt(-1);
+            requests.add(method);
+
+            String result;
+            if (method.equals(Player.GetActivePlayers.METHOD_NAME)) {
+                result = playing ?
+                         "[{\"playerid\":" + PLAYER_ID + ",\"type\":\"video\"}]" : "[]";
+            } else if (method.equals(Player.GetProperties.METHOD_NAME)) {
+                result = "{\"speed\":" + speed + ",\"percentage\":1.66," +
+                         "\"time\":{\"hours\":0,\"minutes\":0,\"seconds\":10,\"milliseconds\":0}," +
+                         "\"totaltime\":{\"hours\":0,\"minutes\":10,\"seconds\":0,\"milliseconds\":0}," +
+                         "\"repeat\":\"off\",\"shuffled\":false,\"playlistid\":1,\"position\":0}";
+            } else {
+                result = "{\"item\":{\"id\":" + ITEM_ID + ",\"type\":\"movie\",\"label\":\"Movie\"," +
+                         "\"title\":\"Movie\"}}";
+            }
+
+            try {
+                responses.add(new JsonResponse(id, "{\"result\":" + result + "}") { });
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return responses;
+        }
+
+        @Override
+        public ArrayList<JsonResponse> getNotifications() {
+            synchronized (notifications) {
+                ArrayList<JsonResponse> list = new ArrayList<>(notifications);
+                notifications.clear();
+                return list;
+            }
+        }
+
+        @Override
+        public void reset() {
+        }
+    }
+}
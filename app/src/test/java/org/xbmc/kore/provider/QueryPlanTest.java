@@ -0,0 +1,193 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xbmc.kore.provider;
+
+import android.database.Cursor;
+import android.net.Uri;
+
+import org.junit.Test;
+import org.xbmc.kore.provider.mediaprovider.AbstractTestClass;
+import org.xbmc.kore.provider.mediaprovider.TestValues;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the queries run for each {@link MediaProvider} uri
+ * use an index, and don't scan whole tables
+ */
+public class QueryPlanTest extends AbstractTestClass {
+    private static final int tvshowId = 1;
+    private static final int season = 1;
+    private static final int episodeId = 1;
+    private static final int movieId = 1;
+    private static final int musicVideoId = 1;
+    private static final int genreId = 1;
+    private static final int songId = 96;
+    private static final int channelGroupId = 1;
+    private static final int channelId = 1;
+
+    @Test
+    public void moviesTest() {
+        long hostId = hostInfo.getId();
+        testUsesIndex(MediaContract.Movies.buildMoviesListUri(hostId));
+        testUsesIndex(MediaContract.Movies.buildMovieUri(hostId, movieId));
+        testUsesIndex(MediaContract.MovieCast.buildMovieCastListUri(hostId, movieId));
+    }
+
+    @Test
+    public void moviesSortTest() {
+        Uri uri = MediaContract.Movies.buildMoviesListUri(hostInfo.getId());
+        testSortUsesIndex(uri, MediaContract.Movies.TITLE + " COLLATE NOCASE ASC");
+        testSortUsesIndex(uri, MediaContract.Movies.YEAR + " ASC");
+        testSortUsesIndex(uri, MediaContract.Movies.RATING + " DESC");
+        testSortUsesIndex(uri, MediaContract.Movies.DATEADDED + " DESC");
+        testSortUsesIndex(uri, MediaContract.Movies.LASTPLAYED + " DESC");
+        testSortUsesIndex(uri, MediaContract.Movies.RUNTIME + " DESC");
+    }
+
+    @Test
+    public void tvshowsTest() {
+        long hostId = hostInfo.getId();
+        testUsesIndex(MediaContract.TVShows.buildTVShowsListUri(hostId));
+        testUsesIndex(MediaContract.TVShows.buildTVShowUri(hostId, tvshowId));
+        testUsesIndex(MediaContract.TVShowCast.buildTVShowCastListUri(hostId, tvshowId));
+        testUsesIndex(MediaContract.Seasons.buildTVShowSeasonsListUri(hostId, tvshowId));
+        testUsesIndex(MediaContract.Seasons.buildTVShowSeasonUri(hostId, tvshowId, season));
+        testUsesIndex(MediaContract.Episodes.buildTVShowEpisodesListUri(hostId, tvshowId));
+        testUsesIndex(MediaContract.Episodes.buildTVShowSeasonEpisodesListUri(hostId, tvshowId, season));
+        testUsesIndex(MediaContract.Episodes.buildTVShowEpisodeUri(hostId, tvshowId, episodeId));
+        testUsesIndex(MediaContract.Episodes.buildTVShowSeasonEpisodeUri(hostId, tvshowId, season, episodeId));
+    }
+
+    @Test
+    public void tvshowsSortTest() {
+        Uri uri = MediaContract.TVShows.buildTVShowsListUri(hostInfo.getId());
+        testSortUsesIndex(uri, MediaContract.TVShows.TITLE + " COLLATE NOCASE ASC");
+        testSortUsesIndex(uri, MediaContract.TVShows.PREMIERED + " ASC");
+        testSortUsesIndex(uri, MediaContract.TVShows.RATING + " DESC");
+        testSortUsesIndex(uri, MediaContract.TVShows.DATEADDED + " DESC");
+        testSortUsesIndex(uri, MediaContract.TVShows.LASTPLAYED + " DESC");
+    }
+
+    @Test
+    public void musicTest() {
+        long hostId = hostInfo.getId();
+        int artistId = TestValues.Artist.artistId;
+        int albumId = TestValues.Album.albumId;
+        testUsesIndex(MediaContract.Artists.buildArtistsListUri(hostId));
+        testUsesIndex(MediaContract.Artists.buildArtistUri(hostId, artistId));
+        testUsesIndex(MediaContract.Albums.buildAlbumsListUri(hostId));
+        testUsesIndex(MediaContract.Albums.buildAlbumUri(hostId, albumId));
+        testUsesIndex(MediaContract.Albums.buildAlbumArtistsListUri(hostId, albumId));
+        testUsesIndex(MediaContract.Albums.buildAlbumGenresListUri(hostId, albumId));
+        testUsesIndex(MediaContract.AlbumArtists.buildAlbumsForArtistListUri(hostId, artistId));
+        testUsesIndex(MediaContract.AlbumGenres.buildAlbumsForGenreListUri(hostId, genreId));
+        testUsesIndex(MediaContract.Songs.buildSongsListUri(hostId));
+        testUsesIndex(MediaContract.Songs.buildAlbumSongsListUri(hostId, albumId));
+        testUsesIndex(MediaContract.Songs.buildArtistSongsListUri(hostId, artistId));
+        testUsesIndex(MediaContract.Songs.buildSongUri(hostId, albumId, songId));
+        testUsesIndex(MediaContract.SongArtists.buildSongsForArtistListUri(hostId, artistId));
+        testUsesIndex(MediaContract.AudioGenres.buildAudioGenresListUri(hostId));
+        testUsesIndex(MediaContract.AudioGenres.buildAudioGenreUri(hostId, genreId));
+    }
+
+    @Test
+    public void musicVideosTest() {
+        long hostId = hostInfo.getId();
+        testUsesIndex(MediaContract.MusicVideos.buildMusicVideosListUri(hostId));
+        testUsesIndex(MediaContract.MusicVideos.buildMusicVideoUri(hostId, musicVideoId));
+    }
+
+    @Test
+    public void pvrTest() {
+        long hostId = hostInfo.getId();
+        testUsesIndex(MediaContract.PVRChannelGroups.buildChannelGroupsListUri(hostId));
+        testUsesIndex(MediaContract.PVRChannels.buildChannelsListUri(hostId));
+        testUsesIndex(MediaContract.PVRChannels.buildChannelGroupChannelsListUri(hostId, channelGroupId));
+        testUsesIndex(MediaContract.PVRBroadcasts.buildChannelBroadcastsListUri(hostId, channelId));
+
+        testSortUsesIndex(MediaContract.PVRBroadcasts.buildChannelBroadcastsListUri(hostId, channelId),
+                          MediaContract.PVRBroadcasts.STARTTIME + " ASC");
+    }
+
+    @Test
+    public void addonsTest() {
+        long hostId = hostInfo.getId();
+        testUsesIndex(MediaContract.Addons.buildAddonsListUri(hostId));
+        testUsesIndex(MediaContract.Favourites.buildFavouritesListUri(hostId));
+
+        testSortUsesIndex(MediaContract.Favourites.buildFavouritesListUri(hostId),
+                          MediaContract.Favourites._ID + " ASC");
+    }
+
+    @Test
+    public void searchTest() {
+        long hostId = hostInfo.getId();
+        String query = "the";
+        testUsesIndex(MediaContract.Search.buildSearchUri(hostId, query));
+        testUsesIndex(MediaContract.Movies.buildMoviesSearchUri(hostId, query));
+        testUsesIndex(MediaContract.TVShows.buildTVShowsSearchUri(hostId, query));
+        testUsesIndex(MediaContract.Artists.buildArtistsSearchUri(hostId, query));
+        testUsesIndex(MediaContract.Albums.buildAlbumsSearchUri(hostId, query));
+        testUsesIndex(MediaContract.Songs.buildSongsSearchUri(hostId, query));
+        testUsesIndex(MediaContract.MusicVideos.buildMusicVideosSearchUri(hostId, query));
+    }
+
+    private void testUsesIndex(Uri uri) {
+        for (String step : getQueryPlan(uri, null)) {
+            assertFalse("Table scan for " + uri + ": " + step, isTableScan(step));
+        }
+    }
+
+    private void testSortUsesIndex(Uri uri, String sortOrder) {
+        for (String step : getQueryPlan(uri, sortOrder)) {
+            assertFalse("Table scan for " + uri + ": " + step, isTableScan(step));
+            assertFalse("Sort without index for " + sortOrder + ": " + step,
+                        step.contains("TEMP B-TREE FOR ORDER BY"));
+        }
+    }
+
+    /**
+     * A step scans a whole table if it isn't a search and doesn't go through an index.
+     * Scans of a subquery or of the full text search tables are fine
+     */
+    private boolean isTableScan(String step) {
+        return step.startsWith("SCAN") &&
+               !step.contains("USING") &&
+               !step.contains("SUBQUERY") &&
+               !step.contains("VIRTUAL TABLE");
+    }
+
+    private List<String> getQueryPlan(Uri uri, String sortOrder) {
+        Cursor cursor = provider.explainQueryPlan(uri, null, null, null, sortOrder);
+        assertNotNull(cursor);
+
+        List<String> steps = new ArrayList<>();
+        int detailIdx = cursor.getColumnIndex("detail");
+        while (cursor.moveToNext()) {
+            steps.add(cursor.getString(detailIdx));
+        }
+        cursor.close();
+        assertTrue("No query plan for " + uri, steps.size() > 0);
+        return steps;
+    }
+}
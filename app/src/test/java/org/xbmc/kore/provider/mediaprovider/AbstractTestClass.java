@@ -38,10 +38,11 @@ import org.xbmc.kore.testutils.Database;
 public class AbstractTestClass {
     protected static HostInfo hostInfo;
     protected static ShadowContentResolver shadowContentResolver;
+    protected static MediaProvider provider;
 
     @Before
     public void setUp() throws Exception {
-        MediaProvider provider = new MediaProvider();
+        provider = new MediaProvider();
         ContentResolver contentResolver = RuntimeEnvironment.application.getContentResolver();
         provider.onCreate();
         shadowContentResolver = Shadows.shadowOf(contentResolver);
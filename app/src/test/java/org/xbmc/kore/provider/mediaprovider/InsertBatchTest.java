@@ -0,0 +1,241 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xbmc.kore.provider.mediaprovider;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.BaseColumns;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowContentResolver;
+import org.xbmc.kore.BuildConfig;
+import org.xbmc.kore.jsonrpc.method.AudioLibrary;
+import org.xbmc.kore.jsonrpc.method.VideoLibrary;
+import org.xbmc.kore.jsonrpc.type.AudioType;
+import org.xbmc.kore.jsonrpc.type.VideoType;
+import org.xbmc.kore.provider.MediaContract;
+import org.xbmc.kore.provider.MediaProvider;
+import org.xbmc.kore.service.library.SyncUtils;
+import org.xbmc.kore.testutils.Database;
+import org.xbmc.kore.testutils.FileUtils;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the rows bulk inserted through an {@link org.xbmc.kore.provider.InsertBatch} are
+ * the same as the ones inserted through {@link ContentValues}
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class InsertBatchTest {
+    private MediaProvider provider;
+    private ContentResolver contentResolver;
+
+    // Rows are inserted through InsertBatch for one host, and through ContentValues for the other
+    private int batchHostId;
+    private int valuesHostId;
+
+    @Before
+    public void setUp() throws Exception {
+        provider = new MediaProvider();
+        provider.onCreate();
+        ShadowContentResolver.registerProvider("org.xbmc.kore.provider", provider);
+        contentResolver = RuntimeEnvironment.application.getContentResolver();
+
+        batchHostId = Database.addHost(RuntimeEnvironment.application).getId();
+        valuesHostId = Database.addHost(RuntimeEnvironment.application).getId();
+    }
+
+    @Test
+    public void songsTest() throws Exception {
+        List<AudioType.DetailsSong> songs = new AudioLibrary.GetSongs().resultFromJson(
+                FileUtils.readFile(RuntimeEnvironment.application, "AudioLibrary.GetSongs.json")).items;
+
+        long before = System.currentTimeMillis();
+        assertEquals(songs.size(),
+                     provider.bulkInsert(MediaContract.Songs.CONTENT_URI,
+                                         SyncUtils.insertBatchFromSongs(batchHostId, songs)));
+        long after = System.currentTimeMillis();
+
+        ContentValues[] values = new ContentValues[songs.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = SyncUtils.contentValuesFromSong(valuesHostId, songs.get(i));
+        }
+        contentResolver.bulkInsert(MediaContract.Songs.CONTENT_URI, values);
+
+        checkSameRows(MediaContract.Songs.CONTENT_URI, MediaContract.Songs.HOST_ID,
+                      songs.size(), before, after);
+    }
+
+    @Test
+    public void songArtistsTest() throws Exception {
+        List<AudioType.DetailsSong> songs = new AudioLibrary.GetSongs().resultFromJson(
+                FileUtils.readFile(RuntimeEnvironment.application, "AudioLibrary.GetSongs.json")).items;
+
+        Set<String> expected = new HashSet<>();
+        for (AudioType.DetailsSong song : songs) {
+            for (int artistId : song.artistid) {
+                expected.add(song.songid + "/" + artistId);
+            }
+        }
+
+        assertEquals(expected.size(),
+                     SyncUtils.insertBatchFromSongArtists(batchHostId, songs)
+                              .insert(contentResolver, MediaContract.SongArtists.CONTENT_URI));
+
+        Cursor cursor = contentResolver.query(MediaContract.SongArtists.CONTENT_URI,
+                                              new String[] {MediaContract.SongArtists.SONGID,
+                                                            MediaContract.SongArtists.ARTISTID},
+                                              MediaContract.SongArtists.HOST_ID + "=?",
+                                              new String[] {String.valueOf(batchHostId)}, null);
+        Set<String> inserted = new HashSet<>();
+        while (cursor.moveToNext()) {
+            inserted.add(cursor.getInt(0) + "/" + cursor.getInt(1));
+        }
+        assertEquals(expected.size(), cursor.getCount());
+        cursor.close();
+        assertEquals(expected, inserted);
+    }
+
+    @Test
+    public void episodesTest() throws Exception {
+        List<VideoType.DetailsEpisode> episodes = new VideoLibrary.GetEpisodes(0).resultFromJson(
+                FileUtils.readFile(RuntimeEnvironment.application, "VideoLibrary.GetEpisodes.json")).items;
+
+        long before = System.currentTimeMillis();
+        assertEquals(episodes.size(),
+                     SyncUtils.insertBatchFromEpisodes(batchHostId, episodes)
+                              .insert(contentResolver, MediaContract.Episodes.CONTENT_URI));
+        long after = System.currentTimeMillis();
+
+        ContentValues[] values = new ContentValues[episodes.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = SyncUtils.contentValuesFromEpisode(valuesHostId, episodes.get(i));
+        }
+        contentResolver.bulkInsert(MediaContract.Episodes.CONTENT_URI, values);
+
+        checkSameRows(MediaContract.Episodes.CONTENT_URI, MediaContract.Episodes.HOST_ID,
+                      episodes.size(), before, after);
+    }
+
+    /**
+     * Rows with different columns in the same bulk insert each get their own values, and
+     * an updated time is only set when the row doesn't have one
+     */
+    @Test
+    public void mixedColumnsTest() throws Exception {
+        ContentValues[] values = new ContentValues[] {
+                addon("addon.one", "One", null),
+                addon("addon.two", null, null),
+                addon("addon.three", "Three", 42L),
+                addon("addon.four", "Four", null),
+        };
+
+        long before = System.currentTimeMillis();
+        contentResolver.bulkInsert(MediaContract.Addons.CONTENT_URI, values);
+        long after = System.currentTimeMillis();
+
+        Cursor cursor = contentResolver.query(MediaContract.Addons.buildAddonsListUri(batchHostId),
+                                              new String[] {MediaContract.Addons.ADDONID,
+                                                            MediaContract.Addons.NAME,
+                                                            MediaContract.Addons.UPDATED},
+                                              null, null, BaseColumns._ID + " ASC");
+        assertEquals(values.length, cursor.getCount());
+
+        cursor.moveToNext();
+        assertEquals("addon.one", cursor.getString(0));
+        assertEquals("One", cursor.getString(1));
+        checkUpdated(cursor.getLong(2), before, after);
+
+        cursor.moveToNext();
+        assertEquals("addon.two", cursor.getString(0));
+        assertNull(cursor.getString(1));
+        checkUpdated(cursor.getLong(2), before, after);
+
+        cursor.moveToNext();
+        assertEquals("addon.three", cursor.getString(0));
+        assertEquals("Three", cursor.getString(1));
+        assertEquals(42, cursor.getLong(2));
+
+        cursor.moveToNext();
+        assertEquals("addon.four", cursor.getString(0));
+        assertEquals("Four", cursor.getString(1));
+        checkUpdated(cursor.getLong(2), before, after);
+        cursor.close();
+    }
+
+    private ContentValues addon(String addonId, String name, Long updated) {
+        ContentValues values = new ContentValues();
+        values.put(MediaContract.Addons.HOST_ID, batchHostId);
+        values.put(MediaContract.Addons.ADDONID, addonId);
+        if (name != null) values.put(MediaContract.Addons.NAME, name);
+        if (updated != null) values.put(MediaContract.Addons.UPDATED, updated);
+        return values;
+    }
+
+    /**
+     * Checks that both hosts have the same rows, apart from the host and row ids, and that
+     * the rows inserted through the batch have their updated time set
+     */
+    private void checkSameRows(Uri uri, String hostIdColumn, int count, long before, long after) {
+        Cursor batchCursor = queryHost(uri, hostIdColumn, batchHostId);
+        Cursor valuesCursor = queryHost(uri, hostIdColumn, valuesHostId);
+        assertEquals(count, batchCursor.getCount());
+        assertEquals(count, valuesCursor.getCount());
+
+        int updatedIdx = batchCursor.getColumnIndex(MediaContract.SyncColumns.UPDATED);
+        while (batchCursor.moveToNext() && valuesCursor.moveToNext()) {
+            for (String column : batchCursor.getColumnNames()) {
+                if (column.equals(BaseColumns._ID) || column.equals(hostIdColumn) ||
+                    column.equals(MediaContract.SyncColumns.UPDATED)) {
+                    continue;
+                }
+                int idx = batchCursor.getColumnIndex(column);
+                assertEquals(column, valuesCursor.getString(idx), batchCursor.getString(idx));
+            }
+            checkUpdated(batchCursor.getLong(updatedIdx), before, after);
+        }
+        batchCursor.close();
+        valuesCursor.close();
+    }
+
+    /**
+     * Queries the rows of a host, in the order they were inserted
+     */
+    private Cursor queryHost(Uri uri, String hostIdColumn, int hostId) {
+        return contentResolver.query(uri, null, hostIdColumn + "=?",
+                                     new String[] {String.valueOf(hostId)}, BaseColumns._ID + " ASC");
+    }
+
+    private void checkUpdated(long updated, long before, long after) {
+        assertTrue("Updated " + updated + " not in [" + before + ", " + after + "]",
+                   (updated >= before) && (updated <= after));
+    }
+}
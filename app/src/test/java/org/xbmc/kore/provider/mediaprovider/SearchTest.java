@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xbmc.kore.provider.mediaprovider;
+
+import android.database.Cursor;
+import android.net.Uri;
+
+import org.junit.Test;
+import org.xbmc.kore.provider.MediaContract;
+import org.xbmc.kore.provider.MediaProvider;
+import org.xbmc.kore.testutils.TestUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class SearchTest extends AbstractTestClass {
+    @Test
+    public void searchArtistsTest() {
+        Uri uri = MediaContract.Artists.buildArtistsSearchUri(hostInfo.getId(), "bernst");
+
+        Cursor cursor = shadowContentResolver.query(uri, TestValues.Artist.PROJECTION, null, null, null);
+
+        assertNotNull(cursor);
+        assertEquals("cursor size ", 1, cursor.getCount());
+        assertTrue(cursor.moveToFirst());
+        TestValues.Artist.test(cursor);
+    }
+
+    @Test
+    public void searchSongsByAlbumTitleTest() {
+        Uri uri = MediaContract.Songs.buildSongsSearchUri(hostInfo.getId(), "The Entit");
+
+        Cursor cursor = shadowContentResolver.query(uri, new String[] {MediaProvider.Qualified.SONGS_SONGID},
+                                                    null, null, null);
+
+        assertNotNull(cursor);
+        assertEquals("cursor size ", 17, cursor.getCount());
+        TestUtils.testCursorContainsRange(cursor, cursor.getColumnIndex(MediaContract.SongsColumns.SONGID),
+                                          96, 112);
+    }
+
+    @Test
+    public void searchAllTest() {
+        Uri uri = MediaContract.Search.buildSearchUri(hostInfo.getId(), "Bernstein");
+
+        Cursor cursor = shadowContentResolver.query(uri, MediaContract.Search.ALL_COLUMNS, null, null, null);
+
+        assertNotNull(cursor);
+        boolean foundArtist = false, foundAlbum = false;
+        while (cursor.moveToNext()) {
+            String mediaType = cursor.getString(cursor.getColumnIndex(MediaContract.Search.MEDIA_TYPE));
+            int itemId = cursor.getInt(cursor.getColumnIndex(MediaContract.Search.ITEM_ID));
+            if (MediaContract.Search.MEDIA_TYPE_ARTIST.equals(mediaType) && itemId == TestValues.Artist.artistId)
+                foundArtist = true;
+            if (MediaContract.Search.MEDIA_TYPE_ALBUM.equals(mediaType) && itemId == TestValues.Album.albumId)
+                foundAlbum = true;
+        }
+        assertTrue("Artist not found", foundArtist);
+        assertTrue("Album not found", foundAlbum);
+    }
+
+    @Test
+    public void searchWithoutWordsTest() {
+        Uri uri = MediaContract.Search.buildSearchUri(hostInfo.getId(), " - ");
+
+        Cursor cursor = shadowContentResolver.query(uri, MediaContract.Search.ALL_COLUMNS, null, null, null);
+
+        assertNotNull(cursor);
+        assertEquals("cursor size ", 0, cursor.getCount());
+    }
+}
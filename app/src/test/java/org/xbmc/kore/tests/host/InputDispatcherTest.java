@@ -0,0 +1,300 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xbmc.kore.tests.host;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+import org.xbmc.kore.BuildConfig;
+import org.xbmc.kore.host.HostInfo;
+import org.xbmc.kore.host.HostManager;
+import org.xbmc.kore.host.InputDispatcher;
+import org.xbmc.kore.jsonrpc.HostConnection;
+import org.xbmc.kore.jsonrpc.method.Input;
+import org.xbmc.kore.testutils.Database;
+import org.xbmc.kore.testutils.tcpserver.MockTcpServer;
+import org.xbmc.kore.testutils.tcpserver.handlers.JSONConnectionHandlerManager;
+import org.xbmc.kore.testutils.tcpserver.handlers.jsonrpc.JsonResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks how many presses are sent to the host while it is slow to acknowledge them
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class InputDispatcherTest {
+    private static final long TIMEOUT = 10000;
+
+    private HostManager hostManager;
+    private MockTcpServer server;
+    private RequestsRecorder recorder;
+    private InputHandler inputHandler;
+    private InputDispatcher inputDispatcher;
+
+    @Before
+    public void setUp() throws Exception {
+        inputHandler = new InputHandler();
+        JSONConnectionHandlerManager manager = new JSONConnectionHandlerManager();
+        manager.addHandler(inputHandler);
+        recorder = new RequestsRecorder(manager);
+        server = new MockTcpServer(recorder);
+        server.start();
+
+        hostManager = HostManager.getInstance(RuntimeEnvironment.application);
+        HostInfo hostInfo = Database.addHost(RuntimeEnvironment.application, server.getHostName(),
+                                             HostConnection.PROTOCOL_TCP,
+                                             HostInfo.DEFAULT_HTTP_PORT, server.getPort());
+        hostManager.switchHost(hostInfo);
+
+        inputDispatcher = new InputDispatcher(hostManager, new Handler());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+        hostManager.getConnection().disconnect();
+        hostManager.switchHost(null);
+    }
+
+    /**
+     * Holding a direction keeps two requests waiting for the host, sends the repeats made
+     * meanwhile in one batch, and sends nothing more once the key is released
+     */
+    @Test
+    public void holdDirectionTest() throws Exception {
+        for (int i = 0; i < 7; i++) {
+            inputDispatcher.press(Input.ExecuteAction.UP);
+        }
+        waitForRequests(2);
+        settle();
+        assertEquals(Arrays.asList(1, 1), recorder.requests);
+        // Three presses are queued, the last two didn't fit
+        assertEquals(2, inputDispatcher.getDroppedCount());
+
+        inputHandler.answer(1);
+        waitForRequests(3);
+        assertEquals(Arrays.asList(1, 1, 3), recorder.requests);
+
+        // Released with a press queued and two requests still waiting
+        inputHandler.answer(1);
+        settle();
+        inputDispatcher.press(Input.ExecuteAction.UP);
+        inputDispatcher.press(Input.ExecuteAction.UP);
+        waitForRequests(4);
+        inputDispatcher.cancelPending();
+        assertEquals(3, inputDispatcher.getDroppedCount());
+
+        inputHandler.answer(inputHandler.getUnansweredCount());
+        settle();
+        assertEquals(Arrays.asList(1, 1, 3, 1), recorder.requests);
+        assertEquals(0, inputHandler.getUnansweredCount());
+    }
+
+    /**
+     * Pressing a different action drops the presses queued for the previous one
+     */
+    @Test
+    public void changeDirectionTest() throws Exception {
+        inputDispatcher.press(Input.ExecuteAction.UP);
+        inputDispatcher.press(Input.ExecuteAction.UP);
+        inputDispatcher.press(Input.ExecuteAction.UP);
+        inputDispatcher.press(Input.ExecuteAction.UP);
+        inputDispatcher.press(Input.ExecuteAction.LEFT);
+        assertEquals(2, inputDispatcher.getDroppedCount());
+        waitForRequests(2);
+
+        inputHandler.answer(1);
+        waitForRequests(3);
+        assertEquals(Arrays.asList(1, 1, 1), recorder.requests);
+        assertEquals(Arrays.asList(Input.ExecuteAction.UP, Input.ExecuteAction.UP,
+                                   Input.ExecuteAction.LEFT),
+                     inputHandler.actions);
+    }
+
+    /**
+     * Presses queued for longer than a second aren't sent
+     */
+    @Test
+    public void stalePressesTest() throws Exception {
+        inputDispatcher.press(Input.ExecuteAction.DOWN);
+        inputDispatcher.press(Input.ExecuteAction.DOWN);
+        inputDispatcher.press(Input.ExecuteAction.DOWN);
+        waitForRequests(2);
+
+        SystemClock.sleep(1500);
+        inputHandler.answer(2);
+        settle();
+        assertEquals(Arrays.asList(1, 1), recorder.requests);
+        assertEquals(1, inputDispatcher.getDroppedCount());
+        assertEquals(1500, inputDispatcher.getLastLatency());
+    }
+
+    /**
+     * The average latency starts at the first measure and moves an eighth of the way
+     * towards each new one
+     */
+    @Test
+    public void averageLatencyTest() throws Exception {
+        assertEquals(-1, inputDispatcher.getLastLatency());
+        assertEquals(-1, inputDispatcher.getAverageLatency());
+
+        inputDispatcher.press(Input.ExecuteAction.RIGHT);
+        waitForRequests(1);
+        SystemClock.sleep(200);
+        inputHandler.answer(1);
+        settle();
+        assertEquals(200, inputDispatcher.getLastLatency());
+        assertEquals(200, inputDispatcher.getAverageLatency());
+
+        inputDispatcher.press(Input.ExecuteAction.RIGHT);
+        waitForRequests(2);
+        SystemClock.sleep(1000);
+        inputHandler.answer(1);
+        settle();
+        assertEquals(1000, inputDispatcher.getLastLatency());
+        assertEquals(300, inputDispatcher.getAverageLatency());
+    }
+
+    /**
+     * Waits until the host got the given number of requests, running the callbacks posted
+     * meanwhile
+     */
+    private void waitForRequests(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while ((recorder.requests.size() < count) && (System.currentTimeMillis() < deadline)) {
+            ShadowLooper.runUiThreadTasks();
+            Thread.sleep(10);
+        }
+        assertTrue(recorder.requests.size() >= count);
+    }
+
+    /**
+     * Gives the answers time to reach the dispatcher, and any request sent because of them
+     * time to reach the host. Runs the callbacks without moving the clock
+     */
+    private void settle() throws InterruptedException {
+        for (int i = 0; i < 50; i++) {
+            ShadowLooper.runUiThreadTasks();
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Records, for each request the host gets, how many presses it holds
+     */
+    private static class RequestsRecorder implements MockTcpServer.TcpServerConnectionHandler {
+        final List<Integer> requests = new CopyOnWriteArrayList<>();
+
+        private final MockTcpServer.TcpServerConnectionHandler handler;
+        private final StringBuilder request = new StringBuilder();
+        private int amountOfOpenBrackets = 0;
+
+        RequestsRecorder(MockTcpServer.TcpServerConnectionHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void processInput(char c) {
+            handler.processInput(c);
+            request.append(c);
+            if (c == '{' || c == '[') {
+                amountOfOpenBrackets++;
+            } else if (c == '}' || c == ']') {
+                amountOfOpenBrackets--;
+            }
+
+            if (amountOfOpenBrackets == 0) {
+                int presses = request.toString().split(Input.ExecuteAction.METHOD_NAME, -1).length - 1;
+                if (presses > 0) {
+                    requests.add(presses);
+                }
+                request.setLength(0);
+            }
+        }
+
+        @Override
+        public String getResponse() {
+            return handler.getResponse();
+        }
+    }
+
+    /**
+     * Holds the answers to the presses until they're released by the test
+     */
+    private static class InputHandler implements JSONConnectionHandlerManager.ConnectionHandler {
+        final List<String> actions = new CopyOnWriteArrayList<>();
+
+        private final List<Integer> unanswered = new ArrayList<>();
+        private final ArrayList<JsonResponse> answers = new ArrayList<>();
+
+        /**
+         * Answers the oldest presses
+         * @param count Number of presses to answer
+         */
+        synchronized void answer(int count) throws IOException {
+            for (int i = 0; i < count; i++) {
+                int id = unanswered.remove(0);
+                answers.add(new JsonResponse(id, "{\"result\":\"OK\"}") { });
+            }
+        }
+
+        synchronized int getUnansweredCount() {
+            return unanswered.size();
+        }
+
+        @Override
+        public String[] getType() {
+            return new String[]{Input.ExecuteAction.METHOD_NAME};
+        }
+
+        @Override
+        public synchronized ArrayList<JsonResponse> getResponse(String method, ObjectNode jsonRequest) {
+            unanswered.add(jsonRequest.get("id").asInt(-1));
+            actions.add(jsonRequest.get("params").get("action").asText());
+            return new ArrayList<>();
+        }
+
+        @Override
+        public synchronized ArrayList<JsonResponse> getNotifications() {
+            ArrayList<JsonResponse> list = new ArrayList<>(answers);
+            answers.clear();
+            return list;
+        }
+
+        @Override
+        public void reset() {
+        }
+    }
+}
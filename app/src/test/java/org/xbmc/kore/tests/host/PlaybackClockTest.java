@@ -0,0 +1,98 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbmc.kore.tests.host;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.xbmc.kore.BuildConfig;
+import org.xbmc.kore.host.PlaybackClock;
+import org.xbmc.kore.jsonrpc.type.GlobalType;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class PlaybackClockTest {
+    private static final GlobalType.Time totalTime = new GlobalType.Time(0, 10, 0, 0);
+
+    private PlaybackClock playbackClock;
+
+    @Before
+    public void setUp() {
+        playbackClock = new PlaybackClock(new Handler());
+    }
+
+    @Test
+    public void interpolatesWhilePlaying() {
+        playbackClock.anchor(new GlobalType.Time(0, 0, 10, 0), totalTime, 1);
+        SystemClock.sleep(2500);
+
+        assertEquals(12, playbackClock.getTime());
+        assertEquals(600, playbackClock.getTotalTime());
+    }
+
+    @Test
+    public void doesntMoveWhilePaused() {
+        playbackClock.anchor(new GlobalType.Time(0, 0, 10, 0), totalTime, 0);
+        SystemClock.sleep(2500);
+
+        assertEquals(10, playbackClock.getTime());
+    }
+
+    @Test
+    public void stopsAtTotalTime() {
+        playbackClock.anchor(new GlobalType.Time(0, 9, 59, 0), totalTime, 2);
+        SystemClock.sleep(5000);
+
+        assertEquals(600, playbackClock.getTime());
+    }
+
+    @Test
+    public void updateOnlyCorrectsDrift() {
+        playbackClock.anchor(new GlobalType.Time(0, 0, 10, 0), totalTime, 1);
+        SystemClock.sleep(3000);
+
+        // A poll that's a bit late doesn't move the clock back
+        playbackClock.update(new GlobalType.Time(0, 0, 12, 500), totalTime, 1);
+        assertEquals(13, playbackClock.getTime());
+
+        // But a seek we weren't told about does
+        playbackClock.update(new GlobalType.Time(0, 5, 0, 0), totalTime, 1);
+        assertEquals(300, playbackClock.getTime());
+    }
+
+    @Test
+    public void listenerIsCalledWhenAdded() {
+        final int[] ticks = new int[2];
+        playbackClock.anchor(new GlobalType.Time(0, 1, 0, 0), totalTime, 0);
+        playbackClock.addListener(new PlaybackClock.OnTickListener() {
+            @Override
+            public void onPlaybackTick(int time, int totalTime) {
+                ticks[0] = time;
+                ticks[1] = totalTime;
+            }
+        });
+
+        assertEquals(60, ticks[0]);
+        assertEquals(600, ticks[1]);
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xbmc.kore.tests.jsonrpc;
+
+import android.os.Handler;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.xbmc.kore.BuildConfig;
+import org.xbmc.kore.host.HostInfo;
+import org.xbmc.kore.jsonrpc.ApiBatch;
+import org.xbmc.kore.jsonrpc.ApiCallback;
+import org.xbmc.kore.jsonrpc.ApiException;
+import org.xbmc.kore.jsonrpc.HostConnection;
+import org.xbmc.kore.jsonrpc.method.Application;
+import org.xbmc.kore.jsonrpc.method.JSONRPC;
+import org.xbmc.kore.jsonrpc.method.Player;
+import org.xbmc.kore.jsonrpc.type.PlayerType;
+import org.xbmc.kore.testutils.tcpserver.MockTcpServer;
+import org.xbmc.kore.testutils.tcpserver.handlers.ApplicationHandler;
+import org.xbmc.kore.testutils.tcpserver.handlers.HttpConnectionHandler;
+import org.xbmc.kore.testutils.tcpserver.handlers.JSONConnectionHandlerManager;
+import org.xbmc.kore.testutils.tcpserver.handlers.JSONRPCHandler;
+import org.xbmc.kore.testutils.tcpserver.handlers.jsonrpc.JsonResponse;
+import org.xbmc.kore.utils.RoboThreadRunner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that each method of a batch gets its own response, over HTTP and TCP
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class ApiBatchTest {
+    private static final String ERROR_MESSAGE = "Invalid params.";
+
+    private JSONConnectionHandlerManager manager;
+    private ApplicationHandler applicationHandler;
+    private MockTcpServer server;
+    private HostConnection hostConnection;
+
+    private int pendingCallbacks;
+
+    @Before
+    public void setup() throws Exception {
+        applicationHandler = new ApplicationHandler();
+
+        manager = new JSONConnectionHandlerManager();
+        manager.addHandler(applicationHandler);
+        manager.addHandler(new JSONRPCHandler());
+        manager.addHandler(new ErrorHandler());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+        hostConnection.disconnect();
+    }
+
+    @Test
+    public void httpBatchTest() throws Exception {
+        server = new MockTcpServer(new HttpConnectionHandler(manager));
+        server.start();
+        hostConnection = new HostConnection(
+                new HostInfo("TESTHOST", server.getHostName(), HostConnection.PROTOCOL_HTTP,
+                             server.getPort(), HostInfo.DEFAULT_TCP_PORT, null, null, true,
+                             HostInfo.DEFAULT_EVENT_SERVER_PORT, false));
+
+        executeBatch();
+    }
+
+    @Test
+    public void tcpBatchTest() throws Exception {
+        server = new MockTcpServer(manager);
+        server.start();
+        hostConnection = new HostConnection(
+                new HostInfo("TESTHOST", server.getHostName(), HostConnection.PROTOCOL_TCP,
+                             HostInfo.DEFAULT_HTTP_PORT, server.getPort(), null, null, true,
+                             HostInfo.DEFAULT_EVENT_SERVER_PORT, false));
+
+        executeBatch();
+    }
+
+    /**
+     * Sends a batch with two methods that succeed and one that fails, and checks that each
+     * callback gets the result of its own method
+     */
+    private void executeBatch() throws Exception {
+        applicationHandler.setVolume(77, false);
+        pendingCallbacks = 3;
+
+        new ApiBatch()
+                .add(new Application.SetVolume(83), new ApiCallback<Integer>() {
+                    @Override
+                    public void onSuccess(Integer result) {
+                        assertEquals(83, (int) result);
+                        onCallback();
+                    }
+
+                    @Override
+                    public void onError(int errorCode, String description) {
+                        fail("errorCode=" + errorCode + ", description=" + description);
+                    }
+                })
+                .add(new Player.GetActivePlayers(), new ApiCallback<ArrayList<PlayerType.GetActivePlayersReturnType>>() {
+                    @Override
+                    public void onSuccess(ArrayList<PlayerType.GetActivePlayersReturnType> result) {
+                        fail("Got a result for a method that failed");
+                    }
+
+                    @Override
+                    public void onError(int errorCode, String description) {
+                        assertEquals(ApiException.API_ERROR, errorCode);
+                        assertEquals(ERROR_MESSAGE, description);
+                        onCallback();
+                    }
+                })
+                .add(new JSONRPC.Ping(), new ApiCallback<String>() {
+                    @Override
+                    public void onSuccess(String result) {
+                        assertEquals("pong", result);
+                        onCallback();
+                    }
+
+                    @Override
+                    public void onError(int errorCode, String description) {
+                        fail("errorCode=" + errorCode + ", description=" + description);
+                    }
+                })
+                .execute(hostConnection, new Handler());
+
+        assertTrue(RoboThreadRunner.run(10));
+        assertEquals(0, pendingCallbacks);
+    }
+
+    private void onCallback() {
+        if (--pendingCallbacks == 0)
+            RoboThreadRunner.stop();
+    }
+
+    /**
+     * Answers {@link Player.GetActivePlayers} with an error
+     */
+    private static class ErrorHandler implements JSONConnectionHandlerManager.ConnectionHandler {
+        @Override
+        public String[] getType() {
+            return new String[] {Player.GetActivePlayers.METHOD_NAME};
+        }
+
+        @Override
+        public ArrayList<JsonResponse> getResponse(String method, ObjectNode jsonRequest) {
+            ArrayList<JsonResponse> responses = new ArrayList<>();
+            try {
+                responses.add(new JsonResponse(jsonRequest.get("id").asInt(),
+                                               "{\"error\":{\"code\":-32602,\"message\":\"" +
+                                               ERROR_MESSAGE + "\"}}") { });
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return responses;
+        }
+
+        @Override
+        public ArrayList<JsonResponse> getNotifications() {
+            return null;
+        }
+
+        @Override
+        public void reset() {
+        }
+    }
+}
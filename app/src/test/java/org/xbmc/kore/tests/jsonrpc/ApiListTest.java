@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xbmc.kore.tests.jsonrpc;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.xbmc.kore.BuildConfig;
+import org.xbmc.kore.jsonrpc.ApiList;
+import org.xbmc.kore.jsonrpc.ApiMethod;
+import org.xbmc.kore.jsonrpc.method.AudioLibrary;
+import org.xbmc.kore.jsonrpc.method.VideoLibrary;
+import org.xbmc.kore.testutils.FileUtils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the list methods create the same result when parsing the response stream as when
+ * reading it into a tree first
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class ApiListTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void getEpisodesTest() throws Exception {
+        assertSameResult(new VideoLibrary.GetEpisodes(0), "VideoLibrary.GetEpisodes.json");
+    }
+
+    @Test
+    public void getSeasonsTest() throws Exception {
+        assertSameResult(new VideoLibrary.GetSeasons(0), "VideoLibrary.GetSeasons.json");
+    }
+
+    @Test
+    public void getTVShowsTest() throws Exception {
+        assertSameResult(new VideoLibrary.GetTVShows(), "VideoLibrary.GetTVShows.json");
+    }
+
+    @Test
+    public void getArtistsTest() throws Exception {
+        assertSameResult(new AudioLibrary.GetArtists(false), "AudioLibrary.GetArtists.json");
+    }
+
+    @Test
+    public void getAlbumsTest() throws Exception {
+        assertSameResult(new AudioLibrary.GetAlbums(), "AudioLibrary.GetAlbums.json");
+    }
+
+    @Test
+    public void getSongsTest() throws Exception {
+        assertSameResult(new AudioLibrary.GetSongs(), "AudioLibrary.GetSongs.json");
+    }
+
+    private <T> void assertSameResult(ApiMethod<ApiList<T>> method, String filename) throws Exception {
+        String json = FileUtils.readFile(RuntimeEnvironment.application, filename);
+
+        ApiList<T> expected = method.resultFromJson((ObjectNode) objectMapper.readTree(json));
+        ApiList<T> actual = fromJsonParser(method, json);
+
+        assertFalse(expected.items.isEmpty());
+        assertEquals(expected.limits.start, actual.limits.start);
+        assertEquals(expected.limits.end, actual.limits.end);
+        assertEquals(expected.limits.total, actual.limits.total);
+        assertEquals(expected.items.size(), actual.items.size());
+        for (int i = 0; i < expected.items.size(); i++) {
+            assertSameFields(expected.items.get(i), actual.items.get(i));
+        }
+    }
+
+    /**
+     * Compares the public primitive and string fields of two items
+     */
+    private void assertSameFields(Object expected, Object actual) throws Exception {
+        assertEquals(expected.getClass(), actual.getClass());
+        for (Field field : expected.getClass().getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) ||
+                !(field.getType().isPrimitive() || field.getType() == String.class)) {
+                continue;
+            }
+            assertEquals(field.getName(), field.get(expected), field.get(actual));
+        }
+    }
+
+    /**
+     * Positions the parser on the result node and parses it, as {@link org.xbmc.kore.jsonrpc.HostConnection}
+     * does with a response
+     */
+    private <T> T fromJsonParser(ApiMethod<T> method, String json) throws Exception {
+        JsonParser parser = objectMapper.getFactory().createParser(json);
+        try {
+            assertEquals(JsonToken.START_OBJECT, parser.nextToken());
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                parser.nextToken();
+                if (ApiMethod.RESULT_NODE.equals(fieldName)) {
+                    T result = method.resultFromJsonParser(parser);
+                    assertTrue(parser.getCurrentToken() == JsonToken.END_OBJECT);
+                    return result;
+                }
+                parser.skipChildren();
+            }
+            throw new AssertionError("No result in " + json);
+        } finally {
+            parser.close();
+        }
+    }
+}
@@ -0,0 +1,493 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xbmc.kore.tests.jsonrpc;
+
+import android.os.Handler;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.xbmc.kore.BuildConfig;
+import org.xbmc.kore.host.HostInfo;
+import org.xbmc.kore.jsonrpc.ApiCallback;
+import org.xbmc.kore.jsonrpc.ApiException;
+import org.xbmc.kore.jsonrpc.ApiFuture;
+import org.xbmc.kore.jsonrpc.ConnectionStats;
+import org.xbmc.kore.jsonrpc.HostConnection;
+import org.xbmc.kore.jsonrpc.method.Application;
+import org.xbmc.kore.jsonrpc.method.Input;
+import org.xbmc.kore.jsonrpc.method.JSONRPC;
+import org.xbmc.kore.jsonrpc.type.ApplicationType;
+import org.xbmc.kore.testutils.tcpserver.MockTcpServer;
+import org.xbmc.kore.testutils.tcpserver.handlers.ApplicationHandler;
+import org.xbmc.kore.testutils.tcpserver.handlers.JSONConnectionHandlerManager;
+import org.xbmc.kore.testutils.tcpserver.handlers.jsonrpc.JsonResponse;
+import org.xbmc.kore.utils.RoboThreadRunner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class HostConnectionTest {
+
+    private HostConnection hostConnection;
+    private MockTcpServer server;
+    private ApplicationHandler applicationHandler;
+
+    @Before
+    public void setup() throws Exception {
+        applicationHandler = new ApplicationHandler();
+
+        JSONConnectionHandlerManager manager = new JSONConnectionHandlerManager();
+        manager.addHandler(applicationHandler);
+
+        server = new MockTcpServer(manager);
+        server.start();
+
+        HostInfo hostInfo = new HostInfo("TESTHOST", server.getHostName(), HostConnection.PROTOCOL_TCP,
+                                         HostInfo.DEFAULT_HTTP_PORT, server.getPort(), null, null, true,
+                                         HostInfo.DEFAULT_EVENT_SERVER_PORT, false);
+
+        hostConnection = new HostConnection(hostInfo);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+        hostConnection.disconnect();
+    }
+
+    /**
+     * Fires a burst of requests without waiting for the responses, and checks that every one of
+     * them gets its own response, which requires the requests to be pipelined on a single socket.
+     * Identical reads would be joined into one, so this uses a method that changes something
+     */
+    @Test
+    public void pipelinedRequestsTest() throws Exception {
+        final int requestCount = 50;
+        final Set<Integer> pendingIds = new HashSet<>();
+
+        for (int i = 0; i < requestCount; i++) {
+            Application.SetVolume setVolume = new Application.SetVolume(42);
+            final int id = setVolume.getId();
+            pendingIds.add(id);
+            hostConnection.execute(setVolume, new ApiCallback<Integer>() {
+                @Override
+                public void onSuccess(Integer result) {
+                    assertEquals(42, (int) result);
+                    assertTrue(pendingIds.remove(id));
+                    if (pendingIds.isEmpty())
+                        RoboThreadRunner.stop();
+                }
+
+                @Override
+                public void onError(int errorCode, String description) {
+                    fail("errorCode=" + errorCode + ", description=" + description);
+                    RoboThreadRunner.stop();
+                }
+            }, new Handler());
+        }
+
+        assertTrue(RoboThreadRunner.run(10));
+        assertTrue(pendingIds.isEmpty());
+    }
+
+    /**
+     * Disconnects while a request is waiting for a response that never comes, and checks that
+     * its callback gets an error instead of waiting forever
+     */
+    @Test
+    public void disconnectFailsPendingRequestsTest() throws Exception {
+        final int[] errorCode = { -1 };
+        // Not answered by the mock server
+        new JSONRPC.Ping().execute(hostConnection, new ApiCallback<String>() {
+            @Override
+            public void onSuccess(String result) {
+                fail("Ping shouldn't get a response");
+                RoboThreadRunner.stop();
+            }
+
+            @Override
+            public void onError(int code, String description) {
+                errorCode[0] = code;
+                RoboThreadRunner.stop();
+            }
+        }, new Handler());
+        hostConnection.disconnect();
+
+        assertTrue(RoboThreadRunner.run(10));
+        assertEquals(ApiException.API_NO_CONNECTION, errorCode[0]);
+    }
+
+    /**
+     * Cancels some requests right after executing them, and checks that their callbacks are never
+     * called while the other requests still get their responses
+     */
+    @Test
+    public void cancelRequestsTest() throws Exception {
+        final int requestCount = 5;
+        final int[] pending = { requestCount };
+        List<ApiFuture<ApplicationType.PropertyValue>> cancelled = new ArrayList<>();
+        for (int i = 0; i < requestCount; i++) {
+            cancelled.add(new Application.GetProperties(Application.GetProperties.VOLUME)
+                    .execute(hostConnection, new ApiCallback<ApplicationType.PropertyValue>() {
+                        @Override
+                        public void onSuccess(ApplicationType.PropertyValue result) {
+                            fail("Callback of a cancelled request called");
+                        }
+
+                        @Override
+                        public void onError(int errorCode, String description) {
+                            fail("Callback of a cancelled request called");
+                        }
+                    }, new Handler()));
+
+            new Application.GetProperties(Application.GetProperties.VOLUME)
+                    .execute(hostConnection, new ApiCallback<ApplicationType.PropertyValue>() {
+                        @Override
+                        public void onSuccess(ApplicationType.PropertyValue result) {
+                            if (--pending[0] == 0)
+                                RoboThreadRunner.stop();
+                        }
+
+                        @Override
+                        public void onError(int errorCode, String description) {
+                            fail("errorCode=" + errorCode + ", description=" + description);
+                            RoboThreadRunner.stop();
+                        }
+                    }, new Handler());
+        }
+        for (ApiFuture<ApplicationType.PropertyValue> future : cancelled) {
+            future.cancel();
+            assertTrue(future.isDone());
+        }
+
+        assertTrue(RoboThreadRunner.run(10));
+    }
+
+    /**
+     * Fires identical reads before any response comes in, and checks that only one of them is
+     * sent while all of them get the response, and that a change on the host makes the next read
+     * go to the host again
+     */
+    @Test
+    public void coalescedReadsTest() throws Exception {
+        applicationHandler.setVolume(42, false);
+
+        final int requestCount = 5;
+        final int[] pending = { requestCount };
+        ApiCallback<ApplicationType.PropertyValue> callback = new ApiCallback<ApplicationType.PropertyValue>() {
+            @Override
+            public void onSuccess(ApplicationType.PropertyValue result) {
+                assertEquals(42, (int) result.volume);
+                if (--pending[0] == 0)
+                    RoboThreadRunner.stop();
+            }
+
+            @Override
+            public void onError(int errorCode, String description) {
+                fail("errorCode=" + errorCode + ", description=" + description);
+                RoboThreadRunner.stop();
+            }
+        };
+        for (int i = 0; i < requestCount; i++) {
+            new Application.GetProperties(Application.GetProperties.VOLUME)
+                    .execute(hostConnection, callback, new Handler());
+        }
+
+        assertTrue(RoboThreadRunner.run(10));
+        ConnectionStats stats = hostConnection.getStats();
+        assertEquals(1, stats.getResponseCount());
+        assertEquals(requestCount - 1, stats.getCoalescedCount());
+
+        // Kept for a while
+        pending[0] = 1;
+        new Application.GetProperties(Application.GetProperties.VOLUME)
+                .execute(hostConnection, callback, new Handler());
+        assertTrue(RoboThreadRunner.run(10));
+        assertEquals(1, stats.getCacheHitCount());
+
+        // Until something changes
+        pending[0] = 2;
+        new Application.SetVolume(42).execute(hostConnection, new ApiCallback<Integer>() {
+            @Override
+            public void onSuccess(Integer result) {
+                if (--pending[0] == 0)
+                    RoboThreadRunner.stop();
+            }
+
+            @Override
+            public void onError(int errorCode, String description) {
+                fail("errorCode=" + errorCode + ", description=" + description);
+                RoboThreadRunner.stop();
+            }
+        }, new Handler());
+        new Application.GetProperties(Application.GetProperties.VOLUME)
+                .execute(hostConnection, callback, new Handler());
+        assertTrue(RoboThreadRunner.run(10));
+        assertEquals(1, stats.getCacheHitCount());
+        assertEquals(3, stats.getResponseCount());
+    }
+
+    /**
+     * Sets the volume many times in a row, as a slider being dragged does, and checks that only
+     * the first and last values are sent, and that the host ends up with the last one
+     */
+    @Test
+    public void latestValueTest() throws Exception {
+        final int lastVolume = 10;
+        for (int volume = 1; volume <= lastVolume; volume++) {
+            final int sentVolume = volume;
+            new Application.SetVolume(volume).executeLatest(hostConnection, HostConnection.CONTROL_VOLUME,
+                                                            new ApiCallback<Integer>() {
+                @Override
+                public void onSuccess(Integer result) {
+                    assertEquals(sentVolume, (int) result);
+                    if (sentVolume == lastVolume)
+                        RoboThreadRunner.stop();
+                }
+
+                @Override
+                public void onError(int errorCode, String description) {
+                    fail("errorCode=" + errorCode + ", description=" + description);
+                    RoboThreadRunner.stop();
+                }
+            }, new Handler());
+        }
+
+        assertTrue(RoboThreadRunner.run(10));
+        ConnectionStats stats = hostConnection.getStats();
+        assertEquals(2, stats.getResponseCount());
+        assertEquals(lastVolume - 2, stats.getSupersededCount());
+    }
+
+    /**
+     * Checks that an opened connection is reused, and that its stats count the responses
+     */
+    @Test
+    public void connectionStatsTest() throws Exception {
+        hostConnection.connect();
+
+        final int requestCount = 5;
+        final int[] pending = { requestCount };
+        for (int i = 0; i < requestCount; i++) {
+            new Application.GetProperties(Application.GetProperties.VOLUME)
+                    .execute(hostConnection, new ApiCallback<ApplicationType.PropertyValue>() {
+                        @Override
+                        public void onSuccess(ApplicationType.PropertyValue result) {
+                            if (--pending[0] == 0)
+                                RoboThreadRunner.stop();
+                        }
+
+                        @Override
+                        public void onError(int errorCode, String description) {
+                            fail("errorCode=" + errorCode + ", description=" + description);
+                            RoboThreadRunner.stop();
+                        }
+                    }, new Handler());
+        }
+
+        assertTrue(RoboThreadRunner.run(10));
+
+        ConnectionStats stats = hostConnection.getStats();
+        assertEquals(1, stats.getConnectCount());
+        // Identical reads are joined, or served from the kept result
+        assertEquals(requestCount, stats.getResponseCount() + stats.getCoalescedCount() +
+                                   stats.getCacheHitCount());
+        assertEquals(0, stats.getErrorCount());
+        assertEquals(0, stats.getConnectionLostCount());
+        assertTrue(stats.getAverageLatency() >= 0);
+    }
+
+    /**
+     * Drops the connection while requests are still waiting to be written, and checks that they
+     * fail and are never sent through the next connection
+     */
+    @Test
+    public void connectionLostDropsQueuedRequestsTest() throws Exception {
+        SetVolumeRecorder recorder = new SetVolumeRecorder();
+        JSONConnectionHandlerManager manager = new JSONConnectionHandlerManager();
+        manager.addHandler(recorder);
+        StallingHandler stallingHandler = new StallingHandler(manager);
+        MockTcpServer stallingServer = new MockTcpServer(stallingHandler);
+        stallingServer.start();
+        HostConnection connection = new HostConnection(
+                new HostInfo("TESTHOST", stallingServer.getHostName(), HostConnection.PROTOCOL_TCP,
+                             HostInfo.DEFAULT_HTTP_PORT, stallingServer.getPort(), null, null, true,
+                             HostInfo.DEFAULT_EVENT_SERVER_PORT, false));
+
+        try {
+            final int queuedCount = 5;
+            final int[] failed = { 0 };
+            // Too big for the socket buffers while the host isn't reading, so that the writer
+            // blocks on it and the requests after it stay queued
+            char[] text = new char[16 * 1024 * 1024];
+            Arrays.fill(text, 'a');
+            connection.execute(new Input.SendText(new String(text), true), new ApiCallback<String>() {
+                @Override
+                public void onSuccess(String result) {
+                    fail("Got a response on a dropped connection");
+                }
+
+                @Override
+                public void onError(int errorCode, String description) {
+                    if (++failed[0] == queuedCount + 1)
+                        RoboThreadRunner.stop();
+                }
+            }, new Handler());
+            for (int i = 0; i < queuedCount; i++) {
+                connection.execute(new Application.SetVolume(i), new ApiCallback<Integer>() {
+                    @Override
+                    public void onSuccess(Integer result) {
+                        fail("Got a response on a dropped connection");
+                    }
+
+                    @Override
+                    public void onError(int errorCode, String description) {
+                        if (++failed[0] == queuedCount + 1)
+                            RoboThreadRunner.stop();
+                    }
+                }, new Handler());
+            }
+
+            assertTrue(stallingHandler.awaitStalled(10));
+            stallingServer.closeClientSockets();
+            stallingHandler.release();
+            assertTrue(RoboThreadRunner.run(10));
+            assertEquals(queuedCount + 1, failed[0]);
+
+            // The next request opens a new connection, on which only it is sent
+            final int lastVolume = 100;
+            connection.execute(new Application.SetVolume(lastVolume), new ApiCallback<Integer>() {
+                @Override
+                public void onSuccess(Integer result) {
+                    assertEquals(lastVolume, (int) result);
+                    RoboThreadRunner.stop();
+                }
+
+                @Override
+                public void onError(int errorCode, String description) {
+                    fail("errorCode=" + errorCode + ", description=" + description);
+                    RoboThreadRunner.stop();
+                }
+            }, new Handler());
+            assertTrue(RoboThreadRunner.run(10));
+            assertEquals(Collections.singletonList(lastVolume), recorder.volumes);
+        } finally {
+            stallingServer.shutdown();
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Stops reading from the first connection until released, so that the client can't write
+     * more than fits in the socket buffers. Whatever is read from that connection afterwards is
+     * ignored
+     */
+    private static class StallingHandler implements MockTcpServer.TcpServerConnectionHandler {
+        private final MockTcpServer.TcpServerConnectionHandler handler;
+        private final CountDownLatch stalled = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private volatile Thread stalledThread;
+
+        StallingHandler(MockTcpServer.TcpServerConnectionHandler handler) {
+            this.handler = handler;
+        }
+
+        boolean awaitStalled(int seconds) throws InterruptedException {
+            return stalled.await(seconds, TimeUnit.SECONDS);
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        @Override
+        public void processInput(char c) {
+            if (stalledThread == null) {
+                stalledThread = Thread.currentThread();
+                stalled.countDown();
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            if (Thread.currentThread() != stalledThread) {
+                handler.processInput(c);
+            }
+        }
+
+        @Override
+        public String getResponse() {
+            return handler.getResponse();
+        }
+    }
+
+    /**
+     * Answers {@link Application.SetVolume} and keeps the volumes it got, in order
+     */
+    private static class SetVolumeRecorder implements JSONConnectionHandlerManager.ConnectionHandler {
+        final List<Integer> volumes = Collections.synchronizedList(new ArrayList<Integer>());
+
+        @Override
+        public String[] getType() {
+            return new String[] {Application.SetVolume.METHOD_NAME};
+        }
+
+        @Override
+        public ArrayList<JsonResponse> getResponse(String method, ObjectNode jsonRequest) {
+            int volume = jsonRequest.get("params").get("volume").asInt();
+            volumes.add(volume);
+
+            ArrayList<JsonResponse> responses = new ArrayList<>();
+            try {
+                responses.add(new JsonResponse(jsonRequest.get("id").asInt(),
+                                               "{\"result\":" + volume + "}") { });
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return responses;
+        }
+
+        @Override
+        public ArrayList<JsonResponse> getNotifications() {
+            return null;
+        }
+
+        @Override
+        public void reset() {
+        }
+    }
+}
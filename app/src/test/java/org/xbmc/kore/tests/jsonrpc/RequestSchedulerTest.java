@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xbmc.kore.tests.jsonrpc;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.xbmc.kore.BuildConfig;
+import org.xbmc.kore.jsonrpc.ConnectionStats;
+import org.xbmc.kore.jsonrpc.RequestScheduler;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class RequestSchedulerTest {
+
+    @Test
+    public void priorityTest() {
+        assertEquals(RequestScheduler.PRIORITY_INTERACTIVE, RequestScheduler.getPriority("Input.Select"));
+        assertEquals(RequestScheduler.PRIORITY_INTERACTIVE, RequestScheduler.getPriority("Player.PlayPause"));
+        assertEquals(RequestScheduler.PRIORITY_INTERACTIVE, RequestScheduler.getPriority("Player.Seek"));
+        assertEquals(RequestScheduler.PRIORITY_NORMAL, RequestScheduler.getPriority("Player.GetProperties"));
+        assertEquals(RequestScheduler.PRIORITY_BACKGROUND, RequestScheduler.getPriority("Files.GetDirectory"));
+        assertEquals(RequestScheduler.PRIORITY_BACKGROUND, RequestScheduler.getPriority("Files.PrepareDownload"));
+        assertEquals(RequestScheduler.PRIORITY_BACKGROUND, RequestScheduler.getPriority("VideoLibrary.GetMovies"));
+    }
+
+    /**
+     * Fills up the background class with requests that don't finish, and checks that an
+     * interactive request still runs right away, while further background requests wait
+     */
+    @Test
+    public void interactiveNotBlockedByBackgroundTest() throws Exception {
+        ConnectionStats stats = new ConnectionStats();
+        RequestScheduler scheduler = new RequestScheduler(stats);
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch backgroundStarted = new CountDownLatch(2);
+        Runnable slowRequest = new Runnable() {
+            @Override
+            public void run() {
+                backgroundStarted.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        for (int i = 0; i < 3; i++) {
+            scheduler.execute(RequestScheduler.PRIORITY_BACKGROUND, slowRequest);
+        }
+        assertTrue(backgroundStarted.await(5, TimeUnit.SECONDS));
+
+        final CountDownLatch interactiveDone = new CountDownLatch(1);
+        scheduler.execute(RequestScheduler.PRIORITY_INTERACTIVE, new Runnable() {
+            @Override
+            public void run() {
+                interactiveDone.countDown();
+            }
+        });
+        assertTrue(interactiveDone.await(5, TimeUnit.SECONDS));
+        assertEquals(1, scheduler.getQueuedCount(RequestScheduler.PRIORITY_BACKGROUND));
+
+        release.countDown();
+        assertEquals(1, stats.getQueueWaitCount(RequestScheduler.PRIORITY_INTERACTIVE));
+        assertTrue(stats.getAverageQueueWait(RequestScheduler.PRIORITY_INTERACTIVE) >= 0);
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xbmc.kore.tests.service.library;
+
+import android.content.ContentResolver;
+import android.content.Intent;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.Shadows;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowApplication;
+import org.robolectric.shadows.ShadowContentResolver;
+import org.xbmc.kore.BuildConfig;
+import org.xbmc.kore.host.HostInfo;
+import org.xbmc.kore.jsonrpc.HostConnection;
+import org.xbmc.kore.jsonrpc.notification.AudioLibrary;
+import org.xbmc.kore.jsonrpc.notification.VideoLibrary;
+import org.xbmc.kore.provider.MediaContract;
+import org.xbmc.kore.provider.MediaProvider;
+import org.xbmc.kore.service.library.LibraryNotificationsObserver;
+import org.xbmc.kore.service.library.LibrarySyncService;
+import org.xbmc.kore.testutils.Database;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the library notifications are either applied to the database or turned into the
+ * right sync requests
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class LibraryNotificationsObserverTest {
+    private static final int ALBUM_ID = 13;
+    private static final int SONG_ID = 96;
+    private static final int TVSHOW_ID = 1;
+    private static final int EPISODE_ID = 9;
+
+    private ContentResolver contentResolver;
+    private ShadowApplication shadowApplication;
+    private HostInfo hostInfo;
+    private LibraryNotificationsObserver observer;
+
+    @Before
+    public void setUp() throws Exception {
+        MediaProvider provider = new MediaProvider();
+        provider.onCreate();
+        ShadowContentResolver.registerProvider("org.xbmc.kore.provider", provider);
+        contentResolver = RuntimeEnvironment.application.getContentResolver();
+        shadowApplication = Shadows.shadowOf(RuntimeEnvironment.application);
+
+        hostInfo = Database.addHost(RuntimeEnvironment.application);
+        Database.fill(hostInfo, RuntimeEnvironment.application, contentResolver);
+
+        observer = new LibraryNotificationsObserver(RuntimeEnvironment.application, hostInfo,
+                                                    new HostConnection(hostInfo));
+        observer.startObserving();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        observer.stopObserving();
+    }
+
+    @Test
+    public void albumPlaycountTest() throws Exception {
+        observer.onUpdate(new AudioLibrary.OnUpdate(
+                notification("{\"item\":{\"id\":" + ALBUM_ID + ",\"type\":\"album\"},\"playcount\":7}")));
+        observer.onScanFinished((AudioLibrary.OnScanFinished) null);
+
+        assertEquals(7, getInt(MediaContract.Albums.buildAlbumUri(hostInfo.getId(), ALBUM_ID),
+                               MediaContract.Albums.PLAYCOUNT));
+        assertNull(shadowApplication.getNextStartedService());
+    }
+
+    @Test
+    public void songPlaycountTest() throws Exception {
+        observer.onUpdate(new AudioLibrary.OnUpdate(
+                notification("{\"item\":{\"id\":" + SONG_ID + ",\"type\":\"song\"},\"playcount\":1}")));
+        observer.onScanFinished((AudioLibrary.OnScanFinished) null);
+
+        assertNull(shadowApplication.getNextStartedService());
+    }
+
+    @Test
+    public void unknownSongTest() throws Exception {
+        observer.onUpdate(new AudioLibrary.OnUpdate(
+                notification("{\"item\":{\"id\":999999,\"type\":\"song\"},\"playcount\":1}")));
+        observer.onScanFinished((AudioLibrary.OnScanFinished) null);
+
+        Intent intent = shadowApplication.getNextStartedService();
+        assertNotNull(intent);
+        assertTrue(intent.getBooleanExtra(LibrarySyncService.SYNC_ALL_MUSIC, false));
+        assertTrue(intent.getBooleanExtra(LibrarySyncService.SYNC_INCREMENTAL, false));
+        assertNull(shadowApplication.getNextStartedService());
+    }
+
+    @Test
+    public void episodePlaycountTest() throws Exception {
+        observer.onUpdate(new VideoLibrary.OnUpdate(
+                notification("{\"item\":{\"id\":" + EPISODE_ID + ",\"type\":\"episode\"},\"playcount\":3}")));
+        observer.onScanFinished((VideoLibrary.OnScanFinished) null);
+
+        assertEquals(3, getInt(MediaContract.Episodes.buildTVShowEpisodeUri(hostInfo.getId(), TVSHOW_ID, EPISODE_ID),
+                               MediaContract.Episodes.PLAYCOUNT));
+        assertNull(shadowApplication.getNextStartedService());
+    }
+
+    /**
+     * A burst of tv show changes ends up in a single request syncing each show, never in a
+     * sync of every show
+     */
+    @Test
+    public void tvShowBurstTest() throws Exception {
+        int count = 15;
+        for (int i = 1; i <= count; i++) {
+            observer.onUpdate(new VideoLibrary.OnUpdate(
+                    notification("{\"item\":{\"id\":" + (1000 + i) + ",\"type\":\"tvshow\"}}")));
+        }
+        observer.onScanFinished((VideoLibrary.OnScanFinished) null);
+
+        Intent intent = shadowApplication.getNextStartedService();
+        assertNotNull(intent);
+        assertFalse(intent.getBooleanExtra(LibrarySyncService.SYNC_ALL_TVSHOWS, false));
+        assertTrue(intent.getBooleanExtra(LibrarySyncService.SYNC_SINGLE_TVSHOW, false));
+        int[] tvshowIds = intent.getIntArrayExtra(LibrarySyncService.SYNC_TVSHOWIDS);
+        assertNotNull(tvshowIds);
+        Arrays.sort(tvshowIds);
+        assertEquals(count, tvshowIds.length);
+        assertEquals(1001, tvshowIds[0]);
+        assertEquals(1000 + count, tvshowIds[count - 1]);
+        assertNull(shadowApplication.getNextStartedService());
+    }
+
+    private ObjectNode notification(String data) throws Exception {
+        return (ObjectNode) new ObjectMapper().readTree(
+                "{\"sender\":\"xbmc\",\"data\":" + data + "}");
+    }
+
+    private int getInt(Uri uri, String column) {
+        Cursor cursor = contentResolver.query(uri, new String[] {column}, null, null, null);
+        assertNotNull(cursor);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xbmc.kore.tests.service.library;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.os.Bundle;
+import android.os.Handler;
+import android.text.format.DateUtils;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowContentResolver;
+import org.xbmc.kore.BuildConfig;
+import org.xbmc.kore.host.HostInfo;
+import org.xbmc.kore.jsonrpc.HostConnection;
+import org.xbmc.kore.jsonrpc.method.Addons;
+import org.xbmc.kore.jsonrpc.method.Favourites;
+import org.xbmc.kore.provider.MediaContract;
+import org.xbmc.kore.provider.MediaProvider;
+import org.xbmc.kore.service.library.LibrarySyncService;
+import org.xbmc.kore.service.library.SyncAddons;
+import org.xbmc.kore.service.library.SyncFavourites;
+import org.xbmc.kore.service.library.SyncItem;
+import org.xbmc.kore.service.library.SyncOrchestrator;
+import org.xbmc.kore.service.library.SyncUtils;
+import org.xbmc.kore.testutils.Database;
+import org.xbmc.kore.testutils.tcpserver.MockTcpServer;
+import org.xbmc.kore.testutils.tcpserver.handlers.JSONConnectionHandlerManager;
+import org.xbmc.kore.testutils.tcpserver.handlers.jsonrpc.JsonResponse;
+import org.xbmc.kore.utils.RoboThreadRunner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks when the silent syncs of the addons and favourites lists call Kodi
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class SilentSyncTest {
+    private ContentResolver contentResolver;
+    private HostInfo hostInfo;
+    private HostConnection hostConnection;
+    private MockTcpServer server;
+    private CatalogHandler catalogHandler;
+
+    private int finishedCount;
+    private int failedCount;
+    private SyncOrchestrator orchestrator;
+
+    @Before
+    public void setUp() throws Exception {
+        MediaProvider provider = new MediaProvider();
+        provider.onCreate();
+        ShadowContentResolver.registerProvider("org.xbmc.kore.provider", provider);
+        contentResolver = RuntimeEnvironment.application.getContentResolver();
+
+        catalogHandler = new CatalogHandler();
+        JSONConnectionHandlerManager manager = new JSONConnectionHandlerManager();
+        manager.addHandler(catalogHandler);
+        server = new MockTcpServer(manager);
+        server.start();
+
+        hostInfo = Database.addHost(RuntimeEnvironment.application, server.getHostName(),
+                                    HostConnection.PROTOCOL_TCP, HostInfo.DEFAULT_HTTP_PORT,
+                                    server.getPort());
+        hostConnection = new HostConnection(hostInfo);
+
+        finishedCount = 0;
+        failedCount = 0;
+        orchestrator = new SyncOrchestrator(null, 0, hostInfo, new Handler(), contentResolver) {
+            @Override
+            public void syncItemFinished() {
+                finishedCount++;
+                RoboThreadRunner.stop();
+            }
+
+            @Override
+            public void syncItemFailed(int errorCode, String description) {
+                failedCount++;
+                RoboThreadRunner.stop();
+            }
+        };
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+        hostConnection.disconnect();
+    }
+
+    /**
+     * A host without addons is only asked once, the empty list is remembered as synced
+     */
+    @Test
+    public void emptyAddonsAreRememberedTest() throws Exception {
+        sync(new SyncAddons(hostInfo.getId(), silentSyncExtras()));
+        assertEquals(Collections.singletonList(Addons.GetAddons.METHOD_NAME), catalogHandler.requests);
+        assertTrue(getLastSynced(LibrarySyncService.SYNC_ADDONS) > 0);
+
+        sync(new SyncAddons(hostInfo.getId(), silentSyncExtras()));
+        assertEquals(1, catalogHandler.requests.size());
+    }
+
+    /**
+     * Addons synced less than a day ago aren't synced silently, older ones are
+     */
+    @Test
+    public void addonsMaxAgeTest() throws Exception {
+        long now = System.currentTimeMillis();
+        setLastSynced(LibrarySyncService.SYNC_ADDONS, now - 23 * DateUtils.HOUR_IN_MILLIS);
+        sync(new SyncAddons(hostInfo.getId(), silentSyncExtras()));
+        assertEquals(0, catalogHandler.requests.size());
+
+        setLastSynced(LibrarySyncService.SYNC_ADDONS, now - 25 * DateUtils.HOUR_IN_MILLIS);
+        sync(new SyncAddons(hostInfo.getId(), silentSyncExtras()));
+        assertEquals(1, catalogHandler.requests.size());
+        assertTrue(getLastSynced(LibrarySyncService.SYNC_ADDONS) >= now);
+    }
+
+    /**
+     * Favourites synced less than an hour ago aren't synced silently, but a refresh asked by
+     * the user always syncs them
+     */
+    @Test
+    public void favouritesRefreshTest() throws Exception {
+        setLastSynced(LibrarySyncService.SYNC_FAVOURITES, System.currentTimeMillis());
+        sync(new SyncFavourites(hostInfo.getId(), silentSyncExtras()));
+        assertEquals(0, catalogHandler.requests.size());
+
+        sync(new SyncFavourites(hostInfo.getId(), null));
+        assertEquals(Collections.singletonList(Favourites.GetFavourites.METHOD_NAME),
+                     catalogHandler.requests);
+
+        setLastSynced(LibrarySyncService.SYNC_FAVOURITES,
+                      System.currentTimeMillis() - 2 * DateUtils.HOUR_IN_MILLIS);
+        sync(new SyncFavourites(hostInfo.getId(), silentSyncExtras()));
+        assertEquals(2, catalogHandler.requests.size());
+    }
+
+    private void sync(SyncItem syncItem) throws Exception {
+        int callbacks = finishedCount + failedCount;
+        syncItem.sync(orchestrator, hostConnection, new Handler(), contentResolver);
+        // Syncs without calls finish right away
+        if (finishedCount + failedCount == callbacks) {
+            assertTrue(RoboThreadRunner.run(10));
+        }
+        assertEquals(callbacks + 1, finishedCount);
+        assertEquals(0, failedCount);
+    }
+
+    private static Bundle silentSyncExtras() {
+        Bundle syncExtras = new Bundle();
+        syncExtras.putBoolean(LibrarySyncService.SILENT_SYNC, true);
+        return syncExtras;
+    }
+
+    private long getLastSynced(String syncType) {
+        return SyncUtils.getLastSynced(contentResolver, hostInfo.getId(), syncType);
+    }
+
+    private void setLastSynced(String syncType, long updated) {
+        ContentValues values = new ContentValues();
+        values.put(MediaContract.SyncState.HOST_ID, hostInfo.getId());
+        values.put(MediaContract.SyncState.SYNC_TYPE, syncType);
+        values.put(MediaContract.SyncState.UPDATED, updated);
+        contentResolver.insert(MediaContract.SyncState.CONTENT_URI, values);
+    }
+
+    /**
+     * Answers with an empty list of addons and a list with a single favourite
+     */
+    private static class CatalogHandler implements JSONConnectionHandlerManager.ConnectionHandler {
+        final List<String> requests = new ArrayList<>();
+
+        @Override
+        public String[] getType() {
+            return new String[]{Addons.GetAddons.METHOD_NAME,
+                                Favourites.GetFavourites.METHOD_NAME};
+        }
+
+        @Override
+        public ArrayList<JsonResponse> getResponse(String method, ObjectNode jsonRequest) {
+            ArrayList<JsonResponse> responses = new ArrayList<>();
+            int id = jsonRequest.get("id").asInt(-1);
+            requests.add(method);
+
+            String result;
+            if (method.equals(Addons.GetAddons.METHOD_NAME)) {
+                result = "{\"result\":{\"limits\":{\"start\":0,\"end\":0,\"total\":0},\"addons\":[]}}";
+            } else {
+                result = "{\"result\":{\"limits\":{\"start\":0,\"end\":1,\"total\":1}," +
+                         "\"favourites\":[{\"title\":\"Favourite\",\"type\":\"window\"," +
+                         "\"window\":\"videos\",\"windowparameter\":\"sources://video/\"}]}}";
+            }
+
+            try {
+                responses.add(new JsonResponse(id, result) { });
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return responses;
+        }
+
+        @Override
+        public ArrayList<JsonResponse> getNotifications() {
+            return null;
+        }
+
+        @Override
+        public void reset() {
+        }
+    }
+}
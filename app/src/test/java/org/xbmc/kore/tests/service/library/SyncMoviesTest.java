@@ -0,0 +1,219 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xbmc.kore.tests.service.library;
+
+import android.content.ContentResolver;
+import android.os.Handler;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowContentResolver;
+import org.xbmc.kore.BuildConfig;
+import org.xbmc.kore.host.HostInfo;
+import org.xbmc.kore.jsonrpc.HostConnection;
+import org.xbmc.kore.jsonrpc.method.VideoLibrary;
+import org.xbmc.kore.provider.MediaContract;
+import org.xbmc.kore.provider.MediaProvider;
+import org.xbmc.kore.service.library.SyncMovies;
+import org.xbmc.kore.service.library.SyncOrchestrator;
+import org.xbmc.kore.service.library.SyncUtils;
+import org.xbmc.kore.testutils.Database;
+import org.xbmc.kore.testutils.tcpserver.MockTcpServer;
+import org.xbmc.kore.testutils.tcpserver.handlers.JSONConnectionHandlerManager;
+import org.xbmc.kore.testutils.tcpserver.handlers.jsonrpc.JsonResponse;
+import org.xbmc.kore.utils.RoboThreadRunner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that an incremental movie sync adds, removes and fetches the movies that differ
+ * between Kodi and the database
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class SyncMoviesTest {
+    private static final int REMOVED_MOVIE_ID = 1;
+    private static final int ADDED_MOVIE_ID = 1000;
+    private static final int MISSED_MOVIE_ID = 1001;
+
+    private ContentResolver contentResolver;
+    private HostInfo hostInfo;
+    private HostConnection hostConnection;
+    private MockTcpServer server;
+    private MoviesHandler moviesHandler;
+
+    private int finishedCount;
+    private int failedCount;
+    private SyncOrchestrator orchestrator;
+
+    @Before
+    public void setUp() throws Exception {
+        MediaProvider provider = new MediaProvider();
+        provider.onCreate();
+        ShadowContentResolver.registerProvider("org.xbmc.kore.provider", provider);
+        contentResolver = RuntimeEnvironment.application.getContentResolver();
+
+        moviesHandler = new MoviesHandler();
+        JSONConnectionHandlerManager manager = new JSONConnectionHandlerManager();
+        manager.addHandler(moviesHandler);
+        server = new MockTcpServer(manager);
+        server.start();
+
+        hostInfo = Database.addHost(RuntimeEnvironment.application, server.getHostName(),
+                                    HostConnection.PROTOCOL_TCP, HostInfo.DEFAULT_HTTP_PORT,
+                                    server.getPort());
+        Database.fill(hostInfo, RuntimeEnvironment.application, contentResolver);
+        hostConnection = new HostConnection(hostInfo);
+
+        finishedCount = 0;
+        failedCount = 0;
+        orchestrator = new SyncOrchestrator(null, 0, hostInfo, new Handler(), contentResolver) {
+            @Override
+            public void syncItemFinished() {
+                finishedCount++;
+                RoboThreadRunner.stop();
+            }
+
+            @Override
+            public void syncItemFailed(int errorCode, String description) {
+                failedCount++;
+                RoboThreadRunner.stop();
+            }
+        };
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+        hostConnection.disconnect();
+    }
+
+    @Test
+    public void incrementalSyncTest() throws Exception {
+        Set<Integer> localIds = getLocalIds();
+        assertTrue(localIds.contains(REMOVED_MOVIE_ID));
+
+        // Kodi lost one movie, got one newer than the others, and one with an older date added
+        moviesHandler.remoteIds.addAll(localIds);
+        moviesHandler.remoteIds.remove(REMOVED_MOVIE_ID);
+        moviesHandler.remoteIds.add(ADDED_MOVIE_ID);
+        moviesHandler.remoteIds.add(MISSED_MOVIE_ID);
+
+        new SyncMovies(hostInfo.getId(), true, null)
+                .sync(orchestrator, hostConnection, new Handler(), contentResolver);
+
+        assertTrue(RoboThreadRunner.run(10));
+        assertEquals(1, finishedCount);
+        assertEquals(0, failedCount);
+
+        Set<Integer> syncedIds = getLocalIds();
+        assertFalse(syncedIds.contains(REMOVED_MOVIE_ID));
+        assertTrue(syncedIds.contains(ADDED_MOVIE_ID));
+        assertTrue(syncedIds.contains(MISSED_MOVIE_ID));
+        assertEquals(moviesHandler.remoteIds, syncedIds);
+
+        // Only the movie missed by the date filter is fetched on its own
+        assertEquals(1, moviesHandler.detailsRequests.size());
+        assertEquals(MISSED_MOVIE_ID, (int) moviesHandler.detailsRequests.get(0));
+    }
+
+    private Set<Integer> getLocalIds() {
+        return SyncUtils.getLocalIds(contentResolver, MediaContract.Movies.CONTENT_URI,
+                                     MediaContract.Movies.HOST_ID, MediaContract.Movies.MOVIEID,
+                                     hostInfo.getId());
+    }
+
+    /**
+     * Answers the movie calls of an incremental sync: movies added after a date, the ids of all
+     * the movies, and the details of a movie
+     */
+    private static class MoviesHandler implements JSONConnectionHandlerManager.ConnectionHandler {
+        final Set<Integer> remoteIds = new HashSet<>();
+        final List<Integer> detailsRequests = new ArrayList<>();
+
+        @Override
+        public String[] getType() {
+            return new String[]{VideoLibrary.GetMovies.METHOD_NAME,
+                                VideoLibrary.GetMovieDetails.METHOD_NAME};
+        }
+
+        @Override
+        public ArrayList<JsonResponse> getResponse(String method, ObjectNode jsonRequest) {
+            ArrayList<JsonResponse> responses = new ArrayList<>();
+            int id = jsonRequest.get("id").asInt(-1);
+            JsonNode params = jsonRequest.get("params");
+
+            String result;
+            if (method.equals(VideoLibrary.GetMovieDetails.METHOD_NAME)) {
+                int movieId = params.get("movieid").asInt();
+                detailsRequests.add(movieId);
+                result = "{\"result\":{\"moviedetails\":" + movie(movieId, "2000-01-01 00:00:00") + "}}";
+            } else if (params.has("filter")) {
+                result = moviesResult(movie(ADDED_MOVIE_ID, "2030-01-01 00:00:00"), 1);
+            } else {
+                StringBuilder movies = new StringBuilder();
+                for (int movieId : remoteIds) {
+                    if (movies.length() > 0) movies.append(',');
+                    movies.append("{\"movieid\":").append(movieId).append('}');
+                }
+                result = moviesResult(movies.toString(), remoteIds.size());
+            }
+
+            try {
+                responses.add(new JsonResponse(id, result) { });
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return responses;
+        }
+
+        private static String movie(int movieId, String dateAdded) {
+            return "{\"movieid\":" + movieId + ",\"label\":\"Movie " + movieId + "\",\"title\":\"Movie " +
+                   movieId + "\",\"dateadded\":\"" + dateAdded + "\"}";
+        }
+
+        private static String moviesResult(String movies, int total) {
+            return "{\"result\":{\"limits\":{\"start\":0,\"end\":" + total + ",\"total\":" + total +
+                   "},\"movies\":[" + movies + "]}}";
+        }
+
+        @Override
+        public ArrayList<JsonResponse> getNotifications() {
+            return null;
+        }
+
+        @Override
+        public void reset() {
+        }
+    }
+}
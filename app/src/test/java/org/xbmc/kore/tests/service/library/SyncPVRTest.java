@@ -0,0 +1,373 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xbmc.kore.tests.service.library;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.os.Handler;
+import android.text.format.DateUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowContentResolver;
+import org.xbmc.kore.BuildConfig;
+import org.xbmc.kore.host.HostInfo;
+import org.xbmc.kore.jsonrpc.HostConnection;
+import org.xbmc.kore.jsonrpc.method.PVR;
+import org.xbmc.kore.jsonrpc.type.PVRType;
+import org.xbmc.kore.provider.MediaContract;
+import org.xbmc.kore.provider.MediaProvider;
+import org.xbmc.kore.service.library.LibrarySyncService;
+import org.xbmc.kore.service.library.SyncOrchestrator;
+import org.xbmc.kore.service.library.SyncPVR;
+import org.xbmc.kore.testutils.Database;
+import org.xbmc.kore.testutils.tcpserver.MockTcpServer;
+import org.xbmc.kore.testutils.tcpserver.handlers.JSONConnectionHandlerManager;
+import org.xbmc.kore.testutils.tcpserver.handlers.jsonrpc.JsonResponse;
+import org.xbmc.kore.utils.RoboThreadRunner;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks which guides a PVR sync refreshes, and what it stores of them
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class SyncPVRTest {
+    private static final int GROUP_ID = 1;
+    /** Channel with a guide */
+    private static final int GUIDE_CHANNEL_ID = 10;
+    /** Channel whose guide Kodi fails to return */
+    private static final int FAILED_CHANNEL_ID = 11;
+    /** Channel with an empty guide */
+    private static final int EMPTY_CHANNEL_ID = 12;
+
+    private static final int ENDED_BROADCAST_ID = 100;
+    private static final int CURRENT_BROADCAST_ID = 101;
+    private static final int LATER_BROADCAST_ID = 102;
+    private static final int BEYOND_WINDOW_BROADCAST_ID = 103;
+
+    private ContentResolver contentResolver;
+    private HostInfo hostInfo;
+    private HostConnection hostConnection;
+    private MockTcpServer server;
+    private PVRHandler pvrHandler;
+
+    private int finishedCount;
+    private int failedCount;
+    private SyncOrchestrator orchestrator;
+
+    @Before
+    public void setUp() throws Exception {
+        MediaProvider provider = new MediaProvider();
+        provider.onCreate();
+        ShadowContentResolver.registerProvider("org.xbmc.kore.provider", provider);
+        contentResolver = RuntimeEnvironment.application.getContentResolver();
+
+        pvrHandler = new PVRHandler();
+        JSONConnectionHandlerManager manager = new JSONConnectionHandlerManager();
+        manager.addHandler(pvrHandler);
+        server = new MockTcpServer(manager);
+        server.start();
+
+        hostInfo = Database.addHost(RuntimeEnvironment.application, server.getHostName(),
+                                    HostConnection.PROTOCOL_TCP, HostInfo.DEFAULT_HTTP_PORT,
+                                    server.getPort());
+        hostConnection = new HostConnection(hostInfo);
+
+        finishedCount = 0;
+        failedCount = 0;
+        orchestrator = new SyncOrchestrator(null, 0, hostInfo, new Handler(), contentResolver) {
+            @Override
+            public void syncItemFinished() {
+                finishedCount++;
+                RoboThreadRunner.stop();
+            }
+
+            @Override
+            public void syncItemFailed(int errorCode, String description) {
+                failedCount++;
+                RoboThreadRunner.stop();
+            }
+        };
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+        hostConnection.disconnect();
+    }
+
+    /**
+     * On a cold cache even a silent sync gets the channels and all the guides. Only the
+     * broadcasts in the window are stored, and the channels without a guide get a state that
+     * only expires with age
+     */
+    @Test
+    public void coldCacheSyncTest() throws Exception {
+        long before = System.currentTimeMillis();
+        sync(new SyncPVR(hostInfo.getId(), GUIDE_CHANNEL_ID, silentSyncExtras()));
+
+        assertEquals(2, pvrHandler.count(PVR.GetChannelGroups.METHOD_NAME));
+        assertEquals(1, pvrHandler.count(PVR.GetChannels.METHOD_NAME));
+        assertEquals(Arrays.asList(GUIDE_CHANNEL_ID, FAILED_CHANNEL_ID, EMPTY_CHANNEL_ID),
+                     pvrHandler.broadcastRequests);
+
+        assertEquals(Arrays.asList(CURRENT_BROADCAST_ID, LATER_BROADCAST_ID),
+                     getBroadcastIds(GUIDE_CHANNEL_ID));
+        assertEquals(pvrHandler.laterEnd, getEPGState(GUIDE_CHANNEL_ID)[1]);
+        for (int channelId : new int[] {FAILED_CHANNEL_ID, EMPTY_CHANNEL_ID}) {
+            long[] epgState = getEPGState(channelId);
+            assertTrue(epgState[0] >= before);
+            assertEquals(Long.MAX_VALUE, epgState[1]);
+        }
+    }
+
+    /**
+     * Opening a channel while the stored channels and guides are recent makes no calls at all
+     */
+    @Test
+    public void silentSyncOfRecentGuidesTest() throws Exception {
+        sync(new SyncPVR(hostInfo.getId(), null));
+        pvrHandler.requests.clear();
+        pvrHandler.broadcastRequests.clear();
+
+        sync(new SyncPVR(hostInfo.getId(), GUIDE_CHANNEL_ID, silentSyncExtras()));
+
+        assertEquals(Collections.<String>emptyList(), pvrHandler.requests);
+        assertEquals(Arrays.asList(CURRENT_BROADCAST_ID, LATER_BROADCAST_ID),
+                     getBroadcastIds(GUIDE_CHANNEL_ID));
+    }
+
+    /**
+     * A silent sync with recent channels only refreshes the guides that are old, or that run
+     * out soon and were synced a while ago. Channels without a guide wait for the guide to be old
+     */
+    @Test
+    public void silentSyncOfStaleGuidesTest() throws Exception {
+        sync(new SyncPVR(hostInfo.getId(), null));
+        pvrHandler.requests.clear();
+        pvrHandler.broadcastRequests.clear();
+
+        long now = System.currentTimeMillis();
+        setEPGState(GUIDE_CHANNEL_ID, now - DateUtils.HOUR_IN_MILLIS, now + DateUtils.HOUR_IN_MILLIS);
+        setEPGState(EMPTY_CHANNEL_ID, now - DateUtils.HOUR_IN_MILLIS, Long.MAX_VALUE);
+        setEPGState(FAILED_CHANNEL_ID, now - 7 * DateUtils.HOUR_IN_MILLIS, Long.MAX_VALUE);
+
+        sync(new SyncPVR(hostInfo.getId(), silentSyncExtras()));
+
+        assertEquals(0, pvrHandler.count(PVR.GetChannelGroups.METHOD_NAME));
+        assertEquals(0, pvrHandler.count(PVR.GetChannels.METHOD_NAME));
+        assertEquals(Arrays.asList(GUIDE_CHANNEL_ID, FAILED_CHANNEL_ID), pvrHandler.broadcastRequests);
+        assertEquals(now - DateUtils.HOUR_IN_MILLIS, getEPGState(EMPTY_CHANNEL_ID)[0]);
+    }
+
+    /**
+     * A refresh asked by the user gets the channels again, and the guide of the given channel
+     * even if it's recent
+     */
+    @Test
+    public void explicitSyncTest() throws Exception {
+        sync(new SyncPVR(hostInfo.getId(), null));
+        pvrHandler.requests.clear();
+        pvrHandler.broadcastRequests.clear();
+
+        sync(new SyncPVR(hostInfo.getId(), GUIDE_CHANNEL_ID, null));
+
+        assertEquals(2, pvrHandler.count(PVR.GetChannelGroups.METHOD_NAME));
+        assertEquals(1, pvrHandler.count(PVR.GetChannels.METHOD_NAME));
+        assertEquals(Collections.singletonList(GUIDE_CHANNEL_ID), pvrHandler.broadcastRequests);
+    }
+
+    private void sync(SyncPVR syncPVR) throws Exception {
+        int callbacks = finishedCount + failedCount;
+        syncPVR.sync(orchestrator, hostConnection, new Handler(), contentResolver);
+        // Syncs without calls finish right away
+        if (finishedCount + failedCount == callbacks) {
+            assertTrue(RoboThreadRunner.run(10));
+        }
+        assertEquals(callbacks + 1, finishedCount);
+        assertEquals(0, failedCount);
+    }
+
+    private static Bundle silentSyncExtras() {
+        Bundle syncExtras = new Bundle();
+        syncExtras.putBoolean(LibrarySyncService.SILENT_SYNC, true);
+        return syncExtras;
+    }
+
+    private List<Integer> getBroadcastIds(int channelId) {
+        List<Integer> broadcastIds = new ArrayList<>();
+        Cursor cursor = contentResolver.query(
+                MediaContract.PVRBroadcasts.buildChannelBroadcastsListUri(hostInfo.getId(), channelId),
+                new String[] {MediaContract.PVRBroadcasts.BROADCASTID},
+                null, null, MediaContract.PVRBroadcasts.BROADCASTID);
+        assertTrue(cursor != null);
+        while (cursor.moveToNext()) {
+            broadcastIds.add(cursor.getInt(0));
+        }
+        cursor.close();
+        return broadcastIds;
+    }
+
+    /**
+     * Returns the {@link MediaContract.PVRChannels#EPG_UPDATED} and
+     * {@link MediaContract.PVRChannels#EPG_END} of a channel
+     */
+    private long[] getEPGState(int channelId) {
+        Cursor cursor = contentResolver.query(
+                MediaContract.PVRChannels.buildChannelsListUri(hostInfo.getId()),
+                new String[] {MediaContract.PVRChannels.EPG_UPDATED, MediaContract.PVRChannels.EPG_END},
+                MediaContract.PVRChannels.CHANNELID + "=?", new String[] {String.valueOf(channelId)},
+                null);
+        assertTrue(cursor != null);
+        assertTrue(cursor.moveToFirst());
+        long[] epgState = {cursor.getLong(0), cursor.getLong(1)};
+        cursor.close();
+        return epgState;
+    }
+
+    private void setEPGState(int channelId, long updated, long end) {
+        ContentValues values = new ContentValues();
+        values.put(MediaContract.PVRChannels.EPG_UPDATED, updated);
+        values.put(MediaContract.PVRChannels.EPG_END, end);
+        contentResolver.update(MediaContract.PVRChannels.buildChannelsListUri(hostInfo.getId()), values,
+                               MediaContract.PVRChannels.CHANNELID + "=?",
+                               new String[] {String.valueOf(channelId)});
+    }
+
+    /**
+     * Answers the PVR calls of a sync: a TV group with three channels, one with a guide that
+     * spans more than the stored window, one whose guide fails and one with an empty guide
+     */
+    private static class PVRHandler implements JSONConnectionHandlerManager.ConnectionHandler {
+        final List<String> requests = new ArrayList<>();
+        final List<Integer> broadcastRequests = new ArrayList<>();
+
+        private final SimpleDateFormat dateFormat;
+        private final long now;
+        final long laterEnd;
+
+        PVRHandler() {
+            dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+            dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+            // Kodi's times have no milliseconds
+            now = System.currentTimeMillis() / 1000 * 1000;
+            laterEnd = now + 2 * DateUtils.DAY_IN_MILLIS;
+        }
+
+        int count(String method) {
+            return Collections.frequency(requests, method);
+        }
+
+        @Override
+        public String[] getType() {
+            return new String[]{PVR.GetChannelGroups.METHOD_NAME,
+                                PVR.GetChannels.METHOD_NAME,
+                                PVR.GetBroadcasts.METHOD_NAME};
+        }
+
+        @Override
+        public ArrayList<JsonResponse> getResponse(String method, ObjectNode jsonRequest) {
+            ArrayList<JsonResponse> responses = new ArrayList<>();
+            int id = jsonRequest.get("id").asInt(-1);
+            JsonNode params = jsonRequest.get("params");
+            requests.add(method);
+
+            String result;
+            if (method.equals(PVR.GetChannelGroups.METHOD_NAME)) {
+                String groups = PVRType.ChannelType.TV.equals(params.get("channeltype").asText()) ?
+                                "{\"channelgroupid\":" + GROUP_ID + ",\"label\":\"All channels\"," +
+                                "\"channeltype\":\"tv\"}" : "";
+                result = listResult("channelgroups", groups);
+            } else if (method.equals(PVR.GetChannels.METHOD_NAME)) {
+                result = listResult("channels", channel(GUIDE_CHANNEL_ID) + "," +
+                                                channel(FAILED_CHANNEL_ID) + "," +
+                                                channel(EMPTY_CHANNEL_ID));
+            } else {
+                int channelId = params.get("channelid").asInt();
+                broadcastRequests.add(channelId);
+                if (channelId == FAILED_CHANNEL_ID) {
+                    result = "{\"error\":{\"code\":-32602,\"message\":\"Invalid params.\"}}";
+                } else if (channelId == EMPTY_CHANNEL_ID) {
+                    result = listResult("broadcasts", "");
+                } else {
+                    long hour = DateUtils.HOUR_IN_MILLIS;
+                    result = listResult("broadcasts",
+                            broadcast(ENDED_BROADCAST_ID, now - 2 * hour, now - hour) + "," +
+                            broadcast(CURRENT_BROADCAST_ID, now - hour, now + hour) + "," +
+                            broadcast(LATER_BROADCAST_ID, laterEnd - hour, laterEnd) + "," +
+                            broadcast(BEYOND_WINDOW_BROADCAST_ID, now + 4 * DateUtils.DAY_IN_MILLIS,
+                                      now + 4 * DateUtils.DAY_IN_MILLIS + hour));
+                }
+            }
+
+            try {
+                responses.add(new JsonResponse(id, result) { });
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return responses;
+        }
+
+        private static String channel(int channelId) {
+            return "{\"channelid\":" + channelId + ",\"label\":\"Channel " + channelId +
+                   "\",\"channel\":\"Channel " + channelId + "\",\"channeltype\":\"tv\"}";
+        }
+
+        private String broadcast(int broadcastId, long start, long end) {
+            return "{\"broadcastid\":" + broadcastId + ",\"label\":\"Broadcast " + broadcastId +
+                   "\",\"title\":\"Broadcast " + broadcastId +
+                   "\",\"starttime\":\"" + dateFormat.format(new Date(start)) +
+                   "\",\"endtime\":\"" + dateFormat.format(new Date(end)) + "\"}";
+        }
+
+        private static String listResult(String listNode, String items) {
+            return "{\"result\":{\"" + listNode + "\":[" + items + "]}}";
+        }
+
+        @Override
+        public ArrayList<JsonResponse> getNotifications() {
+            return null;
+        }
+
+        @Override
+        public void reset() {
+        }
+    }
+}
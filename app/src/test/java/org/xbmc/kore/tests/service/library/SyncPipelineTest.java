@@ -0,0 +1,238 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xbmc.kore.tests.service.library;
+
+import android.os.Handler;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.xbmc.kore.BuildConfig;
+import org.xbmc.kore.host.HostInfo;
+import org.xbmc.kore.jsonrpc.ApiList;
+import org.xbmc.kore.jsonrpc.ApiMethod;
+import org.xbmc.kore.jsonrpc.HostConnection;
+import org.xbmc.kore.jsonrpc.method.VideoLibrary;
+import org.xbmc.kore.jsonrpc.type.ListType;
+import org.xbmc.kore.jsonrpc.type.VideoType;
+import org.xbmc.kore.service.library.SyncOrchestrator;
+import org.xbmc.kore.service.library.SyncPipeline;
+import org.xbmc.kore.testutils.tcpserver.MockTcpServer;
+import org.xbmc.kore.testutils.tcpserver.handlers.JSONConnectionHandlerManager;
+import org.xbmc.kore.testutils.tcpserver.handlers.jsonrpc.JsonResponse;
+import org.xbmc.kore.utils.RoboThreadRunner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class SyncPipelineTest {
+
+    private HostConnection hostConnection;
+    private MockTcpServer server;
+    private MoviesHandler moviesHandler;
+
+    private int finishedCount;
+    private int failedCount;
+    private SyncOrchestrator orchestrator;
+
+    @Before
+    public void setup() throws Exception {
+        moviesHandler = new MoviesHandler();
+        JSONConnectionHandlerManager manager = new JSONConnectionHandlerManager();
+        manager.addHandler(moviesHandler);
+
+        server = new MockTcpServer(manager);
+        server.start();
+
+        HostInfo hostInfo = new HostInfo("TESTHOST", server.getHostName(), HostConnection.PROTOCOL_TCP,
+                                         HostInfo.DEFAULT_HTTP_PORT, server.getPort(), null, null, true,
+                                         HostInfo.DEFAULT_EVENT_SERVER_PORT, false);
+        hostConnection = new HostConnection(hostInfo);
+
+        finishedCount = 0;
+        failedCount = 0;
+        orchestrator = new SyncOrchestrator(null, 0, hostInfo, new Handler(), null) {
+            @Override
+            public void syncItemFinished() {
+                finishedCount++;
+                RoboThreadRunner.stop();
+            }
+
+            @Override
+            public void syncItemFailed(int errorCode, String description) {
+                failedCount++;
+                RoboThreadRunner.stop();
+            }
+        };
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+        hostConnection.disconnect();
+    }
+
+    /**
+     * An empty library inserts nothing, but the existing info must still be deleted
+     */
+    @Test
+    public void emptyResultTest() throws Exception {
+        moviesHandler.total = 0;
+        final List<Integer> inserted = new ArrayList<>();
+        final int[] deleteCount = { 0 };
+
+        new SyncPipeline(orchestrator, hostConnection, new Handler())
+                .add(new MoviesTask(inserted))
+                .start(new Runnable() {
+                    @Override
+                    public void run() {
+                        deleteCount[0]++;
+                    }
+                });
+
+        assertTrue(RoboThreadRunner.run(10));
+        assertEquals(1, finishedCount);
+        assertEquals(0, failedCount);
+        assertTrue(inserted.isEmpty());
+        assertEquals(1, deleteCount[0]);
+    }
+
+    /**
+     * The existing info is deleted once, before the first page is inserted, and every page is
+     * inserted
+     */
+    @Test
+    public void pagedResultTest() throws Exception {
+        moviesHandler.total = 5;
+        final List<Integer> inserted = new ArrayList<>();
+        final int[] deleteCount = { 0 };
+
+        new SyncPipeline(orchestrator, hostConnection, new Handler())
+                .add(new MoviesTask(inserted))
+                .start(new Runnable() {
+                    @Override
+                    public void run() {
+                        assertTrue(inserted.isEmpty());
+                        deleteCount[0]++;
+                    }
+                });
+
+        assertTrue(RoboThreadRunner.run(10));
+        assertEquals(1, finishedCount);
+        assertEquals(5, inserted.size());
+        assertEquals(1, deleteCount[0]);
+    }
+
+    /**
+     * Without tasks the pipeline finishes right away, still clearing the existing info
+     */
+    @Test
+    public void noTasksTest() throws Exception {
+        final int[] deleteCount = { 0 };
+        new SyncPipeline(orchestrator, hostConnection, new Handler())
+                .start(new Runnable() {
+                    @Override
+                    public void run() {
+                        deleteCount[0]++;
+                    }
+                });
+
+        assertTrue(RoboThreadRunner.run(10));
+        assertEquals(1, finishedCount);
+        assertEquals(1, deleteCount[0]);
+        assertFalse(failedCount > 0);
+    }
+
+    private static class MoviesTask extends SyncPipeline.PagedTask<VideoType.DetailsMovie> {
+        private static final int PAGE_SIZE = 2;
+        private final List<Integer> inserted;
+
+        MoviesTask(List<Integer> inserted) {
+            super(PAGE_SIZE);
+            this.inserted = inserted;
+        }
+
+        @Override
+        public ApiMethod<ApiList<VideoType.DetailsMovie>> getPage(ListType.Limits limits) {
+            return new VideoLibrary.GetMovies(limits);
+        }
+
+        @Override
+        public void insertPage(List<VideoType.DetailsMovie> items) {
+            for (VideoType.DetailsMovie movie : items) {
+                inserted.add(movie.movieid);
+            }
+        }
+    }
+
+    /**
+     * Answers VideoLibrary.GetMovies with the page of a library of {@link #total} movies
+     */
+    private static class MoviesHandler implements JSONConnectionHandlerManager.ConnectionHandler {
+        int total = 0;
+
+        @Override
+        public String[] getType() {
+            return new String[]{VideoLibrary.GetMovies.METHOD_NAME};
+        }
+
+        @Override
+        public ArrayList<JsonResponse> getResponse(String method, ObjectNode jsonRequest) {
+            ArrayList<JsonResponse> responses = new ArrayList<>();
+            int id = jsonRequest.get("id").asInt(-1);
+            ObjectNode limits = (ObjectNode) jsonRequest.get("params").get("limits");
+            int start = limits.get("start").asInt();
+            int end = Math.min(limits.get("end").asInt(), total);
+
+            StringBuilder movies = new StringBuilder();
+            for (int i = start; i < end; i++) {
+                if (i > start) movies.append(',');
+                movies.append("{\"movieid\":").append(i + 1).append(",\"label\":\"Movie ")
+                      .append(i + 1).append("\"}");
+            }
+            String result = "{\"result\":{\"limits\":{\"start\":" + start + ",\"end\":" + end +
+                            ",\"total\":" + total + "},\"movies\":[" + movies + "]}}";
+            try {
+                responses.add(new JsonResponse(id, result) { });
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return responses;
+        }
+
+        @Override
+        public ArrayList<JsonResponse> getNotifications() {
+            return null;
+        }
+
+        @Override
+        public void reset() {
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xbmc.kore.tests.service.library;
+
+import android.content.ContentValues;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.xbmc.kore.BuildConfig;
+import org.xbmc.kore.jsonrpc.type.VideoType;
+import org.xbmc.kore.provider.MediaContract;
+import org.xbmc.kore.service.library.SyncUtils;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class SyncUtilsTest {
+    private static final int HOST_ID = 1;
+
+    /**
+     * Two audio streams, the second one with more channels
+     */
+    private static final String STREAM_DETAILS =
+            "\"streamdetails\":{\"audio\":[" +
+            "{\"channels\":2,\"codec\":\"aac\",\"language\":\"eng\"}," +
+            "{\"channels\":6,\"codec\":\"ac3\",\"language\":\"fre\"}]," +
+            "\"subtitle\":[],\"video\":[]}";
+
+    @Test
+    public void movieAudioStreamsTest() throws Exception {
+        VideoType.DetailsMovie movie = new VideoType.DetailsMovie(
+                node("{\"movieid\":1," + STREAM_DETAILS + "}"));
+        ContentValues values = SyncUtils.contentValuesFromMovie(HOST_ID, movie);
+
+        assertEquals(6, (int) values.getAsInteger(MediaContract.Movies.AUDIO_CHANNELS));
+        assertEquals("ac3", values.getAsString(MediaContract.Movies.AUDIO_CODEC));
+        assertEquals("eng, fre", values.getAsString(MediaContract.Movies.AUDIO_LANGUAGE));
+    }
+
+    @Test
+    public void episodeAudioStreamsTest() throws Exception {
+        VideoType.DetailsEpisode episode = new VideoType.DetailsEpisode(
+                node("{\"episodeid\":1,\"tvshowid\":1," + STREAM_DETAILS + "}"));
+        ContentValues values = SyncUtils.contentValuesFromEpisode(HOST_ID, episode);
+
+        assertEquals(6, (int) values.getAsInteger(MediaContract.Episodes.AUDIO_CHANNELS));
+        assertEquals("ac3", values.getAsString(MediaContract.Episodes.AUDIO_CODEC));
+        assertEquals("eng, fre", values.getAsString(MediaContract.Episodes.AUDIO_LANGUAGE));
+    }
+
+    @Test
+    public void musicVideoAudioStreamsTest() throws Exception {
+        VideoType.DetailsMusicVideo musicVideo = new VideoType.DetailsMusicVideo(
+                node("{\"musicvideoid\":1," + STREAM_DETAILS + "}"));
+        ContentValues values = SyncUtils.contentValuesFromMusicVideo(HOST_ID, musicVideo);
+
+        assertEquals(6, (int) values.getAsInteger(MediaContract.MusicVideos.AUDIO_CHANNELS));
+        assertEquals("ac3", values.getAsString(MediaContract.MusicVideos.AUDIO_CODEC));
+        assertEquals("eng, fre", values.getAsString(MediaContract.MusicVideos.AUDIO_LANGUAGE));
+    }
+
+    private JsonNode node(String json) throws Exception {
+        return new ObjectMapper().readTree(json);
+    }
+}
@@ -29,6 +29,7 @@ import org.xbmc.kore.jsonrpc.method.AudioLibrary;
 import org.xbmc.kore.jsonrpc.method.VideoLibrary;
 import org.xbmc.kore.jsonrpc.type.AudioType;
 import org.xbmc.kore.jsonrpc.type.LibraryType;
+import org.xbmc.kore.jsonrpc.type.ListType;
 import org.xbmc.kore.jsonrpc.type.VideoType;
 import org.xbmc.kore.provider.MediaContract;
 import org.xbmc.kore.service.library.SyncMusic;
@@ -44,6 +45,16 @@ public class Database {
     public static final String TAG = LogUtils.makeLogTag(Database.class);
 
     public static HostInfo fill(HostInfo hostInfo, Context context, ContentResolver contentResolver) throws ApiException, IOException {
+        return fill(hostInfo, context, contentResolver, false);
+    }
+
+    /**
+     * Fills the database with the test fixtures
+     * @param allSeasons Whether to insert the seasons of all the shows at once, as a full sync
+     *                   does on Kodi 17 and later, instead of show by show
+     */
+    public static HostInfo fill(HostInfo hostInfo, Context context, ContentResolver contentResolver,
+                                boolean allSeasons) throws ApiException, IOException {
         SyncMusic syncMusic = new SyncMusic(hostInfo.getId(), null);
         insertMovies(context, contentResolver, hostInfo.getId());
         insertArtists(context, contentResolver, syncMusic);
@@ -52,7 +63,7 @@ public class Database {
         insertSongs(context, contentResolver, syncMusic);
 
         SyncTVShows syncTVShows = new SyncTVShows(hostInfo.getId(), null);
-        insertTVShows(context, contentResolver, syncTVShows);
+        insertTVShows(context, contentResolver, syncTVShows, allSeasons);
 
         SyncMusicVideos syncMusicVideos = new SyncMusicVideos(hostInfo.getId(), null);
         insertMusicVideos(context, contentResolver, syncMusicVideos);
@@ -147,7 +158,8 @@ public class Database {
         syncMusic.insertSongsItems(songList, contentResolver);
     }
 
-    private static void insertTVShows(Context context, ContentResolver contentResolver, SyncTVShows syncTVShows)
+    private static void insertTVShows(Context context, ContentResolver contentResolver, SyncTVShows syncTVShows,
+                                      boolean allSeasons)
             throws ApiException, IOException {
         VideoLibrary.GetTVShows getTVShows = new VideoLibrary.GetTVShows();
         String result = FileUtils.readFile(context, "VideoLibrary.GetTVShows.json");
@@ -155,16 +167,23 @@ public class Database {
 
         syncTVShows.insertTVShows(tvShowList, contentResolver);
 
-        for ( VideoType.DetailsTVShow tvShow : tvShowList ) {
-            VideoLibrary.GetSeasons getSeasons = new VideoLibrary.GetSeasons(tvShow.tvshowid);
+        if (allSeasons) {
+            VideoLibrary.GetSeasons getSeasons = new VideoLibrary.GetSeasons((ListType.Limits) null);
             result = FileUtils.readFile(context, "VideoLibrary.GetSeasons.json");
-            ArrayList<VideoType.DetailsSeason> detailsSeasons = (ArrayList) getSeasons.resultFromJson(result);
-            syncTVShows.insertSeason(tvShow.tvshowid, detailsSeasons, contentResolver);
+            ArrayList<VideoType.DetailsSeason> detailsSeasons = (ArrayList) getSeasons.resultFromJson(result).items;
+            syncTVShows.insertSeasons(detailsSeasons, contentResolver);
+        } else {
+            for ( VideoType.DetailsTVShow tvShow : tvShowList ) {
+                VideoLibrary.GetSeasons getSeasons = new VideoLibrary.GetSeasons(tvShow.tvshowid);
+                result = FileUtils.readFile(context, "VideoLibrary.GetSeasons.json");
+                ArrayList<VideoType.DetailsSeason> detailsSeasons = (ArrayList) getSeasons.resultFromJson(result).items;
+                syncTVShows.insertSeason(tvShow.tvshowid, detailsSeasons, contentResolver);
+            }
         }
 
         VideoLibrary.GetEpisodes getEpisodes = new VideoLibrary.GetEpisodes(0);
         result = FileUtils.readFile(context, "VideoLibrary.GetEpisodes.json");
-        ArrayList<VideoType.DetailsEpisode> detailsEpisodes = (ArrayList) getEpisodes.resultFromJson(result);
+        ArrayList<VideoType.DetailsEpisode> detailsEpisodes = (ArrayList) getEpisodes.resultFromJson(result).items;
         syncTVShows.insertEpisodes(detailsEpisodes, contentResolver);
     }
 
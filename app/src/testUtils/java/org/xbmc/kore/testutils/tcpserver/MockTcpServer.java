@@ -157,6 +157,17 @@ public class MockTcpServer {
         }
     }
 
+    /**
+     * Closes the connections to the clients, as a host that goes away would, while still
+     * accepting new ones
+     */
+    public void closeClientSockets() {
+        for (Iterator<Socket> s = openClientSockets.iterator(); s.hasNext(); ) {
+            Util.closeQuietly(s.next());
+            s.remove();
+        }
+    }
+
     /**
      * Gets the local port of this server socket or -1 if it is not bound
      * @return the local port this server is listening on.
@@ -202,10 +213,11 @@ public class MockTcpServer {
             public void run() {
                 try {
                     while (true) {
+                        // Stop before taking the responses meant for a newer connection
+                        if ( serverSocket.isClosed() || socket.isClosed() )
+                            return;
                         sendResponse();
                         Thread.sleep(100);
-                        if ( serverSocket.isClosed() )
-                            return;
                     }
                 } catch (IOException e) {
                     LogUtils.LOGW(TAG, " sending response from " + socket.getInetAddress() + " failed: " + e);
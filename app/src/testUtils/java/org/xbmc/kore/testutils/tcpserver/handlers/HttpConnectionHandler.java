@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xbmc.kore.testutils.tcpserver.handlers;
+
+import org.xbmc.kore.testutils.tcpserver.MockTcpServer;
+
+import java.util.Locale;
+
+/**
+ * Serves JSON RPC over HTTP, like Kodi's web server does on /jsonrpc.
+ * The body of each POST is passed on to the wrapped handler, and its answer is sent back as
+ * the body of the HTTP response. Only one request at a time, on a kept alive connection, is
+ * supported.
+ */
+public class HttpConnectionHandler implements MockTcpServer.TcpServerConnectionHandler {
+    private static final String HEADERS_END = "\r\n\r\n";
+    private static final String CONTENT_LENGTH = "content-length:";
+
+    private final MockTcpServer.TcpServerConnectionHandler jsonHandler;
+
+    private StringBuilder headers = new StringBuilder();
+    private int remainingBodyLength = -1;
+
+    public HttpConnectionHandler(MockTcpServer.TcpServerConnectionHandler jsonHandler) {
+        this.jsonHandler = jsonHandler;
+    }
+
+    @Override
+    public void processInput(char c) {
+        if (remainingBodyLength > 0) {
+            jsonHandler.processInput(c);
+            if (--remainingBodyLength == 0) {
+                remainingBodyLength = -1;
+            }
+            return;
+        }
+
+        headers.append(c);
+        if (headers.indexOf(HEADERS_END) != -1) {
+            remainingBodyLength = getContentLength(headers.toString());
+            headers = new StringBuilder();
+        }
+    }
+
+    @Override
+    public String getResponse() {
+        String body = jsonHandler.getResponse();
+        if (body == null) {
+            return null;
+        }
+        return "HTTP/1.1 200 OK\r\n" +
+               "Content-Type: application/json\r\n" +
+               "Content-Length: " + body.length() + "\r\n" +
+               "\r\n" +
+               body;
+    }
+
+    private static int getContentLength(String headers) {
+        for (String header : headers.split("\r\n")) {
+            if (header.toLowerCase(Locale.US).startsWith(CONTENT_LENGTH)) {
+                return Integer.parseInt(header.substring(CONTENT_LENGTH.length()).trim());
+            }
+        }
+        return -1;
+    }
+}
@@ -17,6 +17,7 @@
 package org.xbmc.kore.testutils.tcpserver.handlers;
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
@@ -46,6 +47,7 @@ public class JSONConnectionHandlerManager implements MockTcpServer.TcpServerConn
     private int responseCount;
 
     private HashMap<String, ArrayList<JsonResponse>> clientResponses = new HashMap<>();
+    private final ArrayList<ArrayList<JsonResponse>> batchResponses = new ArrayList<>();
 
     public interface ConnectionHandler {
         /**
@@ -85,9 +87,9 @@ public class JSONConnectionHandlerManager implements MockTcpServer.TcpServerConn
     @Override
     public void processInput(char c) {
         buffer.append(c);
-        if ( c == '{' ) {
+        if ( c == '{' || c == '[' ) {
             amountOfOpenBrackets++;
-        } else if ( c == '}' ) {
+        } else if ( c == '}' || c == ']' ) {
             amountOfOpenBrackets--;
         }
 
@@ -101,15 +103,28 @@ public class JSONConnectionHandlerManager implements MockTcpServer.TcpServerConn
     private void processJSONInput(String input) {
         try {
             JsonParser parser = objectMapper.getFactory().createParser(input);
-            ObjectNode jsonRequest = objectMapper.readTree(parser);
-
-            int methodId = jsonRequest.get(ID_NODE).asInt();
-            String method = jsonRequest.get(METHOD_NODE).asText();
-            ConnectionHandler connectionHandler = handlersByType.get(method);
-            if ( connectionHandler != null ) {
-                ArrayList<JsonResponse> responses = connectionHandler.getResponse(method, jsonRequest);
+            JsonNode jsonRequest = objectMapper.readTree(parser);
+
+            if (jsonRequest == null) {
+                return;
+            } else if (jsonRequest.isArray()) {
+                // Batch request, answered with an array of the responses
+                ArrayList<JsonResponse> responses = new ArrayList<>();
+                for (JsonNode request : jsonRequest) {
+                    ArrayList<JsonResponse> methodResponses = getMethodResponses((ObjectNode) request);
+                    if (methodResponses != null) {
+                        responses.addAll(methodResponses);
+                    }
+                }
+                if (!responses.isEmpty()) {
+                    synchronized (clientResponses) {
+                        batchResponses.add(responses);
+                    }
+                }
+            } else {
+                ArrayList<JsonResponse> responses = getMethodResponses((ObjectNode) jsonRequest);
                 if (responses != null) {
-                    addResponse(methodId, responses);
+                    addResponse(jsonRequest.get(ID_NODE).asInt(), responses);
                 }
             }
         } catch (IOException e) {
@@ -117,6 +132,15 @@ public class JSONConnectionHandlerManager implements MockTcpServer.TcpServerConn
         }
     }
 
+    private ArrayList<JsonResponse> getMethodResponses(ObjectNode jsonRequest) {
+        String method = jsonRequest.get(METHOD_NODE).asText();
+        ConnectionHandler connectionHandler = handlersByType.get(method);
+        if ( connectionHandler == null ) {
+            return null;
+        }
+        return connectionHandler.getResponse(method, jsonRequest);
+    }
+
     @Override
     public String getResponse() {
         StringBuffer stringBuffer = new StringBuffer();
@@ -130,6 +154,16 @@ public class JSONConnectionHandlerManager implements MockTcpServer.TcpServerConn
                 }
             }
             clientResponses.clear();
+
+            //Handle batch responses
+            for (ArrayList<JsonResponse> arrayList : batchResponses) {
+                StringBuilder batch = new StringBuilder();
+                for (JsonResponse response : arrayList) {
+                    batch.append((batch.length() == 0) ? "[" : ",").append(response.toJsonString());
+                }
+                stringBuffer.append(batch.append("]\n"));
+            }
+            batchResponses.clear();
         }
 
         //Handle notifications
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbmc.kore.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the json fixtures shared with the tests
+ */
+public class Fixtures {
+    public static final String SONGS = "AudioLibrary.GetSongs.json";
+    public static final String ALBUMS = "AudioLibrary.GetAlbums.json";
+    public static final String ARTISTS = "AudioLibrary.GetArtists.json";
+    public static final String MOVIES = "Video.Details.Movie.json";
+    public static final String TVSHOWS = "VideoLibrary.GetTVShows.json";
+    public static final String EPISODES = "VideoLibrary.GetEpisodes.json";
+    public static final String ITEM_MOVIE = "json_responses/List.Item.All-Movies.json";
+    public static final String ITEM_MUSIC = "json_responses/List.Item.All-Music.json";
+    public static final String ITEM_SERIES = "json_responses/List.Item.All-Series.json";
+
+    /**
+     * Reads a fixture from the classpath
+     * @param name Fixture name
+     * @return Contents of the fixture
+     */
+    public static String read(String name) throws IOException {
+        InputStream is = Fixtures.class.getClassLoader().getResourceAsStream(name);
+        if (is == null) {
+            throw new IOException("Fixture not found: " + name);
+        }
+
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toString("UTF-8");
+        } finally {
+            is.close();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbmc.kore.benchmark;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xbmc.kore.jsonrpc.ApiException;
+import org.xbmc.kore.jsonrpc.ApiList;
+import org.xbmc.kore.jsonrpc.ApiMethod;
+import org.xbmc.kore.jsonrpc.method.AudioLibrary;
+import org.xbmc.kore.jsonrpc.method.Player;
+import org.xbmc.kore.jsonrpc.method.VideoLibrary;
+import org.xbmc.kore.jsonrpc.type.AudioType;
+import org.xbmc.kore.jsonrpc.type.ListType;
+import org.xbmc.kore.jsonrpc.type.VideoType;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building JSON-RPC requests and parsing the responses into the
+ * {@link VideoType}, {@link AudioType} and {@link ListType} model classes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class JsonRpcBenchmark {
+    private static final String[] songProperties = {
+            AudioType.FieldsSong.TITLE, AudioType.FieldsSong.TRACK, AudioType.FieldsSong.DURATION,
+            AudioType.FieldsSong.THUMBNAIL, AudioType.FieldsSong.FILE, AudioType.FieldsSong.ALBUMID,
+            AudioType.FieldsSong.DISC, AudioType.FieldsSong.ARTISTID
+    };
+
+    private static final String[] episodeProperties = {
+            VideoType.FieldsEpisode.TITLE, VideoType.FieldsEpisode.PLOT, VideoType.FieldsEpisode.RATING,
+            VideoType.FieldsEpisode.WRITER, VideoType.FieldsEpisode.FIRSTAIRED,
+            VideoType.FieldsEpisode.PLAYCOUNT, VideoType.FieldsEpisode.RUNTIME,
+            VideoType.FieldsEpisode.DIRECTOR, VideoType.FieldsEpisode.SEASON,
+            VideoType.FieldsEpisode.EPISODE, VideoType.FieldsEpisode.SHOWTITLE,
+            VideoType.FieldsEpisode.STREAMDETAILS, VideoType.FieldsEpisode.FANART,
+            VideoType.FieldsEpisode.THUMBNAIL, VideoType.FieldsEpisode.FILE,
+            VideoType.FieldsEpisode.TVSHOWID, VideoType.FieldsEpisode.DATEADDED
+    };
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private String songsJson, albumsJson, artistsJson,
+            moviesJson, tvshowsJson, episodesJson,
+            itemMovieJson, itemMusicJson, itemSeriesJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        songsJson = Fixtures.read(Fixtures.SONGS);
+        albumsJson = Fixtures.read(Fixtures.ALBUMS);
+        artistsJson = Fixtures.read(Fixtures.ARTISTS);
+        moviesJson = Fixtures.read(Fixtures.MOVIES);
+        tvshowsJson = Fixtures.read(Fixtures.TVSHOWS);
+        episodesJson = Fixtures.read(Fixtures.EPISODES);
+        itemMovieJson = Fixtures.read(Fixtures.ITEM_MOVIE);
+        itemMusicJson = Fixtures.read(Fixtures.ITEM_MUSIC);
+        itemSeriesJson = Fixtures.read(Fixtures.ITEM_SERIES);
+    }
+
+    @Benchmark
+    public String songsRequestToJson() {
+        return new AudioLibrary.GetSongs(new ListType.Limits(0, 300), songProperties).toJsonString();
+    }
+
+    @Benchmark
+    public String episodesRequestToJson() {
+        return new VideoLibrary.GetEpisodes(1, episodeProperties).toJsonString();
+    }
+
+    @Benchmark
+    public ApiList<AudioType.DetailsSong> songsFromJson() throws ApiException {
+        return new AudioLibrary.GetSongs().resultFromJson(songsJson);
+    }
+
+    @Benchmark
+    public ApiList<AudioType.DetailsSong> songsFromJsonParser() throws ApiException, IOException {
+        return fromJsonParser(new AudioLibrary.GetSongs(), songsJson);
+    }
+
+    @Benchmark
+    public ApiList<AudioType.DetailsAlbum> albumsFromJson() throws ApiException {
+        return new AudioLibrary.GetAlbums().resultFromJson(albumsJson);
+    }
+
+    @Benchmark
+    public ApiList<AudioType.DetailsArtist> artistsFromJson() throws ApiException {
+        return new AudioLibrary.GetArtists(false).resultFromJson(artistsJson);
+    }
+
+    @Benchmark
+    public ApiList<VideoType.DetailsMovie> moviesFromJson() throws ApiException {
+        return new VideoLibrary.GetMovies().resultFromJson(moviesJson);
+    }
+
+    @Benchmark
+    public ApiList<VideoType.DetailsTVShow> tvshowsFromJson() throws ApiException {
+        return new VideoLibrary.GetTVShows().resultFromJson(tvshowsJson);
+    }
+
+    @Benchmark
+    public List<VideoType.DetailsEpisode> episodesFromJson() throws ApiException {
+        return new VideoLibrary.GetEpisodes(0).resultFromJson(episodesJson).items;
+    }
+
+    @Benchmark
+    public List<VideoType.DetailsEpisode> episodesFromJsonParser() throws ApiException, IOException {
+        return fromJsonParser(new VideoLibrary.GetEpisodes(0), episodesJson).items;
+    }
+
+    @Benchmark
+    public ListType.ItemsAll itemMovieFromJson() throws ApiException {
+        return new Player.GetItem(1).resultFromJson(itemMovieJson);
+    }
+
+    @Benchmark
+    public ListType.ItemsAll itemMusicFromJson() throws ApiException {
+        return new Player.GetItem(0).resultFromJson(itemMusicJson);
+    }
+
+    @Benchmark
+    public ListType.ItemsAll itemSeriesFromJson() throws ApiException {
+        return new Player.GetItem(1).resultFromJson(itemSeriesJson);
+    }
+
+    /**
+     * Parses a response the way {@link org.xbmc.kore.jsonrpc.HostConnection} does, straight
+     * from the stream, without reading it into a tree first
+     */
+    private <T> T fromJsonParser(ApiMethod<T> method, String json) throws ApiException, IOException {
+        JsonParser parser = objectMapper.getFactory().createParser(json);
+        try {
+            parser.nextToken();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                parser.nextToken();
+                if (ApiMethod.RESULT_NODE.equals(fieldName)) {
+                    return method.resultFromJsonParser(parser);
+                }
+                parser.skipChildren();
+            }
+            throw new IOException("No result in response");
+        } finally {
+            parser.close();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbmc.kore.benchmark;
+
+import android.content.ContentValues;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xbmc.kore.jsonrpc.ApiException;
+import org.xbmc.kore.jsonrpc.method.AudioLibrary;
+import org.xbmc.kore.jsonrpc.method.VideoLibrary;
+import org.xbmc.kore.jsonrpc.type.AudioType;
+import org.xbmc.kore.jsonrpc.type.VideoType;
+import org.xbmc.kore.service.library.SyncUtils;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures converting the library model classes to the rows inserted in the database,
+ * one whole fixture per operation
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SyncUtilsBenchmark {
+    private static final int hostId = 1;
+
+    private List<AudioType.DetailsSong> songs;
+    private List<AudioType.DetailsAlbum> albums;
+    private List<AudioType.DetailsArtist> artists;
+    private List<VideoType.DetailsMovie> movies;
+    private List<VideoType.DetailsEpisode> episodes;
+
+    @Setup
+    public void setUp() throws IOException, ApiException {
+        songs = new AudioLibrary.GetSongs().resultFromJson(Fixtures.read(Fixtures.SONGS)).items;
+        albums = new AudioLibrary.GetAlbums().resultFromJson(Fixtures.read(Fixtures.ALBUMS)).items;
+        artists = new AudioLibrary.GetArtists(false).resultFromJson(Fixtures.read(Fixtures.ARTISTS)).items;
+        movies = new VideoLibrary.GetMovies().resultFromJson(Fixtures.read(Fixtures.MOVIES)).items;
+        episodes = new VideoLibrary.GetEpisodes(0).resultFromJson(Fixtures.read(Fixtures.EPISODES)).items;
+    }
+
+    @Benchmark
+    public ContentValues[] contentValuesFromSongs() {
+        ContentValues[] values = new ContentValues[songs.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = SyncUtils.contentValuesFromSong(hostId, songs.get(i));
+        }
+        return values;
+    }
+
+    @Benchmark
+    public ContentValues[] contentValuesFromAlbums() {
+        ContentValues[] values = new ContentValues[albums.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = SyncUtils.contentValuesFromAlbum(hostId, albums.get(i));
+        }
+        return values;
+    }
+
+    @Benchmark
+    public ContentValues[] contentValuesFromArtists() {
+        ContentValues[] values = new ContentValues[artists.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = SyncUtils.contentValuesFromArtist(hostId, artists.get(i));
+        }
+        return values;
+    }
+
+    @Benchmark
+    public ContentValues[] contentValuesFromMovies() {
+        ContentValues[] values = new ContentValues[movies.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = SyncUtils.contentValuesFromMovie(hostId, movies.get(i));
+        }
+        return values;
+    }
+
+    @Benchmark
+    public ContentValues[] contentValuesFromEpisodes() {
+        ContentValues[] values = new ContentValues[episodes.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = SyncUtils.contentValuesFromEpisode(hostId, episodes.get(i));
+        }
+        return values;
+    }
+}
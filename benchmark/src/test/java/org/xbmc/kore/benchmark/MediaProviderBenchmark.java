@@ -0,0 +1,137 @@
+/*
+ * Copyright 2017 Synced Synapse. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.xbmc.kore.benchmark;
+
+import android.content.ContentValues;
+import android.net.Uri;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.xbmc.kore.jsonrpc.method.AudioLibrary;
+import org.xbmc.kore.jsonrpc.method.VideoLibrary;
+import org.xbmc.kore.jsonrpc.type.AudioType;
+import org.xbmc.kore.jsonrpc.type.VideoType;
+import org.xbmc.kore.provider.InsertBatch;
+import org.xbmc.kore.provider.MediaContract;
+import org.xbmc.kore.provider.MediaProvider;
+import org.xbmc.kore.service.library.SyncUtils;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Measures {@link MediaProvider#bulkInsert} throughput, through {@link ContentValues} and
+ * through an {@link InsertBatch}. SQLite isn't available on the plain JVM, so this runs under
+ * Robolectric instead of JMH, with a simple warm up and measurement loop.
+ * Run with ./gradlew :benchmark:benchmarkProvider
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 23)
+public class MediaProviderBenchmark {
+    private static final int hostId = 1;
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASUREMENT_ITERATIONS = 10;
+
+    private MediaProvider provider;
+    private List<AudioType.DetailsSong> songs;
+    private List<VideoType.DetailsEpisode> episodes;
+
+    @Before
+    public void setUp() throws Exception {
+        provider = new MediaProvider();
+        provider.onCreate();
+
+        songs = new AudioLibrary.GetSongs().resultFromJson(Fixtures.read(Fixtures.SONGS)).items;
+        episodes = new VideoLibrary.GetEpisodes(0).resultFromJson(Fixtures.read(Fixtures.EPISODES)).items;
+    }
+
+    @Test
+    public void songsContentValues() {
+        measure("songs, ContentValues", MediaContract.Songs.CONTENT_URI, songs.size(), new Runnable() {
+            @Override
+            public void run() {
+                ContentValues[] values = new ContentValues[songs.size()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = SyncUtils.contentValuesFromSong(hostId, songs.get(i));
+                }
+                provider.bulkInsert(MediaContract.Songs.CONTENT_URI, values);
+            }
+        });
+    }
+
+    @Test
+    public void songsInsertBatch() {
+        measure("songs, InsertBatch", MediaContract.Songs.CONTENT_URI, songs.size(), new Runnable() {
+            @Override
+            public void run() {
+                provider.bulkInsert(MediaContract.Songs.CONTENT_URI,
+                                    SyncUtils.insertBatchFromSongs(hostId, songs));
+            }
+        });
+    }
+
+    @Test
+    public void episodesContentValues() {
+        measure("episodes, ContentValues", MediaContract.Episodes.CONTENT_URI, episodes.size(), new Runnable() {
+            @Override
+            public void run() {
+                ContentValues[] values = new ContentValues[episodes.size()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = SyncUtils.contentValuesFromEpisode(hostId, episodes.get(i));
+                }
+                provider.bulkInsert(MediaContract.Episodes.CONTENT_URI, values);
+            }
+        });
+    }
+
+    @Test
+    public void episodesInsertBatch() {
+        measure("episodes, InsertBatch", MediaContract.Episodes.CONTENT_URI, episodes.size(), new Runnable() {
+            @Override
+            public void run() {
+                provider.bulkInsert(MediaContract.Episodes.CONTENT_URI,
+                                    SyncUtils.insertBatchFromEpisodes(hostId, episodes));
+            }
+        });
+    }
+
+    /**
+     * Runs an insert on an empty table for a number of iterations, and prints the average
+     * time and throughput. The table is cleared between iterations, outside of the timing
+     */
+    private void measure(String name, Uri tableUri, int rows, Runnable insert) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            provider.delete(tableUri, null, null);
+            insert.run();
+        }
+
+        long totalNanos = 0;
+        for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+            provider.delete(tableUri, null, null);
+            long start = System.nanoTime();
+            insert.run();
+            totalNanos += System.nanoTime() - start;
+        }
+        provider.delete(tableUri, null, null);
+
+        double averageMillis = totalNanos / 1e6 / MEASUREMENT_ITERATIONS;
+        System.out.println(String.format(Locale.US, "%-30s %10.3f ms/op %12.1f rows/s",
+                                         name, averageMillis, rows * 1000 / averageMillis));
+    }
+}